@@ -18,17 +18,30 @@
  */
 package io.lumeer.api.model;
 
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
 import javax.annotation.concurrent.Immutable;
 
+/**
+ * Either a page number based pagination or a keyset pagination continuing after the position encoded in an opaque
+ * continuation token. Results of paginated queries are ordered by their ids, so a token created from the id of the last
+ * result of one page can be used to read the next one.
+ */
 @Immutable
 public class Pagination {
 
    private final Integer page;
    private final Integer pageSize;
+   private final String after;
 
    public Pagination(final Integer page, final Integer pageSize) {
+      this(page, pageSize, null);
+   }
+
+   public Pagination(final Integer page, final Integer pageSize, final String after) {
       this.page = page;
       this.pageSize = pageSize;
+      this.after = after;
    }
 
    public Integer getPage() {
@@ -38,4 +51,45 @@ public class Pagination {
    public Integer getPageSize() {
       return pageSize;
    }
+
+   public String getAfter() {
+      return after;
+   }
+
+   public boolean isKeyset() {
+      return after != null && pageSize != null;
+   }
+
+   public boolean isPaginated() {
+      return pageSize != null && (page != null || after != null);
+   }
+
+   /**
+    * Decodes the continuation token.
+    *
+    * @return id of the last result of the previous page or null when the token is not set or is malformed.
+    */
+   public String getAfterId() {
+      if (after == null) {
+         return null;
+      }
+      try {
+         return new String(Base64.getUrlDecoder().decode(after), StandardCharsets.UTF_8);
+      } catch (IllegalArgumentException e) {
+         return null;
+      }
+   }
+
+   public static String createContinuationToken(final String lastId) {
+      return lastId != null ? Base64.getUrlEncoder().withoutPadding().encodeToString(lastId.getBytes(StandardCharsets.UTF_8)) : null;
+   }
+
+   @Override
+   public String toString() {
+      return "Pagination{" +
+            "page=" + page +
+            ", pageSize=" + pageSize +
+            ", after='" + after + '\'' +
+            '}';
+   }
 }
@@ -35,16 +35,23 @@ public class Query {
    private final Set<String> fulltexts;
    private final Integer page;
    private final Integer pageSize;
+   private final String after;
 
    @JsonCreator
    public Query(@JsonProperty("stems") final List<QueryStem> stems,
          @JsonProperty("fulltexts") final Set<String> fulltexts,
          @JsonProperty("page") final Integer page,
-         @JsonProperty("pageSize") final Integer pageSize) {
+         @JsonProperty("pageSize") final Integer pageSize,
+         @JsonProperty("after") final String after) {
       this.stems = stems != null ? stems : Collections.emptyList();
       this.fulltexts = fulltexts != null ? fulltexts : Collections.emptySet();
       this.page = page;
       this.pageSize = pageSize;
+      this.after = after;
+   }
+
+   public Query(final List<QueryStem> stems, final Set<String> fulltexts, final Integer page, final Integer pageSize) {
+      this(stems, fulltexts, page, pageSize, null);
    }
 
    public Query(List<QueryStem> stems) {
@@ -85,9 +92,13 @@ public class Query {
       return pageSize;
    }
 
+   public String getAfter() {
+      return after;
+   }
+
    @JsonIgnore
    public Pagination getPagination() {
-      return new Pagination(page, pageSize);
+      return new Pagination(page, pageSize, after);
    }
 
    @JsonIgnore
@@ -141,12 +152,13 @@ public class Query {
       return Objects.equals(stems, query.stems) &&
             Objects.equals(fulltexts, query.fulltexts) &&
             Objects.equals(page, query.page) &&
-            Objects.equals(pageSize, query.pageSize);
+            Objects.equals(pageSize, query.pageSize) &&
+            Objects.equals(after, query.after);
    }
 
    @Override
    public int hashCode() {
-      return Objects.hash(stems, fulltexts, page, pageSize);
+      return Objects.hash(stems, fulltexts, page, pageSize, after);
    }
 
    @Override
@@ -156,6 +168,7 @@ public class Query {
             ", fulltexts=" + fulltexts +
             ", page=" + page +
             ", pageSize=" + pageSize +
+            ", after='" + after + '\'' +
             '}';
    }
 }
@@ -0,0 +1,196 @@
+/*
+ * Lumeer: Modern Data Definition and Processing Platform
+ *
+ * Copyright (C) since 2017 Lumeer.io, s.r.o. and/or its affiliates.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.lumeer.api.model;
+
+import io.lumeer.engine.api.data.DataDocument;
+
+import java.time.ZonedDateTime;
+import java.util.Objects;
+
+public class QueuedTask {
+
+   public enum State {
+      PENDING, LEASED, DEAD
+   }
+
+   private String id;
+   private String organizationId;
+   private String projectId;
+   private String userId;
+   private String partitionKey;
+   private DataDocument payload;
+   private State state;
+   private int attempts;
+   private int completedTasks;
+   private String leaseOwner;
+   private ZonedDateTime availableAt;
+   private ZonedDateTime creationDate;
+   private String error;
+
+   public QueuedTask() {
+   }
+
+   public QueuedTask(final String organizationId, final String projectId, final String userId, final String partitionKey, final DataDocument payload) {
+      this.organizationId = organizationId;
+      this.projectId = projectId;
+      this.userId = userId;
+      this.partitionKey = partitionKey;
+      this.payload = payload;
+      this.state = State.PENDING;
+      this.creationDate = ZonedDateTime.now();
+      this.availableAt = this.creationDate;
+   }
+
+   public String getId() {
+      return id;
+   }
+
+   public void setId(final String id) {
+      this.id = id;
+   }
+
+   public String getOrganizationId() {
+      return organizationId;
+   }
+
+   public void setOrganizationId(final String organizationId) {
+      this.organizationId = organizationId;
+   }
+
+   public String getProjectId() {
+      return projectId;
+   }
+
+   public void setProjectId(final String projectId) {
+      this.projectId = projectId;
+   }
+
+   public String getUserId() {
+      return userId;
+   }
+
+   public void setUserId(final String userId) {
+      this.userId = userId;
+   }
+
+   public String getPartitionKey() {
+      return partitionKey;
+   }
+
+   public void setPartitionKey(final String partitionKey) {
+      this.partitionKey = partitionKey;
+   }
+
+   public DataDocument getPayload() {
+      return payload;
+   }
+
+   public void setPayload(final DataDocument payload) {
+      this.payload = payload;
+   }
+
+   public State getState() {
+      return state;
+   }
+
+   public void setState(final State state) {
+      this.state = state;
+   }
+
+   public int getAttempts() {
+      return attempts;
+   }
+
+   public void setAttempts(final int attempts) {
+      this.attempts = attempts;
+   }
+
+   public int getCompletedTasks() {
+      return completedTasks;
+   }
+
+   public void setCompletedTasks(final int completedTasks) {
+      this.completedTasks = completedTasks;
+   }
+
+   public String getLeaseOwner() {
+      return leaseOwner;
+   }
+
+   public void setLeaseOwner(final String leaseOwner) {
+      this.leaseOwner = leaseOwner;
+   }
+
+   public ZonedDateTime getAvailableAt() {
+      return availableAt;
+   }
+
+   public void setAvailableAt(final ZonedDateTime availableAt) {
+      this.availableAt = availableAt;
+   }
+
+   public ZonedDateTime getCreationDate() {
+      return creationDate;
+   }
+
+   public void setCreationDate(final ZonedDateTime creationDate) {
+      this.creationDate = creationDate;
+   }
+
+   public String getError() {
+      return error;
+   }
+
+   public void setError(final String error) {
+      this.error = error;
+   }
+
+   @Override
+   public boolean equals(final Object o) {
+      if (this == o) {
+         return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+         return false;
+      }
+      final QueuedTask that = (QueuedTask) o;
+      return Objects.equals(id, that.id);
+   }
+
+   @Override
+   public int hashCode() {
+      return Objects.hash(id);
+   }
+
+   @Override
+   public String toString() {
+      return "QueuedTask{" +
+            "id='" + id + '\'' +
+            ", organizationId='" + organizationId + '\'' +
+            ", projectId='" + projectId + '\'' +
+            ", partitionKey='" + partitionKey + '\'' +
+            ", state=" + state +
+            ", attempts=" + attempts +
+            ", completedTasks=" + completedTasks +
+            ", leaseOwner='" + leaseOwner + '\'' +
+            ", availableAt=" + availableAt +
+            ", error='" + error + '\'' +
+            '}';
+   }
+}
@@ -28,6 +28,8 @@ public class BlocklyRule {
    public static final String BLOCKLY_RESULT_TIMESTAMP = "blocklyResultTimestamp";
    public static final String BLOCKLY_DRY_RUN = "blocklyDryRun";
    public static final String BLOCKLY_DRY_RUN_RESULT = "blocklyDryRunResult";
+   public static final String BLOCKLY_TIME_LIMIT = "blocklyTimeLimit";
+   public static final String BLOCKLY_STATEMENT_LIMIT = "blocklyStatementLimit";
 
    private final Rule rule;
 
@@ -91,6 +93,24 @@ public class BlocklyRule {
       rule.getConfiguration().put(BLOCKLY_DRY_RUN_RESULT, dryRunResult);
    }
 
+   public long getTimeLimit() {
+      final Object timeLimit = rule.getConfiguration().getObject(BLOCKLY_TIME_LIMIT);
+      return timeLimit instanceof Number ? ((Number) timeLimit).longValue() : 0L;
+   }
+
+   public void setTimeLimit(final long timeLimit) {
+      rule.getConfiguration().put(BLOCKLY_TIME_LIMIT, timeLimit);
+   }
+
+   public long getStatementLimit() {
+      final Object statementLimit = rule.getConfiguration().getObject(BLOCKLY_STATEMENT_LIMIT);
+      return statementLimit instanceof Number ? ((Number) statementLimit).longValue() : 0L;
+   }
+
+   public void setStatementLimit(final long statementLimit) {
+      rule.getConfiguration().put(BLOCKLY_STATEMENT_LIMIT, statementLimit);
+   }
+
    @Override
    public String toString() {
       return "BlocklyRule{" +
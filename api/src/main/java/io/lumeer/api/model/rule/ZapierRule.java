@@ -22,6 +22,7 @@ import io.lumeer.api.model.Rule;
 public class ZapierRule {
    public static final String HOOK_URL = "hookUrl";
    public static final String SUBSCRIBE_ID = "id";
+   public static final String BATCH = "batch";
 
    private final Rule rule;
 
@@ -53,4 +54,12 @@ public class ZapierRule {
       rule.getConfiguration().put(SUBSCRIBE_ID, subscribeId);
    }
 
+   public boolean isBatch() {
+      return rule.getConfiguration().getBoolean(BATCH, false);
+   }
+
+   public void setBatch(final boolean batch) {
+      rule.getConfiguration().put(BATCH, batch);
+   }
+
 }
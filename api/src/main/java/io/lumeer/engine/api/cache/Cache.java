@@ -125,4 +125,13 @@ public interface Cache<T> {
     * Clears the cache including all locks.
     */
    void clear();
+
+   /**
+    * Gets usage statistics of the cache.
+    *
+    * @return Current statistics, {@link CacheStatistics#UNAVAILABLE} when the cache does not collect them.
+    */
+   default CacheStatistics getStatistics() {
+      return CacheStatistics.UNAVAILABLE;
+   }
 }
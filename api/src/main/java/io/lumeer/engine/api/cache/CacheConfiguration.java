@@ -0,0 +1,135 @@
+/*
+ * Lumeer: Modern Data Definition and Processing Platform
+ *
+ * Copyright (C) since 2017 Lumeer.io, s.r.o. and/or its affiliates.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.lumeer.engine.api.cache;
+
+import java.time.Duration;
+import java.util.function.ToLongFunction;
+
+/**
+ * Limits of a cache obtained from {@link CacheFactory#getCache(CacheConfiguration)}. Implementations that are not able
+ * to bound their size might ignore the configuration.
+ *
+ * @param <T>
+ *       Type of values stored in the cache.
+ */
+public class CacheConfiguration<T> {
+
+   private final long maximumSize;
+   private final long maximumWeight;
+   private final ToLongFunction<T> weigher;
+   private final Duration expireAfterWrite;
+   private final Duration expireAfterAccess;
+
+   private CacheConfiguration(final Builder<T> builder) {
+      this.maximumSize = builder.maximumSize;
+      this.maximumWeight = builder.maximumWeight;
+      this.weigher = builder.weigher;
+      this.expireAfterWrite = builder.expireAfterWrite;
+      this.expireAfterAccess = builder.expireAfterAccess;
+   }
+
+   public static <T> Builder<T> createBuilder() {
+      return new Builder<>();
+   }
+
+   /**
+    * @return Maximum number of entries, 0 when not limited.
+    */
+   public long getMaximumSize() {
+      return maximumSize;
+   }
+
+   /**
+    * @return Maximum total weight of all entries, 0 when not limited.
+    */
+   public long getMaximumWeight() {
+      return maximumWeight;
+   }
+
+   public ToLongFunction<T> getWeigher() {
+      return weigher;
+   }
+
+   /**
+    * @return Time after which an entry expires since it was stored, null when entries do not expire.
+    */
+   public Duration getExpireAfterWrite() {
+      return expireAfterWrite;
+   }
+
+   /**
+    * @return Time after which an entry expires since it was last read or stored, null when entries do not expire.
+    */
+   public Duration getExpireAfterAccess() {
+      return expireAfterAccess;
+   }
+
+   @Override
+   public String toString() {
+      return "CacheConfiguration{" +
+            "maximumSize=" + maximumSize +
+            ", maximumWeight=" + maximumWeight +
+            ", expireAfterWrite=" + expireAfterWrite +
+            ", expireAfterAccess=" + expireAfterAccess +
+            '}';
+   }
+
+   public static class Builder<T> {
+
+      private long maximumSize;
+      private long maximumWeight;
+      private ToLongFunction<T> weigher;
+      private Duration expireAfterWrite;
+      private Duration expireAfterAccess;
+
+      private Builder() {
+      }
+
+      public Builder<T> maximumSize(final long maximumSize) {
+         this.maximumSize = maximumSize;
+         return this;
+      }
+
+      public Builder<T> maximumWeight(final long maximumWeight, final ToLongFunction<T> weigher) {
+         this.maximumWeight = maximumWeight;
+         this.weigher = weigher;
+         return this;
+      }
+
+      public Builder<T> expireAfterWrite(final Duration expireAfterWrite) {
+         this.expireAfterWrite = expireAfterWrite;
+         return this;
+      }
+
+      public Builder<T> expireAfterAccess(final Duration expireAfterAccess) {
+         this.expireAfterAccess = expireAfterAccess;
+         return this;
+      }
+
+      public CacheConfiguration<T> build() {
+         if (maximumSize < 0 || maximumWeight < 0) {
+            throw new IllegalArgumentException("Cache limits must not be negative.");
+         }
+         if (maximumWeight > 0 && weigher == null) {
+            throw new IllegalArgumentException("Cache weight limit requires a weigher.");
+         }
+         return new CacheConfiguration<>(this);
+      }
+   }
+}
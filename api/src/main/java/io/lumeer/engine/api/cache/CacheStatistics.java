@@ -0,0 +1,76 @@
+/*
+ * Lumeer: Modern Data Definition and Processing Platform
+ *
+ * Copyright (C) since 2017 Lumeer.io, s.r.o. and/or its affiliates.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.lumeer.engine.api.cache;
+
+/**
+ * Snapshot of usage statistics of a single cache.
+ */
+public class CacheStatistics {
+
+   public static final CacheStatistics UNAVAILABLE = new CacheStatistics(0, 0, 0, -1);
+
+   private final long hitCount;
+   private final long missCount;
+   private final long evictionCount;
+   private final long size;
+
+   public CacheStatistics(final long hitCount, final long missCount, final long evictionCount, final long size) {
+      this.hitCount = hitCount;
+      this.missCount = missCount;
+      this.evictionCount = evictionCount;
+      this.size = size;
+   }
+
+   public long getHitCount() {
+      return hitCount;
+   }
+
+   public long getMissCount() {
+      return missCount;
+   }
+
+   /**
+    * @return Number of entries removed because of the size limits or expiration.
+    */
+   public long getEvictionCount() {
+      return evictionCount;
+   }
+
+   /**
+    * @return Number of entries in the cache, -1 when not known.
+    */
+   public long getSize() {
+      return size;
+   }
+
+   public double getHitRate() {
+      final long requests = hitCount + missCount;
+      return requests == 0 ? 1.0 : (double) hitCount / requests;
+   }
+
+   @Override
+   public String toString() {
+      return "CacheStatistics{" +
+            "hitCount=" + hitCount +
+            ", missCount=" + missCount +
+            ", evictionCount=" + evictionCount +
+            ", size=" + size +
+            '}';
+   }
+}
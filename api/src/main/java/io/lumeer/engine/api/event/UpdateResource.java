@@ -23,13 +23,24 @@ import io.lumeer.api.model.common.Resource;
 public class UpdateResource extends ResourceEvent {
 
    private final Resource originalResource;
+   private final boolean countersOnly;
 
    public UpdateResource(final Resource resource, final Resource originalResource) {
+      this(resource, originalResource, false);
+   }
+
+   // counters only updates do not carry the original resource
+   public UpdateResource(final Resource resource, final Resource originalResource, final boolean countersOnly) {
       super(resource);
       this.originalResource = originalResource;
+      this.countersOnly = countersOnly;
    }
 
    public Resource getOriginalResource() {
       return originalResource;
    }
+
+   public boolean isCountersOnly() {
+      return countersOnly;
+   }
 }
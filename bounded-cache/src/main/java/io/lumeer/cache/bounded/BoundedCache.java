@@ -0,0 +1,322 @@
+/*
+ * Lumeer: Modern Data Definition and Processing Platform
+ *
+ * Copyright (C) since 2017 Lumeer.io, s.r.o. and/or its affiliates.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.lumeer.cache.bounded;
+
+import io.lumeer.engine.api.cache.Cache;
+import io.lumeer.engine.api.cache.CacheConfiguration;
+import io.lumeer.engine.api.cache.CacheStatistics;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+import java.util.function.ToLongFunction;
+
+/**
+ * Cache with a bounded number of entries (or their total weight) that evicts least recently used entries first and expires
+ * entries after a configured time since their write or last access.
+ * Entries are spread over independently locked segments, each holding its share of the limits, so the eviction order is
+ * least recently used per segment. Entry locks are striped, two keys might share the same lock.
+ * Values are computed outside of the segment locks, so concurrent {@link #computeIfAbsent(String, Function)} calls for the same key
+ * might compute the value more than once, the first stored value wins.
+ */
+public class BoundedCache<T> implements Cache<T> {
+
+   private static final int MAX_SEGMENTS = 16;
+   private static final int MIN_SEGMENT_SIZE = 64;
+   private static final int LOCK_STRIPES = 64;
+
+   private final Segment[] segments;
+   private final ReentrantLock[] locks;
+   private final ToLongFunction<T> weigher;
+   private final long expireAfterWriteNanos;
+   private final long expireAfterAccessNanos;
+   private final LongSupplier ticker;
+
+   private final LongAdder hits = new LongAdder();
+   private final LongAdder misses = new LongAdder();
+   private final LongAdder evictions = new LongAdder();
+
+   public BoundedCache(final CacheConfiguration<T> configuration) {
+      this(configuration, System::nanoTime);
+   }
+
+   @SuppressWarnings("unchecked")
+   BoundedCache(final CacheConfiguration<T> configuration, final LongSupplier ticker) {
+      this.weigher = configuration.getMaximumWeight() > 0 ? configuration.getWeigher() : null;
+      this.expireAfterWriteNanos = configuration.getExpireAfterWrite() != null ? configuration.getExpireAfterWrite().toNanos() : 0;
+      this.expireAfterAccessNanos = configuration.getExpireAfterAccess() != null ? configuration.getExpireAfterAccess().toNanos() : 0;
+      this.ticker = ticker;
+
+      final int segmentsCount = segmentsCount(configuration.getMaximumSize() > 0 ? configuration.getMaximumSize() : configuration.getMaximumWeight());
+      this.segments = new BoundedCache.Segment[segmentsCount];
+      for (int i = 0; i < segmentsCount; i++) {
+         this.segments[i] = new Segment(share(configuration.getMaximumSize(), segmentsCount), share(configuration.getMaximumWeight(), segmentsCount));
+      }
+
+      this.locks = new ReentrantLock[LOCK_STRIPES];
+      for (int i = 0; i < LOCK_STRIPES; i++) {
+         this.locks[i] = new ReentrantLock();
+      }
+   }
+
+   private static int segmentsCount(final long limit) {
+      if (limit <= 0) {
+         return MAX_SEGMENTS;
+      }
+      final long count = Math.min(MAX_SEGMENTS, Math.max(1, limit / MIN_SEGMENT_SIZE));
+      return Integer.highestOneBit((int) count);
+   }
+
+   private static long share(final long limit, final int segmentsCount) {
+      return limit > 0 ? (limit + segmentsCount - 1) / segmentsCount : 0;
+   }
+
+   @Override
+   public T get(final String key) {
+      final T value = segment(key).get(key, ticker.getAsLong());
+      (value != null ? hits : misses).increment();
+      return value;
+   }
+
+   @Override
+   public T computeIfAbsent(final String key, final Function<String, T> fce) {
+      final T value = get(key);
+      if (value != null) {
+         return value;
+      }
+
+      final T computed = fce.apply(key);
+      if (computed == null) {
+         return null;
+      }
+      return segment(key).putIfAbsent(key, computed, weigh(computed), ticker.getAsLong());
+   }
+
+   @Override
+   public void set(final String key, final T t) {
+      Objects.requireNonNull(t);
+      segment(key).put(key, t, weigh(t), ticker.getAsLong());
+   }
+
+   @Override
+   public T remove(final String key) {
+      return segment(key).remove(key, ticker.getAsLong());
+   }
+
+   @Override
+   public void lock(final String key) {
+      lockFor(key).lock();
+   }
+
+   @Override
+   public void unlock(final String key) {
+      final ReentrantLock lock = lockFor(key);
+      if (lock.isHeldByCurrentThread()) {
+         lock.unlock();
+      }
+   }
+
+   @Override
+   public boolean tryLock(final String key) {
+      return lockFor(key).tryLock();
+   }
+
+   /**
+    * Clears all the entries. Entry locks are not bound to keys, so there is nothing else to release.
+    */
+   @Override
+   public void clear() {
+      for (Segment segment : segments) {
+         segment.clear();
+      }
+   }
+
+   @Override
+   public CacheStatistics getStatistics() {
+      long size = 0;
+      for (Segment segment : segments) {
+         size += segment.size();
+      }
+      return new CacheStatistics(hits.sum(), misses.sum(), evictions.sum(), size);
+   }
+
+   private long weigh(final T value) {
+      return weigher != null ? weigher.applyAsLong(value) : 1;
+   }
+
+   private Segment segment(final String key) {
+      return segments[index(key, segments.length)];
+   }
+
+   private ReentrantLock lockFor(final String key) {
+      return locks[index(key, locks.length)];
+   }
+
+   private static int index(final String key, final int length) {
+      final int h = key.hashCode();
+      return (h ^ (h >>> 16)) & (length - 1);
+   }
+
+   private static class Entry<T> {
+
+      private final T value;
+      private final long weight;
+      private final long writeTime;
+      private long accessTime;
+
+      private Entry(final T value, final long weight, final long now) {
+         this.value = value;
+         this.weight = weight;
+         this.writeTime = now;
+         this.accessTime = now;
+      }
+   }
+
+   private class Segment {
+
+      private final ReentrantLock lock = new ReentrantLock();
+      private final LinkedHashMap<String, Entry<T>> entries = new LinkedHashMap<>(16, 0.75f, true);
+      private final long maximumSize;
+      private final long maximumWeight;
+      private long weight;
+
+      private Segment(final long maximumSize, final long maximumWeight) {
+         this.maximumSize = maximumSize;
+         this.maximumWeight = maximumWeight;
+      }
+
+      private T get(final String key, final long now) {
+         lock.lock();
+         try {
+            final Entry<T> entry = entries.get(key);
+            if (entry == null) {
+               return null;
+            }
+            if (isExpired(entry, now)) {
+               removeEntry(key, entry);
+               evictions.increment();
+               return null;
+            }
+            entry.accessTime = now;
+            return entry.value;
+         } finally {
+            lock.unlock();
+         }
+      }
+
+      private T putIfAbsent(final String key, final T value, final long valueWeight, final long now) {
+         lock.lock();
+         try {
+            final Entry<T> existing = entries.get(key);
+            if (existing != null && !isExpired(existing, now)) {
+               existing.accessTime = now;
+               return existing.value;
+            }
+            store(key, value, valueWeight, now);
+            return value;
+         } finally {
+            lock.unlock();
+         }
+      }
+
+      private void put(final String key, final T value, final long valueWeight, final long now) {
+         lock.lock();
+         try {
+            store(key, value, valueWeight, now);
+         } finally {
+            lock.unlock();
+         }
+      }
+
+      private T remove(final String key, final long now) {
+         lock.lock();
+         try {
+            final Entry<T> entry = entries.get(key);
+            if (entry == null) {
+               return null;
+            }
+            removeEntry(key, entry);
+            return isExpired(entry, now) ? null : entry.value;
+         } finally {
+            lock.unlock();
+         }
+      }
+
+      private void clear() {
+         lock.lock();
+         try {
+            entries.clear();
+            weight = 0;
+         } finally {
+            lock.unlock();
+         }
+      }
+
+      private int size() {
+         lock.lock();
+         try {
+            return entries.size();
+         } finally {
+            lock.unlock();
+         }
+      }
+
+      private void store(final String key, final T value, final long valueWeight, final long now) {
+         final Entry<T> previous = entries.put(key, new Entry<>(value, valueWeight, now));
+         if (previous != null) {
+            weight -= previous.weight;
+         }
+         weight += valueWeight;
+         evict(now);
+      }
+
+      private void evict(final long now) {
+         final Iterator<Map.Entry<String, Entry<T>>> iterator = entries.entrySet().iterator();
+         while (iterator.hasNext()) {
+            final Entry<T> eldest = iterator.next().getValue();
+            // the eldest entries are the least recently used ones, expired entries are dropped until the first live one within limits
+            if (!isOverLimit() && !isExpired(eldest, now)) {
+               break;
+            }
+            iterator.remove();
+            weight -= eldest.weight;
+            evictions.increment();
+         }
+      }
+
+      private boolean isOverLimit() {
+         return (maximumSize > 0 && entries.size() > maximumSize) || (maximumWeight > 0 && weight > maximumWeight);
+      }
+
+      private void removeEntry(final String key, final Entry<T> entry) {
+         entries.remove(key);
+         weight -= entry.weight;
+      }
+
+      private boolean isExpired(final Entry<T> entry, final long now) {
+         return (expireAfterWriteNanos > 0 && now - entry.writeTime >= expireAfterWriteNanos)
+               || (expireAfterAccessNanos > 0 && now - entry.accessTime >= expireAfterAccessNanos);
+      }
+   }
+}
@@ -0,0 +1,134 @@
+/*
+ * Lumeer: Modern Data Definition and Processing Platform
+ *
+ * Copyright (C) since 2017 Lumeer.io, s.r.o. and/or its affiliates.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.lumeer.cache.bounded;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.lumeer.engine.api.cache.Cache;
+import io.lumeer.engine.api.cache.CacheConfiguration;
+import io.lumeer.engine.api.cache.CacheStatistics;
+
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class BoundedCacheTest {
+
+   private final AtomicLong time = new AtomicLong();
+
+   @Test
+   public void testLeastRecentlyUsedEviction() {
+      Cache<String> cache = new BoundedCache<>(CacheConfiguration.<String>createBuilder().maximumSize(3).build(), time::get);
+
+      cache.set("a", "A");
+      cache.set("b", "B");
+      cache.set("c", "C");
+      assertThat(cache.get("a")).isEqualTo("A");
+
+      cache.set("d", "D");
+      assertThat(cache.get("b")).isNull();
+      assertThat(cache.get("a")).isEqualTo("A");
+      assertThat(cache.get("c")).isEqualTo("C");
+      assertThat(cache.get("d")).isEqualTo("D");
+      assertThat(cache.getStatistics().getEvictionCount()).isEqualTo(1);
+      assertThat(cache.getStatistics().getSize()).isEqualTo(3);
+   }
+
+   @Test
+   public void testWeightLimit() {
+      Cache<String> cache = new BoundedCache<>(CacheConfiguration.<String>createBuilder().maximumWeight(10, String::length).build(), time::get);
+
+      cache.set("a", "12345");
+      cache.set("b", "1234");
+      cache.set("c", "123");
+      assertThat(cache.get("a")).isNull();
+      assertThat(cache.get("b")).isEqualTo("1234");
+      assertThat(cache.get("c")).isEqualTo("123");
+
+      cache.set("d", "12345678901");
+      assertThat(cache.get("d")).isNull();
+   }
+
+   @Test
+   public void testExpireAfterWrite() {
+      Cache<String> cache = new BoundedCache<>(CacheConfiguration.<String>createBuilder().expireAfterWrite(Duration.ofNanos(100)).build(), time::get);
+
+      cache.set("a", "A");
+      time.addAndGet(99);
+      assertThat(cache.get("a")).isEqualTo("A");
+      time.addAndGet(1);
+      assertThat(cache.get("a")).isNull();
+      assertThat(cache.getStatistics().getEvictionCount()).isEqualTo(1);
+   }
+
+   @Test
+   public void testExpireAfterAccess() {
+      Cache<String> cache = new BoundedCache<>(CacheConfiguration.<String>createBuilder().expireAfterAccess(Duration.ofNanos(100)).build(), time::get);
+
+      cache.set("a", "A");
+      time.addAndGet(60);
+      assertThat(cache.get("a")).isEqualTo("A");
+      time.addAndGet(60);
+      assertThat(cache.get("a")).isEqualTo("A");
+      time.addAndGet(100);
+      assertThat(cache.get("a")).isNull();
+   }
+
+   @Test
+   public void testComputeIfAbsentAndStatistics() {
+      Cache<String> cache = new BoundedCache<>(CacheConfiguration.<String>createBuilder().maximumSize(100).build(), time::get);
+      AtomicInteger computations = new AtomicInteger();
+
+      assertThat(cache.computeIfAbsent("a", key -> key + computations.incrementAndGet())).isEqualTo("a1");
+      assertThat(cache.computeIfAbsent("a", key -> key + computations.incrementAndGet())).isEqualTo("a1");
+      assertThat(cache.computeIfAbsent("b", key -> null)).isNull();
+      assertThat(cache.get("b")).isNull();
+
+      CacheStatistics statistics = cache.getStatistics();
+      assertThat(statistics.getHitCount()).isEqualTo(1);
+      assertThat(statistics.getMissCount()).isEqualTo(3);
+      assertThat(statistics.getSize()).isEqualTo(1);
+
+      assertThat(cache.remove("a")).isEqualTo("a1");
+      cache.clear();
+      assertThat(cache.getStatistics().getSize()).isEqualTo(0);
+   }
+
+   @Test
+   public void testLocks() throws InterruptedException {
+      Cache<String> cache = new BoundedCache<>(CacheConfiguration.<String>createBuilder().build(), time::get);
+
+      cache.lock("a");
+      try {
+         AtomicBoolean locked = new AtomicBoolean(true);
+         Thread thread = new Thread(() -> locked.set(cache.tryLock("a")));
+         thread.start();
+         thread.join();
+         assertThat(locked).isFalse();
+      } finally {
+         cache.unlock("a");
+      }
+
+      assertThat(cache.tryLock("a")).isTrue();
+      cache.unlock("a");
+   }
+}
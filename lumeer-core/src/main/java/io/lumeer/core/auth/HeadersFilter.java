@@ -36,6 +36,7 @@ public class HeadersFilter implements AuthFilter, Serializable {
    private static final String CORRELATION_ID = "correlation_id";
    private static final String TIMESTAMP_HEADER = "X-Lumeer-Start-Timestamp";
    private static final String LOCALE_HEADER = "X-Lumeer-Locale";
+   public static final String CONTINUATION_TOKEN_HEADER = "X-Lumeer-Continuation-Token";
 
    @Inject
    private ConfigurationFacade configurationFacade;
@@ -68,7 +69,7 @@ public class HeadersFilter implements AuthFilter, Serializable {
       res.addHeader("Access-Control-Allow-Origin", req.getHeader("Origin"));
       res.addHeader("Access-Control-Allow-Methods", "GET, POST, PUT, DELETE, PATCH");
       res.addHeader("Access-Control-Allow-Credentials", "true");
-      res.addHeader("Access-Control-Expose-Headers", TIMESTAMP_HEADER);
+      res.addHeader("Access-Control-Expose-Headers", TIMESTAMP_HEADER + ", " + CONTINUATION_TOKEN_HEADER);
       String reqHeader = req.getHeader("Access-Control-Request-Headers");
       if (reqHeader != null && !reqHeader.isEmpty()) {
          res.addHeader("Access-Control-Allow-Headers", reqHeader);
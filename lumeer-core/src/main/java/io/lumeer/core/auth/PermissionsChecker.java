@@ -54,6 +54,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.function.BiPredicate;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 import javax.enterprise.context.RequestScoped;
 import javax.inject.Inject;
@@ -140,13 +142,17 @@ public class PermissionsChecker {
    }
 
    public boolean isManager(String userId) {
+      return isManager(resource -> getActualRolesInResource(resource, userId));
+   }
+
+   private boolean isManager(final Function<Resource, Set<Role>> actualRoles) {
       if (workspaceKeeper.getOrganization().isPresent()) {
-         Set<Role> organizationRoles = getActualRolesInResource(workspaceKeeper.getOrganization().get(), userId);
+         Set<Role> organizationRoles = actualRoles.apply(workspaceKeeper.getOrganization().get());
          if (organizationRoles.contains(Role.MANAGE)) {
             return true;
          }
          if (workspaceKeeper.getProject().isPresent()) {
-            Set<Role> projectRoles = getActualRolesInResource(workspaceKeeper.getProject().get(), userId);
+            Set<Role> projectRoles = actualRoles.apply(workspaceKeeper.getProject().get());
             return projectRoles.contains(Role.MANAGE) && organizationRoles.contains(Role.READ);
          }
       }
@@ -216,6 +222,46 @@ public class PermissionsChecker {
       return isManager(userId) || hasRoleInResource(resource, role, userId);
    }
 
+   /**
+    * Creates a checker of the given role of many users in many resources. Groups of all the users are loaded at once,
+    * so the checker itself does not access the database.
+    *
+    * @param userIds
+    *       ids of the users to be checked.
+    * @param role
+    *       role to be checked.
+    * @return predicate telling whether the user has the role on the resource (either directly, through group membership or as a manager).
+    */
+   public BiPredicate<Resource, String> getRoleChecker(final Set<String> userIds, final Role role) {
+      final Map<String, Set<String>> groups = getUsersGroups(userIds);
+      final Set<String> managers = userIds.stream()
+                                          .filter(userId -> isManager(resource -> getActualRolesInResource(resource, userId, groups.get(userId))))
+                                          .collect(Collectors.toSet());
+
+      return (resource, userId) -> managers.contains(userId) || getActualRolesInResource(resource, userId, groups.getOrDefault(userId, Collections.emptySet())).contains(role);
+   }
+
+   private Map<String, Set<String>> getUsersGroups(final Set<String> userIds) {
+      final Optional<Organization> organizationOptional = workspaceKeeper.getOrganization();
+      if (!organizationOptional.isPresent()) {
+         throw new ResourceNotFoundException(ResourceType.ORGANIZATION);
+      }
+      final String organizationId = organizationOptional.get().getId();
+
+      final Map<String, Set<String>> groups = new HashMap<>();
+      userDao.getUsersByIds(userIds).forEach(user -> {
+         final Set<String> userGroups = user.getGroups() != null ? user.getGroups().get(organizationId) : null;
+         groups.put(user.getId(), userGroups != null ? userGroups : Collections.emptySet());
+      });
+      userIds.forEach(userId -> groups.putIfAbsent(userId, Collections.emptySet()));
+
+      if (groups.containsKey(authenticatedUser.getCurrentUserId())) {
+         groups.put(authenticatedUser.getCurrentUserId(), authenticatedUserGroups.getCurrentUserGroups());
+      }
+
+      return groups;
+   }
+
    private boolean hasRoleInResource(Resource resource, Role role) {
       return hasRoleCache.computeIfAbsent(resource.getId() + ":" + role.toString(), id -> getActualRoles(resource).contains(role));
    }
@@ -346,9 +392,14 @@ public class PermissionsChecker {
 
    private Set<Role> getActualRolesInResource(final Resource resource, final String userId) {
       final Set<String> groups = authenticatedUser.getCurrentUserId().equals(userId) ? getUserGroups(resource) : getUserGroups(resource, userId);
+      return getActualRolesInResource(resource, userId, groups);
+   }
 
+   private Set<Role> getActualRolesInResource(final Resource resource, final String userId, final Set<String> groups) {
       final Set<Role> actualRoles = getActualUserRoles(resource.getPermissions().getUserPermissions(), userId);
-      actualRoles.addAll(getActualGroupRoles(resource.getPermissions().getGroupPermissions(), groups));
+      if (!(resource instanceof Organization)) {
+         actualRoles.addAll(getActualGroupRoles(resource.getPermissions().getGroupPermissions(), groups));
+      }
       return Role.withTransitionRoles(actualRoles);
    }
 
@@ -432,9 +483,12 @@ public class PermissionsChecker {
       }
 
       final ServiceLimits limits = getServiceLimits();
-      final long documentsCount = countDocuments();
+      if (limits.getDocuments() <= 0) {
+         return;
+      }
 
-      if (limits.getDocuments() > 0 && documentsCount >= limits.getDocuments()) {
+      final long documentsCount = countDocuments();
+      if (documentsCount >= limits.getDocuments()) {
          final Optional<Organization> organization = workspaceKeeper.getOrganization();
          freshdeskFacade.logLimitsExceeded(authenticatedUser.getCurrentUser(), "DOCUMENT", organization.isPresent() ? organization.get().getId() : "<empty>");
          throw new ServiceLimitsExceededException(limits.getDocuments(), documentsCount, document);
@@ -457,9 +511,12 @@ public class PermissionsChecker {
       }
 
       final ServiceLimits limits = getServiceLimits();
-      final long documentsCount = countDocuments();
+      if (limits.getDocuments() <= 0) {
+         return;
+      }
 
-      if (limits.getDocuments() > 0 && documentsCount + number > limits.getDocuments()) {
+      final long documentsCount = countDocuments();
+      if (documentsCount + number > limits.getDocuments()) {
          final Optional<Organization> organization = workspaceKeeper.getOrganization();
          freshdeskFacade.logLimitsExceeded(authenticatedUser.getCurrentUser(), "DOCUMENT", organization.isPresent() ? organization.get().getId() : "<empty>");
          throw new ServiceLimitsExceededException(limits.getDocuments(), documentsCount, null);
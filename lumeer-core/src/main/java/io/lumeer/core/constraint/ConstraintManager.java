@@ -381,13 +381,13 @@ public class ConstraintManager {
    }
 
    public Query encodeQuery(final Query query, final List<Collection> collections, final List<LinkType> linkTypes) {
-      var queryCopy = new Query(new ArrayList<>(query.getStems()), query.getFulltexts(), query.getPage(), query.getPageSize());
+      var queryCopy = new Query(new ArrayList<>(query.getStems()), query.getFulltexts(), query.getPage(), query.getPageSize(), query.getAfter());
       this.processQuery(queryCopy, collections, linkTypes, this::encode);
       return queryCopy;
    }
 
    public Query decodeQuery(final Query query, final List<Collection> collections, final List<LinkType> linkTypes) {
-      var queryCopy = new Query(new ArrayList<>(query.getStems()), query.getFulltexts(), query.getPage(), query.getPageSize());
+      var queryCopy = new Query(new ArrayList<>(query.getStems()), query.getFulltexts(), query.getPage(), query.getPageSize(), query.getAfter());
       this.processQuery(queryCopy, collections, linkTypes, this::decode);
       return queryCopy;
    }
@@ -29,7 +29,6 @@ import io.lumeer.api.model.Project;
 import io.lumeer.api.model.ResourceType;
 import io.lumeer.api.model.Role;
 import io.lumeer.api.model.User;
-import io.lumeer.api.model.common.Resource;
 import io.lumeer.api.util.CollectionUtil;
 import io.lumeer.api.util.ResourceUtils;
 import io.lumeer.core.exception.NoPermissionException;
@@ -42,7 +41,7 @@ import io.lumeer.storage.api.dao.DocumentDao;
 import io.lumeer.storage.api.dao.FavoriteItemDao;
 import io.lumeer.storage.api.dao.LinkInstanceDao;
 import io.lumeer.storage.api.dao.LinkTypeDao;
-import io.lumeer.storage.api.dao.ViewDao;
+import io.lumeer.storage.api.dao.ProjectDao;
 import io.lumeer.storage.api.exception.ResourceNotFoundException;
 
 import java.time.ZonedDateTime;
@@ -52,7 +51,6 @@ import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 import javax.enterprise.context.RequestScoped;
@@ -77,10 +75,10 @@ public class CollectionFacade extends AbstractFacade {
    private LinkInstanceDao linkInstanceDao;
 
    @Inject
-   private FavoriteItemDao favoriteItemDao;
+   private ProjectDao projectDao;
 
    @Inject
-   private ViewDao viewDao;
+   private FavoriteItemDao favoriteItemDao;
 
    @Inject
    private FileAttachmentFacade fileAttachmentFacade;
@@ -155,7 +153,8 @@ public class CollectionFacade extends AbstractFacade {
    }
 
    private void deleteCollectionBasedData(final String collectionId) {
-      documentDao.deleteDocuments(collectionId);
+      final long deletedDocuments = documentDao.deleteDocuments(collectionId);
+      projectDao.updateDocumentsCount(getCurrentProject().getId(), -deletedDocuments);
       dataDao.deleteDataRepository(collectionId);
 
       List<LinkType> linkTypes = linkTypeDao.getLinkTypesByCollectionId(collectionId);
@@ -235,15 +234,14 @@ public class CollectionFacade extends AbstractFacade {
    }
 
    public long getDocumentsCountInAllCollections() {
-      final LongAdder la = new LongAdder();
-      collectionDao.getAllCollectionIds().forEach(id -> {
-         final Collection collection = collectionDao.getCollectionById(id);
-         if (permissionsChecker.hasRoleWithView(collection, Role.READ, Role.READ)) {
-            la.add(getCollection(id).getDocumentsCount());
-         }
-      });
+      final String projectId = getCurrentProject().getId();
+      final Long documentsCount = projectDao.getDocumentsCount(projectId);
+      if (documentsCount != null) {
+         return documentsCount;
+      }
 
-      return la.longValue();
+      // the counter is missing or has not been reconciled for a while, it is recomputed from the collection counters
+      return projectDao.reconcileDocumentsCount(projectId, () -> collectionDao.getAllCollections().stream().mapToLong(Collection::getDocumentsCount).sum());
    }
 
    public java.util.Collection<Attribute> createCollectionAttributes(final String collectionId, final java.util.Collection<Attribute> attributes) {
@@ -424,28 +422,27 @@ public class CollectionFacade extends AbstractFacade {
    }
 
    public Set<String> getUsersIdsWithAccess(final String collectionId) {
-      return getUsersIdsWithAccess(collectionDao.getCollectionById(collectionId));
+      final Set<String> result = collectionDao.getCollectionReaders(collectionId);
+      result.addAll(ResourceUtils.getManagers(getCurrentOrganization()));
+      result.addAll(ResourceUtils.getManagers(getCurrentProject()));
+      // TODO: Handle user groups as well
+
+      return result;
    }
 
    public Set<String> getUsersIdsWithAccess(final Collection collection) {
-      final Set<String> result = new HashSet<>();
+      // the collection may be already deleted, its own permissions are taken from the object
+      final Set<String> result = getUsersIdsWithAccess(collection.getId());
+      result.addAll(ResourceUtils.usersAllowedRead(collection));
 
-      result.addAll(collection.getPermissions().getUserPermissions().stream()
-                              .filter(ResourceUtils::canReadByPermission)
-                              .map(Permission::getId).collect(Collectors.toSet()));
+      return result;
+   }
 
+   public Set<String> getUsersIdsWithAccess(final LinkType linkType) {
+      final Set<String> result = linkTypeDao.getLinkTypeReaders(linkType.getId());
       result.addAll(ResourceUtils.getManagers(getCurrentOrganization()));
       result.addAll(ResourceUtils.getManagers(getCurrentProject()));
 
-      viewDao.getViewsPermissionsByCollection(collection.getId()).stream()
-             .map(Resource::getPermissions)
-             .map(Permissions::getUserPermissions)
-             .forEach(permissions -> result.addAll(permissions.stream()
-                                                              .filter(ResourceUtils::canReadByPermission)
-                                                              .map(Permission::getId).collect(Collectors.toList()))
-             );
-      // TODO: Handle user groups as well
-
       return result;
    }
 
@@ -20,7 +20,6 @@ package io.lumeer.core.facade;
 
 import io.lumeer.api.model.*;
 import io.lumeer.api.model.common.Resource;
-import io.lumeer.api.util.ResourceUtils;
 import io.lumeer.core.constraint.ConstraintManager;
 import io.lumeer.core.facade.configuration.DefaultConfigurationProducer;
 import io.lumeer.core.util.Tuple;
@@ -36,6 +35,7 @@ import io.lumeer.storage.api.dao.DocumentDao;
 import io.lumeer.storage.api.dao.FavoriteItemDao;
 import io.lumeer.storage.api.dao.LinkInstanceDao;
 import io.lumeer.storage.api.dao.LinkTypeDao;
+import io.lumeer.storage.api.dao.ProjectDao;
 import io.lumeer.storage.api.exception.ResourceNotFoundException;
 
 import java.time.ZonedDateTime;
@@ -78,6 +78,9 @@ public class DocumentFacade extends AbstractFacade {
    @Inject
    private LinkTypeDao linkTypeDao;
 
+   @Inject
+   private ProjectDao projectDao;
+
    @Inject
    private DefaultConfigurationProducer configurationProducer;
 
@@ -117,6 +120,14 @@ public class DocumentFacade extends AbstractFacade {
    }
 
    private Tuple<Document, Document> createDocument(Collection collection, Document document) {
+      final Tuple<Document, Document> documentTuple = storeDocument(collection, document);
+
+      updateCollectionMetadata(collection, documentTuple.getFirst().getData().keySet(), Collections.emptySet(), 1);
+
+      return documentTuple;
+   }
+
+   private Tuple<Document, Document> storeDocument(Collection collection, Document document) {
       DataDocument data = document.getData();
       constraintManager.encodeDataTypes(collection, data);
 
@@ -127,8 +138,6 @@ public class DocumentFacade extends AbstractFacade {
 
       Document storedDocumentCopy = new Document(storedDocument);
 
-      updateCollectionMetadata(collection, data.keySet(), Collections.emptySet(), 1);
-
       constraintManager.decodeDataTypes(collection, storedData);
 
       return new Tuple<>(storedDocumentCopy, storedDocument);
@@ -254,6 +263,8 @@ public class DocumentFacade extends AbstractFacade {
 
       List<Document> createdDocuments = new ArrayList<>();
       List<LinkInstance> createdLinks = new ArrayList<>();
+      Map<String, Map<String, Integer>> usagesByCollection = new HashMap<>();
+      Map<String, Integer> countsByCollection = new HashMap<>();
 
       String previousDocumentId = linkInstances.size() == documents.size() ? Utils.firstNotNullElement(linkInstances.get(0).getDocumentIds()) : null;
       var linkInstanceIndex = 0;
@@ -263,10 +274,13 @@ public class DocumentFacade extends AbstractFacade {
             currentDocumentId = document.getId();
          } else {
             var collection = collectionsMap.get(document.getCollectionId());
-            var tuple = createDocument(collection, document);
+            var tuple = storeDocument(collection, document);
             createdDocuments.add(tuple.getSecond());
             currentDocumentId = tuple.getFirst().getId();
-            updateCollectionMetadata(collection, tuple.getSecond().getData().keySet(), Collections.emptySet(), 1);
+
+            var usages = usagesByCollection.computeIfAbsent(collection.getId(), id -> new HashMap<>());
+            tuple.getFirst().getData().keySet().forEach(key -> usages.merge(key, 1, Integer::sum));
+            countsByCollection.merge(collection.getId(), 1, Integer::sum);
          }
 
          var linkInstance = linkInstances.size() > linkInstanceIndex ? linkInstances.get(linkInstanceIndex) : null;
@@ -287,6 +301,9 @@ public class DocumentFacade extends AbstractFacade {
 
          previousDocumentId = currentDocumentId;
       }
+
+      // counters of each collection are updated just once for the whole chain
+      countsByCollection.forEach((collectionId, count) -> updateCollectionMetadata(collectionsMap.get(collectionId), usagesByCollection.get(collectionId), count));
       if (this.createChainEvent != null) {
          this.createChainEvent.fire(new CreateDocumentsAndLinks(createdDocuments, createdLinks));
       }
@@ -516,19 +533,23 @@ public class DocumentFacade extends AbstractFacade {
    }
 
    private void updateCollectionMetadata(Collection collection, Set<String> attributesIdsToInc, Set<String> attributesIdsToDec, int documentCountDiff) {
-      final Collection originalCollection = collection.copy();
-      collection.setAttributes(new HashSet<>(ResourceUtils.incOrDecAttributes(collection.getAttributes(), attributesIdsToInc, attributesIdsToDec)));
-      collection.setLastTimeUsed(ZonedDateTime.now());
-      collection.setDocumentsCount(Math.max(collection.getDocumentsCount() + documentCountDiff, 0));
-      collectionDao.updateCollection(collection.getId(), collection, originalCollection);
+      final Map<String, Integer> attributesToInc = new HashMap<>();
+      attributesIdsToInc.forEach(attributeId -> attributesToInc.put(attributeId, 1));
+      attributesIdsToDec.stream().filter(attributeId -> !attributesIdsToInc.contains(attributeId)).forEach(attributeId -> attributesToInc.put(attributeId, -1));
+      updateCollectionMetadata(collection, attributesToInc, documentCountDiff);
    }
 
    private void updateCollectionMetadata(final Collection collection, final Map<String, Integer> attributesToInc, final int documentCountDiff) {
-      final Collection originalCollection = collection.copy();
-      collection.setAttributes(new HashSet<>(ResourceUtils.incAttributes(collection.getAttributes(), attributesToInc)));
-      collection.setLastTimeUsed(ZonedDateTime.now());
-      collection.setDocumentsCount(Math.max(collection.getDocumentsCount() + documentCountDiff, 0));
-      collectionDao.updateCollection(collection.getId(), collection, originalCollection);
+      final Map<String, Integer> existingAttributesToInc = new HashMap<>();
+      collection.getAttributes().stream()
+                .filter(attribute -> attributesToInc.containsKey(attribute.getId()))
+                .forEach(attribute -> existingAttributesToInc.put(attribute.getId(), attributesToInc.get(attribute.getId())));
+
+      final Collection updatedCollection = collectionDao.updateCollectionCounters(collection.getId(), existingAttributesToInc, documentCountDiff, ZonedDateTime.now());
+      projectDao.updateDocumentsCount(getCurrentProject().getId(), documentCountDiff);
+      collection.setAttributes(updatedCollection.getAttributes());
+      collection.setLastTimeUsed(updatedCollection.getLastTimeUsed());
+      collection.setDocumentsCount(updatedCollection.getDocumentsCount());
    }
 
    public Document getDocument(String collectionId, String documentId) {
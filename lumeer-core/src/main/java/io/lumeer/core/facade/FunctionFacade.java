@@ -29,6 +29,7 @@ import io.lumeer.api.model.function.FunctionResourceType;
 import io.lumeer.api.model.function.FunctionRow;
 import io.lumeer.core.task.ContextualTaskFactory;
 import io.lumeer.core.task.FunctionTask;
+import io.lumeer.core.util.FunctionGraph;
 import io.lumeer.core.util.FunctionOrder;
 import io.lumeer.core.util.FunctionXmlParser;
 import io.lumeer.engine.api.data.DataDocument;
@@ -49,6 +50,7 @@ import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.logging.Logger;
 import java.util.stream.Collectors;
 import javax.enterprise.context.RequestScoped;
 import javax.inject.Inject;
@@ -56,6 +58,8 @@ import javax.inject.Inject;
 @RequestScoped
 public class FunctionFacade extends AbstractFacade {
 
+   private static final Logger log = Logger.getLogger(FunctionFacade.class.getName());
+
    @Inject
    private FunctionDao functionDao;
 
@@ -74,6 +78,8 @@ public class FunctionFacade extends AbstractFacade {
    @Inject
    private ContextualTaskFactory contextualTaskFactory;
 
+   private FunctionGraph functionGraph;
+
    public static FunctionFacade getInstance(final FunctionDao functionDao, final CollectionDao collectionDao, final DocumentDao documentDao, final LinkInstanceDao linkInstanceDao, final LinkTypeDao linkTypeDao, final ContextualTaskFactory taskFactory) {
       final FunctionFacade facade = new FunctionFacade();
       facade.functionDao = functionDao;
@@ -90,6 +96,10 @@ public class FunctionFacade extends AbstractFacade {
       List<FunctionRow> functionRows = createCollectionRowsFromXml(collection, attribute);
       if (!functionRows.isEmpty()) {
          functionDao.createRows(functionRows);
+         functionGraph = null;
+         if (checkCycle(new FunctionParameter(FunctionResourceType.COLLECTION, collection.getId(), attribute.getId()), attribute)) {
+            collectionDao.updateAttributeFunctionError(collection.getId(), attribute.getId(), attribute.getFunction().getErrorReport(), attribute.getFunction().getTimestamp());
+         }
       }
 
       Deque<FunctionParameterDocuments> queue = createQueueForCollection(collection, attribute, functionRows);
@@ -124,20 +134,49 @@ public class FunctionFacade extends AbstractFacade {
    private Deque<FunctionParameterDocuments> orderFunctions(Map<FunctionParameterDocuments, List<FunctionParameterDocuments>> parametersMap) {
       Deque<FunctionParameterDocuments> queue = FunctionOrder.orderFunctions(parametersMap);
 
+      // the queue can hold equal parameters from the dependency lists, we need the keys with the documents
+      Map<FunctionParameterDocuments, FunctionParameterDocuments> keys = parametersMap.keySet().stream().collect(Collectors.toMap(param -> param, param -> param));
       Deque<FunctionParameterDocuments> mappedQueue = new LinkedList<>();
       for (final FunctionParameterDocuments functionParameterDocuments : queue) {
-         Optional<FunctionParameterDocuments> first = parametersMap.keySet().stream().filter(param -> param.equals(functionParameterDocuments)).findFirst();
-         first.ifPresent(mappedQueue::add);
+         Optional.ofNullable(keys.get(functionParameterDocuments)).ifPresent(mappedQueue::add);
       }
 
       return mappedQueue;
    }
 
+   private FunctionGraph getFunctionGraph() {
+      if (functionGraph == null) {
+         functionGraph = new FunctionGraph(functionDao.getAllRows());
+      }
+
+      return functionGraph;
+   }
+
+   /**
+    * Writes the dependency cycle the function is part of into its error report. The functions in the cycle are still
+    * computed, just in an arbitrary order.
+    *
+    * @return true when the function is part of a cycle and the error report has been changed.
+    */
+   private boolean checkCycle(final FunctionParameter function, final Attribute attribute) {
+      final List<FunctionParameter> cycle = getFunctionGraph().findCycle(function);
+      if (cycle.isEmpty()) {
+         return false;
+      }
+
+      log.warning("Functions depend on each other in a cycle, they will be computed in an arbitrary order: " + cycle);
+      attribute.getFunction().setErrorReport("Functions depend on each other in a cycle, they are computed in an arbitrary order: " +
+            cycle.stream().map(parameter -> parameter.getResourceId() + "." + parameter.getAttributeId()).collect(Collectors.joining(" -> ")));
+      attribute.getFunction().setTimestamp(System.currentTimeMillis());
+
+      return true;
+   }
+
    private void fillParametersMapForCollection(Map<FunctionParameterDocuments, List<FunctionParameterDocuments>> parametersMap, FunctionParameterDocuments parentParameter) {
-      List<FunctionRow> functionRows = functionDao.searchByDependentCollection(parentParameter.getResourceId(), parentParameter.getAttributeId());
+      List<FunctionRow> functionRows = getFunctionGraph().searchByDependentCollection(parentParameter.getResourceId(), parentParameter.getAttributeId());
 
       functionRows.forEach(row -> {
-         List<FunctionRow> rows = functionDao.searchByResource(row.getResourceId(), row.getAttributeId(), row.getType());
+         List<FunctionRow> rows = getFunctionGraph().searchByResource(row.getResourceId(), row.getAttributeId(), row.getType());
          Set<String> documentIds = parentParameter.getDocuments().stream().map(Document::getId).collect(Collectors.toSet());
 
          FunctionParameterDocuments parameter = new FunctionParameterDocuments(row.getType(), row.getResourceId(), row.getAttributeId());
@@ -163,10 +202,10 @@ public class FunctionFacade extends AbstractFacade {
    }
 
    private void fillParametersMapForLinkType(Map<FunctionParameterDocuments, List<FunctionParameterDocuments>> parametersMap, FunctionParameterDocuments parentParameter) {
-      List<FunctionRow> functionRows = functionDao.searchByDependentLinkType(parentParameter.getResourceId(), parentParameter.getAttributeId());
+      List<FunctionRow> functionRows = getFunctionGraph().searchByDependentLinkType(parentParameter.getResourceId(), parentParameter.getAttributeId());
 
       functionRows.forEach(row -> {
-         List<FunctionRow> rows = functionDao.searchByResource(row.getResourceId(), row.getAttributeId(), row.getType());
+         List<FunctionRow> rows = getFunctionGraph().searchByResource(row.getResourceId(), row.getAttributeId(), row.getType());
          Set<String> linkInstanceIds = parentParameter.getLinkInstances().stream().map(LinkInstance::getId).collect(Collectors.toSet());
 
          FunctionParameterDocuments parameter = new FunctionParameterDocuments(row.getType(), row.getResourceId(), row.getAttributeId());
@@ -283,12 +322,17 @@ public class FunctionFacade extends AbstractFacade {
 
    public void onDeleteCollectionFunction(String collectionId, String attributeId) {
       functionDao.deleteByCollection(collectionId, attributeId);
+      functionGraph = null;
    }
 
    public FunctionTask createTaskForCreatedLinkFunction(LinkType linkType, Attribute attribute) {
       List<FunctionRow> functionRows = createLinkRowsFromXml(linkType, attribute);
       if (!functionRows.isEmpty()) {
          functionDao.createRows(functionRows);
+         functionGraph = null;
+         if (checkCycle(new FunctionParameter(FunctionResourceType.LINK, linkType.getId(), attribute.getId()), attribute)) {
+            linkTypeDao.updateAttributeFunctionError(linkType.getId(), attribute.getId(), attribute.getFunction().getErrorReport(), attribute.getFunction().getTimestamp());
+         }
       }
 
       Deque<FunctionParameterDocuments> queue = createQueueForLinkType(linkType, attribute, functionRows);
@@ -327,6 +371,7 @@ public class FunctionFacade extends AbstractFacade {
 
    public void onDeleteLinkTypeFunction(String collectionId, String attributeId) {
       functionDao.deleteByLinkType(collectionId, attributeId);
+      functionGraph = null;
    }
 
    public FunctionTask createTaskForCreatedDocument(Collection collection, Document document) {
@@ -346,7 +391,7 @@ public class FunctionFacade extends AbstractFacade {
             parameter.setCollection(collection);
             parameter.setAttribute(attribute);
 
-            List<FunctionRow> functionRows = functionDao.searchByResource(collection.getId(), attribute.getId(), FunctionResourceType.COLLECTION);
+            List<FunctionRow> functionRows = getFunctionGraph().searchByResource(collection.getId(), attribute.getId(), FunctionResourceType.COLLECTION);
             parametersMap.put(parameter, functionRows.stream().map(this::functionRowToParameter).collect(Collectors.toList()));
             fillParametersMapForCollection(parametersMap, parameter);
          }
@@ -391,11 +436,11 @@ public class FunctionFacade extends AbstractFacade {
 
       attributeIds.forEach(attributeId -> {
 
-         List<FunctionRow> functionRows = functionDao.searchByDependentCollection(collectionId, attributeId);
+         List<FunctionRow> functionRows = getFunctionGraph().searchByDependentCollection(collectionId, attributeId);
 
          functionRows.forEach(row -> {
             FunctionParameterDocuments parameter = new FunctionParameterDocuments(row.getType(), row.getResourceId(), row.getAttributeId());
-            List<FunctionRow> rows = functionDao.searchByResource(row.getResourceId(), row.getAttributeId(), row.getType());
+            List<FunctionRow> rows = getFunctionGraph().searchByResource(row.getResourceId(), row.getAttributeId(), row.getType());
             if (!parametersMap.containsKey(parameter)) {
                if (row.getType() == FunctionResourceType.COLLECTION) {
                   Set<Document> documents = findDocumentsForRow(row, Collections.singleton(documentId));
@@ -439,7 +484,18 @@ public class FunctionFacade extends AbstractFacade {
       return createTaskForCreatedLink(linkType, linkInstance, null);
    }
 
+   public FunctionTask createTaskForCreatedLinks(LinkType linkType, List<LinkInstance> linkInstances, final List<String> skipCollectionIds) {
+      if (linkInstances.isEmpty()) {
+         return null;
+      }
+      return convertQueueToTask(createQueueForCreatedLinks(linkType, linkInstances, skipCollectionIds));
+   }
+
    public Deque<FunctionParameterDocuments> createQueueForCreatedLink(LinkType linkType, LinkInstance linkInstance, final List<String> skipCollectionIds) {
+      return createQueueForCreatedLinks(linkType, Collections.singletonList(linkInstance), skipCollectionIds);
+   }
+
+   private Deque<FunctionParameterDocuments> createQueueForCreatedLinks(LinkType linkType, List<LinkInstance> linkInstances, final List<String> skipCollectionIds) {
       List<Attribute> attributes = linkType.getAttributes().stream().filter(this::functionIsDefined).collect(Collectors.toList());
 
       Map<FunctionParameterDocuments, List<FunctionParameterDocuments>> parametersMap = new HashMap<>();
@@ -447,31 +503,32 @@ public class FunctionFacade extends AbstractFacade {
       attributes.forEach(attribute -> {
          FunctionParameterDocuments parameter = new FunctionParameterDocuments(FunctionResourceType.LINK, linkType.getId(), attribute.getId());
          if (!parametersMap.containsKey(parameter)) {
-            parameter.setLinkInstances(Collections.singleton(linkInstance));
+            parameter.setLinkInstances(new HashSet<>(linkInstances));
             parameter.setLinkType(linkType);
             parameter.setAttribute(attribute);
 
-            List<FunctionRow> functionRows = functionDao.searchByResource(linkType.getId(), attribute.getId(), FunctionResourceType.LINK);
+            List<FunctionRow> functionRows = getFunctionGraph().searchByResource(linkType.getId(), attribute.getId(), FunctionResourceType.LINK);
             parametersMap.put(parameter, functionRows.stream().map(this::functionRowToParameter).collect(Collectors.toList()));
             fillParametersMapForLinkType(parametersMap, parameter);
          }
       });
 
-      fillParametersMapForDependentLinkType(parametersMap, linkType, linkInstance, Collections.emptyList(), skipCollectionIds);
+      fillParametersMapForDependentLinkType(parametersMap, linkType, linkInstances, Collections.emptyList(), skipCollectionIds);
 
       return orderFunctions(parametersMap);
    }
 
-   private void fillParametersMapForDependentLinkType(Map<FunctionParameterDocuments, List<FunctionParameterDocuments>> parametersMap, LinkType linkType, LinkInstance linkInstance, List<Document> additionalDocuments, final List<String> skipCollectionIds) {
-      List<FunctionRow> dependentRows = functionDao.searchByDependentLinkType(linkType.getId(), null);
+   private void fillParametersMapForDependentLinkType(Map<FunctionParameterDocuments, List<FunctionParameterDocuments>> parametersMap, LinkType linkType, List<LinkInstance> linkInstances, List<Document> additionalDocuments, final List<String> skipCollectionIds) {
+      final Set<String> linkInstanceIds = linkInstances.stream().map(LinkInstance::getId).collect(Collectors.toSet());
+      List<FunctionRow> dependentRows = getFunctionGraph().searchByDependentLinkType(linkType.getId(), null);
       dependentRows.forEach(row -> {
          FunctionParameterDocuments parameter = new FunctionParameterDocuments(row.getType(), row.getResourceId(), row.getAttributeId());
-         List<FunctionRow> rows = functionDao.searchByResource(row.getResourceId(), row.getAttributeId(), row.getType());
+         List<FunctionRow> rows = getFunctionGraph().searchByResource(row.getResourceId(), row.getAttributeId(), row.getType());
 
          if (!parametersMap.containsKey(parameter)) {
             if (row.getType() == FunctionResourceType.COLLECTION) {
                if (skipCollectionIds == null || skipCollectionIds.size() <= 0 || !skipCollectionIds.contains(row.getResourceId())) {
-                  Set<Document> documents = findDocumentsForRowByLinkInstances(row, Collections.singleton(linkInstance.getId()));
+                  Set<Document> documents = findDocumentsForRowByLinkInstances(row, linkInstanceIds);
                   documents.addAll(additionalDocuments.stream().filter(doc -> doc.getCollectionId().equals(row.getResourceId())).collect(Collectors.toList()));
                   if (!documents.isEmpty()) {
                      parameter.setDocuments(documents);
@@ -480,7 +537,7 @@ public class FunctionFacade extends AbstractFacade {
                   }
                }
             } else if (row.getDependentLinkTypeId() == null || row.getDependentLinkTypeId().equals(row.getResourceId())) {
-               parameter.setLinkInstances(Collections.singleton(linkInstance));
+               parameter.setLinkInstances(new HashSet<>(linkInstances));
                parametersMap.put(parameter, rows.stream().map(this::functionRowToParameter).collect(Collectors.toList()));
                fillParametersMapForLinkType(parametersMap, parameter);
             }
@@ -512,11 +569,11 @@ public class FunctionFacade extends AbstractFacade {
 
    private void fillParametersMapForLinkChanged(Map<FunctionParameterDocuments, List<FunctionParameterDocuments>> parametersMap, String linkTypeId, List<String> attributeIds, String linkInstanceId) {
       attributeIds.forEach(attributeId -> {
-         List<FunctionRow> functionRows = functionDao.searchByDependentLinkType(linkTypeId, attributeId);
+         List<FunctionRow> functionRows = getFunctionGraph().searchByDependentLinkType(linkTypeId, attributeId);
 
          functionRows.forEach(row -> {
             FunctionParameterDocuments parameter = new FunctionParameterDocuments(row.getType(), row.getResourceId(), row.getAttributeId());
-            List<FunctionRow> rows = functionDao.searchByResource(row.getResourceId(), row.getAttributeId(), row.getType());
+            List<FunctionRow> rows = getFunctionGraph().searchByResource(row.getResourceId(), row.getAttributeId(), row.getType());
             if (!parametersMap.containsKey(parameter)) {
                if (row.getType() == FunctionResourceType.COLLECTION) {
                   Set<Document> documents = findDocumentsForRowByLinkInstances(row, Collections.singleton(linkInstanceId));
@@ -538,9 +595,18 @@ public class FunctionFacade extends AbstractFacade {
    }
 
    public FunctionTask createTaskForRemovedLink(LinkType linkType, LinkInstance linkInstance, final List<String> skipCollectionIds) {
+      return createTaskForRemovedLinks(linkType, Collections.singletonList(linkInstance), skipCollectionIds);
+   }
+
+   public FunctionTask createTaskForRemovedLinks(LinkType linkType, List<LinkInstance> linkInstances, final List<String> skipCollectionIds) {
+      if (linkInstances.isEmpty()) {
+         return null;
+      }
+
       Map<FunctionParameterDocuments, List<FunctionParameterDocuments>> parametersMap = new HashMap<>();
-      List<Document> documentsByIds = documentDao.getDocumentsByIds(linkInstance.getDocumentIds().toArray(new String[0]));
-      fillParametersMapForDependentLinkType(parametersMap, linkType, linkInstance, documentsByIds, skipCollectionIds);
+      String[] documentIds = linkInstances.stream().flatMap(linkInstance -> linkInstance.getDocumentIds().stream()).distinct().toArray(String[]::new);
+      List<Document> documentsByIds = documentDao.getDocumentsByIds(documentIds);
+      fillParametersMapForDependentLinkType(parametersMap, linkType, linkInstances, documentsByIds, skipCollectionIds);
 
       return convertQueueToTask(orderFunctions(parametersMap));
    }
@@ -576,6 +642,7 @@ public class FunctionFacade extends AbstractFacade {
    private void deleteByRows(FunctionResourceType type, List<FunctionRow> functionRows) {
       String[] resourceIdsToDelete = functionRows.stream().map(FunctionRow::getResourceId).toArray(String[]::new);
       functionDao.deleteByResources(type, resourceIdsToDelete);
+      functionGraph = null;
    }
 
    private Set<Document> findDocumentsForRow(FunctionRow row, Set<String> documentIds) {
@@ -0,0 +1,156 @@
+/*
+ * Lumeer: Modern Data Definition and Processing Platform
+ *
+ * Copyright (C) since 2017 Lumeer.io, s.r.o. and/or its affiliates.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.lumeer.core.facade;
+
+import io.lumeer.api.model.Collection;
+import io.lumeer.api.model.Document;
+import io.lumeer.api.model.LinkInstance;
+import io.lumeer.api.model.LinkType;
+import io.lumeer.api.model.Pagination;
+import io.lumeer.core.util.ObjectIdSet;
+import io.lumeer.storage.api.dao.context.DaoContextSnapshot;
+import io.lumeer.storage.api.query.SearchQueryStem;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Resolves the stages of a query stem with linked collections. Each stage is a semi-join of the documents found
+ * in the previous stage with the link instances of the stage link type, followed by the search in the linked collection
+ * restricted to the linked documents. Ids are kept in compact sets and pushed down to the database in batches
+ * of {@link #BATCH_SIZE}, and the traversal stops as soon as a stage is empty.
+ */
+class LinkedStemJoin {
+
+   private static final Logger log = Logger.getLogger(LinkedStemJoin.class.getName());
+
+   static final int BATCH_SIZE = 1000;
+
+   private final DaoContextSnapshot dao;
+   private final Map<String, Collection> collectionsMap;
+   private final Map<String, LinkType> linkTypesMap;
+
+   LinkedStemJoin(final DaoContextSnapshot dao, final Map<String, Collection> collectionsMap, final Map<String, LinkType> linkTypesMap) {
+      this.dao = dao;
+      this.collectionsMap = collectionsMap;
+      this.linkTypesMap = linkTypesMap;
+   }
+
+   /**
+    * Finds documents of all stages reachable from the base documents.
+    *
+    * @param linkTypeIds
+    *       ids of the link types of the stages.
+    * @param stages
+    *       stems of the linked collections with their own filters.
+    * @param baseDocuments
+    *       documents of the base collection.
+    * @param pagination
+    *       pagination applied on each stage, batching is disabled when set.
+    * @return documents of all stages, the base documents are not included.
+    */
+   Set<Document> join(final List<String> linkTypeIds, final List<SearchQueryStem> stages, final Set<Document> baseDocuments, final Pagination pagination) {
+      final Set<Document> result = new HashSet<>();
+      final int batchSize = pagination != null && pagination.isPaginated() ? Integer.MAX_VALUE : BATCH_SIZE;
+
+      ObjectIdSet lastStageIds = new ObjectIdSet(baseDocuments.size());
+      baseDocuments.forEach(document -> lastStageIds.add(document.getId()));
+
+      for (int i = 0; i < stages.size() && !lastStageIds.isEmpty(); i++) {
+         final String linkTypeId = linkTypeIds.get(i);
+         final SearchQueryStem stage = stages.get(i);
+         final ObjectIdSet inputIds = lastStageIds;
+
+         final List<LinkInstance> linkInstances = inBatches(inputIds, batchSize, ids -> dao.getLinkInstanceDao().getLinkInstancesByDocumentIds(ids, linkTypeId));
+
+         final ObjectIdSet linkInstanceIds = new ObjectIdSet(linkInstances.size());
+         linkInstances.forEach(linkInstance -> linkInstanceIds.add(linkInstance.getId()));
+
+         final ObjectIdSet searchedLinkInstanceIds;
+         if (!linkInstanceIds.isEmpty() && (stage.containsLinkFiltersQuery() || stage.containsFulltextsQuery())) {
+            searchedLinkInstanceIds = new ObjectIdSet();
+            inBatches(linkInstanceIds, batchSize, ids -> {
+               SearchQueryStem linkSearchStem = SearchQueryStem.createBuilder(stage.getCollectionId())
+                                                               .linkInstanceIds(ids)
+                                                               .linkFilters(stage.getLinkFilters())
+                                                               .fulltexts(stage.getFulltexts())
+                                                               .build();
+               return dao.getLinkDataDao().searchData(linkSearchStem, pagination, linkTypesMap.get(linkTypeId));
+            }).forEach(data -> searchedLinkInstanceIds.add(data.getId()));
+         } else {
+            searchedLinkInstanceIds = linkInstanceIds;
+         }
+
+         ObjectIdSet candidateIds = new ObjectIdSet();
+         for (LinkInstance linkInstance : linkInstances) {
+            if (searchedLinkInstanceIds.contains(linkInstance.getId())) {
+               linkInstance.getDocumentIds().stream()
+                           .filter(id -> !inputIds.contains(id))
+                           .forEach(candidateIds::add);
+            }
+         }
+
+         if (stage.containsDocumentIdsQuery()) {
+            candidateIds = candidateIds.intersect(stage.getDocumentIds());
+         }
+
+         final List<Document> stageDocuments;
+         if (candidateIds.isEmpty()) {
+            stageDocuments = new ArrayList<>();
+         } else {
+            stageDocuments = inBatches(candidateIds, batchSize, ids -> {
+               SearchQueryStem documentsStem = SearchQueryStem.createBuilder(stage.getCollectionId())
+                                                              .linkTypeIds(stage.getLinkTypeIds())
+                                                              .documentIds(ids)
+                                                              .filters(stage.getFilters())
+                                                              .fulltexts(stage.getFulltexts())
+                                                              .build();
+               return dao.getDataDao().searchDocuments(documentsStem, pagination, collectionsMap.get(stage.getCollectionId()));
+            });
+         }
+
+         if (log.isLoggable(Level.FINE)) {
+            log.fine(String.format("Stage %d (%s): %d input documents, %d link instances, %d matching link instances, %d candidates, %d documents",
+                  i, linkTypeId, inputIds.size(), linkInstances.size(), searchedLinkInstanceIds.size(), candidateIds.size(), stageDocuments.size()));
+         }
+
+         result.addAll(stageDocuments);
+         lastStageIds = new ObjectIdSet(stageDocuments.size());
+         for (Document document : stageDocuments) {
+            lastStageIds.add(document.getId());
+         }
+      }
+
+      return result;
+   }
+
+   private static <T> List<T> inBatches(final ObjectIdSet ids, final int batchSize, final Function<Set<String>, List<T>> query) {
+      final List<T> result = new ArrayList<>();
+      for (Set<String> batch : ids.batches(batchSize)) {
+         result.addAll(query.apply(batch));
+      }
+      return result;
+   }
+}
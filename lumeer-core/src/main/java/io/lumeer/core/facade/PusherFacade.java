@@ -24,7 +24,6 @@ import io.lumeer.api.model.LinkInstance;
 import io.lumeer.api.model.LinkType;
 import io.lumeer.api.model.Organization;
 import io.lumeer.api.model.Project;
-import io.lumeer.api.model.Query;
 import io.lumeer.api.model.ResourceType;
 import io.lumeer.api.model.Role;
 import io.lumeer.api.model.Sequence;
@@ -37,8 +36,11 @@ import io.lumeer.api.util.ResourceUtils;
 import io.lumeer.core.auth.RequestDataKeeper;
 import io.lumeer.core.constraint.ConstraintManager;
 import io.lumeer.core.facade.configuration.DefaultConfigurationProducer;
+import io.lumeer.core.util.PushNotificationOutbox;
+import io.lumeer.core.util.PushPatches;
 import io.lumeer.core.util.PusherClient;
 import io.lumeer.core.util.QueryUtils;
+import io.lumeer.core.util.ResourceVisibilityMatrix;
 import io.lumeer.engine.api.event.AddFavoriteItem;
 import io.lumeer.engine.api.event.CreateDocumentsAndLinks;
 import io.lumeer.engine.api.event.CreateDocument;
@@ -73,6 +75,8 @@ import io.lumeer.storage.api.dao.CollectionDao;
 import io.lumeer.storage.api.dao.LinkTypeDao;
 import io.lumeer.storage.api.dao.OrganizationDao;
 import io.lumeer.storage.api.dao.ViewDao;
+import io.lumeer.storage.api.dao.context.DaoContextSnapshot;
+import io.lumeer.storage.api.dao.context.DaoContextSnapshotFactory;
 import io.lumeer.storage.api.exception.ResourceNotFoundException;
 
 import org.marvec.pusher.data.BackupDataEvent;
@@ -87,11 +91,16 @@ import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.BiPredicate;
 import java.util.function.Function;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.enterprise.concurrent.ManagedScheduledExecutorService;
 import javax.enterprise.context.ApplicationScoped;
 import javax.enterprise.event.Observes;
 import javax.inject.Inject;
@@ -105,13 +114,22 @@ public class PusherFacade extends AbstractFacade {
    public static final String REMOVE_EVENT_SUFFIX = ":remove";
    public static final String IMPORT_EVENT_SUFFIX = ":import";
    public static final String RELOAD_EVENT_SUFFIX = ":reload";
+   public static final String PATCH_EVENT_SUFFIX = ":patch";
 
    private String PUSHER_APP_ID;
    private String PUSHER_KEY;
    private String PUSHER_SECRET;
    private String PUSHER_CLUSTER;
 
+   private static final int DEFAULT_PUSH_WINDOW = 50; // ms
+   private static final int DEFAULT_PUSH_ATTEMPTS = 3;
+
    private PusherClient pusherClient = null;
+   private PushNotificationOutbox outbox = null;
+   private boolean patchesEnabled = false;
+
+   // latest counters of collections whose patch has not been created yet, keyed by the collection id
+   private final ConcurrentMap<String, Collection> pendingCollectionPatches = new ConcurrentHashMap<>();
 
    @Inject
    private Logger log;
@@ -125,9 +143,6 @@ public class PusherFacade extends AbstractFacade {
    @Inject
    private LinkTypeDao linkTypeDao;
 
-   @Inject
-   private LinkTypeFacade linkTypeFacade;
-
    @Inject
    private ViewDao viewDao;
 
@@ -140,15 +155,18 @@ public class PusherFacade extends AbstractFacade {
    @Inject
    private OrganizationDao organizationDao;
 
-   @Inject
-   private DocumentFacade documentFacade;
-
    @Inject
    private RequestDataKeeper requestDataKeeper;
 
    @Inject
    private DefaultConfigurationProducer configurationProducer;
 
+   @Inject
+   private DaoContextSnapshotFactory daoContextSnapshotFactory;
+
+   @Inject
+   private ManagedScheduledExecutorService scheduler;
+
    private ConstraintManager constraintManager;
 
    @PostConstruct
@@ -162,7 +180,36 @@ public class PusherFacade extends AbstractFacade {
 
       if (PUSHER_SECRET != null && !"".equals(PUSHER_SECRET)) {
          pusherClient = new PusherClient(PUSHER_APP_ID, PUSHER_KEY, PUSHER_SECRET, PUSHER_CLUSTER);
+         outbox = new PushNotificationOutbox(pusherClient::trigger, PusherFacade::getCoalescingKey,
+               configurationProducer.getInt(DefaultConfigurationProducer.PUSH_WINDOW, DEFAULT_PUSH_WINDOW, 1),
+               configurationProducer.getInt(DefaultConfigurationProducer.PUSH_ATTEMPTS, DEFAULT_PUSH_ATTEMPTS, 1), scheduler);
       }
+
+      // clients that do not understand patch events would miss the updates, so patches are sent only when enabled explicitly
+      patchesEnabled = "true".equalsIgnoreCase(configurationProducer.get(DefaultConfigurationProducer.PUSH_PATCHES));
+   }
+
+   @PreDestroy
+   public void destroy() {
+      if (outbox != null) {
+         outbox.close();
+      }
+   }
+
+   // only updates and collection counter patches can be merged, the latest one carries the whole object or the absolute counters
+   private static String getCoalescingKey(final Event event) {
+      if (event.getName() == null) {
+         return null;
+      }
+
+      final Object object = event.getData() instanceof ObjectWithParent ? ((ObjectWithParent) event.getData()).getObject() : event.getData();
+      if (event.getName().endsWith(UPDATE_EVENT_SUFFIX) && object instanceof WithId && ((WithId) object).getId() != null) {
+         return event.getChannel() + "/" + event.getName() + "/" + ((WithId) object).getId();
+      }
+      if (event.getName().endsWith(PATCH_EVENT_SUFFIX) && object instanceof PushPatches.CollectionPatch) {
+         return event.getChannel() + "/" + event.getName() + "/" + ((PushPatches.CollectionPatch) object).getId();
+      }
+      return null;
    }
 
    public String getPusherAppId() {
@@ -185,6 +232,10 @@ public class PusherFacade extends AbstractFacade {
       return pusherClient;
    }
 
+   public PushNotificationOutbox getPushNotificationOutbox() {
+      return outbox;
+   }
+
    public void createResource(@Observes final CreateResource createResource) {
       if (isEnabled()) {
          try {
@@ -199,7 +250,9 @@ public class PusherFacade extends AbstractFacade {
       if (isEnabled()) {
          try {
             checkPermissionsChange(updateResource);
-            processResource(updateResource.getResource(), UPDATE_EVENT_SUFFIX);
+            if (!sendCollectionPatch(updateResource)) {
+               processResource(updateResource.getResource(), UPDATE_EVENT_SUFFIX);
+            }
          } catch (Exception e) {
             log.log(Level.WARNING, "Unable to send push notification: ", e);
          }
@@ -244,6 +297,39 @@ public class PusherFacade extends AbstractFacade {
       }
    }
 
+   private boolean sendCollectionPatch(final UpdateResource updateResource) {
+      if (!patchesEnabled || !updateResource.isCountersOnly() || !(updateResource.getResource() instanceof Collection)) {
+         return false;
+      }
+
+      // the request can still modify the collection, the readers are read from a copy
+      final Collection collection = ((Collection) updateResource.getResource()).copy();
+
+      // the patch carries absolute counters, so writes made before it is created only replace the pending state
+      if (pendingCollectionPatches.put(collection.getId(), collection) == null) {
+         try {
+            sendNotificationsLater(snapshot -> {
+               final Collection latest = pendingCollectionPatches.remove(collection.getId());
+               if (latest == null) {
+                  return Collections.emptyList();
+               }
+               return createPatchEvents(latest, PushPatches.createCollectionPatch(latest), snapshot.getCollectionReaders(latest), snapshot);
+            });
+         } catch (RuntimeException e) {
+            pendingCollectionPatches.remove(collection.getId());
+            throw e;
+         }
+      }
+      return true;
+   }
+
+   private List<Event> createPatchEvents(final Object object, final Object patch, final Set<String> userIds, final DaoContextSnapshot snapshot) {
+      final ObjectWithParent objectWithParent = new ObjectWithParent(patch, snapshot.getOrganizationId(), snapshot.getProjectId());
+      return userIds.stream()
+                    .map(userId -> new Event(eventChannel(userId), object.getClass().getSimpleName() + PATCH_EVENT_SUFFIX, objectWithParent))
+                    .collect(Collectors.toList());
+   }
+
    private void checkPermissionsChange(final UpdateResource updateResource) {
       if (updateResource.getResource() instanceof Organization) {
          checkOrganizationPermissionsChange((Organization) updateResource.getOriginalResource(), (Organization) updateResource.getResource());
@@ -275,151 +361,117 @@ public class PusherFacade extends AbstractFacade {
 
    private void checkCollectionsPermissionsChange(final Collection originalCollection, final Collection updatedCollection) {
       Set<String> removedUsers = ResourceUtils.getRemovedPermissions(originalCollection, updatedCollection);
-      removedUsers.removeAll(getWorkspaceManagers());
-      removedUsers.remove(authenticatedUser.getCurrentUserId());
-
       Set<String> addedUsers = ResourceUtils.getAddedPermissions(originalCollection, updatedCollection);
-      addedUsers.removeAll(getWorkspaceManagers());
-      addedUsers.remove(authenticatedUser.getCurrentUserId());
+      Set<String> userIds = getChangedUsers(removedUsers, addedUsers);
 
-      if (removedUsers.isEmpty() && addedUsers.isEmpty()) {
+      if (userIds.isEmpty()) {
          return;
       }
 
       List<LinkType> linkTypes = linkTypeDao.getLinkTypesByCollectionId(updatedCollection.getId());
+      Map<String, Collection> collectionsMap = getCollectionsMap(Collections.singleton(updatedCollection.getId()), linkTypes);
+      collectionsMap.put(updatedCollection.getId(), updatedCollection);
+
+      List<Collection> originalCollections = new ArrayList<>(collectionsMap.values());
+      originalCollections.removeIf(collection -> collection.getId().equals(updatedCollection.getId()));
+      originalCollections.add(originalCollection);
+
       List<View> views = viewDao.getAllViews();
-      List<Event> notifications = new ArrayList<>();
+      List<LinkType> allLinkTypes = linkTypeDao.getAllLinkTypes();
+      BiPredicate<Resource, String> canRead = permissionsChecker.getRoleChecker(userIds, Role.READ);
 
-      if (removedUsers.size() > 0) {
-         notifications.addAll(createRemoveCollectionNotification(updatedCollection, removedUsers, views, linkTypes));
-         if (linkTypes.size() > 0) {
-            notifications.addAll(createRemoveCollectionLinkTypesNotification(linkTypes, removedUsers, views));
-         }
-      }
+      ResourceVisibilityMatrix before = new ResourceVisibilityMatrix(userIds, originalCollections, linkTypes, views, allLinkTypes, canRead);
+      ResourceVisibilityMatrix after = new ResourceVisibilityMatrix(userIds, new ArrayList<>(collectionsMap.values()), linkTypes, views, allLinkTypes, canRead);
 
-      if (addedUsers.size() > 0 && linkTypes.size() > 0) {
-         Map<String, Collection> collectionMapByLinkTypes = getCollectionsMapFromLinkTypes(linkTypes);
-         notifications.addAll(createSendCollectionLinkTypesNotification(linkTypes, addedUsers, views, collectionMapByLinkTypes));
-      }
+      // the collection itself is sent to its new readers as a regular update
+      List<Event> notifications = createVisibilityChangeNotifications(userIds, before, after, collectionsMap, linkTypes, false);
 
       if (notifications.size() > 0) {
          sendNotificationsBatch(notifications);
       }
    }
 
-   private Map<String, Collection> getCollectionsMapFromLinkTypes(List<LinkType> linkTypes) {
-      final Set<String> collectionIds = linkTypes.stream().map(LinkType::getCollectionIds)
-                                                 .flatMap(java.util.Collection::stream).collect(Collectors.toSet());
-      return collectionDao.getCollectionsByIds(collectionIds).stream().collect(Collectors.toMap(Collection::getId, Function.identity()));
-   }
-
-   private List<Event> createRemoveCollectionNotification(final Collection collection, final Set<String> userIds, final List<View> views, final List<LinkType> linkTypes) {
-      List<Event> notifications = new ArrayList<>();
-
-      Set<String> usersWithRights = ResourceUtils.usersAllowedRead(collection);
-      for (String user : userIds) { // checks if user has collection in some view
-         if (usersWithRights.contains(user)) {
-            continue;
-         }
-
-         List<View> viewsByUser = views.stream().filter(view -> permissionsChecker.hasRole(view, Role.READ, user)).collect(Collectors.toList());
-         Set<String> collectionIdsInViews = viewsByUser.stream().map(view -> QueryUtils.getQueryCollectionIds(view.getQuery(), linkTypes))
-                                                       .flatMap(java.util.Collection::stream)
-                                                       .collect(Collectors.toSet());
+   private void checkViewPermissionsChange(final View originalView, final View updatedView) {
+      Set<String> removedUsers = ResourceUtils.getRemovedPermissions(originalView, updatedView);
+      Set<String> addedUsers = ResourceUtils.getAddedPermissions(originalView, updatedView);
+      Set<String> userIds = getChangedUsers(removedUsers, addedUsers);
 
-         if (!collectionIdsInViews.contains(collection.getId())) {
-            notifications.add(createEventForResource(collection, REMOVE_EVENT_SUFFIX, user));
-         }
+      if (userIds.isEmpty()) {
+         return;
       }
 
-      return notifications;
-   }
-
-   private List<Event> createRemoveCollectionLinkTypesNotification(final List<LinkType> linkTypes, final Set<String> userIds, final List<View> views) {
-      List<Event> notifications = new ArrayList<>();
+      Set<String> linkTypeIds = new HashSet<>(updatedView.getQuery().getLinkTypeIds());
+      if (originalView.getQuery() != null) {
+         linkTypeIds.addAll(originalView.getQuery().getLinkTypeIds());
+      }
+      List<LinkType> linkTypes = linkTypeDao.getLinkTypesByIds(linkTypeIds);
 
-      for (String user : userIds) {
-         filterLinkTypesNotInViews(linkTypes, views, user).forEach(linkType -> notifications.add(createEventForRemove(linkType.getClass().getSimpleName(),
-               new ResourceId(linkType.getId(), getOrganization().getId(), getProject().getId()), user)));
+      Set<String> collectionIds = QueryUtils.getQueryCollectionIds(updatedView.getQuery(), linkTypes);
+      if (originalView.getQuery() != null) {
+         collectionIds.addAll(QueryUtils.getQueryCollectionIds(originalView.getQuery(), linkTypes));
       }
+      Map<String, Collection> collectionsMap = getCollectionsMap(collectionIds, linkTypes);
 
-      return notifications;
-   }
+      List<View> views = new ArrayList<>(viewDao.getAllViews());
+      views.removeIf(view -> view.getId().equals(updatedView.getId()));
+      List<View> originalViews = new ArrayList<>(views);
+      originalViews.add(originalView);
+      views.add(updatedView);
 
-   private List<LinkType> filterLinkTypesNotInViews(List<LinkType> linkTypes, List<View> views, String user) {
-      List<View> viewsByUser = views.stream().filter(view -> permissionsChecker.hasRole(view, Role.READ, user)).collect(Collectors.toList());
-      Set<String> linkTypeIdsInView = viewsByUser.stream().map(view -> view.getQuery().getLinkTypeIds())
-                                                 .flatMap(java.util.Collection::stream).collect(Collectors.toSet());
+      List<LinkType> allLinkTypes = linkTypeDao.getAllLinkTypes();
+      List<Collection> collections = new ArrayList<>(collectionsMap.values());
+      BiPredicate<Resource, String> canRead = permissionsChecker.getRoleChecker(userIds, Role.READ);
 
-      return linkTypes.stream().filter(linkType -> !linkTypeIdsInView.contains(linkType.getId())).collect(Collectors.toList());
-   }
+      ResourceVisibilityMatrix before = new ResourceVisibilityMatrix(userIds, collections, linkTypes, originalViews, allLinkTypes, canRead);
+      ResourceVisibilityMatrix after = new ResourceVisibilityMatrix(userIds, collections, linkTypes, views, allLinkTypes, canRead);
 
-   private List<Event> createSendCollectionLinkTypesNotification(final List<LinkType> linkTypes, final Set<String> userIds, final List<View> views, final Map<String, Collection> collectionsMap) {
       List<Event> notifications = new ArrayList<>();
+      removedUsers.stream().filter(userIds::contains).forEach(userId -> notifications.add(createEventForResource(updatedView, REMOVE_EVENT_SUFFIX, userId)));
+      notifications.addAll(createVisibilityChangeNotifications(userIds, before, after, collectionsMap, linkTypes, true));
 
-      for (String user : userIds) {
-         filterLinkTypesNotInViews(linkTypes, views, user).stream()
-                                                          .filter(linkType -> canUserReadLinkType(user, linkType, collectionsMap))
-                                                          .forEach(linkType -> notifications.add(createEventForWorkspaceObject(linkType, linkType.getId(), UPDATE_EVENT_SUFFIX, user)));
+      if (notifications.size() > 0) {
+         sendNotificationsBatch(notifications);
       }
-
-      return notifications;
    }
 
-   private boolean canUserReadLinkType(String userId, LinkType linkType, Map<String, Collection> collectionsMap) {
-      long count = linkType.getCollectionIds().stream().map(collectionsMap::get)
-                           .filter(collection -> collection == null || !permissionsChecker.hasRole(collection, Role.READ, userId)).count();
-
-      return count == 0;
+   private Set<String> getChangedUsers(final Set<String> removedUsers, final Set<String> addedUsers) {
+      Set<String> userIds = new HashSet<>(removedUsers);
+      userIds.addAll(addedUsers);
+      userIds.removeAll(getWorkspaceManagers());
+      userIds.remove(authenticatedUser.getCurrentUserId());
+      return userIds;
    }
 
-   private void checkViewPermissionsChange(final View originalView, final View updatedView) {
-      Set<String> removedUsers = ResourceUtils.getRemovedPermissions(originalView, updatedView);
-      removedUsers.removeAll(getWorkspaceManagers());
-      removedUsers.remove(authenticatedUser.getCurrentUserId());
-
-      Set<String> addedUsers = ResourceUtils.getAddedPermissions(originalView, updatedView);
-      addedUsers.removeAll(getWorkspaceManagers());
-      addedUsers.remove(authenticatedUser.getCurrentUserId());
+   private Map<String, Collection> getCollectionsMap(final Set<String> collectionIds, final List<LinkType> linkTypes) {
+      final Set<String> ids = new HashSet<>(collectionIds);
+      linkTypes.stream().filter(linkType -> linkType.getCollectionIds() != null).forEach(linkType -> ids.addAll(linkType.getCollectionIds()));
+      return collectionDao.getCollectionsByIds(ids).stream().collect(Collectors.toMap(Collection::getId, Function.identity(), (c1, c2) -> c2, HashMap::new));
+   }
 
-      if (removedUsers.isEmpty() && addedUsers.isEmpty()) {
-         return;
-      }
+   private List<Event> createVisibilityChangeNotifications(final Set<String> userIds, final ResourceVisibilityMatrix before, final ResourceVisibilityMatrix after,
+         final Map<String, Collection> collectionsMap, final List<LinkType> linkTypes, final boolean sendCollections) {
+      List<Event> notifications = new ArrayList<>();
+      Map<String, LinkType> linkTypesMap = linkTypes.stream().collect(Collectors.toMap(LinkType::getId, Function.identity(), (l1, l2) -> l2));
 
-      List<View> views = viewDao.getAllViews();
-      List<LinkType> linkTypes = linkTypeDao.getLinkTypesByIds(updatedView.getQuery().getLinkTypeIds());
-      List<Collection> collections = getCollectionsByQuery(updatedView.getQuery(), linkTypes);
+      for (String user : userIds) {
+         before.getCollectionIdsNotIn(user, after).stream().map(collectionsMap::get).filter(Objects::nonNull)
+               .forEach(collection -> notifications.add(createEventForResource(collection, REMOVE_EVENT_SUFFIX, user)));
 
-      List<Event> notifications = new ArrayList<>();
+         before.getLinkTypeIdsNotIn(user, after).stream().map(linkTypesMap::get).filter(Objects::nonNull)
+               .forEach(linkType -> notifications.add(createEventForRemove(linkType.getClass().getSimpleName(),
+                     new ResourceId(linkType.getId(), getOrganization().getId(), getProject().getId()), user)));
 
-      if (removedUsers.size() > 0) {
-         removedUsers.forEach(userId -> notifications.add(createEventForResource(updatedView, REMOVE_EVENT_SUFFIX, userId)));
-         if (collections.size() > 0) {
-            collections.forEach(collection -> notifications.addAll(createRemoveCollectionNotification(collection, removedUsers, views, linkTypes)));
+         if (sendCollections) {
+            after.getCollectionIdsNotIn(user, before).stream().map(collectionsMap::get).filter(Objects::nonNull)
+                 .forEach(collection -> notifications.add(createEventForObjectWithParent(new ObjectWithParent(collection, getOrganization().getId(), getProject().getId()),
+                       getResourceId(collection), UPDATE_EVENT_SUFFIX, user)));
          }
-         if (linkTypes.size() > 0) {
-            linkTypes.forEach(linkType -> notifications.addAll(createRemoveCollectionLinkTypesNotification(linkTypes, removedUsers, views)));
-         }
-      }
 
-      for (String user : addedUsers) {
-         notifications.addAll(linkTypes.stream()
-                                       .map(linkType -> createEventForWorkspaceObject(linkType, linkType.getId(), UPDATE_EVENT_SUFFIX, user)).collect(Collectors.toList()));
-
-         notifications.addAll(collections.stream()
-                                         .map(collection -> createEventForObjectWithParent(new ObjectWithParent(collection, getOrganization().getId(), getProject().getId()),
-                                               getResourceId(collection),
-                                               UPDATE_EVENT_SUFFIX, user)).collect(Collectors.toList()));
+         after.getLinkTypeIdsNotIn(user, before).stream().map(linkTypesMap::get).filter(Objects::nonNull)
+              .forEach(linkType -> notifications.add(createEventForWorkspaceObject(linkType, linkType.getId(), UPDATE_EVENT_SUFFIX, user)));
       }
 
-      if (notifications.size() > 0) {
-         sendNotificationsBatch(notifications);
-      }
-   }
-
-   private List<Collection> getCollectionsByQuery(Query query, List<LinkType> linkTypes) {
-      Set<String> collectionIds = QueryUtils.getQueryCollectionIds(query, linkTypes);
-      return collectionDao.getCollectionsByIds(collectionIds);
+      return notifications;
    }
 
    private Set<String> getOrganizationManagers() {
@@ -483,17 +535,27 @@ public class PusherFacade extends AbstractFacade {
    }
 
    private Event createEventForWorkspaceObject(final Object object, final String id, final String event, final String userId) {
+      return createEventForWorkspaceObject(object, id, event, userId, getOrganization().getId(), getProject().getId());
+   }
+
+   private List<Event> createEventsForWorkspaceObject(final WithId object, final Set<String> userIds, final String event, final DaoContextSnapshot snapshot) {
+      return userIds.stream()
+                    .map(userId -> createEventForWorkspaceObject(object, object.getId(), event, userId, snapshot.getOrganizationId(), snapshot.getProjectId()))
+                    .collect(Collectors.toList());
+   }
+
+   private Event createEventForWorkspaceObject(final Object object, final String id, final String event, final String userId, final String organizationId, final String projectId) {
       if (REMOVE_EVENT_SUFFIX.equals(event)) {
-         return createEventForRemove(object.getClass().getSimpleName(), new ResourceId(id, getOrganization().getId(), getProject().getId()), userId);
+         return createEventForRemove(object.getClass().getSimpleName(), new ResourceId(id, organizationId, projectId), userId);
       }
-      final ObjectWithParent normalMessage = new ObjectWithParent(object, getOrganization().getId(), getProject().getId());
+      final ObjectWithParent normalMessage = new ObjectWithParent(object, organizationId, projectId);
       String extraId = null;
       if (object instanceof Document) {
          extraId = ((Document) object).getCollectionId();
       } else if (object instanceof LinkInstance) {
          extraId = ((LinkInstance) object).getLinkTypeId();
       }
-      final ResourceId alternateMessage = new ResourceId(id, getOrganization().getId(), getProject().getId(), extraId);
+      final ResourceId alternateMessage = new ResourceId(id, organizationId, projectId, extraId);
       return createEventForObjectWithParent(normalMessage, alternateMessage, event, userId);
    }
 
@@ -591,7 +653,12 @@ public class PusherFacade extends AbstractFacade {
    }
 
    public void updateDocument(@Observes final UpdateDocument updateDocument) {
-      documentNotification(updateDocument.getDocument(), UPDATE_EVENT_SUFFIX);
+      final PushPatches.DocumentPatch patch = patchesEnabled ? PushPatches.createDocumentPatch(updateDocument.getOriginalDocument(), updateDocument.getDocument()) : null;
+      if (patch != null) {
+         documentPatchNotification(updateDocument.getDocument(), patch);
+      } else {
+         documentNotification(updateDocument.getDocument(), UPDATE_EVENT_SUFFIX);
+      }
    }
 
    public void removeDocument(@Observes final RemoveDocument removeDocument) {
@@ -601,10 +668,29 @@ public class PusherFacade extends AbstractFacade {
    private void documentNotification(final Document document, final String eventSuffix) {
       if (isEnabled()) {
          try {
-            Collection collection = collectionFacade.getCollection(document.getCollectionId());
-            constraintManager.decodeDataTypes(collection, document.getData());
-            document.setFavorite(documentFacade.isFavorite(document.getId()));
-            sendNotificationsByUsers(document, collectionFacade.getUsersIdsWithAccess(document.getCollectionId()), eventSuffix);
+            final Document pushedDocument = new Document(document);
+            final String userId = authenticatedUser.getCurrentUserId();
+            sendNotificationsLater(snapshot -> {
+               final Collection collection = snapshot.getCollectionDao().getCollectionById(pushedDocument.getCollectionId());
+               constraintManager.decodeDataTypes(collection, pushedDocument.getData());
+               pushedDocument.setFavorite(snapshot.getFavoriteItemDao().getFavoriteDocumentIds(userId, snapshot.getProjectId()).contains(pushedDocument.getId()));
+               return createEventsForWorkspaceObject(pushedDocument, snapshot.getCollectionReaders(collection), eventSuffix, snapshot);
+            });
+         } catch (Exception e) {
+            log.log(Level.WARNING, "Unable to send push notification: ", e);
+         }
+      }
+   }
+
+   private void documentPatchNotification(final Document document, final PushPatches.DocumentPatch patch) {
+      if (isEnabled()) {
+         try {
+            final String collectionId = document.getCollectionId();
+            sendNotificationsLater(snapshot -> {
+               final Collection collection = snapshot.getCollectionDao().getCollectionById(collectionId);
+               constraintManager.decodeDataTypes(collection, patch.getData());
+               return createPatchEvents(document, patch, snapshot.getCollectionReaders(collection), snapshot);
+            });
          } catch (Exception e) {
             log.log(Level.WARNING, "Unable to send push notification: ", e);
          }
@@ -800,10 +886,12 @@ public class PusherFacade extends AbstractFacade {
    }
 
    private void sendNotificationByLinkType(final LinkInstance linkInstance, final String linkTypeId, final String event) {
-      LinkType linkType = linkTypeFacade.getLinkType(linkTypeId);
-      constraintManager.decodeDataTypes(linkType, linkInstance.getData());
-      Set<String> userIds = getUserIdsForLinkType(linkType);
-      sendNotificationsByUsers(linkInstance, userIds, event);
+      final LinkInstance pushedLinkInstance = new LinkInstance(linkInstance);
+      sendNotificationsLater(snapshot -> {
+         final LinkType linkType = snapshot.getLinkTypeDao().getLinkType(linkTypeId);
+         constraintManager.decodeDataTypes(linkType, pushedLinkInstance.getData());
+         return createEventsForWorkspaceObject(pushedLinkInstance, snapshot.getLinkTypeReaders(linkTypeId), event, snapshot);
+      });
    }
 
    private Set<String> getUserIdsForLinkType(final LinkType linkType) {
@@ -811,12 +899,7 @@ public class PusherFacade extends AbstractFacade {
          return Collections.emptySet();
       }
 
-      Set<Set<String>> userIdsMaps = linkType
-            .getCollectionIds()
-            .stream()
-            .map(collectionFacade::getUsersIdsWithAccess)
-            .collect(Collectors.toSet());
-      return intersection(userIdsMaps);
+      return collectionFacade.getUsersIdsWithAccess(linkType);
    }
 
    private void sendResourceNotificationByLinkType(final LinkType linkType, final String event) {
@@ -878,16 +961,35 @@ public class PusherFacade extends AbstractFacade {
 
    private void sendNotificationsBatch(List<Event> notifications) {
       if (isEnabled() && notifications != null && notifications.size() > 0) {
-         notifications.forEach(event -> {
-            if (event.getData() instanceof ObjectWithParent) {
-               ((ObjectWithParent) event.getData()).setCorrelationId(requestDataKeeper.getCorrelationId());
-            }
-         });
+         setCorrelationId(notifications, requestDataKeeper.getCorrelationId());
+         outbox.enqueue(notifications);
+      }
+   }
 
-         pusherClient.trigger(notifications);
+   /**
+    * Sends notifications whose recipients and data are read in the background, the producer gets a snapshot of the current workspace
+    * and it must not use any request scoped state.
+    */
+   private void sendNotificationsLater(final Function<DaoContextSnapshot, List<Event>> producer) {
+      if (isEnabled()) {
+         final DaoContextSnapshot snapshot = daoContextSnapshotFactory.getInstance();
+         final String correlationId = requestDataKeeper.getCorrelationId();
+         outbox.enqueue(() -> {
+            final List<Event> notifications = producer.apply(snapshot);
+            setCorrelationId(notifications, correlationId);
+            return notifications;
+         });
       }
    }
 
+   private static void setCorrelationId(final List<Event> notifications, final String correlationId) {
+      notifications.forEach(event -> {
+         if (event.getData() instanceof ObjectWithParent) {
+            ((ObjectWithParent) event.getData()).setCorrelationId(correlationId);
+         }
+      });
+   }
+
    private boolean isEnabled() {
       return pusherClient != null;
    }
@@ -896,14 +998,6 @@ public class PusherFacade extends AbstractFacade {
       return this.mapResource(resource.copy(), userId);
    }
 
-   private static Set<String> intersection(Set<Set<String>> sets) {
-      return sets.stream().map(HashSet::new).reduce(
-            (s1, s2) -> {
-               s1.retainAll(s2);
-               return s1;
-            }).orElse(new HashSet<>());
-   }
-
    public static final class ResourceId {
       private final String id;
       private final String organizationId;
@@ -28,31 +28,39 @@ import io.lumeer.api.model.Role;
 import io.lumeer.api.model.common.Resource;
 import io.lumeer.core.auth.AuthenticatedUserGroups;
 import io.lumeer.core.constraint.ConstraintManager;
+import io.lumeer.core.exception.BadFormatException;
 import io.lumeer.core.facade.configuration.DefaultConfigurationProducer;
+import io.lumeer.core.task.SearchExecutor;
+import io.lumeer.core.util.Tuple;
 import io.lumeer.engine.api.data.DataDocument;
 import io.lumeer.storage.api.dao.CollectionDao;
-import io.lumeer.storage.api.dao.DataDao;
 import io.lumeer.storage.api.dao.DocumentDao;
 import io.lumeer.storage.api.dao.LinkDataDao;
 import io.lumeer.storage.api.dao.LinkInstanceDao;
 import io.lumeer.storage.api.dao.LinkTypeDao;
+import io.lumeer.storage.api.dao.context.DaoContextSnapshot;
+import io.lumeer.storage.api.dao.context.DaoContextSnapshotFactory;
 import io.lumeer.storage.api.filter.CollectionSearchAttributeFilter;
 import io.lumeer.storage.api.filter.LinkSearchAttributeFilter;
 import io.lumeer.storage.api.query.SearchQuery;
 import io.lumeer.storage.api.query.SearchQueryStem;
 
+import org.bson.types.ObjectId;
+
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.LinkedList;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import javax.annotation.PostConstruct;
 import javax.enterprise.context.RequestScoped;
 import javax.inject.Inject;
@@ -60,11 +68,10 @@ import javax.inject.Inject;
 @RequestScoped
 public class SearchFacade extends AbstractFacade {
 
-   @Inject
-   private CollectionDao collectionDao;
+   private static final int STREAM_CHUNK_SIZE = 500;
 
    @Inject
-   private DataDao dataDao;
+   private CollectionDao collectionDao;
 
    @Inject
    private DocumentDao documentDao;
@@ -84,6 +91,12 @@ public class SearchFacade extends AbstractFacade {
    @Inject
    private DefaultConfigurationProducer configurationProducer;
 
+   @Inject
+   private DaoContextSnapshotFactory daoContextSnapshotFactory;
+
+   @Inject
+   private SearchExecutor searchExecutor;
+
    private ConstraintManager constraintManager;
 
    @PostConstruct
@@ -92,23 +105,37 @@ public class SearchFacade extends AbstractFacade {
    }
 
    public List<LinkInstance> getLinkInstances(Query query) {
+      return getLinkInstancesPage(query).getFirst();
+   }
+
+   /**
+    * Searches link instances like {@link #getLinkInstances(Query)}.
+    *
+    * @param query
+    *       query to search by.
+    * @return found link instances and a continuation token of the next page or null when there are no more results.
+    */
+   public Tuple<List<LinkInstance>, String> getLinkInstancesPage(Query query) {
+      checkContinuationToken(query);
+
       final Query encodedQuery = encodeQuery(query);
       final List<LinkType> linkTypes = getReadLinkTypes();
       Map<String, LinkType> linkTypesMap = linkTypes.stream().collect(Collectors.toMap(LinkType::getId, l -> l));
+      final ContinuationTracker tracker = new ContinuationTracker(encodedQuery.getPagination());
 
       final List<LinkInstance> result;
 
       if (encodedQuery.isEmpty()) {
          result = new ArrayList<>(searchLinkInstancesByEmptyQuery(linkTypes));
       } else if (encodedQuery.containsStems()) {
-         result = new ArrayList<>(searchLinkInstancesByStems(encodedQuery, linkTypes));
+         result = new ArrayList<>(searchLinkInstancesByStems(encodedQuery, linkTypes, tracker));
       } else {
-         result = new ArrayList<>(searchLinkInstancesByFulltexts(encodedQuery, linkTypes));
+         result = new ArrayList<>(searchLinkInstancesByFulltexts(daoContextSnapshotFactory.getInstance(), encodedQuery, linkTypes, tracker));
       }
 
       result.forEach(linkInstance -> constraintManager.decodeDataTypes(linkTypesMap.get(linkInstance.getLinkTypeId()), linkInstance.getData()));
 
-      return result;
+      return new Tuple<>(result, tracker.getToken());
    }
 
    private java.util.Collection<LinkInstance> searchLinkInstancesByEmptyQuery(List<LinkType> linkTypes) {
@@ -134,22 +161,30 @@ public class SearchFacade extends AbstractFacade {
                                            .collect(Collectors.toSet());
    }
 
-   private java.util.Collection<LinkInstance> searchLinkInstancesByStems(Query query, List<LinkType> readLinkTypes) {
+   private java.util.Collection<LinkInstance> searchLinkInstancesByStems(Query query, List<LinkType> readLinkTypes, ContinuationTracker tracker) {
       SearchQuery searchQuery = buildSearchQuery(encodeQuery(query));
       Set<String> linkTypeIds = readLinkTypes.stream().map(LinkType::getId).collect(Collectors.toSet());
-      List<LinkInstance> linkInstances = linkInstanceDao.searchLinkInstances(searchQuery).stream()
+      List<LinkInstance> foundLinkInstances = linkInstanceDao.searchLinkInstances(searchQuery);
+      tracker.pageRead(foundLinkInstances.stream().map(LinkInstance::getId).collect(Collectors.toList()));
+      List<LinkInstance> linkInstances = foundLinkInstances.stream()
                                                         .filter(linkInstance -> linkTypeIds.contains(linkInstance.getLinkTypeId()))
                                                         .collect(Collectors.toList());
       return setDataForLinkInstances(linkInstances);
    }
 
-   private java.util.Collection<LinkInstance> searchLinkInstancesByFulltexts(Query query, List<LinkType> linkTypes) {
-      List<DataDocument> data = linkDataDao.searchDataByFulltexts(query.getFulltexts(), query.getPagination(), linkTypes);
-      return convertDataDocumentsToLinkInstances(data);
+   private java.util.Collection<LinkInstance> searchLinkInstancesByFulltexts(DaoContextSnapshot dao, Query query, List<LinkType> linkTypes, ContinuationTracker tracker) {
+      return mergeResults(searchExecutor.map(linkTypes, linkType -> {
+         List<DataDocument> data = dao.getLinkDataDao().searchDataByFulltexts(query.getFulltexts(), query.getPagination(), Collections.singletonList(linkType));
+         tracker.dataRead(data);
+         return convertDataDocumentsToLinkInstances(dao, data);
+      }));
    }
 
-   private java.util.Collection<LinkInstance> convertDataDocumentsToLinkInstances(java.util.Collection<DataDocument> data) {
-      List<LinkInstance> linkInstances = linkInstanceDao.getLinkInstances(data.stream().map(DataDocument::getId).collect(Collectors.toSet()));
+   private java.util.Collection<LinkInstance> convertDataDocumentsToLinkInstances(DaoContextSnapshot dao, java.util.Collection<DataDocument> data) {
+      if (data.isEmpty()) {
+         return Collections.emptySet();
+      }
+      List<LinkInstance> linkInstances = dao.getLinkInstanceDao().getLinkInstances(data.stream().map(DataDocument::getId).collect(Collectors.toSet()));
       Map<String, DataDocument> dataMap = data.stream().collect(Collectors.toMap(DataDocument::getId, Function.identity()));
       return linkInstances.stream()
                           .peek(linkInstance -> linkInstance.setData(Objects.requireNonNullElse(dataMap.get(linkInstance.getId()), new DataDocument())))
@@ -183,26 +218,122 @@ public class SearchFacade extends AbstractFacade {
                         .queryStems(query.getStems(), query.getFulltexts())
                         .page(query.getPage())
                         .pageSize(query.getPageSize())
+                        .after(query.getAfter())
                         .build();
    }
 
    public List<Document> searchDocuments(final Query query) {
+      return searchDocumentsPage(query).getFirst();
+   }
+
+   /**
+    * Searches documents like {@link #searchDocuments(Query)}. When the query is paginated, the returned continuation token
+    * can be passed as {@link Query#getAfter()} to read the next page without skipping the already read results on the server.
+    * A result can be returned again on the next page when the query consists of more stems.
+    *
+    * @param query
+    *       query to search by.
+    * @return found documents and a continuation token of the next page or null when there are no more results.
+    */
+   public Tuple<List<Document>, String> searchDocumentsPage(final Query query) {
+      checkContinuationToken(query);
+
       final Query encodedQuery = encodeQuery(query);
       final List<Collection> collections = getReadCollections();
       final Map<String, Collection> collectionMap = collections.stream().collect(Collectors.toMap(Resource::getId, collection -> collection));
+      final DaoContextSnapshot dao = daoContextSnapshotFactory.getInstance();
+      final ContinuationTracker tracker = new ContinuationTracker(encodedQuery.getPagination());
       final List<Document> result;
 
       if (encodedQuery.isEmpty()) {
-         result = new ArrayList<>(getChildDocuments(searchDocumentsByEmptyQuery(encodedQuery, collections)));
+         result = new ArrayList<>(getChildDocuments(dao, searchDocumentsByEmptyQuery(dao, encodedQuery, collections, tracker)));
       } else if (encodedQuery.containsStems()) {
-         result = new ArrayList<>(searchDocumentsByStems(encodedQuery, collections));
+         result = new ArrayList<>(searchDocumentsByStems(dao, encodedQuery, collections, tracker));
       } else {
-         result = new ArrayList<>(getChildDocuments(searchDocumentsByFulltexts(encodedQuery, collections)));
+         result = new ArrayList<>(getChildDocuments(dao, searchDocumentsByFulltexts(dao, encodedQuery, collections, tracker)));
       }
 
       result.forEach(document -> constraintManager.decodeDataTypes(collectionMap.get(document.getCollectionId()), document.getData()));
 
-      return result;
+      return new Tuple<>(result, tracker.getToken());
+   }
+
+   private void checkContinuationToken(final Query query) {
+      if (query.getAfter() == null) {
+         return;
+      }
+
+      final String afterId = query.getPagination().getAfterId();
+      if (query.getPageSize() == null || afterId == null || !ObjectId.isValid(afterId)) {
+         throw new BadFormatException("Invalid continuation token " + query.getAfter());
+      }
+   }
+
+   /**
+    * Streaming variant of {@link #searchDocuments(Query)}. Data are read from database cursors in chunks and documents
+    * are passed to the consumer as soon as they are decoded, so only ids of already emitted documents are kept in memory.
+    * Stems with linked collections are still resolved one stem at a time.
+    *
+    * @param query
+    *       query to search by.
+    * @param consumer
+    *       consumer of the decoded documents, each document is passed at most once.
+    */
+   public void searchDocuments(final Query query, final Consumer<Document> consumer) {
+      checkContinuationToken(query);
+
+      final Query encodedQuery = encodeQuery(query);
+      final List<Collection> collections = getReadCollections();
+      final Map<String, Collection> collectionMap = collections.stream().collect(Collectors.toMap(Resource::getId, collection -> collection));
+      final DaoContextSnapshot dao = daoContextSnapshotFactory.getInstance();
+
+      final Set<String> emittedIds = new HashSet<>();
+      final Consumer<Document> decodingConsumer = document -> {
+         if (emittedIds.add(document.getId())) {
+            constraintManager.decodeDataTypes(collectionMap.get(document.getCollectionId()), document.getData());
+            consumer.accept(document);
+         }
+      };
+
+      if (!encodedQuery.containsStems()) {
+         for (Collection collection : collections) {
+            SearchQueryStem stem = SearchQueryStem.createBuilder(collection.getId()).fulltexts(encodedQuery.getFulltexts()).build();
+            streamStemDocuments(dao, stem, encodedQuery.getPagination(), collection, decodingConsumer);
+         }
+         return;
+      }
+
+      SearchQuery searchQuery = buildSearchQuery(encodedQuery);
+      List<LinkType> linkTypes = getQueryLinkTypes(encodedQuery);
+      List<Document> documents = getQueryDocuments(encodedQuery);
+
+      for (SearchQueryStem stem : searchQuery.getStems()) {
+         if (stem.containsLinkTypeIdsQuery()) {
+            searchDocumentsByStemWithLinks(dao, stem, searchQuery.getPagination(), collectionMap, linkTypes, documents, new ContinuationTracker(null)).forEach(decodingConsumer);
+         } else if (collectionMap.containsKey(stem.getCollectionId())) {
+            SearchQueryStem cleanedStem = cleanStemForBaseCollection(stem, documents);
+            streamStemDocuments(dao, cleanedStem, searchQuery.getPagination(), collectionMap.get(stem.getCollectionId()), decodingConsumer);
+         }
+      }
+   }
+
+   private void streamStemDocuments(final DaoContextSnapshot dao, final SearchQueryStem stem, final Pagination pagination, final Collection collection, final Consumer<Document> consumer) {
+      try (Stream<DataDocument> data = dao.getDataDao().searchDataStream(stem, pagination, collection)) {
+         final Iterator<DataDocument> iterator = data.iterator();
+         final List<DataDocument> chunk = new ArrayList<>(STREAM_CHUNK_SIZE);
+
+         while (iterator.hasNext()) {
+            chunk.add(iterator.next());
+
+            if (chunk.size() >= STREAM_CHUNK_SIZE || !iterator.hasNext()) {
+               Set<Document> chunkDocuments = convertDataDocumentsToDocuments(dao, chunk).stream()
+                                                                                         .filter(document -> document.getCollectionId().equals(collection.getId()))
+                                                                                         .collect(Collectors.toSet());
+               getChildDocuments(dao, chunkDocuments).forEach(consumer);
+               chunk.clear();
+            }
+         }
+      }
    }
 
    private List<Collection> getReadCollections() {
@@ -215,57 +346,67 @@ public class SearchFacade extends AbstractFacade {
                           .collect(Collectors.toList());
    }
 
-   private Set<Document> searchDocumentsByEmptyQuery(Query query, List<Collection> collections) {
-      List<DataDocument> data = new ArrayList<>();
-      for (Collection collection : collections) {
+   private Set<Document> searchDocumentsByEmptyQuery(DaoContextSnapshot dao, Query query, List<Collection> collections, ContinuationTracker tracker) {
+      return mergeResults(searchExecutor.map(collections, collection -> {
          SearchQueryStem stem = SearchQueryStem.createBuilder(collection.getId()).build();
-         data.addAll(dataDao.searchData(stem, query.getPagination(), collection));
-      }
+         List<Document> documents = dao.getDataDao().searchDocuments(stem, query.getPagination(), collection);
+         tracker.documentsRead(documents);
+         return new HashSet<>(documents);
+      }));
+   }
 
-      return convertDataDocumentsToDocuments(data);
+   private <T> Set<T> mergeResults(List<? extends java.util.Collection<T>> results) {
+      return results.stream().flatMap(java.util.Collection::stream).collect(Collectors.toSet());
    }
 
-   private Set<Document> convertDataDocumentsToDocuments(java.util.Collection<DataDocument> data) {
-      List<Document> documents = documentDao.getDocumentsByIds(data.stream().map(DataDocument::getId).distinct().toArray(String[]::new));
+   private Set<Document> convertDataDocumentsToDocuments(DaoContextSnapshot dao, java.util.Collection<DataDocument> data) {
+      if (data.isEmpty()) {
+         return new HashSet<>();
+      }
+      List<Document> documents = dao.getDocumentDao().getDocumentsByIds(data.stream().map(DataDocument::getId).distinct().toArray(String[]::new));
       Map<String, DataDocument> dataMap = data.stream().collect(Collectors.toMap(DataDocument::getId, Function.identity()));
       return documents.stream()
                       .peek(document -> document.setData(Objects.requireNonNullElse(dataMap.get(document.getId()), new DataDocument())))
                       .collect(Collectors.toSet());
    }
 
-   private Set<Document> searchDocumentsByStems(Query query, List<Collection> collections) {
+   private Set<Document> searchDocumentsByStems(DaoContextSnapshot dao, Query query, List<Collection> collections, ContinuationTracker tracker) {
       SearchQuery searchQuery = buildSearchQuery(query);
 
-      Set<String> linkTypeIds = query.getLinkTypeIds();
-      List<LinkType> linkTypes = !linkTypeIds.isEmpty() ? linkTypeDao.getLinkTypesByIds(linkTypeIds) : Collections.emptyList();
-
-      Set<String> documentIds = query.getDocumentsIds();
-      List<Document> documents = !documentIds.isEmpty() ? documentDao.getDocumentsByIds(documentIds.toArray(new String[0])) : Collections.emptyList();
+      List<LinkType> linkTypes = getQueryLinkTypes(query);
+      List<Document> documents = getQueryDocuments(query);
 
       Map<String, Collection> collectionsMap = collections.stream().collect(Collectors.toMap(Collection::getId, Function.identity()));
 
-      Set<Document> data = new HashSet<>();
-      for (SearchQueryStem stem : searchQuery.getStems()) {
+      return mergeResults(searchExecutor.map(searchQuery.getStems(), stem -> {
          if (stem.containsLinkTypeIdsQuery()) {
-            data.addAll(searchDocumentsByStemWithLinks(stem, searchQuery.getPagination(), collectionsMap, linkTypes, documents));
-         } else {
-            SearchQueryStem cleanedStem = cleanStemForBaseCollection(stem, documents);
+            return searchDocumentsByStemWithLinks(dao, stem, searchQuery.getPagination(), collectionsMap, linkTypes, documents, tracker);
+         }
 
-            Collection collection = collectionsMap.get(stem.getCollectionId());
-            if (collection != null) {
-               List<DataDocument> stemData = dataDao.searchData(cleanedStem, searchQuery.getPagination(), collection);
-               Set<Document> documentsByData = convertDataDocumentsToDocuments(stemData).stream()
-                                                                                        .filter(document -> document.getCollectionId().equals(stem.getCollectionId()))
-                                                                                        .collect(Collectors.toSet());
-               data.addAll(getChildDocuments(documentsByData));
-            }
+         SearchQueryStem cleanedStem = cleanStemForBaseCollection(stem, documents);
+
+         Collection collection = collectionsMap.get(stem.getCollectionId());
+         if (collection == null) {
+            return Collections.<Document>emptySet();
          }
-      }
 
-      return data;
+         List<Document> stemDocuments = dao.getDataDao().searchDocuments(cleanedStem, searchQuery.getPagination(), collection);
+         tracker.documentsRead(stemDocuments);
+         return getChildDocuments(dao, new HashSet<>(stemDocuments));
+      }));
+   }
+
+   private List<LinkType> getQueryLinkTypes(Query query) {
+      Set<String> linkTypeIds = query.getLinkTypeIds();
+      return !linkTypeIds.isEmpty() ? linkTypeDao.getLinkTypesByIds(linkTypeIds) : Collections.emptyList();
+   }
+
+   private List<Document> getQueryDocuments(Query query) {
+      Set<String> documentIds = query.getDocumentsIds();
+      return !documentIds.isEmpty() ? documentDao.getDocumentsByIds(documentIds.toArray(new String[0])) : Collections.emptyList();
    }
 
-   private Set<Document> searchDocumentsByStemWithLinks(SearchQueryStem stem, Pagination pagination, Map<String, Collection> collectionsMap, List<LinkType> linkTypes, List<Document> documents) {
+   private Set<Document> searchDocumentsByStemWithLinks(DaoContextSnapshot dao, SearchQueryStem stem, Pagination pagination, Map<String, Collection> collectionsMap, List<LinkType> linkTypes, List<Document> documents, ContinuationTracker tracker) {
       if (!collectionsMap.containsKey(stem.getCollectionId())) {
          return Collections.emptySet();
       }
@@ -273,70 +414,16 @@ public class SearchFacade extends AbstractFacade {
       SearchQueryStem baseStem = cleanStemForBaseCollection(stem, documents);
       List<SearchQueryStem> stemsPipeline = createStemsPipeline(stem, collectionsMap, linkTypes, documents);
 
-      List<DataDocument> data = dataDao.searchData(baseStem, pagination, collectionsMap.get(baseStem.getCollectionId()));
+      List<Document> baseDocuments = dao.getDataDao().searchDocuments(baseStem, pagination, collectionsMap.get(baseStem.getCollectionId()));
+      tracker.documentsRead(baseDocuments);
+      // continuation token points into the base collection only
+      Pagination stagePagination = pagination != null && pagination.isKeyset() ? null : pagination;
       // we need to add child documents only for base collection
-      Set<Document> documentsByData = convertDataDocumentsToDocuments(data);
-      documentsByData.addAll(getChildDocuments(documentsByData));
+      Set<Document> documentsByData = getChildDocuments(dao, new HashSet<>(baseDocuments));
 
       Map<String, LinkType> linkTypesMap = linkTypes.stream().collect(Collectors.toMap(LinkType::getId, lt -> lt));
-
-      Set<String> lastStageIds = documentsByData.stream().map(Document::getId).collect(Collectors.toSet());
-
-      for (int i = 0; i < stemsPipeline.size(); i++) {
-         String linkTypeId = stem.getLinkTypeIds().get(i);
-         SearchQueryStem currentStageStem = stemsPipeline.get(i);
-
-         List<LinkInstance> linkInstances = linkInstanceDao.getLinkInstancesByDocumentIds(lastStageIds, linkTypeId);
-
-         Set<String> searchedLinkInstanceIds;
-
-         if (currentStageStem.containsLinkFiltersQuery() || currentStageStem.containsFulltextsQuery()) {
-            SearchQueryStem linkSearchStem = SearchQueryStem.createBuilder(currentStageStem.getCollectionId())
-                                                            .linkInstanceIds(linkInstances.stream().map(LinkInstance::getId).collect(Collectors.toSet()))
-                                                            .linkFilters(currentStageStem.getLinkFilters())
-                                                            .fulltexts(currentStageStem.getFulltexts())
-                                                            .build();
-
-            searchedLinkInstanceIds = linkDataDao.searchData(linkSearchStem, pagination, linkTypesMap.get(linkTypeId))
-                                                 .stream().map(DataDocument::getId).collect(Collectors.toSet());
-         } else {
-            searchedLinkInstanceIds = linkInstances.stream().map(LinkInstance::getId).collect(Collectors.toSet());
-         }
-
-         final Set<String> lastStageIdsCopy = Collections.unmodifiableSet(lastStageIds);
-         Set<String> otherDocumentIds = linkInstances.stream()
-                                                     .filter(linkInstance -> searchedLinkInstanceIds.contains(linkInstance.getId()))
-                                                     .map(LinkInstance::getDocumentIds)
-                                                     .flatMap(List::stream)
-                                                     .filter(id -> !lastStageIdsCopy.contains(id))
-                                                     .collect(Collectors.toSet());
-
-         Set<String> currentDocumentsIds = new HashSet<>(currentStageStem.getDocumentIds());
-
-         if (currentStageStem.containsDocumentIdsQuery()) {
-            currentDocumentsIds.retainAll(otherDocumentIds);
-         } else {
-            currentDocumentsIds.addAll(otherDocumentIds);
-         }
-
-         if (currentDocumentsIds.isEmpty()) {
-            break; // empty ids after intersection or append represents empty search, so we should break
-         }
-
-         SearchQueryStem modifiedStem = SearchQueryStem.createBuilder(currentStageStem.getCollectionId())
-                                                       .linkTypeIds(currentStageStem.getLinkTypeIds())
-                                                       .documentIds(currentDocumentsIds)
-                                                       .filters(currentStageStem.getFilters())
-                                                       .fulltexts(currentStageStem.getFulltexts())
-                                                       .build();
-
-         List<DataDocument> currentStageData = dataDao.searchData(modifiedStem, pagination, collectionsMap.get(modifiedStem.getCollectionId()));
-         if (currentStageData.isEmpty()) {
-            break;
-         }
-         documentsByData.addAll(convertDataDocumentsToDocuments(currentStageData));
-         lastStageIds = currentStageData.stream().map(DataDocument::getId).collect(Collectors.toSet());
-      }
+      LinkedStemJoin join = new LinkedStemJoin(dao, collectionsMap, linkTypesMap);
+      documentsByData.addAll(join.join(stem.getLinkTypeIds(), stemsPipeline, documentsByData, stagePagination));
 
       return documentsByData;
    }
@@ -372,7 +459,7 @@ public class SearchFacade extends AbstractFacade {
    }
 
    private List<SearchQueryStem> createStemsPipeline(SearchQueryStem stem, Map<String, Collection> collectionsMap, List<LinkType> allLinkTypes, List<Document> allDocuments) {
-      List<SearchQueryStem> stemsPipeline = new LinkedList<>();
+      List<SearchQueryStem> stemsPipeline = new ArrayList<>();
       String lastCollectionId = stem.getCollectionId();
 
       Set<LinkType> stemLinkTypes = allLinkTypes.stream().filter(lt -> stem.getLinkTypeIds().contains(lt.getId())).collect(Collectors.toSet());
@@ -403,60 +490,72 @@ public class SearchFacade extends AbstractFacade {
       return linkType.orElse(null);
    }
 
-   private Set<Document> searchDocumentsByFulltexts(Query query, List<Collection> collections) {
-      List<DataDocument> data = dataDao.searchDataByFulltexts(query.getFulltexts(), query.getPagination(), collections);
-      return convertDataDocumentsToDocuments(data);
-   }
-
-   private Set<Document> getChildDocuments(final Set<Document> rootDocuments) {
-      return getChildDocumentsBfs(new HashSet<>(rootDocuments), rootDocuments, false);
+   private Set<Document> searchDocumentsByFulltexts(DaoContextSnapshot dao, Query query, List<Collection> collections, ContinuationTracker tracker) {
+      return mergeResults(searchExecutor.map(collections, collection -> {
+         SearchQueryStem stem = SearchQueryStem.createBuilder(collection.getId()).fulltexts(query.getFulltexts()).build();
+         List<Document> documents = dao.getDataDao().searchDocuments(stem, query.getPagination(), collection);
+         tracker.documentsRead(documents);
+         return new HashSet<>(documents);
+      }));
    }
 
-   private Set<Document> getChildDocumentsBfs(final Set<Document> result, final Set<Document> rootDocuments, boolean setData) {
+   private Set<Document> getChildDocuments(final DaoContextSnapshot dao, final Set<Document> rootDocuments) {
+      final Set<Document> result = new HashSet<>(rootDocuments);
+      Set<Document> currentLevel = rootDocuments;
+
+      // each level of the hierarchy is read together with its data in a single query per collection
+      while (!currentLevel.isEmpty()) {
+         final Map<String, Set<String>> parentIds = currentLevel.stream()
+                                                                .collect(Collectors.groupingBy(Document::getCollectionId,
+                                                                      Collectors.mapping(Document::getId, Collectors.toSet())));
+         final Set<Document> nextLevel = new HashSet<>();
+         parentIds.forEach((collectionId, ids) ->
+               dao.getDataDao().getDocumentsByParentIds(collectionId, ids).stream()
+                  .filter(document -> !result.contains(document))
+                  .forEach(nextLevel::add));
+
+         result.addAll(nextLevel);
+         currentLevel = nextLevel;
+      }
 
-      // find all document where parentId == one of root documents
-      // add root documents to result when they do not exist there
-      // add results to rootDocuments
-      // repeat while there were any results
+      return result;
+   }
 
-      List<Document> nextLevel = documentDao.getDocumentsByParentIds(
-            rootDocuments.stream()
-                         .map(Document::getId)
-                         .collect(Collectors.toSet()))
-            .stream()
-            .filter(d -> !result.contains(d))
-            .collect(Collectors.toList());
+   /**
+    * Computes the continuation token of a paginated search consisting of more independently paginated queries.
+    * Each query with a full page contributes the greatest id it has read and the smallest of them is used,
+    * so no result of any query is skipped on the next page.
+    */
+   private static class ContinuationTracker {
 
-      Set<Document> filteredDocuments = rootDocuments.stream().filter(d -> !result.contains(d))
-                                                     .collect(Collectors.toSet());
+      private final Pagination pagination;
+      private String lastId;
 
-      if (setData) {
-         Map<String, DataDocument> dataMap = getDataFromDocuments(filteredDocuments);
-         filteredDocuments.forEach(document -> document.setData(dataMap.get(document.getId())));
+      private ContinuationTracker(final Pagination pagination) {
+         this.pagination = pagination;
       }
 
-      result.addAll(filteredDocuments);
-
-      if (nextLevel.size() > 0) {
-         getChildDocumentsBfs(result, new HashSet<>(nextLevel), true);
+      private void dataRead(final List<DataDocument> data) {
+         pageRead(data.stream().map(DataDocument::getId).collect(Collectors.toList()));
       }
 
-      return result;
-   }
+      private void documentsRead(final List<Document> documents) {
+         pageRead(documents.stream().map(Document::getId).collect(Collectors.toList()));
+      }
 
-   private Map<String, DataDocument> getDataFromDocuments(Set<Document> documents) {
-      Map<String, Set<String>> collectionsDocumentsMap = documents.stream()
-                                                                  .collect(Collectors.groupingBy(Document::getCollectionId,
-                                                                        Collectors.mapping(Document::getId, Collectors.toSet())));
+      private synchronized void pageRead(final List<String> ids) {
+         if (pagination == null || !pagination.isPaginated() || ids.size() < pagination.getPageSize() || ids.isEmpty()) {
+            return;
+         }
 
-      Map<String, DataDocument> map = new HashMap<>();
-      collectionsDocumentsMap.forEach((collectionId, docIds) -> {
-         Map<String, DataDocument> dataDocuments = dataDao.getData(collectionId, docIds).stream()
-                                                          .collect(Collectors.toMap(DataDocument::getId, Function.identity()));
-         map.putAll(dataDocuments);
-      });
+         final String pageLastId = Collections.max(ids);
+         if (lastId == null || pageLastId.compareTo(lastId) < 0) {
+            lastId = pageLastId;
+         }
+      }
 
-      return map;
+      private synchronized String getToken() {
+         return Pagination.createContinuationToken(lastId);
+      }
    }
-
 }
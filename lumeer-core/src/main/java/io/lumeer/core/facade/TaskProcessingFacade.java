@@ -28,6 +28,7 @@ import io.lumeer.core.task.ContextualTaskFactory;
 import io.lumeer.core.task.FunctionTask;
 import io.lumeer.core.task.RuleTask;
 import io.lumeer.core.task.Task;
+import io.lumeer.core.task.TaskCoalescer;
 import io.lumeer.core.task.TaskExecutor;
 import io.lumeer.engine.api.event.CreateDocumentsAndLinks;
 import io.lumeer.engine.api.event.CreateDocument;
@@ -50,6 +51,7 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -65,6 +67,9 @@ public class TaskProcessingFacade {
    @Inject
    private TaskExecutor taskExecutor;
 
+   @Inject
+   private TaskCoalescer taskCoalescer;
+
    @Inject
    private ContextualTaskFactory contextualTaskFactory;
 
@@ -78,6 +83,12 @@ public class TaskProcessingFacade {
    private FunctionFacade functionFacade;
 
    public void onCreateChain(@Observes final CreateDocumentsAndLinks chain) {
+      final Map<String, List<Task>> documentTasks = new HashMap<>();
+      final List<Task> autoLinkTasks = new ArrayList<>();
+      chain.getDocuments().stream()
+           .collect(Collectors.groupingBy(Document::getCollectionId, LinkedHashMap::new, Collectors.toList()))
+           .forEach((collectionId, documents) -> createdDocumentsTasks(collectionId, documents, documentTasks, autoLinkTasks));
+
       List<Task> allTasks = new ArrayList<>();
 
       var linkOffset = 0;
@@ -88,7 +99,7 @@ public class TaskProcessingFacade {
       }
 
       for (int i = 0; i < chain.getDocuments().size(); i++) {
-         allTasks.addAll(documentCreatedTasks(chain.getDocuments().get(i)));
+         allTasks.addAll(documentTasks.getOrDefault(chain.getDocuments().get(i).getId(), Collections.emptyList()));
 
          var linkIndex = i + linkOffset;
          if (linkIndex < chain.getLinkInstances().size()) {
@@ -96,12 +107,37 @@ public class TaskProcessingFacade {
          }
       }
 
-      processTasks(allTasks.toArray(new Task[0]));
+      // automatic links of the whole batch are resolved at once after all the documents were processed
+      allTasks.addAll(autoLinkTasks);
+
+      // the documents and links of the chain depend on each other, so they are processed as a single chain in a single lane
+      processTasks(getPartitionKey(chain), allTasks.toArray(new Task[0]));
+   }
+
+   private void createdDocumentsTasks(final String collectionId, final List<Document> documents, final Map<String, List<Task>> documentTasks, final List<Task> autoLinkTasks) {
+      final Collection collection = collectionDao.getCollectionById(collectionId);
+      if (collection == null) {
+         return;
+      }
+
+      final Map<String, Rule> autoLinkRules = new LinkedHashMap<>();
+      documents.forEach(document -> {
+         final List<RuleTask> ruleTasks = createDocumentCreateRuleTasks(collection, document);
+         ruleTasks.stream().filter(ruleTask -> ruleTask.getRule().getType() == Rule.RuleType.AUTO_LINK).forEach(ruleTask -> autoLinkRules.put(ruleTask.getRuleName(), ruleTask.getRule()));
+         ruleTasks.removeIf(ruleTask -> ruleTask.getRule().getType() == Rule.RuleType.AUTO_LINK);
+         documentTasks.put(document.getId(), Arrays.asList(functionFacade.createTaskForCreatedDocument(collection, document), createOrderedRuleTask(ruleTasks)));
+      });
+
+      autoLinkRules.forEach((ruleName, rule) -> {
+         final RuleTask ruleTask = contextualTaskFactory.getInstance(RuleTask.class);
+         ruleTask.setRule(ruleName, rule, collection, documents);
+         autoLinkTasks.add(ruleTask);
+      });
    }
 
    public void onCreateDocument(@Observes final CreateDocument createDocument) {
       List<Task> tasks = documentCreatedTasks(createDocument.getDocument());
-      processTasks(tasks.toArray(new Task[0]));
+      processTasks(createDocument.getDocument().getId(), tasks.toArray(new Task[0]));
    }
 
    private List<Task> documentCreatedTasks(Document document) {
@@ -175,10 +211,23 @@ public class TaskProcessingFacade {
       return tasks.get(0);
    }
 
-   private void processTasks(Task... tasks) {
+   /**
+    * Links the tasks into a single chain and submits it. The tasks in one chain depend on each other (rules see the results of functions),
+    * chains with different partition keys are independent and can run concurrently.
+    *
+    * @param partitionKey
+    *       key used to order chains working on the same entity.
+    * @param tasks
+    *       tasks to process in the given order.
+    */
+   private void processTasks(final String partitionKey, Task... tasks) {
+      taskExecutor.submitTask(partitionKey, chainTasks(tasks));
+   }
+
+   private Task chainTasks(Task... tasks) {
       List<Task> filteredTasks = Arrays.stream(tasks).filter(Objects::nonNull).collect(Collectors.toList());
       if (filteredTasks.isEmpty()) {
-         return;
+         return null;
       }
 
       if (filteredTasks.size() > 1) {
@@ -187,7 +236,22 @@ public class TaskProcessingFacade {
          }
       }
 
-      taskExecutor.submitTask(filteredTasks.get(0));
+      return filteredTasks.get(0);
+   }
+
+   private String getPartitionKey(final CreateDocumentsAndLinks chain) {
+      if (!chain.getDocuments().isEmpty()) {
+         return chain.getDocuments().get(0).getId();
+      }
+      return !chain.getLinkInstances().isEmpty() ? getPartitionKey(chain.getLinkInstances().get(0)) : null;
+   }
+
+   // link tasks are ordered together with the tasks of the first linked document
+   private String getPartitionKey(final LinkInstance linkInstance) {
+      if (linkInstance.getDocumentIds() != null && !linkInstance.getDocumentIds().isEmpty()) {
+         return linkInstance.getDocumentIds().get(0);
+      }
+      return linkInstance.getId();
    }
 
    private void setParentForLatestTask(Task task, Task newParent) {
@@ -204,16 +268,24 @@ public class TaskProcessingFacade {
          return;
       }
 
-      FunctionTask functionTask = functionFacade.createTaskForUpdateDocument(collection, updateDocument.getOriginalDocument(), updateDocument.getDocument());
-      List<RuleTask> tasks = createDocumentUpdateRuleTasks(collection, updateDocument);
-      RuleTask ruleTask = createOrderedRuleTask(tasks);
+      final Document document = updateDocument.getDocument();
+      // rapid updates of the same document (typing, integrations) run the functions and rules just once
+      taskCoalescer.submit(getCoalesceKey(collection, document), document.getId(), updateDocument.getOriginalDocument(), originalDocument -> {
+         FunctionTask functionTask = functionFacade.createTaskForUpdateDocument(collection, originalDocument, document);
+         List<RuleTask> tasks = createDocumentUpdateRuleTasks(collection, originalDocument, document);
+         RuleTask ruleTask = createOrderedRuleTask(tasks);
 
-      processTasks(functionTask, ruleTask);
+         return chainTasks(functionTask, ruleTask);
+      });
    }
 
-   private List<RuleTask> createDocumentUpdateRuleTasks(final Collection collection, final UpdateDocument updateDocument) {
-      if (updateDocument.getOriginalDocument() != null && updateDocument.getDocument() != null) {
-         return createRuleTasks(collection, updateDocument.getOriginalDocument(), updateDocument.getDocument(), Arrays.asList(Rule.RuleTiming.UPDATE, Rule.RuleTiming.CREATE_UPDATE, Rule.RuleTiming.UPDATE_DELETE, Rule.RuleTiming.ALL));
+   private String getCoalesceKey(final Collection collection, final Document document) {
+      return collection.getId() + "/" + document.getId();
+   }
+
+   private List<RuleTask> createDocumentUpdateRuleTasks(final Collection collection, final Document originalDocument, final Document document) {
+      if (originalDocument != null && document != null) {
+         return createRuleTasks(collection, originalDocument, document, Arrays.asList(Rule.RuleTiming.UPDATE, Rule.RuleTiming.CREATE_UPDATE, Rule.RuleTiming.UPDATE_DELETE, Rule.RuleTiming.ALL));
       }
       return Collections.emptyList();
    }
@@ -231,11 +303,13 @@ public class TaskProcessingFacade {
          return;
       }
 
+      taskCoalescer.cancel(getCoalesceKey(collection, removeDocument.getDocument()));
+
       FunctionTask functionTask = functionFacade.createTaskForRemovedDocument(collection, removeDocument.getDocument());
       List<RuleTask> tasks = createDocumentRemoveRuleTasks(collection, removeDocument);
       RuleTask ruleTask = createOrderedRuleTask(tasks);
 
-      processTasks(functionTask, ruleTask);
+      processTasks(removeDocument.getDocument().getId(), functionTask, ruleTask);
    }
 
    private List<RuleTask> createDocumentRemoveRuleTasks(final Collection collection, final RemoveDocument removeDocument) {
@@ -254,7 +328,7 @@ public class TaskProcessingFacade {
 
    public void onCreateLink(@Observes final CreateLinkInstance createLinkEvent) {
       List<Task> tasks = linkCreatedTasks(createLinkEvent.getLinkInstance());
-      processTasks(tasks.toArray(new Task[0]));
+      processTasks(getPartitionKey(createLinkEvent.getLinkInstance()), tasks.toArray(new Task[0]));
    }
 
    private List<Task> linkCreatedTasks(LinkInstance linkInstance) {
@@ -288,7 +362,7 @@ public class TaskProcessingFacade {
       List<RuleTask> tasks = createLinkInstanceUpdateRuleTasks(linkType, updateLinkEvent);
       RuleTask ruleTask = createOrderedRuleTask(tasks);
 
-      processTasks(functionTask, ruleTask);
+      processTasks(getPartitionKey(updateLinkEvent.getLinkInstance()), functionTask, ruleTask);
    }
 
    public void onRemoveLink(@Observes final RemoveLinkInstance removeLinkInstanceEvent) {
@@ -301,7 +375,7 @@ public class TaskProcessingFacade {
       List<RuleTask> tasks = createLinkInstanceRemoveRuleTasks(linkType, removeLinkInstanceEvent);
       RuleTask ruleTask = createOrderedRuleTask(tasks);
 
-      processTasks(functionTask, ruleTask);
+      processTasks(getPartitionKey(removeLinkInstanceEvent.getLinkInstance()), functionTask, ruleTask);
    }
 
    public void onUpdateCollection(@Observes final UpdateResource updateResource) {
@@ -320,7 +394,7 @@ public class TaskProcessingFacade {
       attributesDiff.getCreatedFunction().forEach(attribute -> tasks.add(functionFacade.createTaskForCreatedFunction(current, attribute)));
       attributesDiff.getUpdatedFunction().forEach(attribute -> tasks.add(functionFacade.createTaskForUpdatedFunction(current, attribute)));
 
-      processTasks(tasks.toArray(new Task[0]));
+      processTasks(current.getId(), tasks.toArray(new Task[0]));
    }
 
    public void onRemoveCollection(@Observes final RemoveResource removeResource) {
@@ -346,7 +420,7 @@ public class TaskProcessingFacade {
       attributesDiff.getCreatedFunction().forEach(attribute -> tasks.add(functionFacade.createTaskForCreatedLinkFunction(updateLinkType.getLinkType(), attribute)));
       attributesDiff.getUpdatedFunction().forEach(attribute -> tasks.add(functionFacade.createTaskForUpdatedLinkFunction(updateLinkType.getLinkType(), attribute)));
 
-      processTasks(tasks.toArray(new Task[0]));
+      processTasks(linkTypeId, tasks.toArray(new Task[0]));
    }
 
    public void onRemoveLinkType(@Observes final RemoveLinkType removeLinkType) {
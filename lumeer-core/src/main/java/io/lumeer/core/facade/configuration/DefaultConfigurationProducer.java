@@ -74,6 +74,30 @@ public class DefaultConfigurationProducer implements Serializable {
 
    public static final String LOCALE = "locale";
 
+   public static final String SEARCH_PARALLELISM = "search_parallelism";
+   public static final String SEARCH_THREADS = "search_threads";
+
+   public static final String JS_TIME_LIMIT = "js_time_limit";
+   public static final String JS_STATEMENT_LIMIT = "js_statement_limit";
+
+   public static final String TASK_LANES = "task_lanes";
+   public static final String TASK_QUEUE_LIMIT = "task_queue_limit";
+   public static final String TASK_COALESCE_WINDOW = "task_coalesce_window";
+   public static final String TASK_QUEUE_DURABLE = "task_queue_durable";
+   public static final String TASK_QUEUE_LEASE = "task_queue_lease";
+   public static final String TASK_QUEUE_ATTEMPTS = "task_queue_attempts";
+   public static final String TASK_QUEUE_POLL_INTERVAL = "task_queue_poll_interval";
+   public static final String TASK_QUEUE_DEAD_LETTER_RETENTION = "task_queue_dead_letter_retention";
+
+   public static final String WEBHOOK_CONCURRENCY = "webhook_concurrency";
+   public static final String WEBHOOK_TIMEOUT = "webhook_timeout";
+   public static final String WEBHOOK_ATTEMPTS = "webhook_attempts";
+   public static final String WEBHOOK_BATCH_WINDOW = "webhook_batch_window";
+
+   public static final String PUSH_WINDOW = "push_window";
+   public static final String PUSH_ATTEMPTS = "push_attempts";
+   public static final String PUSH_PATCHES = "push_patches";
+
    public static final String TEMPLATE_ORG_EN = "template_org_en";
    public static final String TEMPLATE_ORG_CS = "template_org_cs";
 
@@ -106,4 +130,26 @@ public class DefaultConfigurationProducer implements Serializable {
    public String get(final String key) {
       return defaultConfiguration.get(key);
    }
+
+   /**
+    * Returns the numeric value of the key, values below the minimum are raised to it.
+    * The default value is returned when the key is not set or its value is not a number.
+    */
+   public long getLong(final String key, final long defaultValue, final long minValue) {
+      final String value = get(key);
+      if (value == null) {
+         return defaultValue;
+      }
+
+      try {
+         return Math.max(minValue, Long.parseLong(value.trim()));
+      } catch (NumberFormatException e) {
+         log.log(Level.WARNING, String.format("Invalid value of %s: %s", key, value));
+         return defaultValue;
+      }
+   }
+
+   public int getInt(final String key, final int defaultValue, final int minValue) {
+      return (int) Math.min(Integer.MAX_VALUE, getLong(key, defaultValue, minValue));
+   }
 }
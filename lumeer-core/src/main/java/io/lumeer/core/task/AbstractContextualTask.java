@@ -30,7 +30,7 @@ import io.lumeer.core.constraint.AbstractConstraintConverter;
 import io.lumeer.core.facade.FunctionFacade;
 import io.lumeer.core.facade.PusherFacade;
 import io.lumeer.core.task.executor.JsExecutor;
-import io.lumeer.core.util.PusherClient;
+import io.lumeer.core.util.PushNotificationOutbox;
 import io.lumeer.storage.api.dao.context.DaoContextSnapshot;
 
 import org.marvec.pusher.data.BackupDataEvent;
@@ -49,15 +49,15 @@ public abstract class AbstractContextualTask implements ContextualTask {
 
    protected User initiator;
    protected DaoContextSnapshot daoContextSnapshot;
-   protected PusherClient pusherClient;
+   protected PushNotificationOutbox pushNotificationOutbox;
    protected Task parent;
    protected RequestDataKeeper requestDataKeeper;
 
    @Override
-   public ContextualTask initialize(final User initiator, final DaoContextSnapshot daoContextSnapshot, final PusherClient pusherClient, final RequestDataKeeper requestDataKeeper) {
+   public ContextualTask initialize(final User initiator, final DaoContextSnapshot daoContextSnapshot, final PushNotificationOutbox pushNotificationOutbox, final RequestDataKeeper requestDataKeeper) {
       this.initiator = initiator;
       this.daoContextSnapshot = daoContextSnapshot;
-      this.pusherClient = pusherClient;
+      this.pushNotificationOutbox = pushNotificationOutbox;
       this.requestDataKeeper = requestDataKeeper;
 
       return this;
@@ -69,8 +69,8 @@ public abstract class AbstractContextualTask implements ContextualTask {
    }
 
    @Override
-   public PusherClient getPusherClient() {
-      return pusherClient;
+   public PushNotificationOutbox getPushNotificationOutbox() {
+      return pushNotificationOutbox;
    }
 
    @Override
@@ -90,24 +90,22 @@ public abstract class AbstractContextualTask implements ContextualTask {
 
    @Override
    public void sendPushNotifications(final Collection collection) {
-      if (getPusherClient() != null) {
+      if (getPushNotificationOutbox() != null) {
          final Set<String> users = getDaoContextSnapshot().getCollectionManagers(collection.getId());
          final List<Event> events = users.stream().map(user -> createEventForCollection(collection, user)).collect(Collectors.toList());
 
-         getPusherClient().trigger(events);
+         getPushNotificationOutbox().enqueue(events);
       }
    }
 
    @Override
    public void sendPushNotifications(final LinkType linkType) {
-      if (getPusherClient() != null) {
+      if (getPushNotificationOutbox() != null) {
          linkType.setLinksCount(getDaoContextSnapshot().getLinkInstanceDao().getLinkInstancesCountByLinkType(linkType.getId()));
-         final Set<String> users1 = getDaoContextSnapshot().getCollectionReaders(linkType.getCollectionIds().get(0));
-         final Set<String> users2 = getDaoContextSnapshot().getCollectionReaders(linkType.getCollectionIds().get(1));
-         final Set<String> users = users1.stream().filter(users2::contains).collect(Collectors.toSet());
+         final Set<String> users = getDaoContextSnapshot().getLinkTypeReaders(linkType.getId());
          final List<Event> events = users.stream().map(user -> createEventForLinkType(linkType, user)).collect(Collectors.toList());
 
-         getPusherClient().trigger(events);
+         getPushNotificationOutbox().enqueue(events);
       }
    }
 
@@ -156,17 +154,15 @@ public abstract class AbstractContextualTask implements ContextualTask {
          collectionEvents.add(createEventForCollection(collection, userId));
       });
 
-      getPusherClient().trigger(events);
-      getPusherClient().trigger(collectionEvents);
+      getPushNotificationOutbox().enqueue(events);
+      getPushNotificationOutbox().enqueue(collectionEvents);
    }
 
    @Override
    public void sendPushNotifications(final LinkType linkType, final List<LinkInstance> linkInstances) {
       if (linkType.getCollectionIds().size() == 2) {
          linkType.setLinksCount(getDaoContextSnapshot().getLinkInstanceDao().getLinkInstancesCountByLinkType(linkType.getId()));
-         final Set<String> users1 = getDaoContextSnapshot().getCollectionReaders(linkType.getCollectionIds().get(0));
-         final Set<String> users2 = getDaoContextSnapshot().getCollectionReaders(linkType.getCollectionIds().get(1));
-         final Set<String> users = users1.stream().filter(users2::contains).collect(Collectors.toSet());
+         final Set<String> users = getDaoContextSnapshot().getLinkTypeReaders(linkType.getId());
 
          final List<Event> events = new ArrayList<>();
          final List<Event> linkInstanceEvents = new ArrayList<>();
@@ -176,8 +172,8 @@ public abstract class AbstractContextualTask implements ContextualTask {
             linkInstanceEvents.add(createEventForLinkType(linkType, userId));
          });
 
-         getPusherClient().trigger(events);
-         getPusherClient().trigger(linkInstanceEvents);
+         getPushNotificationOutbox().enqueue(events);
+         getPushNotificationOutbox().enqueue(linkInstanceEvents);
       }
    }
 
@@ -192,7 +188,7 @@ public abstract class AbstractContextualTask implements ContextualTask {
          events.add(createEventForSequence(sequence, manager));
       });
 
-      getPusherClient().trigger(events);
+      getPushNotificationOutbox().enqueue(events);
    }
 
    @Override
@@ -225,7 +221,7 @@ public abstract class AbstractContextualTask implements ContextualTask {
       public <T extends ContextualTask> T getInstance(final Class<T> clazz) {
          try {
             T t = clazz.getConstructor().newInstance();
-            t.initialize(getInitiator(), getDaoContextSnapshot(), getPusherClient(), new RequestDataKeeper(requestDataKeeper));
+            t.initialize(getInitiator(), getDaoContextSnapshot(), getPushNotificationOutbox(), new RequestDataKeeper(requestDataKeeper));
 
             return t;
          } catch (Exception e) {
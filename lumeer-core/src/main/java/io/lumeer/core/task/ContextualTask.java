@@ -25,7 +25,7 @@ import io.lumeer.api.model.LinkType;
 import io.lumeer.api.model.User;
 import io.lumeer.core.auth.RequestDataKeeper;
 import io.lumeer.core.facade.FunctionFacade;
-import io.lumeer.core.util.PusherClient;
+import io.lumeer.core.util.PushNotificationOutbox;
 import io.lumeer.storage.api.dao.context.DaoContextSnapshot;
 
 import java.util.List;
@@ -33,10 +33,10 @@ import java.util.logging.Level;
 
 public interface ContextualTask extends Task {
 
-   ContextualTask initialize(final User initiator, final DaoContextSnapshot daoContextSnapshot, final PusherClient pusherClient, final RequestDataKeeper requestDataKeeper);
+   ContextualTask initialize(final User initiator, final DaoContextSnapshot daoContextSnapshot, final PushNotificationOutbox pushNotificationOutbox, final RequestDataKeeper requestDataKeeper);
 
    DaoContextSnapshot getDaoContextSnapshot();
-   PusherClient getPusherClient();
+   PushNotificationOutbox getPushNotificationOutbox();
    User getInitiator();
 
    /**
@@ -92,18 +92,18 @@ public class FunctionTask extends AbstractContextualTask {
    @Override
    public void process(final TaskExecutor taskExecutor) {
       if (documents != null && collection != null) {
-         getDocumentsWithData(collection, documents).forEach(document -> {
-            final FunctionTaskExecutor executor = new FunctionTaskExecutor(this, collection, document);
-            executor.execute();
-         });
+         final Set<Document> documentsWithData = getDocumentsWithData(collection, documents);
+         if (!documentsWithData.isEmpty()) {
+            new FunctionTaskExecutor(this, collection, documentsWithData).execute(taskExecutor.getJsWatchdog());
+         }
       } else if (linkType != null && linkInstances != null) {
-         getLinkInstancesWithData(linkType, linkInstances).forEach(linkInstance -> {
-            final FunctionTaskExecutor executor = new FunctionTaskExecutor(this, linkType, linkInstance);
-            executor.execute();
-         });
+         final Set<LinkInstance> linkInstancesWithData = getLinkInstancesWithData(linkType, linkInstances);
+         if (!linkInstancesWithData.isEmpty()) {
+            new FunctionTaskExecutor(this, linkType, linkInstancesWithData).execute(taskExecutor.getJsWatchdog());
+         }
       }
 
-      if (parent != null) {
+      if (parent != null && taskExecutor.proceed()) {
          parent.process(taskExecutor);
       }
    }
@@ -27,6 +27,8 @@ import io.lumeer.core.task.executor.AutoLinkRuleTaskExecutor;
 import io.lumeer.core.task.executor.BlocklyRuleTaskExecutor;
 import io.lumeer.core.task.executor.ZapierRuleTaskExecutor;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 public class RuleTask extends AbstractContextualTask {
@@ -37,6 +39,7 @@ public class RuleTask extends AbstractContextualTask {
    private LinkType linkType;
    private Document oldDocument;
    private Document newDocument;
+   private List<Document> newDocuments;
    private LinkInstance oldLinkInstance;
    private LinkInstance newLinkInstance;
 
@@ -47,10 +50,20 @@ public class RuleTask extends AbstractContextualTask {
       this.linkType = null;
       this.oldDocument = oldDocument;
       this.newDocument = newDocument;
+      this.newDocuments = null;
       this.oldLinkInstance = null;
       this.newLinkInstance = null;
    }
 
+   /**
+    * Sets a rule to be evaluated on a batch of documents created at once, so executors able to handle
+    * all of them together do not need to run once per document.
+    */
+   public void setRule(final String ruleName, final Rule rule, final Collection collection, final List<Document> newDocuments) {
+      setRule(ruleName, rule, collection, null, newDocuments.isEmpty() ? null : newDocuments.get(0));
+      this.newDocuments = new ArrayList<>(newDocuments);
+   }
+
    public void setRule(final String ruleName, final Rule rule, final LinkType linkType, final LinkInstance oldLinkInstance, final LinkInstance newLinkInstance) {
       this.ruleName = ruleName;
       this.rule = rule;
@@ -58,6 +71,7 @@ public class RuleTask extends AbstractContextualTask {
       this.linkType = linkType;
       this.oldDocument = null;
       this.newDocument = null;
+      this.newDocuments = null;
       this.oldLinkInstance = oldLinkInstance;
       this.newLinkInstance = newLinkInstance;
    }
@@ -70,20 +84,24 @@ public class RuleTask extends AbstractContextualTask {
    public void process(final TaskExecutor taskExecutor) {
       if (rule.getType() == Rule.RuleType.BLOCKLY) {
          final BlocklyRuleTaskExecutor executor = new BlocklyRuleTaskExecutor(ruleName, this);
-         executor.execute();
+         executor.execute(taskExecutor.getJsWatchdog());
       } else if (rule.getType() == Rule.RuleType.AUTO_LINK) {
          final AutoLinkRuleTaskExecutor executor = new AutoLinkRuleTaskExecutor(ruleName, this);
          executor.execute(taskExecutor);
       } else if (rule.getType() == Rule.RuleType.ZAPIER) {
          final ZapierRuleTaskExecutor executor = new ZapierRuleTaskExecutor(ruleName, this);
-         executor.execute();
+         executor.execute(taskExecutor.getWebhookDispatcher());
       }
 
-      if (parent != null) {
+      if (parent != null && taskExecutor.proceed()) {
          parent.process(taskExecutor);
       }
    }
 
+   public String getRuleName() {
+      return ruleName;
+   }
+
    public Rule getRule() {
       return rule;
    }
@@ -104,6 +122,17 @@ public class RuleTask extends AbstractContextualTask {
       return newDocument;
    }
 
+   public boolean isBatch() {
+      return newDocuments != null;
+   }
+
+   public List<Document> getNewDocuments() {
+      if (newDocuments != null) {
+         return newDocuments;
+      }
+      return newDocument != null ? Collections.singletonList(newDocument) : Collections.emptyList();
+   }
+
    public LinkInstance getOldLinkInstance() {
       return oldLinkInstance;
    }
@@ -121,6 +150,7 @@ public class RuleTask extends AbstractContextualTask {
             ", linkType=" + linkType +
             ", oldDocument=" + oldDocument +
             ", newDocument=" + newDocument +
+            ", newDocuments=" + newDocuments +
             ", oldLinkInstance=" + oldLinkInstance +
             ", newLinkInstance=" + newLinkInstance +
             '}';
@@ -135,6 +165,13 @@ public class RuleTask extends AbstractContextualTask {
          }
       }
 
+      if (documents != null && newDocuments != null) {
+         newDocuments.replaceAll(document -> {
+            int idx = documents.indexOf(document);
+            return idx >= 0 ? documents.get(idx) : document;
+         });
+      }
+
       if (links != null && newLinkInstance != null) {
          int idx = links.indexOf(newLinkInstance);
          if (idx >= 0) {
@@ -0,0 +1,150 @@
+/*
+ * Lumeer: Modern Data Definition and Processing Platform
+ *
+ * Copyright (C) since 2017 Lumeer.io, s.r.o. and/or its affiliates.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.lumeer.core.task;
+
+import io.lumeer.core.facade.configuration.DefaultConfigurationProducer;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Function;
+import javax.annotation.PostConstruct;
+import javax.enterprise.concurrent.ManagedExecutorService;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+
+/**
+ * Fans independent search queries (typically one per collection or query stem) out to the managed executor.
+ * The calling thread always takes part in the work, so a search never waits for a free executor thread,
+ * and the number of helper threads is bounded both per search and globally.
+ * Functions passed here run outside of any CDI scope, so they must only use objects created from
+ * a {@link io.lumeer.storage.api.dao.context.DaoContextSnapshot}.
+ */
+@ApplicationScoped
+public class SearchExecutor {
+
+   private static final int DEFAULT_PARALLELISM = 4;
+   private static final int DEFAULT_THREADS = 16;
+
+   @Inject
+   private ManagedExecutorService executorService;
+
+   @Inject
+   private DefaultConfigurationProducer configurationProducer;
+
+   private int parallelism;
+   private Semaphore threads;
+
+   @PostConstruct
+   public void init() {
+      parallelism = configurationProducer.getInt(DefaultConfigurationProducer.SEARCH_PARALLELISM, DEFAULT_PARALLELISM, 1);
+      threads = new Semaphore(configurationProducer.getInt(DefaultConfigurationProducer.SEARCH_THREADS, DEFAULT_THREADS, 1));
+   }
+
+   public int getParallelism() {
+      return parallelism;
+   }
+
+   /**
+    * Applies the function to all items, possibly in parallel.
+    *
+    * @param items
+    *       items to process.
+    * @param function
+    *       function to apply on each item, must not use request scoped beans.
+    * @param <T>
+    *       type of the items.
+    * @param <R>
+    *       type of the results.
+    * @return results in the order of the items.
+    */
+   public <T, R> List<R> map(final Collection<T> items, final Function<T, R> function) {
+      final List<T> input = new ArrayList<>(items);
+      final AtomicReferenceArray<R> results = new AtomicReferenceArray<>(input.size());
+      final ConcurrentLinkedQueue<Integer> queue = new ConcurrentLinkedQueue<>();
+      for (int i = 0; i < input.size(); i++) {
+         queue.add(i);
+      }
+
+      final Runnable worker = () -> {
+         Integer index;
+         while ((index = queue.poll()) != null) {
+            results.set(index, function.apply(input.get(index)));
+         }
+      };
+
+      final List<Future<?>> helpers = new ArrayList<>();
+      final List<AtomicBoolean> claims = new ArrayList<>();
+      final int helpersCount = Math.min(parallelism, input.size()) - 1;
+      for (int i = 0; i < helpersCount && threads.tryAcquire(); i++) {
+         final AtomicBoolean claim = new AtomicBoolean(false);
+         try {
+            helpers.add(executorService.submit(() -> {
+               try {
+                  if (claim.compareAndSet(false, true)) {
+                     worker.run();
+                  }
+               } finally {
+                  threads.release();
+               }
+            }));
+            claims.add(claim);
+         } catch (RejectedExecutionException e) {
+            threads.release();
+            break;
+         }
+      }
+
+      worker.run();
+
+      for (int i = 0; i < helpers.size(); i++) {
+         // helpers that did not start yet have nothing to do anymore, they just return the thread permit once started
+         if (!claims.get(i).compareAndSet(false, true)) {
+            waitFor(helpers.get(i));
+         }
+      }
+
+      final List<R> result = new ArrayList<>(input.size());
+      for (int i = 0; i < input.size(); i++) {
+         result.add(results.get(i));
+      }
+      return result;
+   }
+
+   private void waitFor(final Future<?> future) {
+      try {
+         future.get();
+      } catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+         throw new IllegalStateException("Search has been interrupted.", e);
+      } catch (ExecutionException e) {
+         if (e.getCause() instanceof RuntimeException) {
+            throw (RuntimeException) e.getCause();
+         }
+         throw new IllegalStateException("Search has failed.", e.getCause());
+      }
+   }
+}
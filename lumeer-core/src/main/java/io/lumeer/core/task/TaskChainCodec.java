@@ -0,0 +1,375 @@
+/*
+ * Lumeer: Modern Data Definition and Processing Platform
+ *
+ * Copyright (C) since 2017 Lumeer.io, s.r.o. and/or its affiliates.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.lumeer.core.task;
+
+import io.lumeer.api.model.Attribute;
+import io.lumeer.api.model.Collection;
+import io.lumeer.api.model.Document;
+import io.lumeer.api.model.LinkInstance;
+import io.lumeer.api.model.LinkType;
+import io.lumeer.api.model.Rule;
+import io.lumeer.engine.api.data.DataDocument;
+import io.lumeer.storage.api.dao.context.DaoContextSnapshot;
+
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * Converts chains of function and rule tasks to documents that can be stored in the task queue and back.
+ * Resources and documents processed by functions are stored by their ids and read again when the chain is restored,
+ * rules keep the snapshots of the changed documents and links they were created for. A chain is stored just once,
+ * a partially processed chain is restored without the tasks that have already been processed.
+ */
+final class TaskChainCodec {
+
+   static final String TASKS = "tasks";
+
+   private static final String TYPE = "type";
+   private static final String TYPE_FUNCTION = "function";
+   private static final String TYPE_RULE = "rule";
+   private static final String ATTRIBUTE_ID = "attributeId";
+   private static final String RULE_NAME = "ruleName";
+   private static final String COLLECTION_ID = "collectionId";
+   private static final String LINK_TYPE_ID = "linkTypeId";
+   private static final String DOCUMENT_IDS = "documentIds";
+   private static final String LINK_INSTANCE_IDS = "linkInstanceIds";
+   private static final String OLD_DOCUMENT = "oldDocument";
+   private static final String NEW_DOCUMENT = "newDocument";
+   private static final String NEW_DOCUMENTS = "newDocuments";
+   private static final String OLD_LINK_INSTANCE = "oldLinkInstance";
+   private static final String NEW_LINK_INSTANCE = "newLinkInstance";
+   private static final String ID = "id";
+   private static final String DATA = "data";
+   private static final String META_DATA = "metaData";
+   private static final String DATA_VERSION = "dataVersion";
+   private static final String CREATION_DATE = "creationDate";
+   private static final String UPDATE_DATE = "updateDate";
+   private static final String CREATED_BY = "createdBy";
+   private static final String UPDATED_BY = "updatedBy";
+
+   private TaskChainCodec() {
+   }
+
+   /**
+    * Encodes the whole chain starting with the given task.
+    *
+    * @param chain
+    *       first task of the chain.
+    * @return encoded chain or null when the chain contains a task that cannot be encoded.
+    */
+   static DataDocument encode(final Task chain) {
+      final List<DataDocument> tasks = new ArrayList<>();
+      Task task = chain;
+      while (task != null) {
+         if (task instanceof FunctionTask) {
+            tasks.add(encodeFunctionTask((FunctionTask) task));
+         } else if (task instanceof RuleTask) {
+            tasks.add(encodeRuleTask((RuleTask) task));
+         } else {
+            return null;
+         }
+         task = task.getParent();
+      }
+
+      return new DataDocument(TASKS, tasks);
+   }
+
+   private static DataDocument encodeFunctionTask(final FunctionTask task) {
+      final DataDocument encoded = new DataDocument(TYPE, TYPE_FUNCTION)
+            .append(ATTRIBUTE_ID, task.getAttribute() != null ? task.getAttribute().getId() : null);
+      if (task.getCollection() != null) {
+         encoded.append(COLLECTION_ID, task.getCollection().getId())
+                .append(DOCUMENT_IDS, task.getDocuments() != null ? task.getDocuments().stream().map(Document::getId).collect(Collectors.toList()) : null);
+      } else if (task.getLinkType() != null) {
+         encoded.append(LINK_TYPE_ID, task.getLinkType().getId())
+                .append(LINK_INSTANCE_IDS, task.getLinkInstances() != null ? task.getLinkInstances().stream().map(LinkInstance::getId).collect(Collectors.toList()) : null);
+      }
+      return encoded;
+   }
+
+   private static DataDocument encodeRuleTask(final RuleTask task) {
+      final DataDocument encoded = new DataDocument(TYPE, TYPE_RULE).append(RULE_NAME, task.getRuleName());
+      if (task.isCollectionBased() && task.isBatch()) {
+         encoded.append(COLLECTION_ID, task.getCollection().getId())
+                .append(NEW_DOCUMENTS, task.getNewDocuments().stream().map(TaskChainCodec::encodeDocument).collect(Collectors.toList()));
+      } else if (task.isCollectionBased()) {
+         encoded.append(COLLECTION_ID, task.getCollection().getId())
+                .append(OLD_DOCUMENT, encodeDocument(task.getOldDocument()))
+                .append(NEW_DOCUMENT, encodeDocument(task.getNewDocument()));
+      } else if (task.getLinkType() != null) {
+         encoded.append(LINK_TYPE_ID, task.getLinkType().getId())
+                .append(OLD_LINK_INSTANCE, encodeLinkInstance(task.getOldLinkInstance()))
+                .append(NEW_LINK_INSTANCE, encodeLinkInstance(task.getNewLinkInstance()));
+      }
+      return encoded;
+   }
+
+   private static DataDocument encodeDocument(final Document document) {
+      if (document == null) {
+         return null;
+      }
+      return new DataDocument(ID, document.getId())
+            .append(COLLECTION_ID, document.getCollectionId())
+            .append(DATA, document.getData())
+            .append(META_DATA, document.getMetaData())
+            .append(DATA_VERSION, document.getDataVersion())
+            .append(CREATION_DATE, encodeDate(document.getCreationDate()))
+            .append(UPDATE_DATE, encodeDate(document.getUpdateDate()))
+            .append(CREATED_BY, document.getCreatedBy())
+            .append(UPDATED_BY, document.getUpdatedBy());
+   }
+
+   private static DataDocument encodeLinkInstance(final LinkInstance linkInstance) {
+      if (linkInstance == null) {
+         return null;
+      }
+      return new DataDocument(ID, linkInstance.getId())
+            .append(LINK_TYPE_ID, linkInstance.getLinkTypeId())
+            .append(DOCUMENT_IDS, linkInstance.getDocumentIds())
+            .append(DATA, linkInstance.getData())
+            .append(DATA_VERSION, linkInstance.getDataVersion())
+            .append(CREATION_DATE, encodeDate(linkInstance.getCreationDate()))
+            .append(UPDATE_DATE, encodeDate(linkInstance.getUpdateDate()))
+            .append(CREATED_BY, linkInstance.getCreatedBy())
+            .append(UPDATED_BY, linkInstance.getUpdatedBy());
+   }
+
+   private static Date encodeDate(final ZonedDateTime date) {
+      return date != null ? Date.from(date.toInstant()) : null;
+   }
+
+   private static ZonedDateTime decodeDate(final Object date) {
+      return date instanceof Date ? ZonedDateTime.ofInstant(((Date) date).toInstant(), ZoneOffset.UTC) : null;
+   }
+
+   /**
+    * Restores the chain of tasks. Tasks whose resources do not exist anymore are left out.
+    * When some tasks have already been processed, the new snapshots of the rest of the rules are read again,
+    * so that they include the changes made by the processed tasks.
+    *
+    * @param encoded
+    *       encoded chain.
+    * @param completedTasks
+    *       number of tasks at the beginning of the chain that have already been processed.
+    * @param snapshot
+    *       context used to read the resources and documents.
+    * @param initializer
+    *       initializes the context of each restored task.
+    * @return the first task of the restored chain or null when there is nothing to process.
+    */
+   static Task decode(final DataDocument encoded, final int completedTasks, final DaoContextSnapshot snapshot, final Consumer<ContextualTask> initializer) {
+      final List<DataDocument> encodedTasks = encoded.getArrayList(TASKS, DataDocument.class);
+      final List<Task> tasks = new ArrayList<>();
+      final boolean refresh = completedTasks > 0;
+
+      boolean restored = false;
+      for (DataDocument encodedTask : encodedTasks.subList(Math.min(completedTasks, encodedTasks.size()), encodedTasks.size())) {
+         final ContextualTask task = TYPE_FUNCTION.equals(encodedTask.getString(TYPE)) ? decodeFunctionTask(encodedTask, snapshot) : decodeRuleTask(encodedTask, snapshot, refresh);
+         if (task != null) {
+            initializer.accept(task);
+            tasks.add(task);
+            restored = true;
+         } else {
+            // keeps the positions of the following tasks, the processed tasks of the stored chain are counted by positions
+            tasks.add(new RemovedTask());
+         }
+      }
+
+      for (int i = 1; i < tasks.size(); i++) {
+         tasks.get(i - 1).setParent(tasks.get(i));
+      }
+
+      return restored ? tasks.get(0) : null;
+   }
+
+   private static FunctionTask decodeFunctionTask(final DataDocument encoded, final DaoContextSnapshot snapshot) {
+      final String attributeId = encoded.getString(ATTRIBUTE_ID);
+      final FunctionTask task = new FunctionTask();
+
+      if (encoded.getString(COLLECTION_ID) != null) {
+         final Collection collection = findCollection(snapshot, encoded.getString(COLLECTION_ID));
+         final Attribute attribute = collection != null ? findAttribute(collection.getAttributes(), attributeId) : null;
+         if (attribute == null) {
+            return null;
+         }
+         final List<String> documentIds = encoded.getArrayList(DOCUMENT_IDS, String.class);
+         final Set<Document> documents = documentIds.isEmpty() ? new HashSet<>() : new HashSet<>(snapshot.getDocumentDao().getDocumentsByIds(documentIds.toArray(new String[0])));
+         task.setFunctionTask(attribute, collection, documents, null);
+      } else if (encoded.getString(LINK_TYPE_ID) != null) {
+         final LinkType linkType = findLinkType(snapshot, encoded.getString(LINK_TYPE_ID));
+         final Attribute attribute = linkType != null ? findAttribute(linkType.getAttributes(), attributeId) : null;
+         if (attribute == null) {
+            return null;
+         }
+         final Set<String> linkInstanceIds = new HashSet<>(encoded.getArrayList(LINK_INSTANCE_IDS, String.class));
+         final Set<LinkInstance> linkInstances = linkInstanceIds.isEmpty() ? new HashSet<>() : new HashSet<>(snapshot.getLinkInstanceDao().getLinkInstances(linkInstanceIds));
+         task.setFunctionTask(attribute, linkType, linkInstances, null);
+      } else {
+         return null;
+      }
+
+      return task;
+   }
+
+   // the resource could have been removed before the chain is restored
+   private static Collection findCollection(final DaoContextSnapshot snapshot, final String collectionId) {
+      return snapshot.getCollectionDao().getCollectionsByIds(List.of(collectionId)).stream().findFirst().orElse(null);
+   }
+
+   private static LinkType findLinkType(final DaoContextSnapshot snapshot, final String linkTypeId) {
+      return snapshot.getLinkTypeDao().getLinkTypesByIds(Set.of(linkTypeId)).stream().findFirst().orElse(null);
+   }
+
+   private static Attribute findAttribute(final java.util.Collection<Attribute> attributes, final String attributeId) {
+      if (attributes == null) {
+         return null;
+      }
+      return attributes.stream().filter(attribute -> attribute.getId().equals(attributeId)).findFirst().orElse(null);
+   }
+
+   private static RuleTask decodeRuleTask(final DataDocument encoded, final DaoContextSnapshot snapshot, final boolean refresh) {
+      final String ruleName = encoded.getString(RULE_NAME);
+      final RuleTask task = new RuleTask();
+
+      if (encoded.getString(COLLECTION_ID) != null) {
+         final Collection collection = findCollection(snapshot, encoded.getString(COLLECTION_ID));
+         final Rule rule = collection != null && collection.getRules() != null ? collection.getRules().get(ruleName) : null;
+         if (rule == null) {
+            return null;
+         }
+         if (encoded.containsKey(NEW_DOCUMENTS)) {
+            final List<Document> documents = encoded.getArrayList(NEW_DOCUMENTS, DataDocument.class).stream().map(TaskChainCodec::decodeDocument).collect(Collectors.toList());
+            if (refresh) {
+               refreshData(documents, snapshot);
+            }
+            task.setRule(ruleName, rule, collection, documents);
+         } else {
+            final Document newDocument = decodeDocument(encoded.getDataDocument(NEW_DOCUMENT));
+            if (refresh && newDocument != null) {
+               refreshData(List.of(newDocument), snapshot);
+            }
+            task.setRule(ruleName, rule, collection, decodeDocument(encoded.getDataDocument(OLD_DOCUMENT)), newDocument);
+         }
+      } else if (encoded.getString(LINK_TYPE_ID) != null) {
+         final LinkType linkType = findLinkType(snapshot, encoded.getString(LINK_TYPE_ID));
+         final Rule rule = linkType != null && linkType.getRules() != null ? linkType.getRules().get(ruleName) : null;
+         if (rule == null) {
+            return null;
+         }
+         final LinkInstance newLinkInstance = decodeLinkInstance(encoded.getDataDocument(NEW_LINK_INSTANCE));
+         if (refresh) {
+            refreshData(newLinkInstance, snapshot);
+         }
+         task.setRule(ruleName, rule, linkType, decodeLinkInstance(encoded.getDataDocument(OLD_LINK_INSTANCE)), newLinkInstance);
+      } else {
+         return null;
+      }
+
+      return task;
+   }
+
+   // the processed tasks could have changed the data, the stored chain still has the data from the time of its submission
+   private static void refreshData(final List<Document> documents, final DaoContextSnapshot snapshot) {
+      final Map<String, List<Document>> documentsByCollection = documents.stream().filter(document -> document != null && document.getId() != null)
+                                                                         .collect(Collectors.groupingBy(Document::getCollectionId));
+      documentsByCollection.forEach((collectionId, collectionDocuments) -> {
+         final Set<String> documentIds = collectionDocuments.stream().map(Document::getId).collect(Collectors.toSet());
+         final Map<String, DataDocument> data = snapshot.getDataDao().getData(collectionId, documentIds).stream()
+                                                        .collect(Collectors.toMap(DataDocument::getId, d -> d, (d1, d2) -> d1));
+         collectionDocuments.stream().filter(document -> data.containsKey(document.getId())).forEach(document -> document.setData(data.get(document.getId())));
+      });
+   }
+
+   private static void refreshData(final LinkInstance linkInstance, final DaoContextSnapshot snapshot) {
+      if (linkInstance != null && linkInstance.getId() != null) {
+         snapshot.getLinkDataDao().getData(linkInstance.getLinkTypeId(), Set.of(linkInstance.getId())).stream().findFirst().ifPresent(linkInstance::setData);
+      }
+   }
+
+   private static Document decodeDocument(final DataDocument encoded) {
+      if (encoded == null) {
+         return null;
+      }
+      final Document document = new Document(encoded.getDataDocument(DATA));
+      document.setId(encoded.getString(ID));
+      document.setCollectionId(encoded.getString(COLLECTION_ID));
+      document.setMetaData(encoded.getDataDocument(META_DATA));
+      document.setDataVersion(encoded.getInteger(DATA_VERSION));
+      document.setCreationDate(decodeDate(encoded.get(CREATION_DATE)));
+      document.setUpdateDate(decodeDate(encoded.get(UPDATE_DATE)));
+      document.setCreatedBy(encoded.getString(CREATED_BY));
+      document.setUpdatedBy(encoded.getString(UPDATED_BY));
+      return document;
+   }
+
+   private static LinkInstance decodeLinkInstance(final DataDocument encoded) {
+      if (encoded == null) {
+         return null;
+      }
+      final LinkInstance linkInstance = new LinkInstance(encoded.getString(LINK_TYPE_ID), encoded.getArrayList(DOCUMENT_IDS, String.class));
+      linkInstance.setId(encoded.getString(ID));
+      linkInstance.setData(encoded.getDataDocument(DATA));
+      linkInstance.setDataVersion(encoded.getInteger(DATA_VERSION));
+      linkInstance.setCreationDate(decodeDate(encoded.get(CREATION_DATE)));
+      linkInstance.setUpdateDate(decodeDate(encoded.get(UPDATE_DATE)));
+      linkInstance.setCreatedBy(encoded.getString(CREATED_BY));
+      linkInstance.setUpdatedBy(encoded.getString(UPDATED_BY));
+      return linkInstance;
+   }
+
+   /**
+    * Placeholder of a task whose resource does not exist anymore, it just passes the processing to the next task.
+    */
+   private static class RemovedTask implements Task {
+
+      private Task parent;
+
+      @Override
+      public void setParent(final Task task) {
+         this.parent = task;
+      }
+
+      @Override
+      public Task getParent() {
+         return parent;
+      }
+
+      @Override
+      public void process(final TaskExecutor executor) {
+         if (parent != null && executor.proceed()) {
+            parent.process(executor);
+         }
+      }
+
+      @Override
+      public void propagateChanges(final List<Document> documents, final List<LinkInstance> links) {
+         if (parent != null) {
+            parent.propagateChanges(documents, links);
+         }
+      }
+   }
+}
@@ -0,0 +1,64 @@
+/*
+ * Lumeer: Modern Data Definition and Processing Platform
+ *
+ * Copyright (C) since 2017 Lumeer.io, s.r.o. and/or its affiliates.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.lumeer.core.task;
+
+import io.lumeer.api.model.QueuedTask;
+import io.lumeer.api.model.User;
+import io.lumeer.core.WorkspaceKeeper;
+import io.lumeer.core.auth.RequestDataKeeper;
+import io.lumeer.core.facade.PusherFacade;
+import io.lumeer.core.provider.DataStorageProvider;
+import io.lumeer.core.util.PushNotificationOutbox;
+import io.lumeer.storage.api.dao.context.DaoContextSnapshot;
+import io.lumeer.storage.api.dao.context.DaoContextSnapshotFactory;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.context.control.ActivateRequestContext;
+import javax.inject.Inject;
+
+/**
+ * Restores task chains taken from the task queue. There is no user request when a queued chain is picked up, so the workspace
+ * of the chain is selected in a request context activated just for the restoration.
+ */
+@ApplicationScoped
+public class TaskChainRestorer {
+
+   @Inject
+   private WorkspaceKeeper workspaceKeeper;
+
+   @Inject
+   private DataStorageProvider dataStorageProvider;
+
+   @Inject
+   private DaoContextSnapshotFactory daoContextSnapshotFactory;
+
+   @Inject
+   private PusherFacade pusherFacade;
+
+   @ActivateRequestContext
+   public Task restore(final QueuedTask queuedTask) {
+      workspaceKeeper.setWorkspaceIds(queuedTask.getOrganizationId(), queuedTask.getProjectId());
+
+      final DaoContextSnapshot snapshot = daoContextSnapshotFactory.getInstance(dataStorageProvider.getUserStorage(), workspaceKeeper);
+      final User initiator = queuedTask.getUserId() != null ? snapshot.getUserDao().getUserById(queuedTask.getUserId()) : null;
+      final PushNotificationOutbox pushNotificationOutbox = pusherFacade.getPushNotificationOutbox();
+
+      return TaskChainCodec.decode(queuedTask.getPayload(), queuedTask.getCompletedTasks(), snapshot, task -> task.initialize(initiator, snapshot, pushNotificationOutbox, new RequestDataKeeper()));
+   }
+}
@@ -0,0 +1,171 @@
+/*
+ * Lumeer: Modern Data Definition and Processing Platform
+ *
+ * Copyright (C) since 2017 Lumeer.io, s.r.o. and/or its affiliates.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.lumeer.core.task;
+
+import io.lumeer.core.facade.configuration.DefaultConfigurationProducer;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.enterprise.concurrent.ManagedScheduledExecutorService;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+
+/**
+ * Delays task chains for rapidly changing entities. When the same entity changes again within the window, the pending chain
+ * is replaced by a chain created from the oldest original snapshot and the newest one, so only a single chain runs for the burst.
+ */
+@ApplicationScoped
+public class TaskCoalescer {
+
+   private static final int DEFAULT_WINDOW = 300; // ms
+
+   @Inject
+   private TaskExecutor taskExecutor;
+
+   @Inject
+   private DefaultConfigurationProducer configurationProducer;
+
+   @Inject
+   private ManagedScheduledExecutorService scheduler;
+
+   private final Map<String, Pending> pendingChains = new ConcurrentHashMap<>();
+   private int window;
+
+   @PostConstruct
+   public void init() {
+      window = configurationProducer.getInt(DefaultConfigurationProducer.TASK_COALESCE_WINDOW, DEFAULT_WINDOW, 0);
+   }
+
+   @PreDestroy
+   public void destroy() {
+      pendingChains.keySet().forEach(key -> {
+         final Pending pending = pendingChains.remove(key);
+         if (pending != null) {
+            pending.cancel();
+            taskExecutor.submitTask(pending.partitionKey, pending.task);
+         }
+      });
+   }
+
+   /**
+    * Submits a task chain for the changed entity once no other change of the entity arrives within the window.
+    *
+    * @param key
+    *       key of the changed entity (e.g. collection and document id).
+    * @param partitionKey
+    *       partition key passed to {@link TaskExecutor}.
+    * @param original
+    *       snapshot of the entity before this change.
+    * @param chainFactory
+    *       creates the task chain from the original snapshot, it gets the oldest pending original when changes are coalesced.
+    *       It is called in the submitting thread and possibly more than once when other changes of the entity arrive
+    *       at the same time, so it must not have side effects.
+    * @param <T>
+    *       type of the snapshot.
+    */
+   @SuppressWarnings("unchecked")
+   public <T> void submit(final String key, final String partitionKey, final T original, final Function<T, Task> chainFactory) {
+      if (window <= 0) {
+         taskExecutor.submitTask(partitionKey, chainFactory.apply(original));
+         return;
+      }
+
+      // the chain is created outside of the map, the factory reads from the database, only the finished chain is swapped in
+      while (true) {
+         final Pending pending = pendingChains.get(key);
+         final T oldestOriginal = pending != null ? (T) pending.original : original;
+
+         final Task task = chainFactory.apply(oldestOriginal);
+         if (task == null) {
+            if (pending == null) {
+               return;
+            }
+            if (pendingChains.remove(key, pending)) {
+               pending.cancel();
+               return;
+            }
+            continue;
+         }
+
+         final Pending next = new Pending(partitionKey, oldestOriginal, task);
+         if (pending == null ? pendingChains.putIfAbsent(key, next) == null : pendingChains.replace(key, pending, next)) {
+            if (pending != null) {
+               pending.cancel();
+            }
+            next.setFuture(scheduler.schedule(() -> fire(key, next), window, TimeUnit.MILLISECONDS));
+            return;
+         }
+      }
+   }
+
+   /**
+    * Drops the pending chain of the entity, typically because the entity has been removed.
+    *
+    * @param key
+    *       key of the entity.
+    */
+   public void cancel(final String key) {
+      final Pending pending = pendingChains.remove(key);
+      if (pending != null) {
+         pending.cancel();
+      }
+   }
+
+   private void fire(final String key, final Pending pending) {
+      // the chain could have been replaced by a newer one meanwhile
+      if (pendingChains.remove(key, pending)) {
+         taskExecutor.submitTask(pending.partitionKey, pending.task);
+      }
+   }
+
+   private static class Pending {
+      private final String partitionKey;
+      private final Object original;
+      private final Task task;
+      private ScheduledFuture<?> future;
+      private boolean cancelled;
+
+      private Pending(final String partitionKey, final Object original, final Task task) {
+         this.partitionKey = partitionKey;
+         this.original = original;
+         this.task = task;
+      }
+
+      // the chain can be replaced or cancelled before its firing is scheduled
+      private synchronized void setFuture(final ScheduledFuture<?> future) {
+         if (cancelled) {
+            future.cancel(false);
+         } else {
+            this.future = future;
+         }
+      }
+
+      private synchronized void cancel() {
+         cancelled = true;
+         if (future != null) {
+            future.cancel(false);
+         }
+      }
+   }
+}
@@ -18,20 +18,240 @@
  */
 package io.lumeer.core.task;
 
+import io.lumeer.core.facade.configuration.DefaultConfigurationProducer;
+import io.lumeer.core.task.executor.JsWatchdog;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.annotation.PostConstruct;
 import javax.enterprise.concurrent.ManagedExecutorService;
+import javax.enterprise.concurrent.ManagedScheduledExecutorService;
 import javax.enterprise.context.ApplicationScoped;
 import javax.inject.Inject;
 
 /**
  * Executes tasks in background.
+ * Each submitted task chain is assigned to a lane by its partition key (typically a document id). Chains in the same lane run
+ * one after another in the order of submission, while different lanes run concurrently on the managed executor.
+ * When too many chains are waiting, new chains that can be stored in the {@link TaskQueue} are not run locally but left to
+ * the workers of the task queue, so that bulk operations (like imports) cannot flood the executor and submitting threads never wait.
+ * Chains are kept in the task queue from their start until they finish, so they survive a crash of the node.
  */
 @ApplicationScoped
 public class TaskExecutor {
 
+   private static final Logger log = Logger.getLogger(TaskExecutor.class.getName());
+
+   private static final int DEFAULT_LANES = 8;
+   private static final int DEFAULT_QUEUE_LIMIT = 1000;
+   private static final int LANE_BATCH = 16; // chains processed before the lane gives its thread up
+   private static final long RESUBMIT_DELAY = 50; // ms, doubled with each rejection of the lane by the executor
+   private static final long MAX_RESUBMIT_DELAY = 5000; // ms
+
+   private static final ThreadLocal<Boolean> WORKER = ThreadLocal.withInitial(() -> false);
+   private static final ThreadLocal<String> QUEUED_CHAIN = new ThreadLocal<>();
+
    @Inject
    private ManagedExecutorService executorService;
 
+   @Inject
+   private ManagedScheduledExecutorService scheduler;
+
+   @Inject
+   private DefaultConfigurationProducer configurationProducer;
+
+   @Inject
+   private TaskQueue taskQueue;
+
+   @Inject
+   private WebhookDispatcher webhookDispatcher;
+
+   @Inject
+   private JsWatchdog jsWatchdog;
+
+   private Lane[] lanes;
+   private Semaphore queue;
+   private final AtomicInteger nextLane = new AtomicInteger();
+
+   @PostConstruct
+   public void init() {
+      lanes = new Lane[configurationProducer.getInt(DefaultConfigurationProducer.TASK_LANES, DEFAULT_LANES, 1)];
+      for (int i = 0; i < lanes.length; i++) {
+         lanes[i] = new Lane();
+      }
+      queue = new Semaphore(configurationProducer.getInt(DefaultConfigurationProducer.TASK_QUEUE_LIMIT, DEFAULT_QUEUE_LIMIT, 1));
+   }
+
+   public WebhookDispatcher getWebhookDispatcher() {
+      return webhookDispatcher;
+   }
+
+   public JsWatchdog getJsWatchdog() {
+      return jsWatchdog;
+   }
+
+   /**
+    * Submits a task chain that does not need to be ordered with any other chain.
+    *
+    * @param task
+    *       the first task of the chain.
+    */
    public void submitTask(final Task task) {
-      executorService.submit(() -> task.process(this));
+      submitTask(null, task);
+   }
+
+   /**
+    * Submits a task chain. Chains with the same partition key are processed in the order of submission.
+    *
+    * @param partitionKey
+    *       key of the entity the chain works on (e.g. document id), can be null when no ordering is needed.
+    * @param task
+    *       the first task of the chain.
+    */
+   public void submitTask(final String partitionKey, final Task task) {
+      if (task == null) {
+         return;
+      }
+
+      final boolean permit = queue.tryAcquire();
+
+      // chains submitted by running tasks are part of already accepted work and always run here
+      if (!permit && !WORKER.get() && taskQueue.accepts(task)) {
+         defer(partitionKey, task);
+         return;
+      }
+
+      execute(partitionKey, task, null, 1, permit);
+   }
+
+   /**
+    * Leaves the chain to the task queue workers, the chain is stored off the submitting thread.
+    */
+   private void defer(final String partitionKey, final Task task) {
+      try {
+         scheduler.execute(() -> {
+            if (!taskQueue.defer(partitionKey, task)) {
+               execute(partitionKey, task, null, 1, false);
+            }
+         });
+      } catch (RejectedExecutionException e) {
+         execute(partitionKey, task, null, 1, false);
+      }
+   }
+
+   /**
+    * Runs a chain taken from the task queue.
+    */
+   void execute(final String partitionKey, final Task task, final String queuedTaskId, final int attempts) {
+      execute(partitionKey, task, queuedTaskId, attempts, queue.tryAcquire());
+   }
+
+   /**
+    * Number of chains that can still be accepted before the executor starts shedding them.
+    */
+   int getAvailableCapacity() {
+      return queue.availablePermits();
+   }
+
+   private void execute(final String partitionKey, final Task task, final String queuedTaskId, final int attempts, final boolean permit) {
+      getLane(partitionKey).execute(() -> {
+         // new chains are stored when they start, so the submitting thread does not wait for the database
+         final String chainId = queuedTaskId != null ? queuedTaskId : taskQueue.enqueue(partitionKey, task);
+         QUEUED_CHAIN.set(chainId);
+         try {
+            task.process(this);
+            taskQueue.complete(chainId);
+         } catch (RuntimeException e) {
+            log.log(Level.WARNING, "Unable to process task: ", e);
+            taskQueue.fail(chainId, attempts, e);
+         } finally {
+            QUEUED_CHAIN.remove();
+            if (permit) {
+               queue.release();
+            }
+         }
+      });
+   }
+
+   /**
+    * Called by a task of the running chain before it passes the processing to the next task of the chain.
+    *
+    * @return true when the chain can continue with the next task, false when the chain has been taken over by another node.
+    */
+   public boolean proceed() {
+      return taskQueue.progress(QUEUED_CHAIN.get());
+   }
+
+   private Lane getLane(final String partitionKey) {
+      final int index = partitionKey != null ? partitionKey.hashCode() : nextLane.getAndIncrement();
+      return lanes[Math.floorMod(index, lanes.length)];
+   }
+
+   /**
+    * Serial executor on top of the managed executor, it occupies at most one thread at a time.
+    */
+   private class Lane {
+
+      private final Deque<Runnable> chains = new ArrayDeque<>();
+      private boolean active = false;
+
+      void execute(final Runnable chain) {
+         synchronized (this) {
+            chains.add(chain);
+            if (active) {
+               return;
+            }
+            active = true;
+         }
+         schedule();
+      }
+
+      private void schedule() {
+         schedule(RESUBMIT_DELAY);
+      }
+
+      private void schedule(final long delay) {
+         try {
+            executorService.submit(this::drain);
+         } catch (RejectedExecutionException e) {
+            // executor is saturated, the chains stay in the lane and the lane backs off, running them on the caller
+            // thread could recurse through the tasks it submits
+            try {
+               scheduler.schedule(() -> schedule(Math.min(2 * delay, MAX_RESUBMIT_DELAY)), delay, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException ex) {
+               // shutting down, unfinished chains are recovered from the task queue
+               log.log(Level.WARNING, "Unable to schedule task lane, the application is shutting down.");
+            }
+         }
+      }
+
+      private void drain() {
+         final boolean worker = WORKER.get();
+         WORKER.set(true);
+         try {
+            for (int i = 0; i < LANE_BATCH; i++) {
+               final Runnable chain;
+               synchronized (this) {
+                  chain = chains.poll();
+                  if (chain == null) {
+                     active = false;
+                     return;
+                  }
+               }
+               chain.run();
+            }
+         } finally {
+            WORKER.set(worker);
+         }
+
+         // give other lanes a chance when the executor has fewer threads than lanes
+         schedule();
+      }
    }
 }
@@ -0,0 +1,326 @@
+/*
+ * Lumeer: Modern Data Definition and Processing Platform
+ *
+ * Copyright (C) since 2017 Lumeer.io, s.r.o. and/or its affiliates.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.lumeer.core.task;
+
+import io.lumeer.api.model.QueuedTask;
+import io.lumeer.core.facade.configuration.DefaultConfigurationProducer;
+import io.lumeer.engine.api.data.DataDocument;
+import io.lumeer.storage.api.dao.TaskQueueDao;
+import io.lumeer.storage.api.dao.context.DaoContextSnapshot;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.enterprise.concurrent.ManagedScheduledExecutorService;
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.context.Initialized;
+import javax.enterprise.event.Observes;
+import javax.inject.Inject;
+
+/**
+ * Keeps submitted task chains in a persistent queue until they are processed. A chain is stored already leased by this node
+ * when its lane starts it, or available to any node when this node is too busy to run it, and it is removed once it finishes.
+ * Chains that failed, or whose node went down before finishing them, are picked up by the workers of any node once their lease
+ * expires, and they are dead-lettered after too many attempts. Dead letters are removed after the retention period.
+ * The node renews the leases of its running chains, and it counts the processed tasks of each chain, so a retried chain
+ * continues with the first task that has not finished.
+ */
+@ApplicationScoped
+public class TaskQueue {
+
+   private static final Logger log = Logger.getLogger(TaskQueue.class.getName());
+
+   private static final int DEFAULT_LEASE = 600; // s
+   private static final int DEFAULT_ATTEMPTS = 3;
+   private static final int DEFAULT_POLL_INTERVAL = 10; // s
+   private static final int POLL_BATCH = 16;
+   private static final long RETRY_DELAY = 30_000; // ms, multiplied by the number of attempts
+   private static final int DEFAULT_DEAD_LETTER_RETENTION = 7; // days
+   private static final long DEAD_LETTER_CLEANUP_INTERVAL = 1; // h
+
+   private static final String OWNER = getHostName() + "/" + UUID.randomUUID();
+
+   @Inject
+   private TaskQueueDao taskQueueDao;
+
+   @Inject
+   private TaskChainRestorer taskChainRestorer;
+
+   @Inject
+   private TaskExecutor taskExecutor;
+
+   @Inject
+   private DefaultConfigurationProducer configurationProducer;
+
+   @Inject
+   private ManagedScheduledExecutorService scheduler;
+
+   private boolean enabled;
+   private long leaseMillis;
+   private int maxAttempts;
+   private int pollInterval;
+   private long deadLetterRetentionMillis;
+   private final Set<ScheduledFuture<?>> workers = ConcurrentHashMap.newKeySet();
+
+   // chains leased by this node, either waiting in a lane or running, their leases are renewed until they finish
+   private final Set<String> held = ConcurrentHashMap.newKeySet();
+
+   @PostConstruct
+   public void init() {
+      enabled = !"false".equalsIgnoreCase(configurationProducer.get(DefaultConfigurationProducer.TASK_QUEUE_DURABLE));
+      leaseMillis = TimeUnit.SECONDS.toMillis(configurationProducer.getInt(DefaultConfigurationProducer.TASK_QUEUE_LEASE, DEFAULT_LEASE, 1));
+      maxAttempts = configurationProducer.getInt(DefaultConfigurationProducer.TASK_QUEUE_ATTEMPTS, DEFAULT_ATTEMPTS, 1);
+      pollInterval = configurationProducer.getInt(DefaultConfigurationProducer.TASK_QUEUE_POLL_INTERVAL, DEFAULT_POLL_INTERVAL, 1);
+      deadLetterRetentionMillis = TimeUnit.DAYS.toMillis(configurationProducer.getInt(DefaultConfigurationProducer.TASK_QUEUE_DEAD_LETTER_RETENTION, DEFAULT_DEAD_LETTER_RETENTION, 1));
+   }
+
+   // the workers start with the application, not with the first submitted task
+   public void onStartup(@Observes @Initialized(ApplicationScoped.class) final Object event) {
+      if (enabled && workers.isEmpty()) {
+         workers.add(scheduler.scheduleWithFixedDelay(this::poll, pollInterval, pollInterval, TimeUnit.SECONDS));
+         workers.add(scheduler.scheduleWithFixedDelay(this::renew, leaseMillis / 3, leaseMillis / 3, TimeUnit.MILLISECONDS));
+         workers.add(scheduler.scheduleWithFixedDelay(this::removeDeadLetters, DEAD_LETTER_CLEANUP_INTERVAL, DEAD_LETTER_CLEANUP_INTERVAL, TimeUnit.HOURS));
+      }
+   }
+
+   @PreDestroy
+   public void destroy() {
+      workers.forEach(worker -> worker.cancel(false));
+      workers.clear();
+   }
+
+   private static String getHostName() {
+      try {
+         return InetAddress.getLocalHost().getHostName();
+      } catch (UnknownHostException e) {
+         return "unknown";
+      }
+   }
+
+   /**
+    * Checks whether the chain can be stored in the queue, it does not touch the database.
+    *
+    * @param chain
+    *       first task of the chain.
+    * @return true when the chain can be stored and restored later.
+    */
+   boolean accepts(final Task chain) {
+      if (!enabled || !(chain instanceof ContextualTask)) {
+         return false;
+      }
+
+      final DaoContextSnapshot snapshot = ((ContextualTask) chain).getDaoContextSnapshot();
+      return snapshot != null && snapshot.getOrganizationId() != null && snapshot.getProjectId() != null;
+   }
+
+   /**
+    * Stores the chain leased by this node, called by the lane that starts the chain.
+    *
+    * @param partitionKey
+    *       partition key of the chain.
+    * @param chain
+    *       first task of the chain.
+    * @return id of the queued chain or null when the chain is not stored (it cannot be restored or the queue is disabled).
+    */
+   String enqueue(final String partitionKey, final Task chain) {
+      final QueuedTask queuedTask = prepare(partitionKey, chain);
+      if (queuedTask == null) {
+         return null;
+      }
+
+      queuedTask.setState(QueuedTask.State.LEASED);
+      queuedTask.setLeaseOwner(OWNER);
+      queuedTask.setAttempts(1);
+      queuedTask.setAvailableAt(ZonedDateTime.now().plus(leaseMillis, ChronoUnit.MILLIS));
+
+      try {
+         final String queuedTaskId = taskQueueDao.enqueue(queuedTask).getId();
+         held.add(queuedTaskId);
+         return queuedTaskId;
+      } catch (RuntimeException e) {
+         // the chain still runs, it is just not protected against a crash
+         log.log(Level.WARNING, "Unable to store task chain: ", e);
+         return null;
+      }
+   }
+
+   /**
+    * Stores the chain available to the workers of any node, used when this node is too busy to run it.
+    *
+    * @param partitionKey
+    *       partition key of the chain.
+    * @param chain
+    *       first task of the chain.
+    * @return false when the chain was not stored and it must be processed here.
+    */
+   boolean defer(final String partitionKey, final Task chain) {
+      final QueuedTask queuedTask = prepare(partitionKey, chain);
+      if (queuedTask == null) {
+         return false;
+      }
+
+      queuedTask.setState(QueuedTask.State.PENDING);
+      queuedTask.setAvailableAt(ZonedDateTime.now());
+
+      try {
+         taskQueueDao.enqueue(queuedTask);
+         return true;
+      } catch (RuntimeException e) {
+         log.log(Level.WARNING, "Unable to store task chain: ", e);
+         return false;
+      }
+   }
+
+   private QueuedTask prepare(final String partitionKey, final Task chain) {
+      if (!accepts(chain)) {
+         return null;
+      }
+
+      final DataDocument payload = TaskChainCodec.encode(chain);
+      if (payload == null) {
+         return null;
+      }
+
+      final ContextualTask contextualTask = (ContextualTask) chain;
+      final DaoContextSnapshot snapshot = contextualTask.getDaoContextSnapshot();
+      final String userId = contextualTask.getInitiator() != null ? contextualTask.getInitiator().getId() : null;
+      return new QueuedTask(snapshot.getOrganizationId(), snapshot.getProjectId(), userId, partitionKey, payload);
+   }
+
+   /**
+    * Records that the current task of the chain was processed, so that a retry of the chain does not run it again.
+    * The chain is stored just once, only the number of processed tasks is updated.
+    *
+    * @param queuedTaskId
+    *       id of the queued chain, can be null when the chain is not stored.
+    * @return false when this node lost the lease of the chain and the rest of the chain must not be processed here.
+    */
+   boolean progress(final String queuedTaskId) {
+      if (queuedTaskId == null) {
+         return true;
+      }
+
+      try {
+         if (taskQueueDao.progress(queuedTaskId, OWNER, leaseMillis)) {
+            return true;
+         }
+         held.remove(queuedTaskId);
+         log.log(Level.WARNING, String.format("Lease of task chain %s was lost, leaving the rest of it to the new owner.", queuedTaskId));
+         return false;
+      } catch (RuntimeException e) {
+         log.log(Level.WARNING, "Unable to store progress of task chain: ", e);
+         return true;
+      }
+   }
+
+   void complete(final String queuedTaskId) {
+      if (queuedTaskId != null) {
+         held.remove(queuedTaskId);
+         try {
+            if (!taskQueueDao.complete(queuedTaskId, OWNER)) {
+               log.log(Level.WARNING, String.format("Lease of task chain %s was lost before it was completed.", queuedTaskId));
+            }
+         } catch (RuntimeException e) {
+            log.log(Level.WARNING, "Unable to remove processed task chain: ", e);
+         }
+      }
+   }
+
+   void fail(final String queuedTaskId, final int attempts, final Exception cause) {
+      if (queuedTaskId != null) {
+         held.remove(queuedTaskId);
+         final String error = cause.getClass().getName() + ": " + cause.getMessage();
+         try {
+            final boolean owned;
+            if (attempts >= maxAttempts) {
+               log.log(Level.WARNING, String.format("Task chain %s failed %d times, moving it to dead letters.", queuedTaskId, attempts));
+               owned = taskQueueDao.deadLetter(queuedTaskId, OWNER, error);
+            } else {
+               owned = taskQueueDao.retry(queuedTaskId, OWNER, error, RETRY_DELAY * attempts);
+            }
+            if (!owned) {
+               log.log(Level.WARNING, String.format("Lease of task chain %s was lost before its failure was recorded.", queuedTaskId));
+            }
+         } catch (RuntimeException e) {
+            log.log(Level.WARNING, "Unable to update failed task chain: ", e);
+         }
+      }
+   }
+
+   private void renew() {
+      try {
+         taskQueueDao.renew(OWNER, new HashSet<>(held), leaseMillis);
+      } catch (RuntimeException e) {
+         log.log(Level.WARNING, "Unable to renew task chain leases: ", e);
+      }
+   }
+
+   private void removeDeadLetters() {
+      try {
+         final long removed = taskQueueDao.removeDeadLetters(deadLetterRetentionMillis);
+         if (removed > 0) {
+            log.log(Level.INFO, String.format("Removed %d expired dead task chains.", removed));
+         }
+      } catch (RuntimeException e) {
+         log.log(Level.WARNING, "Unable to remove dead task chains: ", e);
+      }
+   }
+
+   private void poll() {
+      // take only as many chains as the executor can accept, the rest is left to less busy nodes
+      final int limit = Math.min(POLL_BATCH, taskExecutor.getAvailableCapacity());
+      if (limit <= 0) {
+         return;
+      }
+
+      try {
+         for (QueuedTask queuedTask : taskQueueDao.lease(OWNER, limit, leaseMillis)) {
+            held.add(queuedTask.getId());
+
+            final Task chain;
+            try {
+               chain = taskChainRestorer.restore(queuedTask);
+            } catch (RuntimeException e) {
+               log.log(Level.WARNING, "Unable to restore task chain " + queuedTask.getId() + ": ", e);
+               fail(queuedTask.getId(), queuedTask.getAttempts(), e);
+               continue;
+            }
+
+            if (chain != null) {
+               taskExecutor.execute(queuedTask.getPartitionKey(), chain, queuedTask.getId(), queuedTask.getAttempts());
+            } else {
+               complete(queuedTask.getId());
+            }
+         }
+      } catch (RuntimeException e) {
+         log.log(Level.WARNING, "Unable to read the task queue: ", e);
+      }
+   }
+}
@@ -0,0 +1,233 @@
+/*
+ * Lumeer: Modern Data Definition and Processing Platform
+ *
+ * Copyright (C) since 2017 Lumeer.io, s.r.o. and/or its affiliates.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.lumeer.core.task;
+
+import io.lumeer.core.facade.configuration.DefaultConfigurationProducer;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.annotation.PostConstruct;
+import javax.enterprise.concurrent.ManagedScheduledExecutorService;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+
+/**
+ * Posts JSON payloads to webhooks (like Zapier hooks) without blocking the task chains. All hooks share one pooled HTTP client,
+ * each hook has a limited number of requests in flight and its other deliveries wait in a queue. Failed deliveries are retried
+ * with an exponential backoff. Hooks accepting arrays can have payloads collected for a short window and posted together.
+ */
+@ApplicationScoped
+public class WebhookDispatcher {
+
+   private static final Logger log = Logger.getLogger(WebhookDispatcher.class.getName());
+
+   private static final int DEFAULT_CONCURRENCY = 4;
+   private static final int DEFAULT_TIMEOUT = 10_000; // ms
+   private static final int DEFAULT_ATTEMPTS = 3;
+   private static final int DEFAULT_BACKOFF = 1000; // ms, doubled with each attempt
+   private static final int DEFAULT_BATCH_WINDOW = 500; // ms
+   private static final int MAX_BATCH_SIZE = 100;
+
+   @Inject
+   private DefaultConfigurationProducer configurationProducer;
+
+   @Inject
+   private ManagedScheduledExecutorService managedScheduler;
+
+   private final Map<String, Hook> hooks = new ConcurrentHashMap<>();
+   private final ObjectMapper mapper = new ObjectMapper();
+
+   private final LongAdder delivered = new LongAdder();
+   private final LongAdder retried = new LongAdder();
+   private final LongAdder failed = new LongAdder();
+
+   private HttpClient client;
+   private ScheduledExecutorService scheduler;
+   private int concurrency;
+   private int timeout;
+   private int attempts;
+   private int backoff;
+   private int batchWindow;
+
+   @PostConstruct
+   public void init() {
+      configure(managedScheduler, configurationProducer.getInt(DefaultConfigurationProducer.WEBHOOK_CONCURRENCY, DEFAULT_CONCURRENCY, 1),
+            configurationProducer.getInt(DefaultConfigurationProducer.WEBHOOK_TIMEOUT, DEFAULT_TIMEOUT, 1),
+            configurationProducer.getInt(DefaultConfigurationProducer.WEBHOOK_ATTEMPTS, DEFAULT_ATTEMPTS, 1),
+            DEFAULT_BACKOFF,
+            configurationProducer.getInt(DefaultConfigurationProducer.WEBHOOK_BATCH_WINDOW, DEFAULT_BATCH_WINDOW, 1));
+   }
+
+   void configure(final ScheduledExecutorService scheduler, final int concurrency, final int timeout, final int attempts, final int backoff, final int batchWindow) {
+      this.scheduler = scheduler;
+      this.concurrency = concurrency;
+      this.timeout = timeout;
+      this.attempts = attempts;
+      this.backoff = backoff;
+      this.batchWindow = batchWindow;
+
+      client = HttpClient.newBuilder()
+                         .connectTimeout(Duration.ofMillis(timeout))
+                         .followRedirects(HttpClient.Redirect.NORMAL)
+                         .build();
+   }
+
+   /**
+    * Schedules the payload to be posted to the webhook. Returns immediately, the result of the delivery is only logged.
+    *
+    * @param url
+    *       url of the webhook.
+    * @param payload
+    *       payload serializable to JSON.
+    * @param batch
+    *       whether the hook accepts an array of payloads, so payloads arriving within the batch window can be posted together.
+    */
+   public void dispatch(final String url, final Object payload, final boolean batch) {
+      final Hook hook = hooks.computeIfAbsent(url, Hook::new);
+      if (batch) {
+         hook.collect(payload);
+      } else {
+         hook.enqueue(new Delivery(payload));
+      }
+   }
+
+   public long getDeliveredCount() {
+      return delivered.sum();
+   }
+
+   public long getRetriedCount() {
+      return retried.sum();
+   }
+
+   public long getFailedCount() {
+      return failed.sum();
+   }
+
+   private static class Delivery {
+      private final Object body;
+      private int attempt = 1;
+
+      private Delivery(final Object body) {
+         this.body = body;
+      }
+   }
+
+   private class Hook {
+      private final String url;
+      private final Deque<Delivery> queue = new ArrayDeque<>();
+      private List<Object> batch = new ArrayList<>();
+      private ScheduledFuture<?> batchFlush;
+      private int inFlight = 0;
+
+      private Hook(final String url) {
+         this.url = url;
+      }
+
+      private synchronized void collect(final Object payload) {
+         batch.add(payload);
+         if (batch.size() >= MAX_BATCH_SIZE) {
+            if (batchFlush != null) {
+               batchFlush.cancel(false);
+            }
+            flush();
+         } else if (batchFlush == null) {
+            batchFlush = scheduler.schedule(this::flush, batchWindow, TimeUnit.MILLISECONDS);
+         }
+      }
+
+      private synchronized void flush() {
+         batchFlush = null;
+         if (!batch.isEmpty()) {
+            enqueue(new Delivery(batch));
+            batch = new ArrayList<>();
+         }
+      }
+
+      private synchronized void enqueue(final Delivery delivery) {
+         queue.add(delivery);
+         sendNext();
+      }
+
+      private synchronized void sendNext() {
+         while (inFlight < concurrency && !queue.isEmpty()) {
+            inFlight++;
+            send(queue.poll());
+         }
+      }
+
+      private void send(final Delivery delivery) {
+         final HttpRequest request;
+         try {
+            request = HttpRequest.newBuilder(URI.create(url))
+                                 .timeout(Duration.ofMillis(timeout))
+                                 .header("Content-Type", "application/json")
+                                 .POST(HttpRequest.BodyPublishers.ofByteArray(mapper.writeValueAsBytes(delivery.body)))
+                                 .build();
+         } catch (JsonProcessingException | IllegalArgumentException e) {
+            log.log(Level.WARNING, "Unable to create a request for webhook " + url, e);
+            failed.increment();
+            finished();
+            return;
+         }
+
+         client.sendAsync(request, HttpResponse.BodyHandlers.discarding()).whenComplete((response, throwable) -> {
+            if (throwable == null && response.statusCode() < 400) {
+               delivered.increment();
+            } else if (isRetryable(response) && delivery.attempt < attempts) {
+               retried.increment();
+               final long delay = (long) backoff << (delivery.attempt - 1);
+               delivery.attempt++;
+               scheduler.schedule(() -> enqueue(delivery), delay, TimeUnit.MILLISECONDS);
+            } else {
+               failed.increment();
+               log.log(Level.WARNING, "Unable to deliver webhook " + url + (response != null ? ", status " + response.statusCode() : ""), throwable);
+            }
+            finished();
+         });
+      }
+
+      private synchronized void finished() {
+         inFlight--;
+         sendNext();
+      }
+   }
+
+   // network errors, throttling and server errors are worth another try, other client errors are not
+   private static boolean isRetryable(final HttpResponse<?> response) {
+      return response == null || response.statusCode() == 429 || response.statusCode() >= 500;
+   }
+}
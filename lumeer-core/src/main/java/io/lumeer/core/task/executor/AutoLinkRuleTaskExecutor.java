@@ -18,7 +18,6 @@
  */
 package io.lumeer.core.task.executor;
 
-import io.lumeer.api.model.ConditionType;
 import io.lumeer.api.model.Document;
 import io.lumeer.api.model.LinkInstance;
 import io.lumeer.api.model.LinkType;
@@ -27,17 +26,18 @@ import io.lumeer.core.facade.FunctionFacade;
 import io.lumeer.core.facade.PusherFacade;
 import io.lumeer.core.task.RuleTask;
 import io.lumeer.core.task.TaskExecutor;
-import io.lumeer.engine.api.data.DataDocument;
-import io.lumeer.storage.api.filter.CollectionSearchAttributeFilter;
 import io.lumeer.storage.api.query.SearchQuery;
 import io.lumeer.storage.api.query.SearchQueryStem;
 
 import org.marvec.pusher.data.Event;
 
+import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
@@ -59,8 +59,8 @@ public class AutoLinkRuleTaskExecutor {
    public void execute(final TaskExecutor taskExecutor) {
       final LinkType linkType = ruleTask.getDaoContextSnapshot().getLinkTypeDao().getLinkType(rule.getLinkType());
 
-      if (linkType != null) {
-         final Document thisDocument = ruleTask.getOldDocument() != null ? ruleTask.getOldDocument() : ruleTask.getNewDocument();
+      if (linkType != null && (ruleTask.getOldDocument() != null || !ruleTask.getNewDocuments().isEmpty())) {
+         final Document thisDocument = ruleTask.getOldDocument() != null ? ruleTask.getOldDocument() : ruleTask.getNewDocuments().get(0);
          final String thisCollectionId = thisDocument.getCollectionId();
          final String thatCollectionId = linkType.getCollectionIds().get(0).equals(thisCollectionId) ? linkType.getCollectionIds().get(1) : linkType.getCollectionIds().get(0);
          final String thisAttribute, thatAttribute;
@@ -86,15 +86,18 @@ public class AutoLinkRuleTaskExecutor {
                }
                // and it is not null either
                if (o2 != null) {
-                  addLinks(taskExecutor, ruleTask.getNewDocument(), linkType, thatCollectionId, thisAttribute, thatAttribute);
+                  addLinks(taskExecutor, List.of(ruleTask.getNewDocument()), linkType, thatCollectionId, thisAttribute, thatAttribute);
                }
             }
          } else { // one of the docs is null (i.e. new document created or old document deleted
             // when oldDocument is set and the newDocument isn't, the old one was deleted and all links were automatically removed
 
-            // new document was created
-            if (ruleTask.getNewDocument() != null && ruleTask.getNewDocument().getData().get(thisAttribute) != null) {
-               addLinks(taskExecutor, ruleTask.getNewDocument(), linkType, thatCollectionId, thisAttribute, thatAttribute);
+            // new documents were created
+            final List<Document> newDocuments = ruleTask.getNewDocuments().stream()
+                                                        .filter(document -> document.getData().get(thisAttribute) != null)
+                                                        .collect(Collectors.toList());
+            if (!newDocuments.isEmpty()) {
+               addLinks(taskExecutor, newDocuments, linkType, thatCollectionId, thisAttribute, thatAttribute);
             }
          }
       }
@@ -118,61 +121,65 @@ public class AutoLinkRuleTaskExecutor {
          ruleTask.getDaoContextSnapshot().getLinkInstanceDao().deleteLinkInstances(query);
          ruleTask.getDaoContextSnapshot().getLinkDataDao().deleteData(linkType.getId(), links.stream().map(LinkInstance::getId).collect(Collectors.toSet()));
 
-         sendPushNotifications(thisCollection, thatCollection, links, true);
+         sendPushNotifications(links, true);
 
          final FunctionFacade functionFacade = ruleTask.getFunctionFacade();
          final List<String> skipCollectionIds = List.of(thisCollection);
-         links.forEach(linkInstance -> {
-            taskExecutor.submitTask(functionFacade.createTaskForRemovedLink(linkType, linkInstance, skipCollectionIds));
-         });
-
+         taskExecutor.submitTask(functionFacade.createTaskForRemovedLinks(linkType, links, skipCollectionIds));
       }
    }
 
-   private void addLinks(final TaskExecutor taskExecutor, final Document newDocument, final LinkType linkType, final String thatCollection, final String thisAttribute, final String thatAttribute) {
-      final String thisCollection = newDocument.getCollectionId();
+   private void addLinks(final TaskExecutor taskExecutor, final List<Document> newDocuments, final LinkType linkType, final String thatCollection, final String thisAttribute, final String thatAttribute) {
+      final String thisCollection = newDocuments.get(0).getCollectionId();
       if (thisCollection.equals(thatCollection)) {
          return;
       }
 
-      final Object value = newDocument.getData().get(thisAttribute);
-      final SearchQueryStem queryStem = SearchQueryStem
-            .createBuilder(thatCollection)
-            .filters(Set.of(new CollectionSearchAttributeFilter(thatCollection, ConditionType.EQUALS, thatAttribute, value)))
-            .build();
+      // one query for the whole batch, the matching documents are then paired with the new ones by their values
+      final Set<Object> values = newDocuments.stream().map(document -> document.getData().get(thisAttribute)).collect(Collectors.toSet());
+      final Map<Object, List<String>> targetDocuments = new HashMap<>();
+      ruleTask.getDaoContextSnapshot().getDataDao().getDataByAttributeValues(thatCollection, thatAttribute, values).forEach(data -> {
+         final Object value = data.get(thatAttribute);
+         targetDocuments.computeIfAbsent(valueKey(value), key -> new ArrayList<>()).add(data.getId());
+         if (value instanceof java.util.Collection) { // array values match by any of their elements
+            ((java.util.Collection<?>) value).forEach(item -> targetDocuments.computeIfAbsent(valueKey(item), key -> new ArrayList<>()).add(data.getId()));
+         }
+      });
 
-      final List<String> targetDocuments = ruleTask.getDaoContextSnapshot().getDataDao()
-                                                   .searchData(queryStem, null, ruleTask.getDaoContextSnapshot().getCollectionDao().getCollectionById(thatCollection))
-                                                   .stream()
-                                                   .map(DataDocument::getId)
-                                                   .collect(Collectors.toList());
-
-      if (targetDocuments.size() > 0) {
-         final List<LinkInstance> linkInstances =
-               targetDocuments.stream()
-                              .filter(documentId -> !documentId.equals(newDocument.getId()))
-                              .map(documentId ->
-                                    new LinkInstance(rule.getLinkType(), Arrays.asList(newDocument.getId(), documentId)))
-                              .collect(Collectors.toList());
-
-         if (!linkInstances.isEmpty()) {
-            ruleTask.getDaoContextSnapshot().getLinkInstanceDao().createLinkInstances(linkInstances);
-            sendPushNotifications(thisCollection, thatCollection, linkInstances, false);
-
-            final FunctionFacade functionFacade = ruleTask.getFunctionFacade();
-            final List<String> skipCollectionIds = List.of(thisCollection);
-            linkInstances.forEach(linkInstance -> {
-               taskExecutor.submitTask(functionFacade.createTaskForCreatedLink(linkType, linkInstance, skipCollectionIds));
-            });
+      final List<LinkInstance> linkInstances = new ArrayList<>();
+      newDocuments.forEach(newDocument ->
+            targetDocuments.getOrDefault(valueKey(newDocument.getData().get(thisAttribute)), Collections.emptyList())
+                           .stream()
+                           .distinct()
+                           .filter(documentId -> !documentId.equals(newDocument.getId()))
+                           .forEach(documentId -> linkInstances.add(new LinkInstance(rule.getLinkType(), Arrays.asList(newDocument.getId(), documentId))))
+      );
+
+      if (!linkInstances.isEmpty()) {
+         ruleTask.getDaoContextSnapshot().getLinkInstanceDao().createLinkInstances(linkInstances);
+         sendPushNotifications(linkInstances, false);
+
+         final FunctionFacade functionFacade = ruleTask.getFunctionFacade();
+         final List<String> skipCollectionIds = List.of(thisCollection);
+         taskExecutor.submitTask(functionFacade.createTaskForCreatedLinks(linkType, linkInstances, skipCollectionIds));
+      }
+   }
+
+   private static Object valueKey(final Object value) {
+      // the database compares numbers by their values regardless of their types
+      if (value instanceof Number) {
+         try {
+            return new BigDecimal(value.toString()).stripTrailingZeros();
+         } catch (NumberFormatException e) {
+            return value;
          }
       }
+      return value;
    }
 
-   private void sendPushNotifications(final String thisCollection, final String thatCollection, final List<LinkInstance> links, final boolean removeOperation) {
-      if (ruleTask.getPusherClient() != null) {
-         final Set<String> users1 = ruleTask.getDaoContextSnapshot().getCollectionReaders(thisCollection);
-         final Set<String> users2 = ruleTask.getDaoContextSnapshot().getCollectionReaders(thatCollection);
-         final Set<String> users = users1.stream().filter(users2::contains).collect(Collectors.toSet());
+   private void sendPushNotifications(final List<LinkInstance> links, final boolean removeOperation) {
+      if (ruleTask.getPushNotificationOutbox() != null) {
+         final Set<String> users = ruleTask.getDaoContextSnapshot().getLinkTypeReaders(rule.getLinkType());
 
          final List<Event> events = new ArrayList<>();
          users.forEach(user -> {
@@ -193,7 +200,7 @@ public class AutoLinkRuleTaskExecutor {
             });
          });
 
-         ruleTask.getPusherClient().trigger(events);
+         ruleTask.getPushNotificationOutbox().enqueue(events);
       }
    }
 }
@@ -45,7 +45,7 @@ public class BlocklyRuleTaskExecutor {
       this.ruleTask = ruleTask;
    }
 
-   public void execute() {
+   public void execute(final JsWatchdog watchdog) {
       final Map<String, Object> bindings = new HashMap<>();
 
       if (ruleTask.isCollectionBased()) {
@@ -56,8 +56,10 @@ public class BlocklyRuleTaskExecutor {
          bindings.put("newLink", new JsExecutor.LinkBridge(ruleTask.getNewLinkInstance()));
       }
 
-      final JsExecutor jsExecutor = new JsExecutor();
+      final JsExecutor jsExecutor = new JsExecutor(watchdog);
       jsExecutor.setDryRun(rule.isDryRun());
+      jsExecutor.setTimeLimit(rule.getTimeLimit());
+      jsExecutor.setStatementLimit(rule.getStatementLimit());
 
       try {
          jsExecutor.execute(bindings, ruleTask, ruleTask.getCollection(), rule.getJs());
@@ -23,52 +23,130 @@ import io.lumeer.api.model.Document;
 import io.lumeer.api.model.LinkInstance;
 import io.lumeer.api.model.LinkType;
 import io.lumeer.core.task.FunctionTask;
+import io.lumeer.core.util.FunctionXmlParser;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.stream.Collectors;
 
 public class FunctionTaskExecutor {
 
    private static Logger log = Logger.getLogger(FunctionTaskExecutor.class.getName());
 
    private final FunctionTask task;
-   private final Document document;
+   private final List<Document> documents;
    private final Collection collection;
    private final LinkType linkType;
-   private final LinkInstance linkInstance;
+   private final List<LinkInstance> linkInstances;
 
-   public FunctionTaskExecutor(final FunctionTask functionTask, final Collection collection, final Document document) {
+   public FunctionTaskExecutor(final FunctionTask functionTask, final Collection collection, final java.util.Collection<Document> documents) {
       this.task = functionTask;
-      this.document = document;
+      this.documents = new ArrayList<>(documents);
       this.collection = collection;
-      this.linkInstance = null;
+      this.linkInstances = null;
       this.linkType = null;
    }
 
-   public FunctionTaskExecutor(final FunctionTask functionTask, final LinkType linkType, final LinkInstance linkInstance) {
+   public FunctionTaskExecutor(final FunctionTask functionTask, final LinkType linkType, final java.util.Collection<LinkInstance> linkInstances) {
       this.task = functionTask;
-      this.document = null;
+      this.documents = null;
       this.collection = null;
-      this.linkInstance = linkInstance;
+      this.linkInstances = new ArrayList<>(linkInstances);
       this.linkType = linkType;
    }
 
-   public void execute() {
-      final JsExecutor.DocumentBridge thisDocument = new JsExecutor.DocumentBridge(document);
-      final JsExecutor.LinkBridge thisLink = new JsExecutor.LinkBridge(linkInstance);
-      final Map<String, Object> bindings = linkInstance == null ? Map.of("thisDocument", thisDocument) : Map.of("thisLink", thisLink);
+   /**
+    * Evaluates the function for all the documents (or link instances) in a single script context and commits
+    * all the computed values at once.
+    */
+   public void execute(final JsWatchdog watchdog) {
+      final List<Map<String, Object>> bindings = documents != null ?
+            documents.stream().map(document -> Map.<String, Object>of("thisDocument", new JsExecutor.DocumentBridge(document))).collect(Collectors.toList()) :
+            linkInstances.stream().map(linkInstance -> Map.<String, Object>of("thisLink", new JsExecutor.LinkBridge(linkInstance))).collect(Collectors.toList());
 
-      final JsExecutor jsExecutor = new JsExecutor();
+      final JsExecutor jsExecutor = new JsExecutor(watchdog);
+      prefetch(jsExecutor);
+
+      final ExecutionError error = new ExecutionError();
 
       try {
-         jsExecutor.execute(bindings, task, collection, task.getFunction().getJs());
+         jsExecutor.executeAll(bindings, task, collection, task.getFunction().getJs(), (index, e) -> {
+            log.log(Level.WARNING, "Unable to execute function: ", e);
+            error.record(e, jsExecutor.getCause());
+            addErrorInAttribute(jsExecutor, index);
+         });
          jsExecutor.commitChanges();
+      } catch (Exception e) {
+         log.log(Level.WARNING, "Unable to commit function results: ", e);
+         error.record(e, jsExecutor.getCause());
+         commitSeparately(jsExecutor);
+      }
+
+      if (error.exception != null) {
+         writeTaskError(error.exception, error.cause);
+      } else {
          checkErrorErasure();
+      }
+   }
+
+   private void addErrorInAttribute(final JsExecutor jsExecutor, final int index) {
+      if (documents != null) {
+         jsExecutor.addErrorInAttribute(documents.get(index), task.getAttribute().getId());
+      } else {
+         jsExecutor.addErrorInAttribute(linkInstances.get(index), task.getAttribute().getId());
+      }
+   }
+
+   /**
+    * The computed values could not be stored at once, so they are committed for each document (or link instance)
+    * separately and the attribute is marked as failed only in those whose values cannot be stored.
+    */
+   private void commitSeparately(final JsExecutor jsExecutor) {
+      for (final Set<JsExecutor.Change> changes : jsExecutor.getChangesByEntity()) {
+         try {
+            jsExecutor.setChanges(changes);
+            jsExecutor.commitChanges();
+         } catch (Exception e) {
+            log.log(Level.WARNING, "Unable to commit function result: ", e);
+            commitError(jsExecutor, changes.iterator().next().getEntity());
+         }
+      }
+   }
+
+   private void commitError(final JsExecutor jsExecutor, final Object entity) {
+      try {
+         jsExecutor.clearChanges();
+         if (entity instanceof Document) {
+            jsExecutor.addErrorInAttribute((Document) entity, task.getAttribute().getId());
+         } else if (entity instanceof LinkInstance) {
+            jsExecutor.addErrorInAttribute((LinkInstance) entity, task.getAttribute().getId());
+         }
+         jsExecutor.commitChanges();
       } catch (Exception e) {
-         log.log(Level.WARNING, "Unable to execute function: ", e);
-         writeTaskError(e, jsExecutor.getCause());
-         jsExecutor.setErrorInAttribute(document, task.getAttribute().getId());
+         log.log(Level.WARNING, "Unable to store function error: ", e);
+      }
+   }
+
+   private void prefetch(final JsExecutor jsExecutor) {
+      final List<FunctionXmlParser.AttributeReference> references;
+      try {
+         references = FunctionXmlParser.parseFunctionXml(task.getFunction().getXml());
+      } catch (IllegalStateException e) {
+         return; // the data will be loaded on demand
+      }
+
+      if (documents != null) {
+         final Set<String> linkTypeIds = references.stream().map(FunctionXmlParser.AttributeReference::getLinkTypeId).filter(Objects::nonNull).collect(Collectors.toSet());
+         if (!linkTypeIds.isEmpty()) {
+            jsExecutor.prefetchLinks(task, documents.stream().map(Document::getId).collect(Collectors.toSet()), linkTypeIds);
+         }
+      } else if (references.stream().anyMatch(reference -> reference.getCollectionId() != null)) {
+         jsExecutor.prefetchDocuments(task, linkInstances.stream().flatMap(linkInstance -> linkInstance.getDocumentIds().stream()).collect(Collectors.toSet()));
       }
    }
 
@@ -118,4 +196,19 @@ public class FunctionTaskExecutor {
 
       return sb.toString();
    }
+
+   /**
+    * Keeps the first failure of the execution together with its cause.
+    */
+   private static class ExecutionError {
+      private Exception exception;
+      private Exception cause;
+
+      private void record(final Exception exception, final Exception cause) {
+         if (this.exception == null) {
+            this.exception = exception;
+            this.cause = cause;
+         }
+      }
+   }
 }
@@ -0,0 +1,307 @@
+/*
+ * Lumeer: Modern Data Definition and Processing Platform
+ *
+ * Copyright (C) since 2017 Lumeer.io, s.r.o. and/or its affiliates.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.lumeer.core.task.executor;
+
+import io.lumeer.core.util.MomentJsParser;
+
+import org.graalvm.polyglot.Context;
+import org.graalvm.polyglot.Engine;
+import org.graalvm.polyglot.ResourceLimits;
+import org.graalvm.polyglot.Source;
+import org.graalvm.polyglot.Value;
+
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Keeps idle polyglot contexts with moment.js already evaluated, so scripts run over many documents do not pay for
+ * the context setup each time. Contexts are pooled separately for each project to keep scripts of different
+ * projects apart, and all of them share a single engine together with the cached sources, which lets the engine
+ * reuse the parsed and compiled code.
+ */
+class JsContextPool {
+
+   private static final Logger log = Logger.getLogger(JsContextPool.class.getName());
+
+   private static final int MAX_IDLE_CONTEXTS = 2 * Runtime.getRuntime().availableProcessors();
+   private static final int MAX_IDLE_CONTEXTS_PER_KEY = 4;
+   private static final int MAX_EXECUTIONS_PER_CONTEXT = 1000;
+   private static final int MAX_CACHED_SOURCES = 512;
+
+   private static final Engine engine = Engine
+         .newBuilder()
+         .allowExperimentalOptions(true)
+         .option("js.experimental-foreign-object-prototype", "true")
+         .build();
+   private static final Source momentJsSource = MomentJsParser.getMomentJsCode() != null ?
+         Source.newBuilder("js", MomentJsParser.getMomentJsCode(), "moment.js").cached(true).buildLiteral() : null;
+
+   // Records the initial globals together with the own properties of their values and prototypes, and returns a function
+   // that puts back replaced or deleted globals and tells whether the built-in objects are still untouched. The function
+   // only relies on the functions captured here, so scripts cannot fool it by patching them.
+   private static final Source globalsSnapshotSource = Source.newBuilder("js",
+         "(function(global) {\n"
+               + "   const getOwnPropertyNames = Object.getOwnPropertyNames;\n"
+               + "   const getOwnPropertyDescriptor = Object.getOwnPropertyDescriptor;\n"
+               + "   const defineProperty = Object.defineProperty;\n"
+               + "   const is = Object.is;\n"
+               + "   const snapshot = function(target) {\n"
+               + "      const names = getOwnPropertyNames(target);\n"
+               + "      const descriptors = [];\n"
+               + "      for (let i = 0; i < names.length; i++) {\n"
+               + "         descriptors[i] = getOwnPropertyDescriptor(target, names[i]);\n"
+               + "      }\n"
+               + "      return { target: target, names: names, descriptors: descriptors };\n"
+               + "   };\n"
+               + "   const same = function(a, b) {\n"
+               + "      return a !== undefined && is(a.value, b.value) && is(a.get, b.get) && is(a.set, b.set) && a.writable === b.writable;\n"
+               + "   };\n"
+               + "   const globals = snapshot(global);\n"
+               + "   const builtins = [];\n"
+               + "   for (let i = 0; i < globals.names.length; i++) {\n"
+               + "      const value = globals.descriptors[i].value;\n"
+               + "      if (value !== global && (typeof value === 'function' || (typeof value === 'object' && value !== null))) {\n"
+               + "         try {\n"
+               + "            builtins[builtins.length] = snapshot(value);\n"
+               + "            if (typeof value === 'function' && value.prototype) {\n"
+               + "               builtins[builtins.length] = snapshot(value.prototype);\n"
+               + "            }\n"
+               + "         } catch (e) {\n"
+               + "         }\n"
+               + "      }\n"
+               + "   }\n"
+               + "   return function() {\n"
+               + "      for (let i = 0; i < globals.names.length; i++) {\n"
+               + "         if (!same(getOwnPropertyDescriptor(global, globals.names[i]), globals.descriptors[i])) {\n"
+               + "            defineProperty(global, globals.names[i], globals.descriptors[i]);\n"
+               + "         }\n"
+               + "      }\n"
+               + "      for (let i = 0; i < builtins.length; i++) {\n"
+               + "         const builtin = builtins[i];\n"
+               + "         if (getOwnPropertyNames(builtin.target).length !== builtin.names.length) {\n"
+               + "            return false;\n"
+               + "         }\n"
+               + "         for (let j = 0; j < builtin.names.length; j++) {\n"
+               + "            if (!same(getOwnPropertyDescriptor(builtin.target, builtin.names[j]), builtin.descriptors[j])) {\n"
+               + "               return false;\n"
+               + "            }\n"
+               + "         }\n"
+               + "      }\n"
+               + "      return true;\n"
+               + "   };\n"
+               + "})(this);", "globals-snapshot.js").cached(true).buildLiteral();
+
+   private static final Map<String, Deque<PooledContext>> idleContexts = new ConcurrentHashMap<>();
+   private static final AtomicInteger idleCount = new AtomicInteger();
+   private static final Map<String, Source> sources = Collections.synchronizedMap(new LinkedHashMap<String, Source>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(final Map.Entry<String, Source> eldest) {
+         return size() > MAX_CACHED_SOURCES;
+      }
+   });
+
+   private JsContextPool() {
+   }
+
+   static class PooledContext {
+      private final String key;
+      private final Context context;
+      private final Set<String> initialMembers;
+      private final Value restoreGlobals;
+      private int executions = 0;
+      private long generation = 0;
+      private boolean executing = false;
+      private boolean cancelled = false;
+
+      private PooledContext(final String key, final long statementLimit) {
+         this.key = key;
+
+         final Context.Builder builder = Context
+               .newBuilder("js")
+               .engine(engine)
+               .allowAllAccess(true);
+         if (statementLimit > 0) {
+            builder.resourceLimits(ResourceLimits.newBuilder().statementLimit(statementLimit, null).build());
+         }
+
+         this.context = builder.build();
+         context.initialize("js");
+         if (momentJsSource != null) {
+            context.eval(momentJsSource);
+         }
+         this.initialMembers = new HashSet<>(context.getBindings("js").getMemberKeys());
+         this.restoreGlobals = context.eval(globalsSnapshotSource);
+         context.resetLimits();
+      }
+
+      Context getContext() {
+         return context;
+      }
+
+      /**
+       * Marks the start of a script execution.
+       *
+       * @return generation of the execution to be passed to {@link #cancel(long)}.
+       */
+      synchronized long start() {
+         executing = true;
+         return ++generation;
+      }
+
+      /**
+       * Marks the end of the script execution, a late cancellation of it is ignored from now on.
+       */
+      synchronized void stop() {
+         executing = false;
+      }
+
+      /**
+       * Closes the context from another thread, possibly interrupting the running script. Does nothing when the
+       * given execution has already finished, so that a late watchdog cannot close a context that went back to the
+       * pool or runs another script.
+       *
+       * @param generation
+       *       generation of the execution to cancel.
+       * @return true when the execution has been cancelled.
+       */
+      synchronized boolean cancel(final long generation) {
+         if (executing && this.generation == generation && !cancelled) {
+            cancelled = true;
+            context.close(true);
+            return true;
+         }
+         return false;
+      }
+
+      /**
+       * Marks the context as unusable after the engine has cancelled it on its own, e.g. because of an exceeded statement limit.
+       */
+      synchronized void invalidate() {
+         cancelled = true;
+      }
+
+      /**
+       * Prepares the context for another script run within the same lease.
+       *
+       * @return false when the context cannot be used anymore.
+       */
+      synchronized boolean clear() {
+         return !cancelled && reset();
+      }
+
+      private synchronized boolean finish() {
+         executing = false;
+         if (cancelled) {
+            return false;
+         }
+         executions++;
+
+         return reset();
+      }
+
+      private boolean reset() {
+         try {
+            context.resetLimits();
+            context.getPolyglotBindings().removeMember("lumeer");
+
+            final Value bindings = context.getBindings("js");
+            for (String member : new HashSet<>(bindings.getMemberKeys())) {
+               if (!initialMembers.contains(member) && !bindings.removeMember(member)) {
+                  return false;
+               }
+            }
+
+            // replaced globals are put back, a context with changed built-in objects (e.g. a patched prototype) is not reused
+            final boolean restored = restoreGlobals.execute().asBoolean();
+
+            // the statements of the restore are not counted against the next script
+            context.resetLimits();
+
+            return restored;
+         } catch (Exception e) {
+            // the script left something behind that cannot be removed or undone, the context will not be reused
+            return false;
+         }
+      }
+
+      private void close() {
+         try {
+            context.close();
+         } catch (Exception e) {
+            log.log(Level.FINE, "Unable to close JavaScript context: ", e);
+         }
+      }
+   }
+
+   static PooledContext acquire(final String projectKey, final long statementLimit) {
+      final String key = projectKey + "#" + statementLimit; // resource limits are fixed for the whole life of a context
+      final Deque<PooledContext> contexts = idleContexts.get(key);
+      final PooledContext pooledContext = contexts != null ? contexts.pollFirst() : null;
+
+      if (pooledContext != null) {
+         idleCount.decrementAndGet();
+         return pooledContext;
+      }
+
+      return new PooledContext(key, statementLimit);
+   }
+
+   static void release(final PooledContext pooledContext) {
+      if (!pooledContext.finish() || pooledContext.executions >= MAX_EXECUTIONS_PER_CONTEXT) {
+         pooledContext.close();
+         return;
+      }
+
+      final Deque<PooledContext> contexts = idleContexts.computeIfAbsent(pooledContext.key, key -> new ConcurrentLinkedDeque<>());
+      if (contexts.size() < MAX_IDLE_CONTEXTS_PER_KEY) {
+         if (idleCount.incrementAndGet() <= MAX_IDLE_CONTEXTS) {
+            contexts.offerFirst(pooledContext);
+            return;
+         }
+         idleCount.decrementAndGet();
+      }
+
+      pooledContext.close();
+   }
+
+   /**
+    * Gets the cached source of the script. The script is wrapped in a function so that its declarations do not
+    * survive in the reused global scope.
+    *
+    * @param js
+    *       script to get the source for.
+    * @return cached source.
+    */
+   static Source getSource(final String js) {
+      return sources.computeIfAbsent(js, code ->
+            Source.newBuilder("js", "(function() {" + code + "\n})();", "script-" + Integer.toHexString(code.hashCode()) + ".js")
+                  .cached(true)
+                  .buildLiteral()
+      );
+   }
+}
@@ -18,9 +18,6 @@
  */
 package io.lumeer.core.task.executor;
 
-import static java.util.stream.Collectors.mapping;
-import static java.util.stream.Collectors.toSet;
-
 import io.lumeer.api.model.Attribute;
 import io.lumeer.api.model.Collection;
 import io.lumeer.api.model.Document;
@@ -30,28 +27,24 @@ import io.lumeer.api.model.common.WithId;
 import io.lumeer.core.constraint.ConstraintManager;
 import io.lumeer.core.facade.configuration.DefaultConfigurationProducer;
 import io.lumeer.core.task.ContextualTask;
-import io.lumeer.core.util.MomentJsParser;
 import io.lumeer.engine.api.data.DataDocument;
-import io.lumeer.storage.api.query.SearchQuery;
-import io.lumeer.storage.api.query.SearchQueryStem;
 
 import org.graalvm.polyglot.Context;
-import org.graalvm.polyglot.Engine;
+import org.graalvm.polyglot.PolyglotException;
 import org.graalvm.polyglot.Value;
 
 import java.math.BigDecimal;
 import java.time.ZonedDateTime;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.function.BiConsumer;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
 
@@ -59,28 +52,37 @@ public class JsExecutor {
 
    private static Logger log = Logger.getLogger(JsExecutor.class.getName());
 
+   private static final long DEFAULT_TIME_LIMIT = 3000;
+
+   private static final DefaultConfigurationProducer configurationProducer = new DefaultConfigurationProducer();
+   private static final long defaultTimeLimit = configurationProducer.getLong(DefaultConfigurationProducer.JS_TIME_LIMIT, DEFAULT_TIME_LIMIT, 0);
+   private static final long defaultStatementLimit = configurationProducer.getLong(DefaultConfigurationProducer.JS_STATEMENT_LIMIT, 0, 0);
+
+   private final JsWatchdog watchdog;
    private LumeerBridge lumeerBridge;
+   private LumeerBridgeCache cache;
    private boolean dryRun = false;
-   private static Engine engine = Engine
-         .newBuilder()
-         .allowExperimentalOptions(true)
-         .option("js.experimental-foreign-object-prototype", "true")
-         .build();
-   private static String momentJsCode = MomentJsParser.getMomentJsCode();
+   private long timeLimit = defaultTimeLimit;
+   private long statementLimit = defaultStatementLimit;
+
+   public JsExecutor(final JsWatchdog watchdog) {
+      this.watchdog = watchdog;
+   }
 
    public static class LumeerBridge {
 
-      private static DefaultConfigurationProducer configurationProducer = new DefaultConfigurationProducer();
       private static ConstraintManager constraintManager = ConstraintManager.getInstance(configurationProducer);
       private ContextualTask ruleTask;
       private Collection collection;
+      private LumeerBridgeCache cache;
       private Set<Change> changes = new HashSet<>();
       private Exception cause = null;
       private boolean dryRun = false;
 
-      private LumeerBridge(final ContextualTask task, final Collection collection) {
+      private LumeerBridge(final ContextualTask task, final Collection collection, final LumeerBridgeCache cache) {
          this.ruleTask = task;
          this.collection = collection;
+         this.cache = cache;
       }
 
       public String getSequenceNumber(final String sequenceName, final int digits) {
@@ -139,42 +141,11 @@ public class JsExecutor {
          }
       }
 
-      private List<LinkInstance> getLinkInstances(final String documentId, final String linkTypeId) {
-         final SearchQuery query = SearchQuery
-               .createBuilder()
-               .stems(Collections.singletonList(
-                     SearchQueryStem
-                           .createBuilder("")
-                           .linkTypeIds(Collections.singletonList(linkTypeId))
-                           .documentIds(Set.of(documentId))
-                           .build()))
-               .build();
-
-         final List<LinkInstance> result = ruleTask.getDaoContextSnapshot().getLinkInstanceDao()
-                                                   .searchLinkInstances(query);
-         result.stream().forEach(linkInstance -> constraintManager.encodeDataTypesForFce(ruleTask.getDaoContextSnapshot().getLinkTypeDao().getLinkType(linkTypeId), linkInstance.getData()));
-
-         return result;
-      }
-
       public List<LinkBridge> getLinks(DocumentBridge d, String linkTypeId) {
          try {
-            final LinkType linkType = ruleTask.getDaoContextSnapshot().getLinkTypeDao().getLinkType(linkTypeId);
-            final List<LinkInstance> links = getLinkInstances(d.document.getId(), linkTypeId);
-
-            // load link data
-            if (links.size() > 0) {
-               final Map<String, DataDocument> linkData = ruleTask.getDaoContextSnapshot().getLinkDataDao().getData(linkTypeId, links.stream().map(LinkInstance::getId).collect(toSet())).stream()
-                                                                  .collect(Collectors.toMap(DataDocument::getId, data -> data));
-
-               // match link instances with their data and convert to bridge
-               return links.stream().map(linkInstance -> {
-                  linkInstance.setData(linkData.get(linkInstance.getId()));
-                  return new LinkBridge(linkInstance);
-               }).collect(Collectors.toList());
-            } else {
-               return Collections.emptyList();
-            }
+            return cache.getLinkInstances(d.document.getId(), linkTypeId).stream()
+                        .map(LinkBridge::new)
+                        .collect(Collectors.toList());
          } catch (Exception e) {
             cause = e;
             throw e;
@@ -183,13 +154,10 @@ public class JsExecutor {
 
       public DocumentBridge getLinkDocument(final LinkBridge l, final String collectionId) {
          try {
-            List<Document> documents = ruleTask.getDaoContextSnapshot().getDocumentDao().getDocumentsByIds(l.link.getDocumentIds().toArray(new String[0]));
+            final List<Document> documents = cache.getDocuments(l.link.getDocumentIds());
             if (documents.size() == 2) {
                final Document doc = documents.get(0).getCollectionId().equals(collectionId) ? documents.get(0) : documents.get(1);
 
-               doc.setData(ruleTask.getDaoContextSnapshot().getDataDao().getData(doc.getCollectionId(), doc.getId()));
-               constraintManager.encodeDataTypesForFce(ruleTask.getDaoContextSnapshot().getCollectionDao().getCollectionById(collectionId), doc.getData());
-
                return new DocumentBridge(doc);
             }
 
@@ -202,37 +170,15 @@ public class JsExecutor {
 
       public List<DocumentBridge> getLinkedDocuments(DocumentBridge d, String linkTypeId) {
          try {
-            final LinkType linkType = ruleTask.getDaoContextSnapshot().getLinkTypeDao().getLinkType(linkTypeId);
-            final List<LinkInstance> links = getLinkInstances(d.document.getId(), linkTypeId);
-            final String otherCollectionId = linkType.getCollectionIds().get(0).equals(collection.getId()) ?
-                  linkType.getCollectionIds().get(1) : linkType.getCollectionIds().get(0);
-
-            // load linked document ids
-            if (links.size() > 0) {
-               final Set<String> documentIds = links.stream()
-                                                    .map(LinkInstance::getDocumentIds)
-                                                    .flatMap(java.util.Collection::stream)
-                                                    .collect(Collectors.toSet());
-               documentIds.remove(d.document.getId());
-
-               // load document data
-               final Map<String, DataDocument> data = new HashMap<>();
-               ruleTask.getDaoContextSnapshot().getDataDao()
-                       .getData(otherCollectionId, documentIds)
-                       .forEach(dd -> data.put(dd.getId(), dd));
-
-               // load document meta data and match them with user data
-               return ruleTask.getDaoContextSnapshot().getDocumentDao()
-                              .getDocumentsByIds(documentIds.toArray(new String[0]))
-                              .stream().map(document -> {
-                        document.setData(data.get(document.getId()));
-                        constraintManager.encodeDataTypesForFce(ruleTask.getDaoContextSnapshot().getCollectionDao().getCollectionById(otherCollectionId), document.getData());
-
-                        return new DocumentBridge(document);
-                     }).collect(Collectors.toList());
-            } else {
-               return Collections.emptyList();
-            }
+            final Set<String> documentIds = cache.getLinkInstances(d.document.getId(), linkTypeId).stream()
+                                                 .map(LinkInstance::getDocumentIds)
+                                                 .flatMap(java.util.Collection::stream)
+                                                 .collect(Collectors.toSet());
+            documentIds.remove(d.document.getId());
+
+            return cache.getDocuments(documentIds).stream()
+                        .map(DocumentBridge::new)
+                        .collect(Collectors.toList());
          } catch (Exception e) {
             cause = e;
             throw e;
@@ -298,52 +244,60 @@ public class JsExecutor {
             return List.of();
          }
 
-         final Map<String, List<Document>> updatedDocuments = new HashMap<>(); // Collection -> [Document]
-         Map<String, Set<String>> documentIdsByCollection = changes.stream().map(change -> change.getEntity())
-                                                                   .collect(Collectors.groupingBy(Document::getCollectionId, mapping(Document::getId, toSet())));
-         final Map<String, Collection> collectionsMap = ruleTask.getDaoContextSnapshot().getCollectionDao().getCollectionsByIds(documentIdsByCollection.keySet())
+         final Map<String, Document> documents = new HashMap<>(); // Document id -> Document
+         final Map<String, DataDocument> newData = new HashMap<>(); // Document id -> changed data
+         changes.forEach(change -> {
+            documents.putIfAbsent(change.getEntity().getId(), change.getEntity());
+            newData.computeIfAbsent(change.getEntity().getId(), id -> new DataDocument()).append(change.getAttrId(), change.getValue());
+         });
+
+         final Map<String, List<Document>> documentsByCollection = documents.values().stream().collect(Collectors.groupingBy(Document::getCollectionId));
+         final Map<String, Collection> collectionsMap = ruleTask.getDaoContextSnapshot().getCollectionDao().getCollectionsByIds(documentsByCollection.keySet())
                                                                 .stream().collect(Collectors.toMap(Collection::getId, coll -> coll));
-         Set<String> collectionsChanged = new HashSet<>();
+         final Map<String, List<Document>> updatedDocuments = new HashMap<>(); // Collection -> [Document]
+         final Map<String, Map<String, Integer>> attributesToInc = new HashMap<>(); // Collection -> attribute id -> usage increment
 
-         changes.forEach(documentChange -> {
-            final Document document = documentChange.getEntity();
-            final Collection collection = collectionsMap.get(document.getCollectionId());
-            final DataDocument newData = new DataDocument(documentChange.getAttrId(), documentChange.getValue());
-            final DataDocument oldData = new DataDocument(document.getData());
+         documentsByCollection.forEach((collectionId, collectionDocuments) -> {
+            final Collection collection = collectionsMap.get(collectionId);
+            final Map<String, DataDocument> patches = new HashMap<>();
 
-            constraintManager.encodeDataTypes(collection, newData);
+            collectionDocuments.forEach(document -> {
+               final DataDocument patch = newData.get(document.getId());
+               final Set<String> oldAttributeIds = document.getData() == null ? Set.of() : document.getData().keySet();
 
-            Set<String> attributesIdsToAdd = new HashSet<>(newData.keySet());
-            attributesIdsToAdd.removeAll(oldData.keySet());
+               constraintManager.encodeDataTypes(collection, patch);
 
-            if (attributesIdsToAdd.size() > 0) {
-               Optional<Attribute> attribute = collection.getAttributes().stream().filter(attr -> attr.getId().equals(documentChange.getAttrId())).findFirst();
-               attribute.ifPresent(attr -> attr.setUsageCount(attr.getUsageCount() + 1));
-               collection.setLastTimeUsed(ZonedDateTime.now());
-               collectionsChanged.add(collection.getId());
-            }
+               patch.keySet().stream().filter(attrId -> !oldAttributeIds.contains(attrId)).forEach(attrId ->
+                  attributesToInc.computeIfAbsent(collectionId, id -> new HashMap<>()).merge(attrId, 1, Integer::sum)
+               );
 
-            document.setUpdatedBy(ruleTask.getInitiator().getId());
-            document.setUpdateDate(ZonedDateTime.now());
+               document.setUpdatedBy(ruleTask.getInitiator().getId());
+               document.setUpdateDate(ZonedDateTime.now());
+               patches.put(document.getId(), patch);
+            });
 
-            DataDocument patchedData = ruleTask.getDaoContextSnapshot().getDataDao()
-                                               .patchData(documentChange.getEntity().getCollectionId(), documentChange.getEntity().getId(), newData);
+            final Map<String, DataDocument> patchedData = ruleTask.getDaoContextSnapshot().getDataDao().patchData(collectionId, patches)
+                                                                  .stream().collect(Collectors.toMap(DataDocument::getId, data -> data));
+            final List<Document> collectionUpdatedDocuments = ruleTask.getDaoContextSnapshot().getDocumentDao().updateDocuments(collectionDocuments);
 
-            Document updatedDocument = ruleTask.getDaoContextSnapshot().getDocumentDao()
-                                               .updateDocument(document.getId(), document);
+            collectionUpdatedDocuments.forEach(updatedDocument -> {
+               final DataDocument data = patchedData.get(updatedDocument.getId());
+               constraintManager.decodeDataTypes(collection, data);
+               updatedDocument.setData(data);
+            });
 
-            constraintManager.decodeDataTypes(collection, patchedData);
-            updatedDocument.setData(patchedData);
-
-            updatedDocuments.computeIfAbsent(documentChange.getEntity().getCollectionId(), key -> new ArrayList<>())
-                            .add(updatedDocument);
+            updatedDocuments.put(collectionId, collectionUpdatedDocuments);
          });
 
-         collectionsChanged.forEach(collectionId -> ruleTask.getDaoContextSnapshot()
-                                                            .getCollectionDao().updateCollection(collectionId, collectionsMap.get(collectionId), null));
+         attributesToInc.forEach((collectionId, collectionAttributesToInc) -> {
+            final Collection collection = collectionsMap.get(collectionId);
+            collectionAttributesToInc.keySet().retainAll(collection.getAttributes().stream().map(Attribute::getId).collect(Collectors.toSet()));
+            collectionsMap.put(collectionId, ruleTask.getDaoContextSnapshot().getCollectionDao()
+                                                     .updateCollectionCounters(collectionId, collectionAttributesToInc, 0, ZonedDateTime.now()));
+         });
 
          // send push notification
-         if (ruleTask.getPusherClient() != null) {
+         if (ruleTask.getPushNotificationOutbox() != null) {
             updatedDocuments.keySet().forEach(collectionId ->
                   ruleTask.sendPushNotifications(collectionsMap.get(collectionId), updatedDocuments.get(collectionId))
             );
@@ -357,49 +311,58 @@ public class JsExecutor {
             return List.of();
          }
 
-         final Map<String, List<LinkInstance>> updatedLinks = new HashMap<>(); // LinkType -> [LinkInstance]
-         final Map<String, LinkType> linkTypesMap = ruleTask.getDaoContextSnapshot().getLinkTypeDao().getAllLinkTypes()
-                                                            .stream().collect(Collectors.toMap(LinkType::getId, linkType -> linkType));
-         Set<String> linkTypesChanged = new HashSet<>();
+         final Map<String, LinkInstance> linkInstances = new HashMap<>(); // LinkInstance id -> LinkInstance
+         final Map<String, DataDocument> newData = new HashMap<>(); // LinkInstance id -> changed data
+         changes.forEach(change -> {
+            linkInstances.putIfAbsent(change.getEntity().getId(), change.getEntity());
+            newData.computeIfAbsent(change.getEntity().getId(), id -> new DataDocument()).append(change.getAttrId(), change.getValue());
+         });
 
-         changes.forEach(linkChange -> {
-            final LinkInstance linkInstance = linkChange.getEntity();
-            final LinkType linkType = linkTypesMap.get(linkInstance.getLinkTypeId());
-            final DataDocument newData = new DataDocument(linkChange.getAttrId(), linkChange.getValue());
-            final DataDocument oldData = new DataDocument(linkInstance.getData() == null ? new DataDocument() : linkInstance.getData());
+         final Map<String, List<LinkInstance>> linksByLinkType = linkInstances.values().stream().collect(Collectors.groupingBy(LinkInstance::getLinkTypeId));
+         final Map<String, LinkType> linkTypesMap = ruleTask.getDaoContextSnapshot().getLinkTypeDao().getLinkTypesByIds(linksByLinkType.keySet())
+                                                            .stream().collect(Collectors.toMap(LinkType::getId, linkType -> linkType));
+         final Map<String, List<LinkInstance>> updatedLinks = new HashMap<>(); // LinkType -> [LinkInstance]
+         final Set<String> linkTypesChanged = new HashSet<>();
 
-            constraintManager.encodeDataTypes(linkType, newData);
+         linksByLinkType.forEach((linkTypeId, linkTypeLinks) -> {
+            final LinkType linkType = linkTypesMap.get(linkTypeId);
+            final Map<String, DataDocument> patches = new HashMap<>();
 
-            Set<String> attributesIdsToAdd = new HashSet<>(newData.keySet());
-            attributesIdsToAdd.removeAll(oldData.keySet());
+            linkTypeLinks.forEach(linkInstance -> {
+               final DataDocument patch = newData.get(linkInstance.getId());
+               final Set<String> oldAttributeIds = linkInstance.getData() == null ? Set.of() : linkInstance.getData().keySet();
 
-            if (attributesIdsToAdd.size() > 0) {
-               Optional<Attribute> attribute = linkType.getAttributes().stream().filter(attr -> attr.getId().equals(linkChange.getAttrId())).findFirst();
-               attribute.ifPresent(attr -> attr.setUsageCount(attr.getUsageCount() + 1));
-               linkTypesChanged.add(linkType.getId());
-            }
+               constraintManager.encodeDataTypes(linkType, patch);
 
-            linkInstance.setUpdatedBy(ruleTask.getInitiator().getId());
-            linkInstance.setUpdateDate(ZonedDateTime.now());
+               patch.keySet().stream().filter(attrId -> !oldAttributeIds.contains(attrId)).forEach(attrId -> {
+                  Optional<Attribute> attribute = linkType.getAttributes().stream().filter(attr -> attr.getId().equals(attrId)).findFirst();
+                  attribute.ifPresent(attr -> attr.setUsageCount(attr.getUsageCount() + 1));
+                  linkTypesChanged.add(linkTypeId);
+               });
 
-            DataDocument patchedData = ruleTask.getDaoContextSnapshot().getLinkDataDao()
-                                               .patchData(linkChange.getEntity().getLinkTypeId(), linkChange.getEntity().getId(), newData);
+               linkInstance.setUpdatedBy(ruleTask.getInitiator().getId());
+               linkInstance.setUpdateDate(ZonedDateTime.now());
+               patches.put(linkInstance.getId(), patch);
+            });
 
-            LinkInstance updatedLink = ruleTask.getDaoContextSnapshot().getLinkInstanceDao()
-                                               .updateLinkInstance(linkInstance.getId(), linkInstance);
+            final Map<String, DataDocument> patchedData = ruleTask.getDaoContextSnapshot().getLinkDataDao().patchData(linkTypeId, patches)
+                                                                  .stream().collect(Collectors.toMap(DataDocument::getId, data -> data));
+            final List<LinkInstance> linkTypeUpdatedLinks = ruleTask.getDaoContextSnapshot().getLinkInstanceDao().updateLinkInstances(linkTypeLinks);
 
-            constraintManager.decodeDataTypes(linkType, patchedData);
-            updatedLink.setData(patchedData);
+            linkTypeUpdatedLinks.forEach(updatedLink -> {
+               final DataDocument data = patchedData.get(updatedLink.getId());
+               constraintManager.decodeDataTypes(linkType, data);
+               updatedLink.setData(data);
+            });
 
-            updatedLinks.computeIfAbsent(linkChange.getEntity().getLinkTypeId(), key -> new ArrayList<>())
-                        .add(updatedLink);
+            updatedLinks.put(linkTypeId, linkTypeUpdatedLinks);
          });
 
          linkTypesChanged.forEach(linkTypeId -> ruleTask.getDaoContextSnapshot()
                                                         .getLinkTypeDao().updateLinkType(linkTypeId, linkTypesMap.get(linkTypeId), null));
 
          // send push notification
-         if (ruleTask.getPusherClient() != null) {
+         if (ruleTask.getPushNotificationOutbox() != null) {
             updatedLinks.keySet().forEach(linkTypeId ->
                   ruleTask.sendPushNotifications(linkTypesMap.get(linkTypeId), updatedLinks.get(linkTypeId))
             );
@@ -544,30 +507,114 @@ public class JsExecutor {
    }
 
    public void execute(final Map<String, Object> bindings, final ContextualTask task, final Collection collection, final String js) {
-      lumeerBridge = new LumeerBridge(task, collection);
+      lumeerBridge = new LumeerBridge(task, collection, getCache(task));
       lumeerBridge.dryRun = dryRun;
 
-      Context context = Context
-            .newBuilder("js")
-            .engine(engine)
-            .allowAllAccess(true)
-            .build();
-      context.initialize("js");
-      context.getPolyglotBindings().putMember("lumeer", lumeerBridge);
-
-      bindings.forEach((k, v) -> context.getBindings("js").putMember(k, v));
-
-      Timer timer = new Timer(true);
-      timer.schedule(new TimerTask() {
-         @Override
-         public void run() {
-            context.close(true);
+      final JsContextPool.PooledContext pooledContext = JsContextPool.acquire(getPoolKey(task), statementLimit);
+      try {
+         evaluate(pooledContext, bindings, js);
+      } finally {
+         JsContextPool.release(pooledContext);
+      }
+   }
+
+   /**
+    * Runs the script once for each of the bindings in a single context. Changes of all the runs are kept together
+    * so they can be committed at once. Changes of a failed run are dropped, the error handler is called right after
+    * the failure so that it can inspect the cause and add replacement changes.
+    *
+    * @param bindingsList
+    *       bindings of the individual runs.
+    * @param task
+    *       task the script runs in.
+    * @param collection
+    *       collection the script is bound to, if any.
+    * @param js
+    *       script to run.
+    * @param errorHandler
+    *       handler of failed runs, gets the index of the bindings and the exception.
+    */
+   public void executeAll(final List<Map<String, Object>> bindingsList, final ContextualTask task, final Collection collection, final String js, final BiConsumer<Integer, Exception> errorHandler) {
+      lumeerBridge = new LumeerBridge(task, collection, getCache(task));
+      lumeerBridge.dryRun = dryRun;
+
+      final Set<Change> allChanges = new HashSet<>();
+      JsContextPool.PooledContext pooledContext = JsContextPool.acquire(getPoolKey(task), statementLimit);
+      try {
+         for (int i = 0; i < bindingsList.size(); i++) {
+            if (i > 0 && !pooledContext.clear()) {
+               JsContextPool.release(pooledContext);
+               pooledContext = JsContextPool.acquire(getPoolKey(task), statementLimit);
+            }
+
+            lumeerBridge.changes = new HashSet<>();
+            lumeerBridge.cause = null;
+            try {
+               evaluate(pooledContext, bindingsList.get(i), js);
+            } catch (Exception e) {
+               lumeerBridge.changes = new HashSet<>();
+               errorHandler.accept(i, e);
+            }
+            allChanges.addAll(lumeerBridge.changes);
+         }
+      } finally {
+         lumeerBridge.changes = allChanges;
+         JsContextPool.release(pooledContext);
+      }
+   }
+
+   private void evaluate(final JsContextPool.PooledContext pooledContext, final Map<String, Object> bindings, final String js) {
+      final Context context = pooledContext.getContext();
+
+      try {
+         context.getPolyglotBindings().putMember("lumeer", lumeerBridge);
+         bindings.forEach((k, v) -> context.getBindings("js").putMember(k, v));
+
+         try (var watch = watchdog.watch(pooledContext, timeLimit)) {
+            context.eval(JsContextPool.getSource(js));
+         }
+      } catch (PolyglotException e) {
+         if (e.isResourceExhausted()) {
+            watchdog.statementLimitExceeded();
+            pooledContext.invalidate();
          }
-      }, 3000);
+         throw e;
+      }
+   }
 
-      final String jsCode = (js.contains(MomentJsParser.FORMAT_JS_DATE) || js.contains(MomentJsParser.PARSE_JS_DATE) ? momentJsCode + ";\n" : "") + js;
+   /**
+    * Loads the links of the given types for all the documents, together with the linked documents, before the scripts
+    * run, so that the scripts do not query them one document at a time.
+    *
+    * @param task
+    *       task the scripts will run in.
+    * @param documentIds
+    *       ids of the documents the scripts will run for.
+    * @param linkTypeIds
+    *       ids of the link types the scripts use.
+    */
+   public void prefetchLinks(final ContextualTask task, final Set<String> documentIds, final Set<String> linkTypeIds) {
+      getCache(task).prefetchLinks(documentIds, linkTypeIds);
+   }
+
+   public void prefetchDocuments(final ContextualTask task, final Set<String> documentIds) {
+      getCache(task).prefetchDocuments(documentIds);
+   }
+
+   private LumeerBridgeCache getCache(final ContextualTask task) {
+      if (cache == null) {
+         cache = new LumeerBridgeCache(task.getDaoContextSnapshot(), LumeerBridge.constraintManager);
+      }
+
+      return cache;
+   }
+
+   private String getPoolKey(final ContextualTask task) {
+      if (task == null || task.getDaoContextSnapshot() == null) {
+         return "";
+      }
 
-      context.eval("js", jsCode);
+      return task.getDaoContextSnapshot().getOrganizationId() + "/" + task.getDaoContextSnapshot().getProjectId();
    }
 
    public void commitChanges() {
@@ -578,9 +625,36 @@ public class JsExecutor {
       return lumeerBridge.getChanges();
    }
 
-   public void setErrorInAttribute(final Document document, final String attributeId) {
-      lumeerBridge.changes = Set.of(new DocumentChange(document, attributeId, "ERR!"));
-      lumeerBridge.commitChanges();
+   public void clearChanges() {
+      lumeerBridge.changes = new HashSet<>();
+   }
+
+   /**
+    * Splits the collected changes into groups of changes of the same document or link instance, so that they can be
+    * committed separately.
+    *
+    * @return groups of changes.
+    */
+   public java.util.Collection<Set<Change>> getChangesByEntity() {
+      final Map<String, Set<Change>> changesByEntity = new LinkedHashMap<>();
+      lumeerBridge.changes.forEach(change -> {
+         final String key = change.getClass().getSimpleName() + ":" + (change.getEntity() != null ? change.getEntity().getId() : null);
+         changesByEntity.computeIfAbsent(key, k -> new HashSet<>()).add(change);
+      });
+
+      return changesByEntity.values();
+   }
+
+   public void setChanges(final Set<Change> changes) {
+      lumeerBridge.changes = new HashSet<>(changes);
+   }
+
+   public void addErrorInAttribute(final Document document, final String attributeId) {
+      lumeerBridge.changes.add(new DocumentChange(document, attributeId, "ERR!"));
+   }
+
+   public void addErrorInAttribute(final LinkInstance linkInstance, final String attributeId) {
+      lumeerBridge.changes.add(new LinkChange(linkInstance, attributeId, "ERR!"));
    }
 
    public Exception getCause() {
@@ -594,4 +668,32 @@ public class JsExecutor {
    public void setDryRun(final boolean dryRun) {
       this.dryRun = dryRun;
    }
+
+   public long getTimeLimit() {
+      return timeLimit;
+   }
+
+   /**
+    * Sets the maximum execution time of the script.
+    *
+    * @param timeLimit
+    *       time limit in milliseconds, the configured default is used when not positive.
+    */
+   public void setTimeLimit(final long timeLimit) {
+      this.timeLimit = timeLimit > 0 ? timeLimit : defaultTimeLimit;
+   }
+
+   public long getStatementLimit() {
+      return statementLimit;
+   }
+
+   /**
+    * Sets the maximum number of statements the script can execute.
+    *
+    * @param statementLimit
+    *       statement limit, the configured default is used when not positive.
+    */
+   public void setStatementLimit(final long statementLimit) {
+      this.statementLimit = statementLimit > 0 ? statementLimit : defaultStatementLimit;
+   }
 }
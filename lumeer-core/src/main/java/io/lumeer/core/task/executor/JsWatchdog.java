@@ -0,0 +1,101 @@
+/*
+ * Lumeer: Modern Data Definition and Processing Platform
+ *
+ * Copyright (C) since 2017 Lumeer.io, s.r.o. and/or its affiliates.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.lumeer.core.task.executor;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import javax.enterprise.concurrent.ManagedScheduledExecutorService;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+
+/**
+ * Cancels scripts that run longer than their time limit using the managed scheduler instead of a timer thread per
+ * script execution, and keeps counters of the running and interrupted scripts.
+ */
+@ApplicationScoped
+public class JsWatchdog {
+
+   @Inject
+   private ManagedScheduledExecutorService scheduler;
+
+   private final AtomicInteger running = new AtomicInteger();
+   private final LongAdder executions = new LongAdder();
+   private final LongAdder timeouts = new LongAdder();
+   private final LongAdder statementLimitsExceeded = new LongAdder();
+
+   class Watch implements AutoCloseable {
+      private final JsContextPool.PooledContext pooledContext;
+      private final ScheduledFuture<?> future;
+
+      private Watch(final JsContextPool.PooledContext pooledContext, final ScheduledFuture<?> future) {
+         this.pooledContext = pooledContext;
+         this.future = future;
+      }
+
+      @Override
+      public void close() {
+         future.cancel(false);
+         pooledContext.stop();
+         running.decrementAndGet();
+      }
+   }
+
+   /**
+    * Starts watching the script execution in the given context. The returned watch must be closed once the script finishes.
+    *
+    * @param pooledContext
+    *       context running the script.
+    * @param timeLimit
+    *       maximum execution time in milliseconds.
+    * @return watch of the execution.
+    */
+   Watch watch(final JsContextPool.PooledContext pooledContext, final long timeLimit) {
+      running.incrementAndGet();
+      executions.increment();
+
+      final long generation = pooledContext.start();
+      return new Watch(pooledContext, scheduler.schedule(() -> {
+         if (pooledContext.cancel(generation)) {
+            timeouts.increment();
+         }
+      }, timeLimit, TimeUnit.MILLISECONDS));
+   }
+
+   void statementLimitExceeded() {
+      statementLimitsExceeded.increment();
+   }
+
+   public int getRunningCount() {
+      return running.get();
+   }
+
+   public long getExecutionsCount() {
+      return executions.sum();
+   }
+
+   public long getTimeoutsCount() {
+      return timeouts.sum();
+   }
+
+   public long getStatementLimitsExceededCount() {
+      return statementLimitsExceeded.sum();
+   }
+}
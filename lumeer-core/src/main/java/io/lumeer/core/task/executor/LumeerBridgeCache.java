@@ -0,0 +1,161 @@
+/*
+ * Lumeer: Modern Data Definition and Processing Platform
+ *
+ * Copyright (C) since 2017 Lumeer.io, s.r.o. and/or its affiliates.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.lumeer.core.task.executor;
+
+import io.lumeer.api.model.Collection;
+import io.lumeer.api.model.Document;
+import io.lumeer.api.model.LinkInstance;
+import io.lumeer.api.model.LinkType;
+import io.lumeer.core.constraint.ConstraintManager;
+import io.lumeer.engine.api.data.DataDocument;
+import io.lumeer.storage.api.dao.context.DaoContextSnapshot;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Read cache of the data scripts access through {@link JsExecutor.LumeerBridge} during a single task. Link instances
+ * and linked documents of a whole batch can be loaded up front, anything else is loaded on the first access and
+ * kept for the rest of the task. Returned documents and link instances have their data encoded for the functions.
+ */
+class LumeerBridgeCache {
+
+   private final DaoContextSnapshot daoContextSnapshot;
+   private final ConstraintManager constraintManager;
+
+   private final Map<String, Collection> collections = new HashMap<>();
+   private final Map<String, LinkType> linkTypes = new HashMap<>();
+   private final Map<String, Document> documents = new HashMap<>();
+   private final Map<String, Map<String, List<LinkInstance>>> linkInstances = new HashMap<>(); // link type -> document -> links
+
+   LumeerBridgeCache(final DaoContextSnapshot daoContextSnapshot, final ConstraintManager constraintManager) {
+      this.daoContextSnapshot = daoContextSnapshot;
+      this.constraintManager = constraintManager;
+   }
+
+   Collection getCollection(final String collectionId) {
+      return collections.computeIfAbsent(collectionId, id -> daoContextSnapshot.getCollectionDao().getCollectionById(id));
+   }
+
+   LinkType getLinkType(final String linkTypeId) {
+      return linkTypes.computeIfAbsent(linkTypeId, id -> daoContextSnapshot.getLinkTypeDao().getLinkType(id));
+   }
+
+   /**
+    * Loads link instances of the given link type for all the documents together with the documents on the other side of the links.
+    *
+    * @param documentIds
+    *       ids of the documents.
+    * @param linkTypeIds
+    *       ids of the link types.
+    */
+   void prefetchLinks(final Set<String> documentIds, final Set<String> linkTypeIds) {
+      linkTypeIds.forEach(linkTypeId -> {
+         final Map<String, List<LinkInstance>> documentLinks = linkInstances.computeIfAbsent(linkTypeId, id -> new HashMap<>());
+         final Set<String> missingIds = documentIds.stream().filter(id -> !documentLinks.containsKey(id)).collect(Collectors.toSet());
+
+         if (!missingIds.isEmpty()) {
+            final List<LinkInstance> links = loadLinkInstances(linkTypeId, missingIds);
+            missingIds.forEach(id -> documentLinks.put(id, new ArrayList<>()));
+            links.forEach(link -> link.getDocumentIds().stream()
+                                      .filter(missingIds::contains)
+                                      .forEach(id -> documentLinks.get(id).add(link)));
+
+            prefetchDocuments(getLinkedDocumentIds(links, missingIds));
+         }
+      });
+   }
+
+   /**
+    * Loads the documents with their data unless they have been loaded already.
+    *
+    * @param documentIds
+    *       ids of the documents.
+    */
+   void prefetchDocuments(final Set<String> documentIds) {
+      final Set<String> missingIds = documentIds.stream().filter(id -> !documents.containsKey(id)).collect(Collectors.toSet());
+      if (missingIds.isEmpty()) {
+         return;
+      }
+
+      final Map<String, List<Document>> documentsByCollection = daoContextSnapshot.getDocumentDao().getDocumentsByIds(missingIds.toArray(new String[0]))
+                                                                                  .stream().collect(Collectors.groupingBy(Document::getCollectionId));
+      documentsByCollection.forEach((collectionId, collectionDocuments) -> {
+         final Collection collection = getCollection(collectionId);
+         final Map<String, DataDocument> data = daoContextSnapshot.getDataDao()
+                                                                  .getData(collectionId, collectionDocuments.stream().map(Document::getId).collect(Collectors.toSet()))
+                                                                  .stream().collect(Collectors.toMap(DataDocument::getId, d -> d));
+
+         collectionDocuments.forEach(document -> {
+            final DataDocument documentData = data.getOrDefault(document.getId(), new DataDocument());
+            constraintManager.encodeDataTypesForFce(collection, documentData);
+            document.setData(documentData);
+            documents.put(document.getId(), document);
+         });
+      });
+   }
+
+   List<LinkInstance> getLinkInstances(final String documentId, final String linkTypeId) {
+      prefetchLinks(Set.of(documentId), Set.of(linkTypeId));
+      return linkInstances.get(linkTypeId).get(documentId);
+   }
+
+   List<Document> getDocuments(final java.util.Collection<String> documentIds) {
+      prefetchDocuments(new HashSet<>(documentIds));
+      return documentIds.stream().map(documents::get).filter(Objects::nonNull).collect(Collectors.toList());
+   }
+
+   private Set<String> getLinkedDocumentIds(final List<LinkInstance> links, final Set<String> documentIds) {
+      final Set<String> linkedDocumentIds = new HashSet<>();
+      links.forEach(link -> {
+         if (documentIds.containsAll(link.getDocumentIds())) { // both ends are among the documents, e.g. with a link type within a single collection
+            linkedDocumentIds.addAll(link.getDocumentIds());
+         } else {
+            link.getDocumentIds().stream().filter(id -> !documentIds.contains(id)).forEach(linkedDocumentIds::add);
+         }
+      });
+
+      return linkedDocumentIds;
+   }
+
+   private List<LinkInstance> loadLinkInstances(final String linkTypeId, final Set<String> documentIds) {
+      final List<LinkInstance> links = daoContextSnapshot.getLinkInstanceDao().getLinkInstancesByDocumentIds(documentIds, linkTypeId);
+      if (links.isEmpty()) {
+         return links;
+      }
+
+      final LinkType linkType = getLinkType(linkTypeId);
+      final Map<String, DataDocument> data = daoContextSnapshot.getLinkDataDao()
+                                                               .getData(linkTypeId, links.stream().map(LinkInstance::getId).collect(Collectors.toSet()))
+                                                               .stream().collect(Collectors.toMap(DataDocument::getId, d -> d));
+      links.forEach(link -> {
+         final DataDocument linkData = data.getOrDefault(link.getId(), new DataDocument());
+         constraintManager.encodeDataTypesForFce(linkType, linkData);
+         link.setData(linkData);
+      });
+
+      return links;
+   }
+}
@@ -22,6 +22,7 @@ import io.lumeer.api.model.Document;
 import io.lumeer.api.model.rule.ZapierRule;
 import io.lumeer.core.facade.ZapierFacade;
 import io.lumeer.core.task.RuleTask;
+import io.lumeer.core.task.WebhookDispatcher;
 import io.lumeer.engine.api.data.DataDocument;
 
 import java.util.HashSet;
@@ -30,10 +31,6 @@ import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
-import javax.ws.rs.client.Client;
-import javax.ws.rs.client.ClientBuilder;
-import javax.ws.rs.client.Entity;
-import javax.ws.rs.core.MediaType;
 
 public class ZapierRuleTaskExecutor {
 
@@ -49,16 +46,13 @@ public class ZapierRuleTaskExecutor {
       this.ruleTask = ruleTask;
    }
 
-   public void execute() {
+   public void execute(final WebhookDispatcher webhookDispatcher) {
       try {
          final Document document = ruleTask.getNewDocument();
          final Document oldDocument = ruleTask.getOldDocument();
          final Collection collection = ruleTask.getCollection();
-         final Entity<DataDocument> entity = Entity.json(getZapierUpdateDocumentMessage(collection, oldDocument, document));
 
-         final Client client = ClientBuilder.newClient();
-         client.target(rule.getHookUrl()).request(MediaType.APPLICATION_JSON).buildPost(entity).invoke();
-         client.close();
+         webhookDispatcher.dispatch(rule.getHookUrl(), getZapierUpdateDocumentMessage(collection, oldDocument, document), rule.isBatch());
       } catch (Exception e) {
          log.log(Level.SEVERE, "Could not process Zapier request.", e);
       }
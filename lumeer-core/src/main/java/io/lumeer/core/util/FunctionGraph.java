@@ -0,0 +1,137 @@
+/*
+ * Lumeer: Modern Data Definition and Processing Platform
+ *
+ * Copyright (C) since 2017 Lumeer.io, s.r.o. and/or its affiliates.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.lumeer.core.util;
+
+import io.lumeer.api.model.function.FunctionParameter;
+import io.lumeer.api.model.function.FunctionResourceType;
+import io.lumeer.api.model.function.FunctionRow;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * In-memory dependency graph of all functions in a project built from the function rows. Each row says that the function
+ * attribute of a resource depends on an attribute of a (possibly other) collection or link type. The graph answers the same
+ * lookups as {@link io.lumeer.storage.api.dao.FunctionDao} without querying the database and detects dependency cycles.
+ */
+public class FunctionGraph {
+
+   private final Map<String, List<FunctionRow>> byDependentCollection = new HashMap<>();
+   private final Map<String, List<FunctionRow>> byDependentLinkType = new HashMap<>();
+   private final Map<String, List<FunctionRow>> byResource = new HashMap<>();
+   private final Map<FunctionParameter, Set<FunctionParameter>> dependants = new HashMap<>(); // attribute -> functions using it
+
+   public FunctionGraph(final List<FunctionRow> rows) {
+      rows.forEach(row -> {
+         if (row.getDependentCollectionId() != null) {
+            byDependentCollection.computeIfAbsent(row.getDependentCollectionId(), id -> new ArrayList<>()).add(row);
+         }
+         if (row.getDependentLinkTypeId() != null) {
+            byDependentLinkType.computeIfAbsent(row.getDependentLinkTypeId(), id -> new ArrayList<>()).add(row);
+         }
+         byResource.computeIfAbsent(resourceKey(row.getResourceId(), row.getType()), id -> new ArrayList<>()).add(row);
+
+         dependants.computeIfAbsent(getDependency(row), param -> new LinkedHashSet<>()).add(getFunction(row));
+      });
+   }
+
+   public List<FunctionRow> searchByDependentCollection(final String collectionId, final String attributeId) {
+      return filterByDependentAttribute(byDependentCollection.get(collectionId), attributeId);
+   }
+
+   public List<FunctionRow> searchByDependentLinkType(final String linkTypeId, final String attributeId) {
+      return filterByDependentAttribute(byDependentLinkType.get(linkTypeId), attributeId);
+   }
+
+   public List<FunctionRow> searchByResource(final String resourceId, final String attributeId, final FunctionResourceType type) {
+      final List<FunctionRow> rows = byResource.getOrDefault(resourceKey(resourceId, type), Collections.emptyList());
+      if (attributeId == null) {
+         return new ArrayList<>(rows);
+      }
+
+      return rows.stream().filter(row -> attributeId.equals(row.getAttributeId())).collect(Collectors.toList());
+   }
+
+   /**
+    * Finds a cycle among the function dependencies going through the given function.
+    *
+    * @param function
+    *       the function attribute.
+    * @return parameters forming the cycle in the order of the dependencies starting with the function, or an empty list when
+    * the function is not part of any cycle.
+    */
+   public List<FunctionParameter> findCycle(final FunctionParameter function) {
+      // breadth first search of the functions using the given one, the previous nodes lead back to it
+      final Map<FunctionParameter, FunctionParameter> previous = new HashMap<>();
+      final Deque<FunctionParameter> queue = new ArrayDeque<>();
+      queue.add(function);
+
+      while (!queue.isEmpty()) {
+         final FunctionParameter node = queue.poll();
+         for (final FunctionParameter next : dependants.getOrDefault(node, Collections.emptySet())) {
+            if (next.equals(function)) {
+               final Deque<FunctionParameter> cycle = new ArrayDeque<>();
+               for (FunctionParameter parameter = node; parameter != null; parameter = previous.get(parameter)) {
+                  cycle.addFirst(parameter);
+               }
+               return new ArrayList<>(cycle);
+            }
+            if (!previous.containsKey(next)) {
+               previous.put(next, node);
+               queue.add(next);
+            }
+         }
+      }
+
+      return Collections.emptyList();
+   }
+
+   private List<FunctionRow> filterByDependentAttribute(final List<FunctionRow> rows, final String attributeId) {
+      if (rows == null) {
+         return new ArrayList<>();
+      }
+      if (attributeId == null) {
+         return new ArrayList<>(rows);
+      }
+
+      return rows.stream().filter(row -> attributeId.equals(row.getDependentAttributeId())).collect(Collectors.toList());
+   }
+
+   private static String resourceKey(final String resourceId, final FunctionResourceType type) {
+      return type + ":" + resourceId;
+   }
+
+   private static FunctionParameter getFunction(final FunctionRow row) {
+      return new FunctionParameter(row.getType(), row.getResourceId(), row.getAttributeId());
+   }
+
+   private static FunctionParameter getDependency(final FunctionRow row) {
+      return row.getDependentCollectionId() != null ?
+            new FunctionParameter(FunctionResourceType.COLLECTION, row.getDependentCollectionId(), row.getDependentAttributeId()) :
+            new FunctionParameter(FunctionResourceType.LINK, row.getDependentLinkTypeId(), row.getDependentAttributeId());
+   }
+}
@@ -22,6 +22,7 @@ import io.lumeer.api.model.function.FunctionParameter;
 
 import java.util.Deque;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -30,7 +31,7 @@ import java.util.Set;
 public class FunctionOrder {
 
    public static <T extends FunctionParameter> Deque<T> orderFunctions(final Map<T, List<T>> dependencies) {
-      final Deque<T> result = new LinkedList<>();
+      final Set<T> result = new LinkedHashSet<>(); // keeps the order and answers contains in constant time
 
       dependencies.keySet().forEach(param -> {
          final Set<T> visited = new HashSet<>(Set.of(param)); //new HashSet<>();
@@ -45,10 +46,10 @@ public class FunctionOrder {
 
       result.removeIf(param -> !dependencies.containsKey(param));
 
-      return result;
+      return new LinkedList<>(result);
    }
 
-   private static <T extends FunctionParameter> void findParent(final Deque<T> result, final T root, final Set<T> visited, final Map<T, List<T>> dependencies) {
+   private static <T extends FunctionParameter> void findParent(final Set<T> result, final T root, final Set<T> visited, final Map<T, List<T>> dependencies) {
       List<T> depNodes = dependencies.get(root);
 
       if (depNodes != null) {
@@ -0,0 +1,240 @@
+/*
+ * Lumeer: Modern Data Definition and Processing Platform
+ *
+ * Copyright (C) since 2017 Lumeer.io, s.r.o. and/or its affiliates.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.lumeer.core.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Hash set of ids that stores ObjectId hex strings as their 12 bytes in primitive arrays,
+ * so large sets of document or link ids do not keep a String object per id.
+ * Ids in other formats are kept in an ordinary set.
+ */
+public class ObjectIdSet implements Iterable<String> {
+
+   private static final int OBJECT_ID_LENGTH = 24;
+   private static final int INITIAL_CAPACITY = 16;
+
+   private long[] highs;
+   private int[] lows;
+   private boolean[] used;
+   private int objectIdsSize;
+   private final Set<String> otherIds = new HashSet<>();
+
+   public ObjectIdSet() {
+      this(INITIAL_CAPACITY);
+   }
+
+   public ObjectIdSet(final int expectedSize) {
+      allocate(tableSizeFor(expectedSize));
+   }
+
+   public ObjectIdSet(final Collection<String> ids) {
+      this(ids.size());
+      addAll(ids);
+   }
+
+   public boolean add(final String id) {
+      if (!isObjectId(id)) {
+         return otherIds.add(id);
+      }
+
+      if ((objectIdsSize + 1) * 2 > used.length) {
+         resize();
+      }
+      return insert(high(id), low(id));
+   }
+
+   public void addAll(final Iterable<String> ids) {
+      ids.forEach(this::add);
+   }
+
+   public boolean contains(final String id) {
+      if (!isObjectId(id)) {
+         return otherIds.contains(id);
+      }
+      return indexOf(high(id), low(id)) >= 0;
+   }
+
+   /**
+    * Keeps only the ids contained in the given set.
+    *
+    * @param ids
+    *       ids to keep.
+    * @return new set with the common ids.
+    */
+   public ObjectIdSet intersect(final Collection<String> ids) {
+      final ObjectIdSet result = new ObjectIdSet(Math.min(ids.size(), size()));
+      ids.stream().filter(this::contains).forEach(result::add);
+      return result;
+   }
+
+   public int size() {
+      return objectIdsSize + otherIds.size();
+   }
+
+   public boolean isEmpty() {
+      return size() == 0;
+   }
+
+   /**
+    * Splits the ids into sets of at most the given size, suitable for $in queries.
+    *
+    * @param batchSize
+    *       maximal number of ids in a batch.
+    * @return list of batches.
+    */
+   public List<Set<String>> batches(final int batchSize) {
+      final List<Set<String>> batches = new ArrayList<>();
+      Set<String> batch = new LinkedHashSet<>();
+      for (String id : this) {
+         batch.add(id);
+         if (batch.size() >= batchSize) {
+            batches.add(batch);
+            batch = new LinkedHashSet<>();
+         }
+      }
+      if (!batch.isEmpty()) {
+         batches.add(batch);
+      }
+      return batches;
+   }
+
+   @Override
+   public Iterator<String> iterator() {
+      final Iterator<String> others = otherIds.iterator();
+
+      return new Iterator<>() {
+         private int index = nextUsed(0);
+
+         @Override
+         public boolean hasNext() {
+            return index < used.length || others.hasNext();
+         }
+
+         @Override
+         public String next() {
+            if (index < used.length) {
+               final String id = String.format("%016x%08x", highs[index], lows[index]);
+               index = nextUsed(index + 1);
+               return id;
+            }
+            if (others.hasNext()) {
+               return others.next();
+            }
+            throw new NoSuchElementException();
+         }
+      };
+   }
+
+   private int nextUsed(final int from) {
+      int i = from;
+      while (i < used.length && !used[i]) {
+         i++;
+      }
+      return i;
+   }
+
+   private boolean insert(final long high, final int low) {
+      int i = slot(high, low);
+      while (used[i]) {
+         if (highs[i] == high && lows[i] == low) {
+            return false;
+         }
+         i = (i + 1) & (used.length - 1);
+      }
+      used[i] = true;
+      highs[i] = high;
+      lows[i] = low;
+      objectIdsSize++;
+      return true;
+   }
+
+   private int indexOf(final long high, final int low) {
+      int i = slot(high, low);
+      while (used[i]) {
+         if (highs[i] == high && lows[i] == low) {
+            return i;
+         }
+         i = (i + 1) & (used.length - 1);
+      }
+      return -1;
+   }
+
+   private int slot(final long high, final int low) {
+      long hash = high * 0x9E3779B97F4A7C15L + low;
+      hash ^= hash >>> 32;
+      return (int) hash & (used.length - 1);
+   }
+
+   private void resize() {
+      final long[] oldHighs = highs;
+      final int[] oldLows = lows;
+      final boolean[] oldUsed = used;
+
+      allocate(oldUsed.length * 2);
+      objectIdsSize = 0;
+      for (int i = 0; i < oldUsed.length; i++) {
+         if (oldUsed[i]) {
+            insert(oldHighs[i], oldLows[i]);
+         }
+      }
+   }
+
+   private void allocate(final int capacity) {
+      highs = new long[capacity];
+      lows = new int[capacity];
+      used = new boolean[capacity];
+   }
+
+   private static int tableSizeFor(final int expectedSize) {
+      int capacity = INITIAL_CAPACITY;
+      while (capacity < expectedSize * 2) {
+         capacity <<= 1;
+      }
+      return capacity;
+   }
+
+   private static boolean isObjectId(final String id) {
+      if (id == null || id.length() != OBJECT_ID_LENGTH) {
+         return false;
+      }
+      for (int i = 0; i < OBJECT_ID_LENGTH; i++) {
+         final char c = id.charAt(i);
+         if (!((c >= '0' && c <= '9') || (c >= 'a' && c <= 'f'))) {
+            return false;
+         }
+      }
+      return true;
+   }
+
+   private static long high(final String id) {
+      return Long.parseUnsignedLong(id.substring(0, 16), 16);
+   }
+
+   private static int low(final String id) {
+      return Integer.parseUnsignedInt(id.substring(16), 16);
+   }
+}
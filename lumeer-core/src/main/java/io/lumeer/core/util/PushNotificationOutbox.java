@@ -0,0 +1,292 @@
+/*
+ * Lumeer: Modern Data Definition and Processing Platform
+ *
+ * Copyright (C) since 2017 Lumeer.io, s.r.o. and/or its affiliates.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.lumeer.core.util;
+
+import org.marvec.pusher.data.Event;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Collects push notifications and sends them from a background thread, so the requests producing them do not wait for the push service.
+ * Notifications arriving within the window are sent together in chunks of the service batch limit. Notifications with the same
+ * coalescing key (typically updates of the same object on the same channel) are merged within the window, the latest one is sent
+ * at the position of the first one. Chunks that could not be sent are retried with an exponential backoff, later chunks wait for them
+ * so the notifications keep their order.
+ * Notifications can also be enqueued as producers that compute the recipients and the data in the background, the producers run
+ * one after another in the order they were enqueued.
+ * Notification data are serialized when sent, so they must not be modified after they were enqueued.
+ */
+public class PushNotificationOutbox {
+
+   private static final Logger log = Logger.getLogger(PushNotificationOutbox.class.getName());
+
+   public static final int BATCH_LIMIT = 10;
+   private static final int BACKOFF = 500; // ms, doubled with each attempt
+
+   @FunctionalInterface
+   public interface Transport {
+      void send(List<Event> events);
+   }
+
+   private final Transport transport;
+   private final Function<Event, String> coalescingKey;
+   private final int window;
+   private final int attempts;
+   private final ScheduledExecutorService scheduler;
+
+   private final Deque<Supplier<List<Event>>> producers = new ArrayDeque<>();
+   private boolean producing = false;
+   private final Object producerLock = new Object();
+   private volatile boolean closed = false;
+   private final Deque<Chunk> ready = new ArrayDeque<>();
+   private boolean retryScheduled = false;
+   private List<Pending> pending = new ArrayList<>();
+   private Map<String, Pending> pendingByKey = new HashMap<>();
+   private ScheduledFuture<?> flush;
+
+   private final AtomicInteger depth = new AtomicInteger();
+   private final LongAdder sent = new LongAdder();
+   private final LongAdder coalesced = new LongAdder();
+   private final LongAdder failed = new LongAdder();
+   private final LongAdder latency = new LongAdder();
+
+   /**
+    * @param transport
+    *       sends the notifications to the push service.
+    * @param coalescingKey
+    *       returns the key of notifications that can be merged together, or null when the notification must be sent as is.
+    * @param window
+    *       time in milliseconds the notifications are collected for.
+    * @param attempts
+    *       maximum number of attempts to send a chunk of notifications.
+    * @param scheduler
+    *       runs the producers, the sending and the retries.
+    */
+   public PushNotificationOutbox(final Transport transport, final Function<Event, String> coalescingKey, final int window, final int attempts, final ScheduledExecutorService scheduler) {
+      this.transport = transport;
+      this.coalescingKey = coalescingKey;
+      this.window = window;
+      this.attempts = attempts;
+      this.scheduler = scheduler;
+   }
+
+   private static class Pending {
+      private Event event;
+      private final long enqueuedAt;
+
+      private Pending(final Event event) {
+         this.event = event;
+         this.enqueuedAt = System.currentTimeMillis();
+      }
+   }
+
+   private static class Chunk {
+      private final List<Pending> pending;
+      private int attempt = 1;
+
+      private Chunk(final List<Pending> pending) {
+         this.pending = pending;
+      }
+
+      private List<Event> getEvents() {
+         final List<Event> events = new ArrayList<>(pending.size());
+         pending.forEach(p -> events.add(p.event));
+         return events;
+      }
+   }
+
+   public void enqueue(final List<Event> events) {
+      synchronized (this) {
+         events.forEach(event -> {
+            final String key = coalescingKey.apply(event);
+            final Pending existing = key != null ? pendingByKey.get(key) : null;
+            if (existing != null) {
+               existing.event = event;
+               coalesced.increment();
+            } else {
+               final Pending next = new Pending(event);
+               pending.add(next);
+               depth.incrementAndGet();
+               if (key != null) {
+                  pendingByKey.put(key, next);
+               }
+            }
+         });
+
+         if (flush == null && !pending.isEmpty()) {
+            flush = scheduler.schedule(this::flush, window, TimeUnit.MILLISECONDS);
+         }
+      }
+   }
+
+   /**
+    * Enqueues notifications computed later in the background, so the caller does not wait for reading the recipients.
+    *
+    * @param producer
+    *       computes the notifications, it must use only the state captured when it was created.
+    */
+   public void enqueue(final Supplier<List<Event>> producer) {
+      synchronized (producers) {
+         producers.add(producer);
+         if (producing) {
+            return;
+         }
+         producing = true;
+      }
+
+      if (closed) {
+         produce();
+         return;
+      }
+
+      try {
+         scheduler.execute(this::produce);
+      } catch (RejectedExecutionException e) {
+         produce();
+      }
+   }
+
+   // runs at most once at a time, so closing the outbox waits for the producer in progress
+   private void produce() {
+      synchronized (producerLock) {
+         while (true) {
+            final Supplier<List<Event>> producer;
+            synchronized (producers) {
+               producer = producers.poll();
+               if (producer == null) {
+                  producing = false;
+                  return;
+               }
+            }
+
+            try {
+               enqueue(producer.get());
+            } catch (RuntimeException e) {
+               log.log(Level.WARNING, "Unable to create push notifications: ", e);
+            }
+         }
+      }
+   }
+
+   private void flush() {
+      final List<Pending> events;
+      synchronized (this) {
+         events = pending;
+         pending = new ArrayList<>();
+         pendingByKey = new HashMap<>();
+         flush = null;
+      }
+
+      synchronized (ready) {
+         for (int i = 0; i < events.size(); i += BATCH_LIMIT) {
+            ready.add(new Chunk(events.subList(i, Math.min(i + BATCH_LIMIT, events.size()))));
+         }
+         if (!retryScheduled) {
+            send();
+         }
+      }
+   }
+
+   // chunks are sent in order, a failing chunk holds the following ones back until it is sent or given up
+   private void send() {
+      synchronized (ready) {
+         retryScheduled = false;
+         Chunk chunk;
+         while ((chunk = ready.peek()) != null) {
+            try {
+               transport.send(chunk.getEvents());
+
+               final long now = System.currentTimeMillis();
+               chunk.pending.forEach(p -> latency.add(now - p.enqueuedAt));
+               sent.add(chunk.pending.size());
+            } catch (RuntimeException e) {
+               if (chunk.attempt < attempts && !closed) {
+                  scheduler.schedule(this::send, (long) BACKOFF << (chunk.attempt - 1), TimeUnit.MILLISECONDS);
+                  chunk.attempt++;
+                  retryScheduled = true;
+                  return;
+               }
+               log.log(Level.WARNING, "Unable to send push notifications: ", e);
+               failed.add(chunk.pending.size());
+            }
+            ready.poll();
+            depth.addAndGet(-chunk.pending.size());
+         }
+      }
+   }
+
+   /**
+    * Sends the collected notifications, failed chunks are not retried anymore.
+    */
+   public void close() {
+      closed = true;
+      synchronized (producers) {
+         producing = true;
+      }
+      produce();
+      synchronized (this) {
+         if (flush != null) {
+            flush.cancel(false);
+         }
+      }
+      flush();
+   }
+
+   /**
+    * @return number of notifications waiting to be sent, including the ones waiting for another attempt.
+    */
+   public int getQueueDepth() {
+      return depth.get();
+   }
+
+   public long getSentCount() {
+      return sent.sum();
+   }
+
+   public long getCoalescedCount() {
+      return coalesced.sum();
+   }
+
+   public long getFailedCount() {
+      return failed.sum();
+   }
+
+   /**
+    * @return average time in milliseconds between enqueueing and sending of a notification.
+    */
+   public double getAverageLatency() {
+      final long count = sent.sum();
+      return count > 0 ? (double) latency.sum() / count : 0;
+   }
+}
@@ -0,0 +1,185 @@
+/*
+ * Lumeer: Modern Data Definition and Processing Platform
+ *
+ * Copyright (C) since 2017 Lumeer.io, s.r.o. and/or its affiliates.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.lumeer.core.util;
+
+import io.lumeer.api.model.Collection;
+import io.lumeer.api.model.Document;
+import io.lumeer.engine.api.data.DataDocument;
+
+import java.time.ZonedDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Field level changes of documents and collections sent in push notifications instead of the whole objects.
+ * A document patch carries the version it applies to, a client holding any other version of the document reloads it.
+ * A document patch is only created when the stored version moved by exactly one, otherwise the whole document must be sent.
+ * A collection patch carries the absolute values of the counters and the version they were read at, a client applies it
+ * over any older version of the collection without reloading, so a newer patch can replace a pending one.
+ */
+public final class PushPatches {
+
+   private PushPatches() {
+   }
+
+   /**
+    * Creates a patch of the document data and meta data.
+    *
+    * @param originalDocument
+    *       the document before the update.
+    * @param document
+    *       the updated document.
+    * @return the patch or null when the whole document needs to be sent.
+    */
+   public static DocumentPatch createDocumentPatch(final Document originalDocument, final Document document) {
+      if (originalDocument == null || originalDocument.getDataVersion() == null || document.getDataVersion() == null
+            || document.getDataVersion() != originalDocument.getDataVersion() + 1 || originalDocument.getData() == null || document.getData() == null) {
+         return null;
+      }
+
+      final DataDocument originalData = originalDocument.getData();
+      final DataDocument data = new DataDocument();
+      document.getData().forEach((key, value) -> {
+         if (!DataDocument.ID.equals(key) && (!originalData.containsKey(key) || !Objects.equals(originalData.get(key), value))) {
+            data.put(key, value);
+         }
+      });
+
+      final Set<String> removedKeys = originalData.keySet().stream()
+                                                  .filter(key -> !DataDocument.ID.equals(key) && !document.getData().containsKey(key))
+                                                  .collect(Collectors.toSet());
+
+      final DataDocument metaData = Objects.equals(originalDocument.getMetaData(), document.getMetaData()) ? null : document.getMetaData();
+
+      return new DocumentPatch(document, originalDocument.getDataVersion(), data, removedKeys, metaData);
+   }
+
+   /**
+    * Creates a patch of the collection counters (documents count, attribute usage counts and last time used).
+    *
+    * @param collection
+    *       the collection after the counters update.
+    * @return the patch.
+    */
+   public static CollectionPatch createCollectionPatch(final Collection collection) {
+      final Map<String, Integer> usageCounts = new HashMap<>();
+      collection.getAttributes().forEach(attribute -> usageCounts.put(attribute.getId(), attribute.getUsageCount()));
+
+      return new CollectionPatch(collection, usageCounts);
+   }
+
+   public static final class DocumentPatch {
+      private final String id;
+      private final String collectionId;
+      private final Integer dataVersion;
+      private final Integer baseVersion;
+      private final DataDocument data;
+      private final Set<String> removedKeys;
+      private final DataDocument metaData;
+      private final ZonedDateTime updateDate;
+      private final String updatedBy;
+
+      private DocumentPatch(final Document document, final Integer baseVersion, final DataDocument data, final Set<String> removedKeys, final DataDocument metaData) {
+         this.id = document.getId();
+         this.collectionId = document.getCollectionId();
+         this.dataVersion = document.getDataVersion();
+         this.baseVersion = baseVersion;
+         this.data = data;
+         this.removedKeys = removedKeys;
+         this.metaData = metaData;
+         this.updateDate = document.getUpdateDate();
+         this.updatedBy = document.getUpdatedBy();
+      }
+
+      public String getId() {
+         return id;
+      }
+
+      public String getCollectionId() {
+         return collectionId;
+      }
+
+      public Integer getDataVersion() {
+         return dataVersion;
+      }
+
+      public Integer getBaseVersion() {
+         return baseVersion;
+      }
+
+      public DataDocument getData() {
+         return data;
+      }
+
+      public Set<String> getRemovedKeys() {
+         return removedKeys;
+      }
+
+      public DataDocument getMetaData() {
+         return metaData;
+      }
+
+      public ZonedDateTime getUpdateDate() {
+         return updateDate;
+      }
+
+      public String getUpdatedBy() {
+         return updatedBy;
+      }
+   }
+
+   public static final class CollectionPatch {
+      private final String id;
+      private final long version;
+      private final Integer documentsCount;
+      private final ZonedDateTime lastTimeUsed;
+      private final Map<String, Integer> usageCounts;
+
+      private CollectionPatch(final Collection collection, final Map<String, Integer> usageCounts) {
+         this.id = collection.getId();
+         this.version = collection.getVersion();
+         this.documentsCount = collection.getDocumentsCount();
+         this.lastTimeUsed = collection.getLastTimeUsed();
+         this.usageCounts = usageCounts;
+      }
+
+      public String getId() {
+         return id;
+      }
+
+      public long getVersion() {
+         return version;
+      }
+
+      public Integer getDocumentsCount() {
+         return documentsCount;
+      }
+
+      public ZonedDateTime getLastTimeUsed() {
+         return lastTimeUsed;
+      }
+
+      public Map<String, Integer> getUsageCounts() {
+         return usageCounts;
+      }
+   }
+}
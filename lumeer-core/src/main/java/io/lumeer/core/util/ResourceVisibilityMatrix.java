@@ -0,0 +1,137 @@
+/*
+ * Lumeer: Modern Data Definition and Processing Platform
+ *
+ * Copyright (C) since 2017 Lumeer.io, s.r.o. and/or its affiliates.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.lumeer.core.util;
+
+import io.lumeer.api.model.Collection;
+import io.lumeer.api.model.LinkType;
+import io.lumeer.api.model.View;
+import io.lumeer.api.model.common.Resource;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiPredicate;
+import java.util.stream.Collectors;
+
+/**
+ * Collections and link types visible to each of the given users, either directly or through a view the user can read.
+ * Only the collections and link types passed in are evaluated. Queries of the views are resolved just once,
+ * so the matrix can be cheaply built both before and after a permission change and then diffed.
+ */
+public class ResourceVisibilityMatrix {
+
+   private final Map<String, Set<String>> collectionIds = new HashMap<>();
+   private final Map<String, Set<String>> linkTypeIds = new HashMap<>();
+
+   /**
+    * Builds the matrix.
+    *
+    * @param userIds
+    *       users to compute the visibility for.
+    * @param collections
+    *       collections to evaluate, including all collections of the link types.
+    * @param linkTypes
+    *       link types to evaluate.
+    * @param views
+    *       all views of the project.
+    * @param allLinkTypes
+    *       all link types of the project, used to resolve collections in view queries.
+    * @param canRead
+    *       tells whether the user can read the resource.
+    */
+   public ResourceVisibilityMatrix(final Set<String> userIds, final List<Collection> collections, final List<LinkType> linkTypes, final List<View> views, final List<LinkType> allLinkTypes, final BiPredicate<Resource, String> canRead) {
+      final Map<String, Set<String>> viewCollectionIds = new HashMap<>();
+      views.stream().filter(view -> view.getQuery() != null)
+           .forEach(view -> viewCollectionIds.put(view.getId(), QueryUtils.getQueryCollectionIds(view.getQuery(), allLinkTypes)));
+
+      final Map<String, Collection> collectionsMap = collections.stream().collect(Collectors.toMap(Collection::getId, collection -> collection, (c1, c2) -> c2));
+
+      for (String userId : userIds) {
+         final Set<String> collectionIdsInViews = new HashSet<>();
+         final Set<String> linkTypeIdsInViews = new HashSet<>();
+         views.stream()
+              .filter(view -> viewCollectionIds.containsKey(view.getId()) && canRead.test(view, userId))
+              .forEach(view -> {
+                 collectionIdsInViews.addAll(viewCollectionIds.get(view.getId()));
+                 linkTypeIdsInViews.addAll(view.getQuery().getLinkTypeIds());
+              });
+
+         final Set<String> readableCollectionIds = collectionsMap.values().stream()
+                                                                 .filter(collection -> canRead.test(collection, userId))
+                                                                 .map(Collection::getId)
+                                                                 .collect(Collectors.toSet());
+
+         final Set<String> visibleCollectionIds = new HashSet<>(readableCollectionIds);
+         collectionsMap.keySet().stream().filter(collectionIdsInViews::contains).forEach(visibleCollectionIds::add);
+         collectionIds.put(userId, visibleCollectionIds);
+
+         linkTypeIds.put(userId, linkTypes.stream()
+                                          .filter(linkType -> linkTypeIdsInViews.contains(linkType.getId()) || canReadCollections(readableCollectionIds, linkType))
+                                          .map(LinkType::getId)
+                                          .collect(Collectors.toSet()));
+      }
+   }
+
+   private static boolean canReadCollections(final Set<String> readableCollectionIds, final LinkType linkType) {
+      return linkType.getCollectionIds() != null && readableCollectionIds.containsAll(linkType.getCollectionIds());
+   }
+
+   public Set<String> getCollectionIds(final String userId) {
+      return collectionIds.getOrDefault(userId, Collections.emptySet());
+   }
+
+   public Set<String> getLinkTypeIds(final String userId) {
+      return linkTypeIds.getOrDefault(userId, Collections.emptySet());
+   }
+
+   /**
+    * Gets collections visible to the user in this matrix but not in the other one.
+    *
+    * @param userId
+    *       id of the user.
+    * @param other
+    *       matrix to compare with.
+    * @return ids of the collections.
+    */
+   public Set<String> getCollectionIdsNotIn(final String userId, final ResourceVisibilityMatrix other) {
+      return difference(getCollectionIds(userId), other.getCollectionIds(userId));
+   }
+
+   /**
+    * Gets link types visible to the user in this matrix but not in the other one.
+    *
+    * @param userId
+    *       id of the user.
+    * @param other
+    *       matrix to compare with.
+    * @return ids of the link types.
+    */
+   public Set<String> getLinkTypeIdsNotIn(final String userId, final ResourceVisibilityMatrix other) {
+      return difference(getLinkTypeIds(userId), other.getLinkTypeIds(userId));
+   }
+
+   private static Set<String> difference(final Set<String> set, final Set<String> other) {
+      final Set<String> result = new HashSet<>(set);
+      result.removeAll(other);
+      return result;
+   }
+}
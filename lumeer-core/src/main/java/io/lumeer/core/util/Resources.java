@@ -28,10 +28,12 @@ import io.lumeer.engine.api.data.DataStorageFactory;
 import java.util.logging.Logger;
 import javax.annotation.Resource;
 import javax.enterprise.concurrent.ManagedExecutorService;
+import javax.enterprise.concurrent.ManagedScheduledExecutorService;
 import javax.enterprise.context.ApplicationScoped;
 import javax.enterprise.context.Dependent;
 import javax.enterprise.context.RequestScoped;
 import javax.enterprise.inject.Produces;
+import javax.enterprise.inject.Typed;
 import javax.enterprise.inject.spi.InjectionPoint;
 import javax.inject.Inject;
 
@@ -54,6 +56,12 @@ public class Resources {
    @Produces
    private ManagedExecutorService managedExecutorService;
 
+   // restricted to its own type, otherwise it would be ambiguous with the managed executor service it extends
+   @Resource
+   @Produces
+   @Typed(ManagedScheduledExecutorService.class)
+   private ManagedScheduledExecutorService managedScheduledExecutorService;
+
    @Produces
    @Dependent
    public Logger produceLog(InjectionPoint injectionPoint) {
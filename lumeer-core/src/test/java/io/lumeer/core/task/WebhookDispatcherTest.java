@@ -0,0 +1,162 @@
+/*
+ * Lumeer: Modern Data Definition and Processing Platform
+ *
+ * Copyright (C) since 2017 Lumeer.io, s.r.o. and/or its affiliates.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.lumeer.core.task;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.lumeer.core.util.DeliveryTestBase;
+import io.lumeer.engine.api.data.DataDocument;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class WebhookDispatcherTest extends DeliveryTestBase {
+
+   private HttpServer server;
+   private ScheduledExecutorService scheduler;
+   private WebhookDispatcher dispatcher;
+   private final List<String> bodies = new CopyOnWriteArrayList<>();
+   private final AtomicInteger running = new AtomicInteger();
+   private final AtomicInteger maxRunning = new AtomicInteger();
+   private volatile long responseDelay = 0;
+
+   @Before
+   public void startServer() throws IOException {
+      server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+      server.createContext("/hook", this::handle);
+      server.setExecutor(Executors.newCachedThreadPool());
+      server.start();
+
+      scheduler = Executors.newSingleThreadScheduledExecutor();
+      dispatcher = new WebhookDispatcher();
+      dispatcher.configure(scheduler, 2, 2000, 3, 10, 200);
+   }
+
+   @After
+   public void stopServer() {
+      scheduler.shutdownNow();
+      server.stop(0);
+   }
+
+   private void handle(final HttpExchange exchange) throws IOException {
+      maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+      try {
+         final String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+         if (responseDelay > 0) {
+            Thread.sleep(responseDelay);
+         }
+         if (shouldFail()) {
+            exchange.sendResponseHeaders(503, -1);
+         } else {
+            bodies.add(body);
+            exchange.sendResponseHeaders(200, -1);
+         }
+      } catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+      } finally {
+         running.decrementAndGet();
+         exchange.close();
+      }
+   }
+
+   private String hookUrl() {
+      return "http://localhost:" + server.getAddress().getPort() + "/hook";
+   }
+
+   @Override
+   protected void send(final String value) {
+      dispatcher.dispatch(hookUrl(), new DataDocument("name", value), false);
+   }
+
+   @Override
+   protected List<String> getDelivered() {
+      return bodies;
+   }
+
+   @Override
+   protected String expectedMessage(final String value) {
+      return "{\"name\":\"" + value + "\"}";
+   }
+
+   @Override
+   protected long getDeliveredCount() {
+      return dispatcher.getDeliveredCount();
+   }
+
+   @Override
+   protected long getFailedCount() {
+      return dispatcher.getFailedCount();
+   }
+
+   @Test
+   public void testDispatch() throws InterruptedException {
+      dispatcher.dispatch(hookUrl(), new DataDocument("name", "value"), false);
+
+      waitFor(() -> dispatcher.getDeliveredCount() == 1);
+      assertThat(bodies).containsExactly("{\"name\":\"value\"}");
+   }
+
+   @Override
+   @Test
+   public void testRetry() throws InterruptedException {
+      super.testRetry();
+      assertThat(dispatcher.getRetriedCount()).isEqualTo(2);
+   }
+
+   @Override
+   @Test
+   public void testGiveUpAfterAttempts() throws InterruptedException {
+      super.testGiveUpAfterAttempts();
+      assertThat(dispatcher.getRetriedCount()).isEqualTo(2);
+   }
+
+   @Test
+   public void testBatch() throws InterruptedException {
+      dispatcher.dispatch(hookUrl(), new DataDocument("a", 1), true);
+      dispatcher.dispatch(hookUrl(), new DataDocument("a", 2), true);
+      dispatcher.dispatch(hookUrl(), new DataDocument("a", 3), true);
+
+      waitFor(() -> dispatcher.getDeliveredCount() == 1);
+      assertThat(bodies).containsExactly("[{\"a\":1},{\"a\":2},{\"a\":3}]");
+   }
+
+   @Test
+   public void testConcurrencyLimit() throws InterruptedException {
+      responseDelay = 100;
+      for (int i = 0; i < 6; i++) {
+         dispatcher.dispatch(hookUrl(), new DataDocument("a", i), false);
+      }
+
+      waitFor(() -> dispatcher.getDeliveredCount() == 6);
+      assertThat(bodies).hasSize(6);
+      assertThat(maxRunning.get()).isLessThanOrEqualTo(2);
+   }
+}
@@ -0,0 +1,93 @@
+/*
+ * Lumeer: Modern Data Definition and Processing Platform
+ *
+ * Copyright (C) since 2017 Lumeer.io, s.r.o. and/or its affiliates.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.lumeer.core.task.executor;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class JsContextPoolTest {
+
+   private JsContextPool.PooledContext pooledContext;
+
+   @Before
+   public void acquireContext() {
+      pooledContext = JsContextPool.acquire("test-" + System.nanoTime(), 0);
+   }
+
+   @After
+   public void releaseContext() {
+      JsContextPool.release(pooledContext);
+   }
+
+   private String eval(final String js) {
+      return pooledContext.getContext().eval("js", js).toString();
+   }
+
+   private void run(final String js) {
+      pooledContext.getContext().eval(JsContextPool.getSource(js));
+   }
+
+   @Test
+   public void testLateCancelIsIgnored() {
+      final long generation = pooledContext.start();
+      pooledContext.stop();
+
+      pooledContext.cancel(generation);
+
+      assertThat(eval("1 + 1")).isEqualTo("2");
+      assertThat(pooledContext.clear()).isTrue();
+   }
+
+   @Test
+   public void testCancelOfPreviousExecutionIsIgnored() {
+      final long previous = pooledContext.start();
+      pooledContext.stop();
+      final long current = pooledContext.start();
+
+      pooledContext.cancel(previous);
+      assertThat(pooledContext.clear()).isTrue();
+
+      pooledContext.cancel(current);
+      assertThat(pooledContext.clear()).isFalse();
+   }
+
+   @Test
+   public void testReplacedGlobalsAreRestored() {
+      run("Math = 5; JSON = undefined; delete parseInt; added = 1;");
+      assertThat(pooledContext.clear()).isTrue();
+
+      assertThat(eval("typeof Math.max + ' ' + typeof JSON.parse + ' ' + typeof parseInt + ' ' + typeof added"))
+            .isEqualTo("function function function undefined");
+   }
+
+   @Test
+   public void testPatchedPrototypePreventsReuse() {
+      run("Array.prototype.sum = function() { return 0; };");
+      assertThat(pooledContext.clear()).isFalse();
+   }
+
+   @Test
+   public void testReplacedBuiltinFunctionPreventsReuse() {
+      run("Math.max = function() { return 0; };");
+      assertThat(pooledContext.clear()).isFalse();
+   }
+}
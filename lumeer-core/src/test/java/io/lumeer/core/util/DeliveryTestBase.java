@@ -0,0 +1,87 @@
+/*
+ * Lumeer: Modern Data Definition and Processing Platform
+ *
+ * Copyright (C) since 2017 Lumeer.io, s.r.o. and/or its affiliates.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.lumeer.core.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Common tests of background senders that retry failed deliveries (push notifications, webhooks).
+ * Subclasses make the delivery fail while {@link #failures} is positive and allow at most three attempts.
+ */
+public abstract class DeliveryTestBase {
+
+   private static final long WAIT_LIMIT = 5000;
+
+   protected final AtomicInteger failures = new AtomicInteger();
+
+   /**
+    * Sends a single message containing the value.
+    */
+   protected abstract void send(final String value);
+
+   /**
+    * @return delivered messages in the order of delivery.
+    */
+   protected abstract List<String> getDelivered();
+
+   /**
+    * @return the delivered message for the value.
+    */
+   protected abstract String expectedMessage(final String value);
+
+   protected abstract long getDeliveredCount();
+
+   protected abstract long getFailedCount();
+
+   protected boolean shouldFail() {
+      return failures.getAndDecrement() > 0;
+   }
+
+   protected static void waitFor(final BooleanSupplier condition) throws InterruptedException {
+      final long limit = System.currentTimeMillis() + WAIT_LIMIT;
+      while (!condition.getAsBoolean() && System.currentTimeMillis() < limit) {
+         Thread.sleep(10);
+      }
+   }
+
+   @Test
+   public void testRetry() throws InterruptedException {
+      failures.set(2);
+      send("value");
+
+      waitFor(() -> getDeliveredCount() == 1);
+      assertThat(getDelivered()).containsExactly(expectedMessage("value"));
+      assertThat(getFailedCount()).isZero();
+   }
+
+   @Test
+   public void testGiveUpAfterAttempts() throws InterruptedException {
+      failures.set(10);
+      send("value");
+
+      waitFor(() -> getFailedCount() == 1);
+      assertThat(getDelivered()).isEmpty();
+   }
+}
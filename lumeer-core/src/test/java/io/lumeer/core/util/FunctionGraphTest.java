@@ -0,0 +1,66 @@
+/*
+ * Lumeer: Modern Data Definition and Processing Platform
+ *
+ * Copyright (C) since 2017 Lumeer.io, s.r.o. and/or its affiliates.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.lumeer.core.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.lumeer.api.model.function.FunctionParameter;
+import io.lumeer.api.model.function.FunctionResourceType;
+import io.lumeer.api.model.function.FunctionRow;
+
+import org.junit.Test;
+
+import java.util.List;
+
+public class FunctionGraphTest {
+
+   @Test
+   public void searchRows() {
+      final FunctionGraph graph = new FunctionGraph(List.of(
+            FunctionRow.createForCollection("c1", "a1", "c1", null, "a2"),
+            FunctionRow.createForCollection("c1", "a1", "c2", "l1", "a3"),
+            FunctionRow.createForLink("l1", "a4", null, "l1", "a5")
+      ));
+
+      assertThat(graph.searchByDependentCollection("c1", "a2")).hasSize(1);
+      assertThat(graph.searchByDependentCollection("c1", "a3")).isEmpty();
+      assertThat(graph.searchByDependentCollection("c2", null)).hasSize(1);
+      assertThat(graph.searchByDependentLinkType("l1", null)).hasSize(2);
+      assertThat(graph.searchByDependentLinkType("l1", "a5")).extracting(FunctionRow::getAttributeId).containsOnly("a4");
+      assertThat(graph.searchByResource("c1", "a1", FunctionResourceType.COLLECTION)).hasSize(2);
+      assertThat(graph.searchByResource("c1", "a1", FunctionResourceType.LINK)).isEmpty();
+      assertThat(graph.findCycle(new FunctionParameter(FunctionResourceType.COLLECTION, "c1", "a1"))).isEmpty();
+   }
+
+   @Test
+   public void findCycle() {
+      final FunctionGraph graph = new FunctionGraph(List.of(
+            FunctionRow.createForCollection("c1", "a1", "c1", null, "a2"),
+            FunctionRow.createForCollection("c1", "a2", "c1", null, "a3"),
+            FunctionRow.createForCollection("c1", "a3", "c1", null, "a1"),
+            FunctionRow.createForCollection("c1", "a4", "c1", null, "a1")
+      ));
+
+      assertThat(graph.findCycle(new FunctionParameter(FunctionResourceType.COLLECTION, "c1", "a1"))).containsExactlyInAnyOrder(
+            new FunctionParameter(FunctionResourceType.COLLECTION, "c1", "a1"),
+            new FunctionParameter(FunctionResourceType.COLLECTION, "c1", "a2"),
+            new FunctionParameter(FunctionResourceType.COLLECTION, "c1", "a3"));
+      assertThat(graph.findCycle(new FunctionParameter(FunctionResourceType.COLLECTION, "c1", "a4"))).isEmpty();
+   }
+}
@@ -0,0 +1,83 @@
+/*
+ * Lumeer: Modern Data Definition and Processing Platform
+ *
+ * Copyright (C) since 2017 Lumeer.io, s.r.o. and/or its affiliates.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.lumeer.core.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+public class ObjectIdSetTest {
+
+   private static final String ID1 = "5e8f0a1b2c3d4e5f60718293";
+   private static final String ID2 = "ffffffffffffffffffffffff";
+   private static final String ID3 = "000000000000000000000001";
+   private static final String OTHER_ID = "not-an-object-id";
+
+   @Test
+   public void testAddAndContains() {
+      ObjectIdSet set = new ObjectIdSet();
+      assertThat(set.add(ID1)).isTrue();
+      assertThat(set.add(ID2)).isTrue();
+      assertThat(set.add(OTHER_ID)).isTrue();
+      assertThat(set.add(ID1)).isFalse();
+
+      assertThat(set.size()).isEqualTo(3);
+      assertThat(set.contains(ID1)).isTrue();
+      assertThat(set.contains(ID2)).isTrue();
+      assertThat(set.contains(OTHER_ID)).isTrue();
+      assertThat(set.contains(ID3)).isFalse();
+      assertThat(set).containsOnly(ID1, ID2, OTHER_ID);
+   }
+
+   @Test
+   public void testResize() {
+      List<String> ids = new ArrayList<>();
+      for (int i = 0; i < 1000; i++) {
+         ids.add(String.format("%024x", i * 7919L));
+      }
+
+      ObjectIdSet set = new ObjectIdSet(ids);
+      assertThat(set.size()).isEqualTo(ids.size());
+      assertThat(set).containsOnlyElementsOf(ids);
+      ids.forEach(id -> assertThat(set.contains(id)).isTrue());
+   }
+
+   @Test
+   public void testIntersect() {
+      ObjectIdSet set = new ObjectIdSet(Arrays.asList(ID1, ID2, OTHER_ID));
+      ObjectIdSet intersection = set.intersect(new HashSet<>(Arrays.asList(ID2, ID3, OTHER_ID)));
+      assertThat(intersection).containsOnly(ID2, OTHER_ID);
+   }
+
+   @Test
+   public void testBatches() {
+      ObjectIdSet set = new ObjectIdSet(Arrays.asList(ID1, ID2, ID3, OTHER_ID));
+      List<Set<String>> batches = set.batches(3);
+      assertThat(batches).hasSize(2);
+      assertThat(batches.get(0)).hasSize(3);
+      assertThat(batches.get(1)).hasSize(1);
+      assertThat(batches.stream().flatMap(Set::stream)).containsOnly(ID1, ID2, ID3, OTHER_ID);
+   }
+}
@@ -0,0 +1,157 @@
+/*
+ * Lumeer: Modern Data Definition and Processing Platform
+ *
+ * Copyright (C) since 2017 Lumeer.io, s.r.o. and/or its affiliates.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.lumeer.core.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.After;
+import org.junit.Test;
+import org.marvec.pusher.data.Event;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.stream.Collectors;
+
+public class PushNotificationOutboxTest extends DeliveryTestBase {
+
+   private static final String CHANNEL = "private-user";
+
+   private final List<List<Event>> sink = new CopyOnWriteArrayList<>();
+   private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+   private PushNotificationOutbox outbox;
+
+   private PushNotificationOutbox createOutbox(final int window) {
+      outbox = new PushNotificationOutbox(events -> {
+         if (shouldFail()) {
+            throw new IllegalStateException("Push service is not available.");
+         }
+         sink.add(new ArrayList<>(events));
+      }, event -> event.getName().endsWith(":update") ? event.getChannel() + event.getData() : null, window, 3, scheduler);
+      return outbox;
+   }
+
+   @After
+   public void closeOutbox() {
+      if (outbox != null) {
+         outbox.close();
+      }
+      scheduler.shutdownNow();
+   }
+
+   private List<Object> sentData() {
+      return sink.stream().flatMap(List::stream).map(Event::getData).collect(Collectors.toList());
+   }
+
+   @Override
+   protected void send(final String value) {
+      createOutbox(10).enqueue(Arrays.asList(new Event(CHANNEL, "Document:create", value)));
+   }
+
+   @Override
+   protected List<String> getDelivered() {
+      return sentData().stream().map(String::valueOf).collect(Collectors.toList());
+   }
+
+   @Override
+   protected String expectedMessage(final String value) {
+      return value;
+   }
+
+   @Override
+   protected long getDeliveredCount() {
+      return outbox.getSentCount();
+   }
+
+   @Override
+   protected long getFailedCount() {
+      return outbox.getFailedCount();
+   }
+
+   @Test
+   public void testChunks() throws InterruptedException {
+      createOutbox(100);
+      final List<Event> events = new ArrayList<>();
+      for (int i = 0; i < 25; i++) {
+         events.add(new Event(CHANNEL, "Document:create", "d" + i));
+      }
+      outbox.enqueue(events);
+      assertThat(outbox.getQueueDepth()).isEqualTo(25);
+
+      waitFor(() -> outbox.getSentCount() == 25);
+      assertThat(sink).extracting(List::size).containsExactly(10, 10, 5);
+      assertThat(sentData()).containsExactlyElementsOf(events.stream().map(Event::getData).collect(Collectors.toList()));
+      assertThat(outbox.getQueueDepth()).isZero();
+   }
+
+   @Test
+   public void testCoalesceUpdates() throws InterruptedException {
+      createOutbox(200);
+      outbox.enqueue(Arrays.asList(new Event(CHANNEL, "Document:create", "a"), new Event(CHANNEL, "Document:update", "b")));
+      outbox.enqueue(Arrays.asList(new Event(CHANNEL, "Document:update", "b"), new Event(CHANNEL, "Document:remove", "c")));
+      outbox.enqueue(Arrays.asList(new Event("private-other", "Document:update", "b")));
+
+      waitFor(() -> outbox.getSentCount() == 4);
+      assertThat(sink).hasSize(1);
+      assertThat(sink.get(0)).extracting(Event::getName).containsExactly("Document:create", "Document:update", "Document:remove", "Document:update");
+      assertThat(outbox.getCoalescedCount()).isEqualTo(1);
+   }
+
+   @Override
+   @Test
+   public void testGiveUpAfterAttempts() throws InterruptedException {
+      super.testGiveUpAfterAttempts();
+      assertThat(outbox.getQueueDepth()).isZero();
+   }
+
+   @Test
+   public void testProducersKeepOrder() throws InterruptedException {
+      createOutbox(50);
+      outbox.enqueue(() -> {
+         try {
+            Thread.sleep(50);
+         } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+         }
+         return Arrays.asList(new Event(CHANNEL, "Document:create", "a"));
+      });
+      outbox.enqueue(() -> Arrays.asList(new Event(CHANNEL, "Document:create", "b")));
+      outbox.enqueue(() -> {
+         throw new IllegalStateException("Collection was removed.");
+      });
+      outbox.enqueue(() -> Arrays.asList(new Event(CHANNEL, "Document:create", "c")));
+
+      waitFor(() -> outbox.getSentCount() == 3);
+      assertThat(sentData()).containsExactly("a", "b", "c");
+   }
+
+   @Test
+   public void testCloseSendsPending() {
+      createOutbox(10_000);
+      outbox.enqueue(Arrays.asList(new Event(CHANNEL, "Document:create", "a")));
+      outbox.enqueue(() -> Arrays.asList(new Event(CHANNEL, "Document:create", "b")));
+      outbox.close();
+      outbox = null;
+
+      assertThat(sentData()).containsExactly("a", "b");
+   }
+}
@@ -0,0 +1,74 @@
+/*
+ * Lumeer: Modern Data Definition and Processing Platform
+ *
+ * Copyright (C) since 2017 Lumeer.io, s.r.o. and/or its affiliates.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.lumeer.core.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.lumeer.api.model.Attribute;
+import io.lumeer.api.model.Collection;
+import io.lumeer.api.model.Document;
+import io.lumeer.api.model.Permissions;
+import io.lumeer.engine.api.data.DataDocument;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+
+public class PushPatchesTest {
+
+   @Test
+   public void testDocumentPatch() {
+      Document original = new Document(new DataDocument(DataDocument.ID, "d1").append("a1", "x").append("a2", 1).append("a3", "removed"));
+      original.setId("d1");
+      original.setDataVersion(3);
+
+      Document updated = new Document(original);
+      updated.getData().append("a1", "y").append("a4", "new").remove("a3");
+      updated.setDataVersion(4);
+
+      PushPatches.DocumentPatch patch = PushPatches.createDocumentPatch(original, updated);
+      assertThat(patch).isNotNull();
+      assertThat(patch.getId()).isEqualTo("d1");
+      assertThat(patch.getBaseVersion()).isEqualTo(3);
+      assertThat(patch.getDataVersion()).isEqualTo(4);
+      assertThat(patch.getData()).containsOnlyKeys("a1", "a4").containsEntry("a1", "y");
+      assertThat(patch.getRemovedKeys()).containsOnly("a3");
+      assertThat(patch.getMetaData()).isNull();
+
+      updated.setDataVersion(5);
+      assertThat(PushPatches.createDocumentPatch(original, updated)).isNull();
+      assertThat(PushPatches.createDocumentPatch(null, updated)).isNull();
+   }
+
+   @Test
+   public void testCollectionPatch() {
+      Collection collection = new Collection("C", "Collection", "", "", new Permissions());
+      collection.setId("c1");
+      collection.setAttributes(new HashSet<>(Arrays.asList(new Attribute("a1", "a1", null, null, 5), new Attribute("a2"))));
+      collection.setDocumentsCount(11);
+      collection.setVersion(8);
+
+      PushPatches.CollectionPatch patch = PushPatches.createCollectionPatch(collection);
+      assertThat(patch.getId()).isEqualTo("c1");
+      assertThat(patch.getVersion()).isEqualTo(8);
+      assertThat(patch.getDocumentsCount()).isEqualTo(11);
+      assertThat(patch.getUsageCounts()).containsOnlyKeys("a1", "a2").containsEntry("a1", 5).containsEntry("a2", 0);
+   }
+}
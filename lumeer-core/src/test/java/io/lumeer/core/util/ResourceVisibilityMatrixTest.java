@@ -0,0 +1,127 @@
+/*
+ * Lumeer: Modern Data Definition and Processing Platform
+ *
+ * Copyright (C) since 2017 Lumeer.io, s.r.o. and/or its affiliates.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.lumeer.core.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.lumeer.api.model.Collection;
+import io.lumeer.api.model.LinkType;
+import io.lumeer.api.model.Permission;
+import io.lumeer.api.model.Permissions;
+import io.lumeer.api.model.Query;
+import io.lumeer.api.model.QueryStem;
+import io.lumeer.api.model.Role;
+import io.lumeer.api.model.View;
+import io.lumeer.api.model.common.Resource;
+import io.lumeer.api.util.ResourceUtils;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.BiPredicate;
+
+public class ResourceVisibilityMatrixTest {
+
+   private static final String USER1 = "user1";
+   private static final String USER2 = "user2";
+   private static final Set<String> USERS = new HashSet<>(Arrays.asList(USER1, USER2));
+
+   private static final BiPredicate<Resource, String> CAN_READ = (resource, userId) -> ResourceUtils.usersAllowedRead(resource).contains(userId);
+
+   @Test
+   public void testVisibilityThroughView() {
+      Collection c1 = createCollection("c1", USER1, USER2);
+      Collection c2 = createCollection("c2", USER1);
+      LinkType linkType = createLinkType("l1", c1.getId(), c2.getId());
+      List<Collection> collections = Arrays.asList(c1, c2);
+      List<LinkType> linkTypes = Collections.singletonList(linkType);
+
+      View view = createView("v1", new QueryStem(c1.getId(), Collections.singletonList(linkType.getId()), null, null, null));
+
+      ResourceVisibilityMatrix before = new ResourceVisibilityMatrix(USERS, collections, linkTypes, Collections.emptyList(), linkTypes, CAN_READ);
+      assertThat(before.getCollectionIds(USER1)).containsOnly(c1.getId(), c2.getId());
+      assertThat(before.getLinkTypeIds(USER1)).containsOnly(linkType.getId());
+      assertThat(before.getCollectionIds(USER2)).containsOnly(c1.getId());
+      assertThat(before.getLinkTypeIds(USER2)).isEmpty();
+
+      view.setPermissions(createPermissions(USER2));
+      ResourceVisibilityMatrix after = new ResourceVisibilityMatrix(USERS, collections, linkTypes, Collections.singletonList(view), linkTypes, CAN_READ);
+      assertThat(after.getCollectionIds(USER2)).containsOnly(c1.getId(), c2.getId());
+      assertThat(after.getLinkTypeIds(USER2)).containsOnly(linkType.getId());
+
+      assertThat(after.getCollectionIdsNotIn(USER2, before)).containsOnly(c2.getId());
+      assertThat(after.getLinkTypeIdsNotIn(USER2, before)).containsOnly(linkType.getId());
+      assertThat(before.getCollectionIdsNotIn(USER2, after)).isEmpty();
+      assertThat(after.getCollectionIdsNotIn(USER1, before)).isEmpty();
+      assertThat(after.getLinkTypeIdsNotIn(USER1, before)).isEmpty();
+   }
+
+   @Test
+   public void testRemovedCollectionPermission() {
+      Collection original = createCollection("c1", USER1, USER2);
+      Collection updated = createCollection("c1", USER1);
+      Collection c2 = createCollection("c2", USER1, USER2);
+      LinkType linkType = createLinkType("l1", original.getId(), c2.getId());
+      List<LinkType> linkTypes = Collections.singletonList(linkType);
+
+      ResourceVisibilityMatrix before = new ResourceVisibilityMatrix(USERS, Arrays.asList(original, c2), linkTypes, Collections.emptyList(), linkTypes, CAN_READ);
+      ResourceVisibilityMatrix after = new ResourceVisibilityMatrix(USERS, Arrays.asList(updated, c2), linkTypes, Collections.emptyList(), linkTypes, CAN_READ);
+
+      assertThat(before.getCollectionIdsNotIn(USER2, after)).containsOnly(original.getId());
+      assertThat(before.getLinkTypeIdsNotIn(USER2, after)).containsOnly(linkType.getId());
+      assertThat(before.getCollectionIdsNotIn(USER1, after)).isEmpty();
+
+      View view = createView("v1", new QueryStem(c2.getId(), Collections.singletonList(linkType.getId()), null, null, null));
+      view.setPermissions(createPermissions(USER2));
+      ResourceVisibilityMatrix afterWithView = new ResourceVisibilityMatrix(USERS, Arrays.asList(updated, c2), linkTypes, Collections.singletonList(view), linkTypes, CAN_READ);
+
+      assertThat(before.getCollectionIdsNotIn(USER2, afterWithView)).isEmpty();
+      assertThat(before.getLinkTypeIdsNotIn(USER2, afterWithView)).isEmpty();
+   }
+
+   private Collection createCollection(final String id, final String... readers) {
+      Collection collection = new Collection(id, id, "", "", createPermissions(readers));
+      collection.setId(id);
+      return collection;
+   }
+
+   private LinkType createLinkType(final String id, final String... collectionIds) {
+      LinkType linkType = new LinkType(id, Arrays.asList(collectionIds), Collections.emptyList(), Collections.emptyMap());
+      linkType.setId(id);
+      return linkType;
+   }
+
+   private View createView(final String id, final QueryStem stem) {
+      View view = new View();
+      view.setId(id);
+      view.setPermissions(new Permissions());
+      view.setQuery(new Query(stem));
+      return view;
+   }
+
+   private Permissions createPermissions(final String... readers) {
+      Permissions permissions = new Permissions();
+      Arrays.stream(readers).forEach(reader -> permissions.updateUserPermissions(new Permission(reader, Collections.singleton(Role.READ.toString()))));
+      return permissions;
+   }
+}
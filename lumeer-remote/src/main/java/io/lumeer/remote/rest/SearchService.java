@@ -23,11 +23,25 @@ import io.lumeer.api.model.LinkInstance;
 import io.lumeer.api.model.Query;
 import io.lumeer.api.model.SuggestionQuery;
 import io.lumeer.api.model.Suggestions;
+import io.lumeer.core.auth.HeadersFilter;
 import io.lumeer.core.facade.DocumentFacade;
 import io.lumeer.core.facade.SearchFacade;
 import io.lumeer.core.facade.SuggestionFacade;
+import io.lumeer.core.util.Tuple;
 import io.lumeer.remote.rest.annotation.QueryProcessor;
 
+import com.fasterxml.jackson.databind.AnnotationIntrospector;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.introspect.JacksonAnnotationIntrospector;
+import com.fasterxml.jackson.databind.type.TypeFactory;
+import com.fasterxml.jackson.module.jaxb.JaxbAnnotationIntrospector;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.Set;
 import javax.annotation.PostConstruct;
@@ -38,7 +52,10 @@ import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
+import javax.ws.rs.core.GenericEntity;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
 
 @RequestScoped
 @Produces(MediaType.APPLICATION_JSON)
@@ -46,6 +63,8 @@ import javax.ws.rs.core.MediaType;
 @Path("organizations/{organizationId:[0-9a-fA-F]{24}}/projects/{projectId:[0-9a-fA-F]{24}}/search")
 public class SearchService extends AbstractService {
 
+   private static final String NDJSON = "application/x-ndjson";
+
    @PathParam("organizationId")
    private String organizationId;
 
@@ -61,9 +80,16 @@ public class SearchService extends AbstractService {
    @Inject
    private SuggestionFacade suggestionFacade;
 
+   private ObjectMapper mapper;
+
    @PostConstruct
    public void init() {
       workspaceKeeper.setWorkspaceIds(organizationId, projectId);
+
+      mapper = new ObjectMapper();
+      AnnotationIntrospector primary = new JacksonAnnotationIntrospector();
+      AnnotationIntrospector secondary = new JaxbAnnotationIntrospector(TypeFactory.defaultInstance());
+      mapper.setAnnotationIntrospector(AnnotationIntrospector.pair(primary, secondary));
    }
 
    @POST
@@ -79,18 +105,46 @@ public class SearchService extends AbstractService {
    @POST
    @Path("documents")
    @QueryProcessor
-   public List<Document> searchDocuments(Query query) {
+   public Response searchDocuments(Query query) {
       Set<String> favoriteDocumentIds = documentFacade.getFavoriteDocumentsIds();
-      List<Document> documents = searchFacade.searchDocuments(query);
+      Tuple<List<Document>, String> page = searchFacade.searchDocumentsPage(query);
+      List<Document> documents = page.getFirst();
       documents.forEach(document -> document.setFavorite(favoriteDocumentIds.contains(document.getId())));
-      return documents;
+      return Response.ok(new GenericEntity<List<Document>>(documents) {}).header(HeadersFilter.CONTINUATION_TOKEN_HEADER, page.getSecond()).build();
+   }
+
+   @POST
+   @Path("documents/stream")
+   @Produces(NDJSON)
+   @QueryProcessor
+   public StreamingOutput streamDocuments(Query query) {
+      final Set<String> favoriteDocumentIds = documentFacade.getFavoriteDocumentsIds();
+
+      return output -> {
+         final Writer writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8));
+         try {
+            searchFacade.searchDocuments(query, document -> {
+               document.setFavorite(favoriteDocumentIds.contains(document.getId()));
+               try {
+                  writer.write(mapper.writeValueAsString(document));
+                  writer.write('\n');
+               } catch (IOException e) {
+                  throw new UncheckedIOException(e);
+               }
+            });
+         } catch (UncheckedIOException e) {
+            throw e.getCause();
+         }
+         writer.flush();
+      };
    }
 
    @POST
    @Path("linkInstances")
    @QueryProcessor
-   public List<LinkInstance> getLinkInstances(Query query) {
-      return searchFacade.getLinkInstances(query);
+   public Response getLinkInstances(Query query) {
+      Tuple<List<LinkInstance>, String> page = searchFacade.getLinkInstancesPage(query);
+      return Response.ok(new GenericEntity<List<LinkInstance>>(page.getFirst()) {}).header(HeadersFilter.CONTINUATION_TOKEN_HEADER, page.getSecond()).build();
    }
 
 }
@@ -22,7 +22,9 @@ import io.lumeer.api.model.Collection;
 import io.lumeer.storage.api.query.DatabaseQuery;
 import io.lumeer.storage.api.query.SearchSuggestionQuery;
 
+import java.time.ZonedDateTime;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 public interface CollectionDao extends ProjectScopedDao {
@@ -33,6 +35,10 @@ public interface CollectionDao extends ProjectScopedDao {
 
    Collection updateCollection(String id, Collection collection, Collection originalCollection, boolean pushNotification);
 
+   Collection updateCollectionCounters(String id, Map<String, Integer> attributesToInc, int documentsCountDiff, ZonedDateTime lastTimeUsed);
+
+   Collection updateAttributeFunctionError(String id, String attributeId, String errorReport, long timestamp);
+
    void deleteCollection(String id);
 
    Collection getCollectionByCode(String code);
@@ -57,5 +63,7 @@ public interface CollectionDao extends ProjectScopedDao {
 
    Set<String> getAllCollectionIds();
 
+   Set<String> getCollectionReaders(String id);
+
    Collection bookAttributesNum(String id, Collection collection, int count);
 }
@@ -19,6 +19,7 @@
 package io.lumeer.storage.api.dao;
 
 import io.lumeer.api.model.Collection;
+import io.lumeer.api.model.Document;
 import io.lumeer.api.model.Pagination;
 import io.lumeer.engine.api.data.DataDocument;
 import io.lumeer.storage.api.query.SearchQueryStem;
@@ -42,6 +43,8 @@ public interface DataDao {
 
    DataDocument patchData(String collectionId, String documentId, DataDocument data);
 
+   List<DataDocument> patchData(String collectionId, Map<String, DataDocument> data);
+
    void deleteData(String collectionId, String documentId);
 
    long deleteAttribute(String collectionId, String attributeId);
@@ -54,8 +57,16 @@ public interface DataDao {
 
    List<DataDocument> getData(String collectionId, Set<String> documentIds);
 
+   List<DataDocument> getDataByAttributeValues(String collectionId, String attributeId, Set<Object> values);
+
    List<DataDocument> searchData(SearchQueryStem stem, Pagination pagination, Collection collection);
 
+   Stream<DataDocument> searchDataStream(SearchQueryStem stem, Pagination pagination, Collection collection);
+
+   List<Document> searchDocuments(SearchQueryStem stem, Pagination pagination, Collection collection);
+
+   List<Document> getDocumentsByParentIds(String collectionId, Set<String> parentIds);
+
    List<DataDocument> searchDataByFulltexts(Set<String> fulltexts, Pagination pagination, List<Collection> projectCollections);
 
    List<DataDocument> duplicateData(String collectionId, Map<String, String> documentIds);
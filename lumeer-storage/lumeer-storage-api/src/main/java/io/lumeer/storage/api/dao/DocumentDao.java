@@ -31,9 +31,18 @@ public interface DocumentDao extends ProjectScopedDao {
 
    Document updateDocument(String id, Document document);
 
+   /**
+    * Updates the given documents at once.
+    *
+    * @param documents
+    *       documents to update.
+    * @return the updated documents, documents that do not exist anymore are left out.
+    */
+   List<Document> updateDocuments(List<Document> documents);
+
    void deleteDocument(String id);
 
-   void deleteDocuments(String collectionId);
+   long deleteDocuments(String collectionId);
 
    Document getDocumentById(String id);
 
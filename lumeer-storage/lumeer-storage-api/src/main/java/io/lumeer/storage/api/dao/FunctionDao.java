@@ -27,6 +27,8 @@ public interface FunctionDao extends ProjectScopedDao {
 
    void createRows(List<FunctionRow> rows);
 
+   List<FunctionRow> getAllRows();
+
    List<FunctionRow> searchByAnyCollection(String collectionId, String attributeId);
 
    List<FunctionRow> searchByDependentCollection(String collectionId, String attributeId);
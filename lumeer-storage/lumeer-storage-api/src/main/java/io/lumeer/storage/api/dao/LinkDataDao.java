@@ -42,6 +42,8 @@ public interface LinkDataDao {
 
    DataDocument patchData(String linkTypeId, String linkInstanceId, DataDocument data);
 
+   List<DataDocument> patchData(String linkTypeId, Map<String, DataDocument> data);
+
    void deleteData(String linkTypeId, String linkInstanceId);
 
    void deleteData(String linkTypeId, Set<String> linkInstanceIds);
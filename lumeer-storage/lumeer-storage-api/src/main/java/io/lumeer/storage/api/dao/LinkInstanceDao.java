@@ -37,6 +37,15 @@ public interface LinkInstanceDao extends ProjectScopedDao {
 
    LinkInstance updateLinkInstance(String id, LinkInstance linkInstance);
 
+   /**
+    * Updates the given link instances at once.
+    *
+    * @param linkInstances
+    *       link instances to update.
+    * @return the updated link instances, link instances that do not exist anymore are left out.
+    */
+   List<LinkInstance> updateLinkInstances(List<LinkInstance> linkInstances);
+
    void deleteLinkInstance(String id);
 
    long deleteLinkInstances(final SearchQuery query);
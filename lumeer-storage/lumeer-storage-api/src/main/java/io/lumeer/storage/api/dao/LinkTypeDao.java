@@ -32,6 +32,8 @@ public interface LinkTypeDao extends ProjectScopedDao {
 
    LinkType updateLinkType(String id, LinkType linkType, LinkType originalLinkType);
 
+   LinkType updateAttributeFunctionError(String id, String attributeId, String errorReport, long timestamp);
+
    void deleteLinkType(String id);
 
    void deleteLinkTypesByCollectionId(String collectionId);
@@ -44,6 +46,8 @@ public interface LinkTypeDao extends ProjectScopedDao {
 
    List<LinkType> getLinkTypesByIds(Set<String> ids);
 
+   Set<String> getLinkTypeReaders(String id);
+
    List<LinkType> getLinkTypes(SearchSuggestionQuery query);
 
    List<LinkType> getLinkTypesByAttributes(SearchSuggestionQuery query);
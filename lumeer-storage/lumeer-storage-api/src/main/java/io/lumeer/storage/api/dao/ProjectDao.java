@@ -24,6 +24,7 @@ import io.lumeer.storage.api.query.DatabaseQuery;
 
 import java.util.List;
 import java.util.Set;
+import java.util.function.LongSupplier;
 
 public interface ProjectDao extends OrganizationScopedDao {
 
@@ -55,6 +56,28 @@ public interface ProjectDao extends OrganizationScopedDao {
 
    Project updateProject(String projectId, Project project, Project originalProject);
 
+   /**
+    * Gets the number of documents in all collections of the project.
+    *
+    * @param projectId
+    *       The project id.
+    * @return The documents count, or null when the counter is missing or has not been reconciled for a while.
+    */
+   Long getDocumentsCount(String projectId);
+
+   void updateDocumentsCount(String projectId, long documentsCountDiff);
+
+   /**
+    * Replaces the stored documents count by a freshly computed one. The counter is left untouched when it changes concurrently.
+    *
+    * @param projectId
+    *       The project id.
+    * @param documentsCount
+    *       Computes the number of documents in all collections of the project.
+    * @return The computed documents count.
+    */
+   long reconcileDocumentsCount(String projectId, LongSupplier documentsCount);
+
    void switchOrganization();
 
 }
@@ -0,0 +1,53 @@
+/*
+ * Lumeer: Modern Data Definition and Processing Platform
+ *
+ * Copyright (C) since 2017 Lumeer.io, s.r.o. and/or its affiliates.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.lumeer.storage.api.dao;
+
+import io.lumeer.api.model.QueuedTask;
+
+import java.util.List;
+import java.util.Set;
+
+public interface TaskQueueDao {
+
+   void createRepository();
+
+   QueuedTask enqueue(QueuedTask task);
+
+   List<QueuedTask> lease(String owner, int limit, long leaseMillis);
+
+   void renew(String owner, Set<String> ids, long leaseMillis);
+
+   /**
+    * Records that one more task of the chain was processed, the stored chain itself is not changed.
+    */
+   boolean progress(String id, String owner, long leaseMillis);
+
+   boolean complete(String id, String owner);
+
+   boolean retry(String id, String owner, String error, long delayMillis);
+
+   boolean deadLetter(String id, String owner, String error);
+
+   /**
+    * Removes tasks that have been dead-lettered before the given time.
+    *
+    * @return number of removed tasks.
+    */
+   long removeDeadLetters(long olderThanMillis);
+}
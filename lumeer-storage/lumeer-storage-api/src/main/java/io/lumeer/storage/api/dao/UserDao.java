@@ -21,6 +21,7 @@ package io.lumeer.storage.api.dao;
 import io.lumeer.api.model.User;
 
 import java.util.List;
+import java.util.Set;
 
 public interface UserDao {
 
@@ -42,6 +43,8 @@ public interface UserDao {
 
    User getUserById(String id);
 
+   List<User> getUsersByIds(Set<String> ids);
+
    List<User> getAllUsers(String organizationId);
 
    long getReferralsCount(final String referral);
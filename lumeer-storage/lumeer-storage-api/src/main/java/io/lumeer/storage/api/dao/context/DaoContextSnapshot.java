@@ -100,5 +100,7 @@ public interface DaoContextSnapshot {
 
    Set<String> getCollectionReaders(final Collection collection);
 
+   Set<String> getLinkTypeReaders(final String linkTypeId);
+
    Set<String> getProjectManagers();
 }
@@ -34,12 +34,14 @@ public class DatabaseQuery {
    private final Set<String> groups;
    private final Integer page;
    private final Integer pageSize;
+   private final String after;
 
    protected DatabaseQuery(Builder builder) {
       this.users = builder.users;
       this.groups = builder.groups;
       this.page = builder.page;
       this.pageSize = builder.pageSize;
+      this.after = builder.after;
    }
 
    public Set<String> getUsers() {
@@ -58,8 +60,12 @@ public class DatabaseQuery {
       return pageSize;
    }
 
+   public String getAfter() {
+      return after;
+   }
+
    public Pagination getPagination() {
-      return new Pagination(page, pageSize);
+      return new Pagination(page, pageSize, after);
    }
 
    public static Builder createBuilder(String... users) {
@@ -72,6 +78,7 @@ public class DatabaseQuery {
       private Set<String> groups = new HashSet<>();
       private Integer page;
       private Integer pageSize;
+      private String after;
 
       protected Builder(String... users) {
          this.users = Arrays.asList(users).stream().collect(Collectors.toSet());
@@ -92,8 +99,17 @@ public class DatabaseQuery {
          return (T) this;
       }
 
+      public T after(String after) {
+         this.after = after;
+         return (T) this;
+      }
+
       protected void validate() {
-         if ((page != null && pageSize == null) || (page == null && pageSize != null)) {
+         if (after != null) {
+            if (pageSize == null) {
+               throw new IllegalArgumentException("pageSize must be set together with after");
+            }
+         } else if ((page != null && pageSize == null) || (page == null && pageSize != null)) {
             throw new IllegalArgumentException("both page and pageSize must be set");
          }
          if (page != null && page < 0) {
@@ -57,6 +57,7 @@ import io.lumeer.storage.mongodb.codecs.providers.PermissionsCodecProvider;
 import io.lumeer.storage.mongodb.codecs.providers.ProjectCodecProvider;
 import io.lumeer.storage.mongodb.codecs.providers.QueryCodecProvider;
 import io.lumeer.storage.mongodb.codecs.providers.QueryStemCodecProvider;
+import io.lumeer.storage.mongodb.codecs.providers.QueuedTaskCodecProvider;
 import io.lumeer.storage.mongodb.codecs.providers.ReferralPaymentCodecProvider;
 import io.lumeer.storage.mongodb.codecs.providers.RuleCodecProvider;
 import io.lumeer.storage.mongodb.codecs.providers.SequenceCodecProvider;
@@ -138,7 +139,7 @@ public class MongoDbStorage implements DataStorage {
             new DocumentCodecProvider(), new QueryStemCodecProvider(), new AttributeFilterCodecProvider(), new UserNotificationCodecProvider(),
             new ConstraintCodecProvider(), new RuleCodecProvider(), new FunctionCodecProvider(), new FunctionRowCodecProvider(),
             new LinkAttributeFilterCodecProvider(), new FileAttachmentCodecProvider(), new SequenceCodecProvider(), new ConditionValueCodecProvider(),
-            new DefaultViewConfigCodecProvider(), new ReferralPaymentCodecProvider(), new TemplateMetadataCodecProvider()
+            new DefaultViewConfigCodecProvider(), new ReferralPaymentCodecProvider(), new TemplateMetadataCodecProvider(), new QueuedTaskCodecProvider()
       );
       final CodecRegistry registry = CodecRegistries.fromRegistries(defaultRegistry, codecRegistry, providersRegistry);
 
@@ -38,6 +38,10 @@ public class ProjectCodec extends ResourceCodec implements CollectibleCodec<Proj
    public static final String TEMPLATE_METADATA = "templateMetadata";
    public static final String IS_PUBLIC = "isPublic";
 
+   // not part of the model, maintained by MongoProjectDao only
+   public static final String DOCUMENTS_COUNT = "documentsCount";
+   public static final String DOCUMENTS_COUNT_RECONCILED = "documentsCountReconciled";
+
    public ProjectCodec(final CodecRegistry registry) {
       super(registry);
    }
@@ -0,0 +1,139 @@
+/*
+ * Lumeer: Modern Data Definition and Processing Platform
+ *
+ * Copyright (C) since 2017 Lumeer.io, s.r.o. and/or its affiliates.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.lumeer.storage.mongodb.codecs;
+
+import io.lumeer.api.model.QueuedTask;
+import io.lumeer.engine.api.data.DataDocument;
+import io.lumeer.storage.mongodb.MongoUtils;
+
+import org.bson.BsonObjectId;
+import org.bson.BsonReader;
+import org.bson.BsonValue;
+import org.bson.BsonWriter;
+import org.bson.Document;
+import org.bson.codecs.Codec;
+import org.bson.codecs.CollectibleCodec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.bson.codecs.configuration.CodecRegistry;
+import org.bson.types.ObjectId;
+
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.Date;
+
+public class QueuedTaskCodec implements CollectibleCodec<QueuedTask> {
+
+   public static final String ID = "_id";
+   public static final String ORGANIZATION_ID = "organizationId";
+   public static final String PROJECT_ID = "projectId";
+   public static final String USER_ID = "userId";
+   public static final String PARTITION_KEY = "partitionKey";
+   public static final String PAYLOAD = "payload";
+   public static final String STATE = "state";
+   public static final String ATTEMPTS = "attempts";
+   public static final String COMPLETED_TASKS = "completedTasks";
+   public static final String LEASE_OWNER = "leaseOwner";
+   public static final String AVAILABLE_AT = "availableAt";
+   public static final String CREATION_DATE = "creationDate";
+   public static final String ERROR = "error";
+
+   private final Codec<Document> documentCodec;
+
+   public QueuedTaskCodec(final CodecRegistry registry) {
+      this.documentCodec = registry.get(Document.class);
+   }
+
+   @Override
+   public QueuedTask generateIdIfAbsentFromDocument(final QueuedTask queuedTask) {
+      if (!documentHasId(queuedTask)) {
+         queuedTask.setId(new ObjectId().toHexString());
+      }
+      return queuedTask;
+   }
+
+   @Override
+   public boolean documentHasId(final QueuedTask queuedTask) {
+      return queuedTask.getId() != null;
+   }
+
+   @Override
+   public BsonValue getDocumentId(final QueuedTask queuedTask) {
+      if (!documentHasId(queuedTask)) {
+         throw new IllegalStateException("The document does not contain an id");
+      }
+
+      return new BsonObjectId(new ObjectId(queuedTask.getId()));
+   }
+
+   @Override
+   public QueuedTask decode(final BsonReader bsonReader, final DecoderContext decoderContext) {
+      Document bson = documentCodec.decode(bsonReader, decoderContext);
+
+      QueuedTask queuedTask = new QueuedTask();
+      queuedTask.setId(bson.getObjectId(ID).toHexString());
+      queuedTask.setOrganizationId(bson.getString(ORGANIZATION_ID));
+      queuedTask.setProjectId(bson.getString(PROJECT_ID));
+      queuedTask.setUserId(bson.getString(USER_ID));
+      queuedTask.setPartitionKey(bson.getString(PARTITION_KEY));
+      queuedTask.setPayload(bson.get(PAYLOAD) != null ? MongoUtils.convertDocument(bson.get(PAYLOAD, Document.class)) : new DataDocument());
+      queuedTask.setState(bson.getString(STATE) != null ? QueuedTask.State.valueOf(bson.getString(STATE)) : QueuedTask.State.PENDING);
+      queuedTask.setAttempts(bson.getInteger(ATTEMPTS, 0));
+      queuedTask.setCompletedTasks(bson.getInteger(COMPLETED_TASKS, 0));
+      queuedTask.setLeaseOwner(bson.getString(LEASE_OWNER));
+      queuedTask.setAvailableAt(decodeDate(bson.getDate(AVAILABLE_AT)));
+      queuedTask.setCreationDate(decodeDate(bson.getDate(CREATION_DATE)));
+      queuedTask.setError(bson.getString(ERROR));
+
+      return queuedTask;
+   }
+
+   private static ZonedDateTime decodeDate(final Date date) {
+      return date != null ? ZonedDateTime.ofInstant(date.toInstant(), ZoneOffset.UTC) : null;
+   }
+
+   @Override
+   public void encode(final BsonWriter bsonWriter, final QueuedTask queuedTask, final EncoderContext encoderContext) {
+      Document bson = queuedTask.getId() != null ? new Document(ID, new ObjectId(queuedTask.getId())) : new Document();
+      bson.append(ORGANIZATION_ID, queuedTask.getOrganizationId())
+          .append(PROJECT_ID, queuedTask.getProjectId())
+          .append(USER_ID, queuedTask.getUserId())
+          .append(PARTITION_KEY, queuedTask.getPartitionKey())
+          .append(PAYLOAD, queuedTask.getPayload() != null ? MongoUtils.dataDocumentToDocument(new DataDocument(queuedTask.getPayload())) : null)
+          .append(STATE, queuedTask.getState() != null ? queuedTask.getState().name() : QueuedTask.State.PENDING.name())
+          .append(ATTEMPTS, queuedTask.getAttempts())
+          .append(COMPLETED_TASKS, queuedTask.getCompletedTasks())
+          .append(LEASE_OWNER, queuedTask.getLeaseOwner())
+          .append(ERROR, queuedTask.getError());
+
+      if (queuedTask.getAvailableAt() != null) {
+         bson.append(AVAILABLE_AT, new Date(queuedTask.getAvailableAt().toInstant().toEpochMilli()));
+      }
+      if (queuedTask.getCreationDate() != null) {
+         bson.append(CREATION_DATE, new Date(queuedTask.getCreationDate().toInstant().toEpochMilli()));
+      }
+
+      documentCodec.encode(bsonWriter, bson, encoderContext);
+   }
+
+   @Override
+   public Class<QueuedTask> getEncoderClass() {
+      return QueuedTask.class;
+   }
+}
@@ -24,6 +24,7 @@ import io.lumeer.storage.api.query.DatabaseQuery;
 import com.mongodb.client.FindIterable;
 import com.mongodb.client.MongoDatabase;
 import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.Sorts;
 
 import org.bson.conversions.Bson;
 
@@ -31,6 +32,8 @@ import java.util.List;
 
 public abstract class MongoDao {
 
+   private static final String ID = "_id";
+
    protected MongoDatabase database;
 
    public void setDatabase(final MongoDatabase database) {
@@ -41,14 +44,32 @@ public abstract class MongoDao {
       addPaginationToQuery(findIterable, query.getPagination());
    }
 
+   /**
+    * Adds ordering and limits of the requested page to the query. In case of keyset pagination, the query filter must be
+    * created by {@link io.lumeer.storage.mongodb.util.MongoFilters#paginationFilter(Bson, Pagination)}.
+    */
    public <T> void addPaginationToQuery(FindIterable<T> findIterable, Pagination pagination) {
-      Integer page = pagination != null ? pagination.getPage() : null;
-      Integer pageSize = pagination != null ? pagination.getPageSize() : null;
+      if (pagination == null || !pagination.isPaginated()) {
+         return;
+      }
+
+      findIterable.sort(Sorts.ascending(ID));
+      if (!pagination.isKeyset()) {
+         findIterable.skip(pagination.getPage() * pagination.getPageSize());
+      }
+      findIterable.limit(pagination.getPageSize());
+   }
+
+   public void addPaginationToAggregates(List<Bson> aggregates, Pagination pagination) {
+      if (pagination == null || !pagination.isPaginated()) {
+         return;
+      }
 
-      if (page != null && pageSize != null) {
-         findIterable.skip(page * pageSize)
-                     .limit(pageSize);
+      aggregates.add(Aggregates.sort(Sorts.ascending(ID)));
+      if (!pagination.isKeyset()) {
+         aggregates.add(Aggregates.skip(pagination.getPage() * pagination.getPageSize()));
       }
+      aggregates.add(Aggregates.limit(pagination.getPageSize()));
    }
 
    public void addPaginationToAggregates(List<Bson> aggregates, DatabaseQuery query) {
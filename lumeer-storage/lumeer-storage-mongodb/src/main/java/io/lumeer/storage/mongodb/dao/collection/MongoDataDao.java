@@ -18,7 +18,6 @@
  */
 package io.lumeer.storage.mongodb.dao.collection;
 
-import static io.lumeer.storage.mongodb.util.MongoFilters.createFilterForFulltexts;
 import static io.lumeer.storage.mongodb.util.MongoFilters.idFilter;
 
 import io.lumeer.api.model.Collection;
@@ -31,45 +30,69 @@ import io.lumeer.storage.api.exception.StorageException;
 import io.lumeer.storage.api.filter.CollectionSearchAttributeFilter;
 import io.lumeer.storage.api.query.SearchQueryStem;
 import io.lumeer.storage.mongodb.MongoUtils;
+import io.lumeer.storage.mongodb.codecs.DocumentCodec;
+import io.lumeer.storage.mongodb.dao.project.MongoDocumentDao;
+import io.lumeer.storage.mongodb.dao.project.MongoIndexManager;
 import io.lumeer.storage.mongodb.util.MongoFilters;
 
 import com.mongodb.client.FindIterable;
 import com.mongodb.client.MongoCollection;
 import com.mongodb.client.MongoCursor;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.BulkWriteOptions;
 import com.mongodb.client.model.Filters;
 import com.mongodb.client.model.FindOneAndReplaceOptions;
 import com.mongodb.client.model.FindOneAndUpdateOptions;
 import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.Projections;
 import com.mongodb.client.model.ReturnDocument;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.UpdateOptions;
 import com.mongodb.client.model.Updates;
+import com.mongodb.client.model.WriteModel;
 import com.mongodb.client.result.UpdateResult;
 import org.bson.BsonDocument;
+import org.bson.BsonDocumentReader;
 import org.bson.Document;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
 import org.bson.conversions.Bson;
 import org.bson.types.ObjectId;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
 import java.util.function.Consumer;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
+import javax.enterprise.concurrent.ManagedExecutorService;
 import javax.enterprise.context.RequestScoped;
+import javax.inject.Inject;
 
 @RequestScoped
 public class MongoDataDao extends MongoCollectionScopedDao implements DataDao {
 
    private static final String ID = "_id";
    private static final String PREFIX = "data_c-";
+   private static final String FULLTEXT_PREFIX = "fulltext_c-";
+   private static final String DOCUMENT_FIELD = "_document";
+   private static final String DATA_FIELD = "_data";
+
+   @Inject
+   private ManagedExecutorService executorService;
 
    @Override
    public void createDataRepository(final String collectionId) {
       database.createCollection(dataCollectionName(collectionId));
       createFulltextIndexOnAllFields(collectionId);
+      fulltextIndex(collectionId).create();
    }
 
    private void createFulltextIndexOnAllFields(final String collectionId) {
@@ -79,12 +102,14 @@ public class MongoDataDao extends MongoCollectionScopedDao implements DataDao {
    @Override
    public void deleteDataRepository(final String collectionId) {
       dataCollection(collectionId).drop();
+      fulltextIndex(collectionId).drop();
    }
 
    @Override
    public DataDocument createData(final String collectionId, final String documentId, final DataDocument data) {
       Document document = new Document(data).append(ID, new ObjectId(documentId));
       dataCollection(collectionId).insertOne(document);
+      fulltextIndex(collectionId).index(documentId, data);
       return data;
    }
 
@@ -98,6 +123,7 @@ public class MongoDataDao extends MongoCollectionScopedDao implements DataDao {
          String id = idObj instanceof String ? (String) idObj : ((ObjectId) idObj).toHexString();
          data.get(i).setId(id);
       }
+      fulltextIndex(collectionId).index(data);
       return data;
    }
 
@@ -110,6 +136,7 @@ public class MongoDataDao extends MongoCollectionScopedDao implements DataDao {
       if (updatedDocument == null) {
          throw new StorageException("Document '" + documentId + "' has not been updated (replaced).");
       }
+      fulltextIndex(collectionId).index(documentId, updatedDocument);
       return MongoUtils.convertDocument(updatedDocument);
    }
 
@@ -128,17 +155,40 @@ public class MongoDataDao extends MongoCollectionScopedDao implements DataDao {
       if (patchedDocument == null) {
          throw new StorageException("Document '" + documentId + "' has not been patched (partially updated).");
       }
+      fulltextIndex(collectionId).index(documentId, patchedDocument);
       return MongoUtils.convertDocument(patchedDocument);
    }
 
+   @Override
+   public List<DataDocument> patchData(final String collectionId, final Map<String, DataDocument> data) {
+      final List<WriteModel<Document>> updates = new ArrayList<>();
+      data.forEach((id, patch) -> {
+         final Document update = new Document(patch);
+         update.remove(ID);
+         if (update.size() > 0) {
+            updates.add(new UpdateOneModel<>(idFilter(id), new Document("$set", update), new UpdateOptions().upsert(true)));
+         }
+      });
+
+      if (!updates.isEmpty()) {
+         dataCollection(collectionId).bulkWrite(updates, new BulkWriteOptions().ordered(false));
+      }
+
+      final List<DataDocument> patchedData = getData(collectionId, data.keySet());
+      fulltextIndex(collectionId).index(patchedData);
+      return patchedData;
+   }
+
    @Override
    public void deleteData(final String collectionId, final String documentId) {
       dataCollection(collectionId).deleteOne(idFilter(documentId));
+      fulltextIndex(collectionId).remove(documentId);
    }
 
    @Override
    public long deleteAttribute(final String collectionId, final String attributeId) {
       final UpdateResult updateResult = dataCollection(collectionId).updateMany(new BsonDocument(), Updates.unset(attributeId));
+      fulltextIndex(collectionId).invalidate();
       return updateResult.getModifiedCount();
    }
 
@@ -170,14 +220,100 @@ public class MongoDataDao extends MongoCollectionScopedDao implements DataDao {
       return MongoUtils.convertIterableToList(dataCollection(collectionId).find(idsFilter));
    }
 
+   @Override
+   public List<DataDocument> getDataByAttributeValues(final String collectionId, final String attributeId, final Set<Object> values) {
+      if (values.isEmpty()) {
+         return Collections.emptyList();
+      }
+      return MongoUtils.convertIterableToList(dataCollection(collectionId).find(Filters.in(attributeId, values)).projection(Projections.include(attributeId)));
+   }
+
    @Override
    public List<DataDocument> searchData(final SearchQueryStem stem, final Pagination pagination, final Collection collection) {
       Bson filter = createFilterForStem(stem, collection);
-      FindIterable<Document> iterable = dataCollection(collection.getId()).find(filter);
+      if (filter == null) {
+         return Collections.emptyList();
+      }
+      FindIterable<Document> iterable = dataCollection(collection.getId()).find(MongoFilters.paginationFilter(filter, pagination));
       addPaginationToQuery(iterable, pagination);
       return MongoUtils.convertIterableToList(iterable);
    }
 
+   @Override
+   public Stream<DataDocument> searchDataStream(final SearchQueryStem stem, final Pagination pagination, final Collection collection) {
+      Bson filter = createFilterForStem(stem, collection);
+      if (filter == null) {
+         return Stream.empty();
+      }
+      FindIterable<Document> iterable = dataCollection(collection.getId()).find(MongoFilters.paginationFilter(filter, pagination));
+      addPaginationToQuery(iterable, pagination);
+
+      MongoCursor<Document> cursor = iterable.iterator();
+      return StreamSupport.stream(Spliterators.spliteratorUnknownSize(cursor, Spliterator.ORDERED), false)
+                          .map(MongoUtils::convertDocument)
+                          .onClose(cursor::close);
+   }
+
+   @Override
+   public List<io.lumeer.api.model.Document> searchDocuments(final SearchQueryStem stem, final Pagination pagination, final Collection collection) {
+      Bson filter = createFilterForStem(stem, collection);
+      if (filter == null) {
+         return Collections.emptyList();
+      }
+
+      List<Bson> aggregates = new ArrayList<>();
+      aggregates.add(Aggregates.match(MongoFilters.paginationFilter(filter, pagination)));
+      addPaginationToAggregates(aggregates, pagination);
+      aggregates.add(Aggregates.lookup(documentsCollectionName(), ID, ID, DOCUMENT_FIELD));
+      aggregates.add(Aggregates.unwind("$" + DOCUMENT_FIELD));
+      aggregates.add(Aggregates.match(Filters.eq(MongoUtils.concatParams(DOCUMENT_FIELD, DocumentCodec.COLLECTION_ID), collection.getId())));
+
+      List<io.lumeer.api.model.Document> documents = new ArrayList<>();
+      for (Document row : dataCollection(collection.getId()).aggregate(aggregates)) {
+         Document metadata = (Document) row.remove(DOCUMENT_FIELD);
+         documents.add(convertDocument(metadata, row));
+      }
+      return documents;
+   }
+
+   @Override
+   public List<io.lumeer.api.model.Document> getDocumentsByParentIds(final String collectionId, final Set<String> parentIds) {
+      if (parentIds.isEmpty()) {
+         return Collections.emptyList();
+      }
+
+      List<Bson> aggregates = Arrays.asList(
+            Aggregates.match(Filters.and(Filters.eq(DocumentCodec.COLLECTION_ID, collectionId),
+                  Filters.in(MongoUtils.concatParams(DocumentCodec.META_DATA, io.lumeer.api.model.Document.META_PARENT_ID), parentIds))),
+            Aggregates.lookup(dataCollectionName(collectionId), ID, ID, DATA_FIELD)
+      );
+
+      MongoIndexManager.ensureIndexes(database, MongoIndexManager.Repository.DOCUMENTS, documentsCollectionName());
+
+      List<io.lumeer.api.model.Document> documents = new ArrayList<>();
+      for (Document row : database.getCollection(documentsCollectionName()).aggregate(aggregates)) {
+         List<Document> data = row.getList(DATA_FIELD, Document.class);
+         row.remove(DATA_FIELD);
+         documents.add(convertDocument(row, data != null && !data.isEmpty() ? data.get(0) : new Document()));
+      }
+      return documents;
+   }
+
+   private io.lumeer.api.model.Document convertDocument(final Document metadata, final Document data) {
+      Codec<io.lumeer.api.model.Document> codec = database.getCodecRegistry().get(io.lumeer.api.model.Document.class);
+      BsonDocument bson = metadata.toBsonDocument(Document.class, database.getCodecRegistry());
+      io.lumeer.api.model.Document document = codec.decode(new BsonDocumentReader(bson), DecoderContext.builder().build());
+      document.setData(MongoUtils.convertDocument(data));
+      return document;
+   }
+
+   private String documentsCollectionName() {
+      if (!getProject().isPresent()) {
+         throw new ResourceNotFoundException(ResourceType.PROJECT);
+      }
+      return MongoDocumentDao.databaseCollectionName(getProject().get());
+   }
+
    private Bson createFilterForStem(final SearchQueryStem stem, Collection collection) {
       List<Bson> filters = new ArrayList<>();
 
@@ -199,8 +335,17 @@ public class MongoDataDao extends MongoCollectionScopedDao implements DataDao {
       }
 
       if (stem.containsFulltextsQuery()) {
-         Bson fulltextsFilter = createFilterForFulltexts(collection.getAttributes(), stem.getFulltexts());
-         if (fulltextsFilter != null) {
+         Set<String> fulltextIds = fulltextIndex(collection.getId()).search(collection.getAttributes(), stem.getFulltexts(), null);
+         if (fulltextIds == null) { // the index is not ready yet
+            Bson fulltextsFilter = MongoFilters.createFilterForFulltexts(collection.getAttributes(), stem.getFulltexts());
+            if (fulltextsFilter != null) {
+               filters.add(fulltextsFilter);
+            }
+         } else {
+            Bson fulltextsFilter = MongoFilters.idsFilter(fulltextIds);
+            if (fulltextsFilter == null) {
+               return null; // nothing matches the fulltexts
+            }
             filters.add(fulltextsFilter);
          }
       }
@@ -216,11 +361,20 @@ public class MongoDataDao extends MongoCollectionScopedDao implements DataDao {
    public List<DataDocument> searchDataByFulltexts(final Set<String> fulltexts, final Pagination pagination, final List<Collection> projectCollections) {
       List<DataDocument> documents = new ArrayList<>();
       for (Collection collection : projectCollections) {
-         Bson filter = createFilterForFulltexts(collection.getAttributes(), fulltexts);
+         Set<String> ids = fulltextIndex(collection.getId()).search(collection.getAttributes(), fulltexts, pagination);
+         if (ids == null) { // the index is not ready yet
+            Bson filter = MongoFilters.createFilterForFulltexts(collection.getAttributes(), fulltexts);
+            if (filter != null) {
+               FindIterable<Document> iterable = dataCollection(collection.getId()).find(MongoFilters.paginationFilter(filter, pagination));
+               addPaginationToQuery(iterable, pagination);
+               documents.addAll(MongoUtils.convertIterableToList(iterable));
+            }
+            continue;
+         }
+
+         Bson filter = MongoFilters.idsFilter(ids);
          if (filter != null) {
-            FindIterable<Document> iterable = dataCollection(collection.getId()).find(filter);
-            addPaginationToQuery(iterable, pagination);
-            documents.addAll(MongoUtils.convertIterableToList(iterable));
+            documents.addAll(MongoUtils.convertIterableToList(dataCollection(collection.getId()).find(filter)));
          }
       }
 
@@ -247,6 +401,7 @@ public class MongoDataDao extends MongoCollectionScopedDao implements DataDao {
                                    .map(data -> new Document(data).append(ID, new ObjectId(data.getId())))
                                    .collect(Collectors.toList());
             dataCollection(collectionId).insertMany(documents);
+            fulltextIndex(collectionId).index(newData);
          }
       }
 
@@ -261,4 +416,12 @@ public class MongoDataDao extends MongoCollectionScopedDao implements DataDao {
       return PREFIX + collectionId;
    }
 
+   void setExecutorService(final ManagedExecutorService executorService) {
+      this.executorService = executorService;
+   }
+
+   MongoFulltextIndex fulltextIndex(String collectionId) {
+      return new MongoFulltextIndex(database, FULLTEXT_PREFIX + collectionId, dataCollectionName(collectionId), executorService);
+   }
+
 }
@@ -0,0 +1,367 @@
+/*
+ * Lumeer: Modern Data Definition and Processing Platform
+ *
+ * Copyright (C) since 2017 Lumeer.io, s.r.o. and/or its affiliates.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.lumeer.storage.mongodb.dao.collection;
+
+import io.lumeer.api.model.Attribute;
+import io.lumeer.api.model.Pagination;
+import io.lumeer.storage.mongodb.util.MongoFilters;
+
+import com.mongodb.client.FindIterable;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.ReplaceOneModel;
+import com.mongodb.client.model.ReplaceOptions;
+import com.mongodb.client.model.Sorts;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.WriteModel;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Tokenized inverted index kept next to a data collection. Each entry shares the <code>_id</code> of the data document
+ * and holds the suffixes of its lower-cased string tokens together with the ids of the attributes present in the document,
+ * so both prefix and infix fulltext lookups become anchored (index backed) regular expressions on a multikey index.
+ * The index is built in background, until it is ready the searches must be served from the data collection directly.
+ */
+class MongoFulltextIndex {
+
+   private static final Logger log = Logger.getLogger(MongoFulltextIndex.class.getName());
+
+   static final String TERMS = "terms";
+   static final String ATTRIBUTES = "attributes";
+
+   private static final String ID = "_id";
+   private static final String READY_MARKER = "ready";
+   private static final int MAX_TOKEN_LENGTH = 64;
+   private static final int MAX_TERMS = 1000;
+   private static final int BATCH_SIZE = 1000;
+   private static final Pattern TOKEN_SEPARATOR = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+   private static final Set<String> READY_INDEXES = ConcurrentHashMap.newKeySet();
+   private static final Set<String> RUNNING_REBUILDS = ConcurrentHashMap.newKeySet();
+   private static final Map<String, Boolean> PENDING_REBUILDS = new ConcurrentHashMap<>(); // index -> overwrite existing entries
+
+   private final MongoDatabase database;
+   private final String indexCollectionName;
+   private final String dataCollectionName;
+   private final Executor executor;
+
+   /**
+    * @param executor
+    *       executor of the background rebuilds, they run in the calling thread when it is not set.
+    */
+   MongoFulltextIndex(final MongoDatabase database, final String indexCollectionName, final String dataCollectionName, final Executor executor) {
+      this.database = database;
+      this.indexCollectionName = indexCollectionName;
+      this.dataCollectionName = dataCollectionName;
+      this.executor = executor;
+   }
+
+   // the index becomes ready by its first build, which picks up also the data written before the index existed
+   void create() {
+      database.createCollection(indexCollectionName);
+      createIndexes();
+      READY_INDEXES.remove(readyKey());
+   }
+
+   void drop() {
+      indexCollection().drop();
+      READY_INDEXES.remove(readyKey());
+      PENDING_REBUILDS.remove(readyKey());
+   }
+
+   /**
+    * Marks the index as not ready and schedules rebuild of all its entries, the searches are served from the data collection
+    * until the rebuild finishes.
+    */
+   void invalidate() {
+      indexCollection().deleteOne(Filters.eq(ID, READY_MARKER));
+      READY_INDEXES.remove(readyKey());
+      scheduleRebuild(true);
+   }
+
+   void index(final String id, final Map<String, Object> data) {
+      if (id == null || !ObjectId.isValid(id)) {
+         return;
+      }
+      indexCollection().replaceOne(Filters.eq(ID, new ObjectId(id)), createEntry(data), new ReplaceOptions().upsert(true));
+   }
+
+   void index(final List<? extends Map<String, Object>> data) {
+      final List<WriteModel<Document>> writes = data.stream()
+                                                    .filter(d -> d.get(ID) != null && ObjectId.isValid(d.get(ID).toString()))
+                                                    .map(d -> new ReplaceOneModel<>(Filters.eq(ID, new ObjectId(d.get(ID).toString())), createEntry(d), new ReplaceOptions().upsert(true)))
+                                                    .collect(Collectors.toList());
+      bulkWrite(writes);
+   }
+
+   void remove(final String id) {
+      if (id != null && ObjectId.isValid(id)) {
+         indexCollection().deleteOne(Filters.eq(ID, new ObjectId(id)));
+      }
+   }
+
+   void remove(final Set<String> ids) {
+      final Bson filter = MongoFilters.idsFilter(ids);
+      if (filter != null) {
+         indexCollection().deleteMany(filter);
+      }
+   }
+
+   private void scheduleRebuild(final boolean overwrite) {
+      final String key = readyKey();
+      PENDING_REBUILDS.merge(key, overwrite, Boolean::logicalOr);
+      if (RUNNING_REBUILDS.add(key)) {
+         if (executor != null) {
+            executor.execute(() -> runRebuilds(key));
+         } else {
+            runRebuilds(key);
+         }
+      }
+   }
+
+   // rebuilds requested while another one is running are run after it, the running one might have missed their changes
+   private void runRebuilds(final String key) {
+      while (true) {
+         final Boolean overwrite = PENDING_REBUILDS.remove(key);
+         if (overwrite == null) {
+            RUNNING_REBUILDS.remove(key);
+            if (!PENDING_REBUILDS.containsKey(key) || !RUNNING_REBUILDS.add(key)) {
+               return;
+            }
+            continue;
+         }
+
+         try {
+            rebuild(overwrite);
+            if (!PENDING_REBUILDS.containsKey(key)) {
+               markReady();
+            }
+         } catch (RuntimeException e) {
+            log.log(Level.WARNING, String.format("Unable to rebuild fulltext index %s: ", indexCollectionName), e);
+         }
+      }
+   }
+
+   /**
+    * Recreates index entries from the data collection.
+    *
+    * @param overwrite
+    *       whether existing entries should be replaced, otherwise entries written concurrently by regular data updates win over the rebuilt ones.
+    */
+   private void rebuild(final boolean overwrite) {
+      if (!database.listCollectionNames().into(new ArrayList<>()).contains(indexCollectionName)) {
+         database.createCollection(indexCollectionName);
+      }
+      createIndexes();
+
+      final List<WriteModel<Document>> writes = new ArrayList<>();
+      for (Document document : database.getCollection(dataCollectionName).find()) {
+         final Bson filter = Filters.eq(ID, document.get(ID));
+         if (overwrite) {
+            writes.add(new ReplaceOneModel<>(filter, createEntry(document), new ReplaceOptions().upsert(true)));
+         } else {
+            writes.add(new UpdateOneModel<>(filter, new Document("$setOnInsert", createEntry(document)), new UpdateOptions().upsert(true)));
+         }
+         if (writes.size() >= BATCH_SIZE) {
+            bulkWrite(writes);
+            writes.clear();
+         }
+      }
+      bulkWrite(writes);
+   }
+
+   /**
+    * Finds ids of documents matching all the given fulltexts. A fulltext matches a document when each of its tokens is contained in some
+    * token of the document or when it is contained in a name of an attribute the document has a value for.
+    *
+    * @param attributes
+    *       attributes of the indexed resource.
+    * @param fulltexts
+    *       fulltexts to search for.
+    * @param pagination
+    *       optional pagination applied on the index entries.
+    * @return ordered ids of the matching documents or null when the index is not ready yet.
+    */
+   Set<String> search(final Collection<Attribute> attributes, final Set<String> fulltexts, final Pagination pagination) {
+      if (!isReady()) {
+         return null;
+      }
+
+      final Bson filter = createFilter(attributes, fulltexts);
+      if (filter == null) {
+         return new LinkedHashSet<>();
+      }
+
+      final FindIterable<Document> iterable = indexCollection().find(MongoFilters.paginationFilter(filter, pagination))
+                                                               .projection(Projections.include(ID))
+                                                               .sort(Sorts.ascending(ID));
+      if (pagination != null && pagination.isPaginated()) {
+         if (!pagination.isKeyset()) {
+            iterable.skip(pagination.getPage() * pagination.getPageSize());
+         }
+         iterable.limit(pagination.getPageSize());
+      }
+
+      final Set<String> ids = new LinkedHashSet<>();
+      for (Document entry : iterable) {
+         ids.add(entry.getObjectId(ID).toHexString());
+      }
+      return ids;
+   }
+
+   private Bson createFilter(final Collection<Attribute> attributes, final Set<String> fulltexts) {
+      final List<Bson> filters = fulltexts.stream()
+                                          .map(fulltext -> createFilterForFulltext(attributes, fulltext))
+                                          .filter(Objects::nonNull)
+                                          .collect(Collectors.toList());
+
+      return filters.size() > 0 ? Filters.and(filters) : null;
+   }
+
+   private Bson createFilterForFulltext(final Collection<Attribute> attributes, final String fulltext) {
+      final String lowerCaseFulltext = fulltext.toLowerCase(Locale.ROOT);
+      final List<Bson> termFilters = tokenize(fulltext).stream()
+                                                       .map(token -> Filters.regex(TERMS, "^" + token)) // tokens contain letters and digits only
+                                                       .collect(Collectors.toList());
+      final List<String> attributeIds = attributes.stream()
+                                                  .filter(attr -> attr.getName() != null && attr.getName().toLowerCase(Locale.ROOT).contains(lowerCaseFulltext))
+                                                  .map(Attribute::getId)
+                                                  .collect(Collectors.toList());
+
+      final Bson contentFilter = !termFilters.isEmpty() ? Filters.and(termFilters) : null;
+
+      if (!attributeIds.isEmpty()) { // we search by presence of the matching attributes
+         final Bson attributesFilter = Filters.in(ATTRIBUTES, attributeIds);
+         return contentFilter != null ? Filters.or(contentFilter, attributesFilter) : attributesFilter;
+      }
+
+      return contentFilter;
+   }
+
+   private boolean isReady() {
+      if (READY_INDEXES.contains(readyKey())) {
+         return true;
+      }
+
+      if (indexCollection().countDocuments(Filters.eq(ID, READY_MARKER)) > 0) {
+         READY_INDEXES.add(readyKey());
+      } else if (!RUNNING_REBUILDS.contains(readyKey())) {
+         scheduleRebuild(false);
+      }
+      return READY_INDEXES.contains(readyKey());
+   }
+
+   private void markReady() {
+      indexCollection().replaceOne(Filters.eq(ID, READY_MARKER), new Document(ID, READY_MARKER), new ReplaceOptions().upsert(true));
+      READY_INDEXES.add(readyKey());
+   }
+
+   private void createIndexes() {
+      indexCollection().createIndex(Indexes.ascending(TERMS), new IndexOptions().unique(false));
+      indexCollection().createIndex(Indexes.ascending(ATTRIBUTES), new IndexOptions().unique(false));
+   }
+
+   private void bulkWrite(final List<WriteModel<Document>> writes) {
+      if (!writes.isEmpty()) {
+         indexCollection().bulkWrite(writes);
+      }
+   }
+
+   private String readyKey() {
+      return database.getName() + "." + indexCollectionName;
+   }
+
+   private MongoCollection<Document> indexCollection() {
+      return database.getCollection(indexCollectionName);
+   }
+
+   /**
+    * Creates the index entry of the data. All the tokens are indexed, so the prefix lookups always work, but their suffixes
+    * are added only until the entry has {@link #MAX_TERMS} terms, so the infix lookups do not match the last tokens of long texts.
+    */
+   static Document createEntry(final Map<String, Object> data) {
+      final Set<String> tokens = new LinkedHashSet<>();
+      final List<String> attributes = new ArrayList<>();
+
+      data.forEach((key, value) -> {
+         if (!ID.equals(key) && value != null) {
+            attributes.add(key);
+            collectTokens(value, tokens);
+         }
+      });
+
+      final Set<String> terms = new LinkedHashSet<>(tokens);
+      final Iterator<String> suffixes = tokens.stream().flatMap(token -> suffixes(token).stream()).iterator();
+      while (terms.size() < MAX_TERMS && suffixes.hasNext()) {
+         terms.add(suffixes.next());
+      }
+
+      return new Document(TERMS, new ArrayList<>(terms)).append(ATTRIBUTES, attributes);
+   }
+
+   private static void collectTokens(final Object value, final Set<String> tokens) {
+      if (value instanceof String) {
+         tokens.addAll(tokenize((String) value));
+      } else if (value instanceof Collection) {
+         ((Collection<?>) value).forEach(item -> collectTokens(item, tokens));
+      }
+   }
+
+   static List<String> tokenize(final String text) {
+      final List<String> tokens = new ArrayList<>();
+      for (String token : TOKEN_SEPARATOR.split(text.toLowerCase(Locale.ROOT))) {
+         if (!token.isEmpty()) {
+            tokens.add(token.length() > MAX_TOKEN_LENGTH ? token.substring(0, MAX_TOKEN_LENGTH) : token);
+         }
+      }
+      return tokens;
+   }
+
+   // the token itself is indexed separately
+   static List<String> suffixes(final String token) {
+      final List<String> suffixes = new ArrayList<>(token.length());
+      for (int i = 1; i < token.length(); i++) {
+         suffixes.add(token.substring(i));
+      }
+      return suffixes;
+   }
+}
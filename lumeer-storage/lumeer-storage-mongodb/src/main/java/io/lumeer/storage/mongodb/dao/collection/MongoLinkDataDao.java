@@ -18,7 +18,6 @@
  */
 package io.lumeer.storage.mongodb.dao.collection;
 
-import static io.lumeer.storage.mongodb.util.MongoFilters.createFilterForFulltexts;
 import static io.lumeer.storage.mongodb.util.MongoFilters.idFilter;
 
 import io.lumeer.api.model.LinkType;
@@ -34,12 +33,16 @@ import io.lumeer.storage.mongodb.util.MongoFilters;
 import com.mongodb.client.FindIterable;
 import com.mongodb.client.MongoCollection;
 import com.mongodb.client.MongoCursor;
+import com.mongodb.client.model.BulkWriteOptions;
 import com.mongodb.client.model.Filters;
 import com.mongodb.client.model.FindOneAndReplaceOptions;
 import com.mongodb.client.model.FindOneAndUpdateOptions;
 import com.mongodb.client.model.Indexes;
 import com.mongodb.client.model.ReturnDocument;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.UpdateOptions;
 import com.mongodb.client.model.Updates;
+import com.mongodb.client.model.WriteModel;
 import com.mongodb.client.result.UpdateResult;
 import org.bson.BsonDocument;
 import org.bson.Document;
@@ -56,18 +59,25 @@ import java.util.function.Consumer;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
+import javax.enterprise.concurrent.ManagedExecutorService;
 import javax.enterprise.context.RequestScoped;
+import javax.inject.Inject;
 
 @RequestScoped
 public class MongoLinkDataDao extends MongoCollectionScopedDao implements LinkDataDao {
 
    private static final String ID = "_id";
    private static final String PREFIX = "linkData_c-";
+   private static final String FULLTEXT_PREFIX = "linkFulltext_c-";
+
+   @Inject
+   private ManagedExecutorService executorService;
 
    @Override
    public void createDataRepository(final String linkTypeId) {
       database.createCollection(linkDataCollectionName(linkTypeId));
       createFulltextIndexOnAllFields(linkTypeId);
+      fulltextIndex(linkTypeId).create();
    }
 
    private void createFulltextIndexOnAllFields(final String linkTypeId) {
@@ -77,12 +87,14 @@ public class MongoLinkDataDao extends MongoCollectionScopedDao implements LinkDa
    @Override
    public void deleteDataRepository(final String linkTypeId) {
       linkDataCollection(linkTypeId).drop();
+      fulltextIndex(linkTypeId).drop();
    }
 
    @Override
    public DataDocument createData(final String linkTypeId, final String linkInstanceId, final DataDocument data) {
       Document document = new Document(data).append(ID, new ObjectId(linkInstanceId));
       linkDataCollection(linkTypeId).insertOne(document);
+      fulltextIndex(linkTypeId).index(linkInstanceId, data);
       return data;
    }
 
@@ -96,6 +108,7 @@ public class MongoLinkDataDao extends MongoCollectionScopedDao implements LinkDa
          String id = idObj instanceof String ? (String) idObj : ((ObjectId) idObj).toHexString();
          data.get(i).setId(id);
       }
+      fulltextIndex(linkTypeId).index(data);
 
       return data;
    }
@@ -109,6 +122,7 @@ public class MongoLinkDataDao extends MongoCollectionScopedDao implements LinkDa
       if (updatedDocument == null) {
          throw new StorageException("LinkInstance '" + linkInstanceId + "' has not been updated (replaced).");
       }
+      fulltextIndex(linkTypeId).index(linkInstanceId, updatedDocument);
       return MongoUtils.convertDocument(updatedDocument);
    }
 
@@ -127,12 +141,34 @@ public class MongoLinkDataDao extends MongoCollectionScopedDao implements LinkDa
       if (patchedDocument == null) {
          throw new StorageException("LinkInstance '" + linkInstanceId + "' has not been patched (partially updated).");
       }
+      fulltextIndex(linkTypeId).index(linkInstanceId, patchedDocument);
       return MongoUtils.convertDocument(patchedDocument);
    }
 
+   @Override
+   public List<DataDocument> patchData(final String linkTypeId, final Map<String, DataDocument> data) {
+      final List<WriteModel<Document>> updates = new ArrayList<>();
+      data.forEach((id, patch) -> {
+         final Document update = new Document(patch);
+         update.remove(ID);
+         if (update.size() > 0) {
+            updates.add(new UpdateOneModel<>(idFilter(id), new Document("$set", update), new UpdateOptions().upsert(true)));
+         }
+      });
+
+      if (!updates.isEmpty()) {
+         linkDataCollection(linkTypeId).bulkWrite(updates, new BulkWriteOptions().ordered(false));
+      }
+
+      final List<DataDocument> patchedData = getData(linkTypeId, data.keySet());
+      fulltextIndex(linkTypeId).index(patchedData);
+      return patchedData;
+   }
+
    @Override
    public void deleteData(final String linkTypeId, final String linkInstanceId) {
       linkDataCollection(linkTypeId).deleteOne(idFilter(linkInstanceId));
+      fulltextIndex(linkTypeId).remove(linkInstanceId);
    }
 
    @Override
@@ -142,11 +178,13 @@ public class MongoLinkDataDao extends MongoCollectionScopedDao implements LinkDa
          return;
       }
       linkDataCollection(linkTypeId).deleteMany(filter);
+      fulltextIndex(linkTypeId).remove(linkInstanceIds);
    }
 
    @Override
    public long deleteAttribute(final String linkTypeId, final String attributeId) {
       final UpdateResult updateResult = linkDataCollection(linkTypeId).updateMany(new BsonDocument(), Updates.unset(attributeId));
+      fulltextIndex(linkTypeId).invalidate();
       return updateResult.getModifiedCount();
    }
 
@@ -181,7 +219,10 @@ public class MongoLinkDataDao extends MongoCollectionScopedDao implements LinkDa
    @Override
    public List<DataDocument> searchData(final SearchQueryStem stem, final Pagination pagination, final LinkType linkType) {
       Bson filter = createFilterForStem(stem, linkType);
-      FindIterable<Document> iterable = linkDataCollection(linkType.getId()).find(filter);
+      if (filter == null) {
+         return Collections.emptyList();
+      }
+      FindIterable<Document> iterable = linkDataCollection(linkType.getId()).find(MongoFilters.paginationFilter(filter, pagination));
       addPaginationToQuery(iterable, pagination);
       return MongoUtils.convertIterableToList(iterable);
    }
@@ -190,11 +231,20 @@ public class MongoLinkDataDao extends MongoCollectionScopedDao implements LinkDa
    public List<DataDocument> searchDataByFulltexts(final Set<String> fulltexts, final Pagination pagination, final List<LinkType> linkTypes) {
       List<DataDocument> documents = new ArrayList<>();
       for (LinkType linkType : linkTypes) {
-         Bson filter = createFilterForFulltexts(linkType.getAttributes(), fulltexts);
+         Set<String> ids = fulltextIndex(linkType.getId()).search(linkType.getAttributes(), fulltexts, pagination);
+         if (ids == null) { // the index is not ready yet
+            Bson filter = MongoFilters.createFilterForFulltexts(linkType.getAttributes(), fulltexts);
+            if (filter != null) {
+               FindIterable<Document> iterable = linkDataCollection(linkType.getId()).find(MongoFilters.paginationFilter(filter, pagination));
+               addPaginationToQuery(iterable, pagination);
+               documents.addAll(MongoUtils.convertIterableToList(iterable));
+            }
+            continue;
+         }
+
+         Bson filter = MongoFilters.idsFilter(ids);
          if (filter != null) {
-            FindIterable<Document> iterable = linkDataCollection(linkType.getId()).find(filter);
-            addPaginationToQuery(iterable, pagination);
-            documents.addAll(MongoUtils.convertIterableToList(iterable));
+            documents.addAll(MongoUtils.convertIterableToList(linkDataCollection(linkType.getId()).find(filter)));
          }
       }
 
@@ -218,6 +268,7 @@ public class MongoLinkDataDao extends MongoCollectionScopedDao implements LinkDa
 
          if (newData.size() > 0) {
             linkDataCollection(linkTypeId).insertMany(newData.stream().map(Document::new).collect(Collectors.toList()));
+            fulltextIndex(linkTypeId).index(newData);
          }
       }
 
@@ -245,8 +296,17 @@ public class MongoLinkDataDao extends MongoCollectionScopedDao implements LinkDa
       }
 
       if (stem.containsFulltextsQuery()) {
-         Bson fulltextsFilter = createFilterForFulltexts(linkType.getAttributes(), stem.getFulltexts());
-         if (fulltextsFilter != null) {
+         Set<String> fulltextIds = fulltextIndex(linkType.getId()).search(linkType.getAttributes(), stem.getFulltexts(), null);
+         if (fulltextIds == null) { // the index is not ready yet
+            Bson fulltextsFilter = MongoFilters.createFilterForFulltexts(linkType.getAttributes(), stem.getFulltexts());
+            if (fulltextsFilter != null) {
+               filters.add(fulltextsFilter);
+            }
+         } else {
+            Bson fulltextsFilter = MongoFilters.idsFilter(fulltextIds);
+            if (fulltextsFilter == null) {
+               return null; // nothing matches the fulltexts
+            }
             filters.add(fulltextsFilter);
          }
       }
@@ -266,4 +326,12 @@ public class MongoLinkDataDao extends MongoCollectionScopedDao implements LinkDa
       return PREFIX + linkTypeId;
    }
 
+   void setExecutorService(final ManagedExecutorService executorService) {
+      this.executorService = executorService;
+   }
+
+   MongoFulltextIndex fulltextIndex(String linkTypeId) {
+      return new MongoFulltextIndex(database, FULLTEXT_PREFIX + linkTypeId, linkDataCollectionName(linkTypeId), executorService);
+   }
+
 }
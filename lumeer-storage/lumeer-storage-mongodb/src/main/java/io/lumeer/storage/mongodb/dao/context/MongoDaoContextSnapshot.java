@@ -243,20 +243,35 @@ public class MongoDaoContextSnapshot implements DaoContextSnapshot {
          return Collections.emptySet();
       }
 
-      return getCollectionReaders(getCollectionDao().getCollectionById(collectionId));
+      final Set<String> result = getCollectionDao().getCollectionReaders(collectionId);
+      result.addAll(ResourceUtils.usersAllowedRead(organization));
+      result.addAll(ResourceUtils.usersAllowedRead(project));
+
+      return result;
    }
 
    @Override
    public Set<String> getCollectionReaders(final Collection collection) {
-      final Set<String> result = new HashSet<>();
+      if (organization == null || project == null) {
+         return Collections.emptySet();
+      }
 
-      result.addAll(ResourceUtils.usersAllowedRead(organization));
-      result.addAll(ResourceUtils.usersAllowedRead(project));
+      // the passed collection can carry permissions that are newer than the index
+      final Set<String> result = getCollectionReaders(collection.getId());
       result.addAll(ResourceUtils.usersAllowedRead(collection));
 
-      getViewDao().getViewsPermissionsByCollection(collection.getId()).forEach(view ->
-            result.addAll(ResourceUtils.usersAllowedRead(view))
-      );
+      return result;
+   }
+
+   @Override
+   public Set<String> getLinkTypeReaders(final String linkTypeId) {
+      if (organization == null || project == null) {
+         return Collections.emptySet();
+      }
+
+      final Set<String> result = getLinkTypeDao().getLinkTypeReaders(linkTypeId);
+      result.addAll(ResourceUtils.usersAllowedRead(organization));
+      result.addAll(ResourceUtils.usersAllowedRead(project));
 
       return result;
    }
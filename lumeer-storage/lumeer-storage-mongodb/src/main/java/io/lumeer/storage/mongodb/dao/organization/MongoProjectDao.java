@@ -39,18 +39,28 @@ import com.mongodb.MongoException;
 import com.mongodb.client.FindIterable;
 import com.mongodb.client.MongoCollection;
 import com.mongodb.client.MongoCursor;
+import com.mongodb.client.model.Filters;
 import com.mongodb.client.model.FindOneAndUpdateOptions;
 import com.mongodb.client.model.IndexOptions;
 import com.mongodb.client.model.Indexes;
 import com.mongodb.client.model.Projections;
 import com.mongodb.client.model.ReturnDocument;
+import com.mongodb.client.model.Updates;
 import org.bson.Document;
 import org.bson.conversions.Bson;
 
 import java.util.ArrayList;
+import java.util.Date;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 import java.util.stream.Collectors;
+import javax.annotation.PreDestroy;
 import javax.enterprise.context.RequestScoped;
 import javax.enterprise.event.Event;
 import javax.inject.Inject;
@@ -58,8 +68,18 @@ import javax.inject.Inject;
 @RequestScoped
 public class MongoProjectDao extends MongoOrganizationScopedDao implements ProjectDao {
 
+   private static final Logger log = Logger.getLogger(MongoProjectDao.class.getName());
+
    private static final String PREFIX = "projects_o-";
 
+   // local snapshots save the round trip on every limit check, counter changes from other nodes are seen after they expire
+   static final long DOCUMENTS_COUNT_TIME_TO_LIVE = TimeUnit.SECONDS.toMillis(10);
+   static final long DOCUMENTS_COUNT_RECONCILE_INTERVAL = TimeUnit.HOURS.toMillis(1);
+   static final long DOCUMENTS_COUNT_FLUSH_INTERVAL = TimeUnit.SECONDS.toMillis(2);
+
+   private static final ConcurrentMap<String, DocumentsCount> DOCUMENTS_COUNTS = new ConcurrentHashMap<>();
+   private static final ConcurrentMap<String, DocumentsCountDiff> DOCUMENTS_COUNT_DIFFS = new ConcurrentHashMap<>();
+
    @Inject
    private Event<CreateResource> createResourceEvent;
 
@@ -124,7 +144,7 @@ public class MongoProjectDao extends MongoOrganizationScopedDao implements Proje
    @Override
    public List<Project> getProjects(final DatabaseQuery query) {
       Bson filter = organizationsSearchFilter(query);
-      FindIterable<Project> iterable = databaseCollection().find(filter);
+      FindIterable<Project> iterable = databaseCollection().find(MongoFilters.paginationFilter(filter, query.getPagination()));
       addPaginationToQuery(iterable, query);
 
       return iterable.into(new ArrayList<>());
@@ -185,6 +205,134 @@ public class MongoProjectDao extends MongoOrganizationScopedDao implements Proje
       }
    }
 
+   @Override
+   public Long getDocumentsCount(final String projectId) {
+      final String key = documentsCountKey(projectId);
+      final long now = System.currentTimeMillis();
+
+      DocumentsCount snapshot = DOCUMENTS_COUNTS.get(key);
+      if (snapshot == null || now - snapshot.loaded >= DOCUMENTS_COUNT_TIME_TO_LIVE) {
+         flushDocumentsCounts(now);
+         try {
+            final Document stored = rawDatabaseCollection().find(idFilter(projectId))
+                                                           .projection(Projections.include(ProjectCodec.DOCUMENTS_COUNT, ProjectCodec.DOCUMENTS_COUNT_RECONCILED))
+                                                           .first();
+            snapshot = storeDocumentsCount(key, stored, now);
+         } catch (MongoException ex) {
+            throw new StorageException("Cannot read documents count of project: " + projectId, ex);
+         }
+      }
+
+      final Long count = snapshot != null ? snapshot.getCount(now) : null;
+      if (count == null) {
+         return null;
+      }
+
+      final DocumentsCountDiff pending = DOCUMENTS_COUNT_DIFFS.get(key);
+      return Math.max(count + (pending != null ? pending.diff : 0L), 0L);
+   }
+
+   @Override
+   public void updateDocumentsCount(final String projectId, final long documentsCountDiff) {
+      if (documentsCountDiff == 0) {
+         return;
+      }
+
+      // changes are collected locally and written together once the oldest of them is older than the flush interval
+      final long now = System.currentTimeMillis();
+      final MongoCollection<Document> collection = rawDatabaseCollection();
+      DOCUMENTS_COUNT_DIFFS.compute(documentsCountKey(projectId), (key, pending) ->
+            pending != null ? pending.add(documentsCountDiff) : new DocumentsCountDiff(collection, projectId, documentsCountDiff, now));
+
+      flushDocumentsCounts(now);
+   }
+
+   @Override
+   public long reconcileDocumentsCount(final String projectId, final LongSupplier documentsCount) {
+      final String key = documentsCountKey(projectId);
+      final long now = System.currentTimeMillis();
+
+      // local changes are already part of the collection counters
+      flushDocumentsCount(key, now);
+
+      try {
+         final Document stored = rawDatabaseCollection().find(idFilter(projectId))
+                                                        .projection(Projections.include(ProjectCodec.DOCUMENTS_COUNT))
+                                                        .first();
+         final long count = documentsCount.getAsLong();
+         if (stored == null) {
+            return count;
+         }
+
+         // the delta is applied only when nobody changed the counter since it has been read, otherwise the next read reconciles again
+         final Number storedCount = (Number) stored.get(ProjectCodec.DOCUMENTS_COUNT);
+         final Bson filter = Filters.and(idFilter(projectId), storedCount != null ? Filters.eq(ProjectCodec.DOCUMENTS_COUNT, storedCount) : Filters.not(Filters.exists(ProjectCodec.DOCUMENTS_COUNT)));
+         final Bson update = Updates.combine(Updates.inc(ProjectCodec.DOCUMENTS_COUNT, count - (storedCount != null ? storedCount.longValue() : 0L)),
+               Updates.set(ProjectCodec.DOCUMENTS_COUNT_RECONCILED, new Date(now)));
+
+         final Document updated = rawDatabaseCollection().findOneAndUpdate(filter, update, documentsCountOptions());
+         if (updated != null) {
+            storeDocumentsCount(key, updated, now);
+         }
+
+         return count;
+      } catch (MongoException ex) {
+         throw new StorageException("Cannot reconcile documents count of project: " + projectId, ex);
+      }
+   }
+
+   @PreDestroy
+   public void flushDocumentsCounts() {
+      flushDocumentsCounts(System.currentTimeMillis());
+   }
+
+   static void flushDocumentsCounts(final long now) {
+      DOCUMENTS_COUNT_DIFFS.forEach((key, pending) -> {
+         if (now - pending.since >= DOCUMENTS_COUNT_FLUSH_INTERVAL) {
+            flushDocumentsCount(key, now);
+         }
+      });
+   }
+
+   private static void flushDocumentsCount(final String key, final long now) {
+      final DocumentsCountDiff pending = DOCUMENTS_COUNT_DIFFS.remove(key);
+      if (pending == null || pending.diff == 0) {
+         return;
+      }
+
+      try {
+         // a missing counter is computed by the next reconciliation
+         final Document updated = pending.collection.findOneAndUpdate(Filters.and(idFilter(pending.projectId), Filters.exists(ProjectCodec.DOCUMENTS_COUNT)),
+               Updates.inc(ProjectCodec.DOCUMENTS_COUNT, pending.diff), documentsCountOptions());
+         storeDocumentsCount(key, updated, now);
+      } catch (MongoException ex) {
+         DOCUMENTS_COUNT_DIFFS.merge(key, pending, (current, failed) -> current.add(failed.diff));
+         log.log(Level.WARNING, "Unable to update documents count of project " + pending.projectId, ex);
+      }
+   }
+
+   private static FindOneAndUpdateOptions documentsCountOptions() {
+      return new FindOneAndUpdateOptions().returnDocument(ReturnDocument.AFTER)
+                                          .projection(Projections.include(ProjectCodec.DOCUMENTS_COUNT, ProjectCodec.DOCUMENTS_COUNT_RECONCILED));
+   }
+
+   private static DocumentsCount storeDocumentsCount(final String key, final Document stored, final long now) {
+      if (stored == null || stored.get(ProjectCodec.DOCUMENTS_COUNT) == null || stored.getDate(ProjectCodec.DOCUMENTS_COUNT_RECONCILED) == null) {
+         DOCUMENTS_COUNTS.remove(key);
+         return null;
+      }
+
+      final DocumentsCount documentsCount = new DocumentsCount(((Number) stored.get(ProjectCodec.DOCUMENTS_COUNT)).longValue(), stored.getDate(ProjectCodec.DOCUMENTS_COUNT_RECONCILED).getTime(), now);
+      DOCUMENTS_COUNTS.values().removeIf(snapshot -> now - snapshot.loaded >= DOCUMENTS_COUNT_TIME_TO_LIVE);
+      DOCUMENTS_COUNTS.put(key, documentsCount);
+
+      return documentsCount;
+   }
+
+   private String documentsCountKey(final String projectId) {
+      return database.getName() + "." + databaseCollectionName() + "." + projectId;
+   }
+
    @Override
    public void switchOrganization() {
       init();
@@ -208,4 +356,43 @@ public class MongoProjectDao extends MongoOrganizationScopedDao implements Proje
    MongoCollection<Project> databaseCollection(final Organization organization) {
       return database.getCollection(databaseCollectionName(organization), Project.class);
    }
+
+   private MongoCollection<Document> rawDatabaseCollection() {
+      return database.getCollection(databaseCollectionName());
+   }
+
+
+   private static class DocumentsCount {
+      private final long count;
+      private final long reconciled;
+      private final long loaded;
+
+      private DocumentsCount(final long count, final long reconciled, final long loaded) {
+         this.count = count;
+         this.reconciled = reconciled;
+         this.loaded = loaded;
+      }
+
+      private Long getCount(final long now) {
+         return now - reconciled < DOCUMENTS_COUNT_RECONCILE_INTERVAL ? count : null;
+      }
+   }
+
+   private static class DocumentsCountDiff {
+      private final MongoCollection<Document> collection;
+      private final String projectId;
+      private final long diff;
+      private final long since;
+
+      private DocumentsCountDiff(final MongoCollection<Document> collection, final String projectId, final long diff, final long since) {
+         this.collection = collection;
+         this.projectId = projectId;
+         this.diff = diff;
+         this.since = since;
+      }
+
+      private DocumentsCountDiff add(final long diff) {
+         return new DocumentsCountDiff(collection, projectId, this.diff + diff, since);
+      }
+   }
 }
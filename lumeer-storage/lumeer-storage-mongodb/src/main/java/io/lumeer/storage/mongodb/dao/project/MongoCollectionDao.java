@@ -18,9 +18,9 @@
  */
 package io.lumeer.storage.mongodb.dao.project;
 
-import static io.lumeer.storage.mongodb.util.MongoFilters.codeFilter;
 import static io.lumeer.storage.mongodb.util.MongoFilters.idFilter;
 
+import io.lumeer.api.model.Attribute;
 import io.lumeer.api.model.Collection;
 import io.lumeer.api.model.Project;
 import io.lumeer.api.model.ResourceType;
@@ -36,13 +36,13 @@ import io.lumeer.storage.api.query.SearchSuggestionQuery;
 import io.lumeer.storage.mongodb.MongoUtils;
 import io.lumeer.storage.mongodb.codecs.AttributeCodec;
 import io.lumeer.storage.mongodb.codecs.CollectionCodec;
+import io.lumeer.storage.mongodb.codecs.FunctionCodec;
 import io.lumeer.storage.mongodb.util.MongoFilters;
 
 import com.mongodb.MongoException;
 import com.mongodb.QueryOperators;
 import com.mongodb.client.FindIterable;
 import com.mongodb.client.MongoCollection;
-import com.mongodb.client.MongoCursor;
 import com.mongodb.client.model.Aggregates;
 import com.mongodb.client.model.Field;
 import com.mongodb.client.model.Filters;
@@ -52,14 +52,24 @@ import com.mongodb.client.model.Indexes;
 import com.mongodb.client.model.Projections;
 import com.mongodb.client.model.ReturnDocument;
 import com.mongodb.client.model.Sorts;
+import com.mongodb.client.model.Updates;
+import org.bson.BsonDocument;
+import org.bson.BsonDocumentWriter;
 import org.bson.Document;
+import org.bson.codecs.EncoderContext;
 import org.bson.conversions.Bson;
 import org.bson.types.ObjectId;
 
+import java.time.ZonedDateTime;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
+import java.util.function.Predicate;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 import javax.enterprise.context.RequestScoped;
@@ -69,7 +79,9 @@ import javax.inject.Inject;
 @RequestScoped
 public class MongoCollectionDao extends MongoProjectScopedDao implements CollectionDao {
 
-   private static final String PREFIX = "collections_p-";
+   static final String PREFIX = "collections_p-";
+
+   private static final Bson ATTRIBUTE_IDS_PROJECTION = Projections.include(MongoUtils.concatParams(CollectionCodec.ATTRIBUTES, AttributeCodec.ID));
 
    @Inject
    private Event<CreateResource> createResourceEvent;
@@ -89,17 +101,23 @@ public class MongoCollectionDao extends MongoProjectScopedDao implements Collect
       projectCollection.createIndex(Indexes.ascending(CollectionCodec.CODE), new IndexOptions().unique(true));
       projectCollection.createIndex(Indexes.ascending(CollectionCodec.ATTRIBUTES + "." + AttributeCodec.NAME), new IndexOptions().unique(false));
       projectCollection.createIndex(Indexes.text(CollectionCodec.NAME));
+      MongoMetadataCache.invalidate(database, databaseCollectionName(project));
+      MongoReaderIndex.invalidate(database, project.getId());
    }
 
    @Override
    public void deleteRepository(final Project project) {
       database.getCollection(databaseCollectionName(project)).drop();
+      MongoMetadataCache.invalidate(database, databaseCollectionName(project));
+      MongoReaderIndex.invalidate(database, project.getId());
    }
 
    @Override
    public Collection createCollection(final Collection collection) {
       try {
          databaseCollection().insertOne(collection);
+         invalidateCache();
+         invalidateReaderIndex();
          if (createResourceEvent != null) {
             createResourceEvent.fire(new CreateResource(collection));
          }
@@ -121,6 +139,7 @@ public class MongoCollectionDao extends MongoProjectScopedDao implements Collect
       try {
          Bson update = new Document("$inc", new Document(CollectionCodec.LAST_ATTRIBUTE_NUM, count));
          final Collection updatedCollection = databaseCollection().findOneAndUpdate(idFilter(id), update, options);
+         invalidateCache();
          if (updatedCollection == null) {
             throw new StorageException("Collection '" + id + "' has not been updated.");
          }
@@ -131,12 +150,105 @@ public class MongoCollectionDao extends MongoProjectScopedDao implements Collect
    }
 
    @Override
-   public Collection updateCollection(final String id, final Collection collection, final Collection originalCollection, final boolean pushNotification) {
-      FindOneAndUpdateOptions options = new FindOneAndUpdateOptions().returnDocument(ReturnDocument.AFTER);
+   public Collection updateCollectionCounters(final String id, final Map<String, Integer> attributesToInc, final int documentsCountDiff, final ZonedDateTime lastTimeUsed) {
+      final Document inc = new Document();
+      if (documentsCountDiff != 0) {
+         inc.append(CollectionCodec.DOCUMENTS_COUNT, documentsCountDiff);
+      }
+
+      final List<Bson> arrayFilters = new ArrayList<>();
+      attributesToInc.forEach((attributeId, count) -> {
+         if (count != null && count != 0) {
+            final String identifier = "a" + arrayFilters.size();
+            inc.append(MongoUtils.concatParams(CollectionCodec.ATTRIBUTES, "$[" + identifier + "]", AttributeCodec.USAGE_COUNT), count);
+            arrayFilters.add(Filters.eq(MongoUtils.concatParams(identifier, AttributeCodec.ID), attributeId));
+         }
+      });
+
+      final Document update = new Document();
+      if (!inc.isEmpty()) {
+         update.append("$inc", inc);
+      }
+      if (lastTimeUsed != null) {
+         update.append("$max", new Document(CollectionCodec.LAST_TIME_USED, Date.from(lastTimeUsed.toInstant())));
+      }
+      if (update.isEmpty()) {
+         return getCollectionById(id);
+      }
+
+      final FindOneAndUpdateOptions options = new FindOneAndUpdateOptions().returnDocument(ReturnDocument.AFTER);
+      if (!arrayFilters.isEmpty()) {
+         options.arrayFilters(arrayFilters);
+      }
+
+      try {
+         Collection updatedCollection = databaseCollection().findOneAndUpdate(idFilter(id), update, options);
+         if (updatedCollection == null) {
+            invalidateCache();
+            throw new StorageException("Collection '" + id + "' has not been updated.");
+         }
+
+         // decrements are not allowed to go below zero, which cannot be expressed by a single $inc
+         if (hasNegativeCounters(updatedCollection)) {
+            final Document max = new Document(CollectionCodec.DOCUMENTS_COUNT, 0);
+            if (!updatedCollection.getAttributes().isEmpty()) {
+               max.append(MongoUtils.concatParams(CollectionCodec.ATTRIBUTES, "$[]", AttributeCodec.USAGE_COUNT), 0);
+            }
+            updatedCollection = databaseCollection().findOneAndUpdate(idFilter(id), new Document("$max", max), new FindOneAndUpdateOptions().returnDocument(ReturnDocument.AFTER));
+         }
+         invalidateCache();
+
+         if (updateResourceEvent != null && updatedCollection != null) {
+            updateResourceEvent.fire(new UpdateResource(updatedCollection, null, true));
+         }
+         return updatedCollection;
+      } catch (MongoException ex) {
+         throw new StorageException("Cannot update collection counters: " + id, ex);
+      }
+   }
+
+   @Override
+   public Collection updateAttributeFunctionError(final String id, final String attributeId, final String errorReport, final long timestamp) {
+      final String function = MongoUtils.concatParams(CollectionCodec.ATTRIBUTES, "$[a]", AttributeCodec.FUNCTION);
+      final Bson update = Updates.combine(Updates.set(MongoUtils.concatParams(function, FunctionCodec.ERROR_REPORT), errorReport),
+            Updates.set(MongoUtils.concatParams(function, FunctionCodec.TIMESTAMP), timestamp));
+      final FindOneAndUpdateOptions options = new FindOneAndUpdateOptions().returnDocument(ReturnDocument.AFTER)
+                                                                           .arrayFilters(List.of(Filters.eq(MongoUtils.concatParams("a", AttributeCodec.ID), attributeId)));
 
       try {
-         Bson update = new Document("$set", collection).append("$inc", new Document(CollectionCodec.VERSION, 1L));
          final Collection updatedCollection = databaseCollection().findOneAndUpdate(idFilter(id), update, options);
+         invalidateCache();
+         if (updatedCollection == null) {
+            throw new StorageException("Collection '" + id + "' has not been updated.");
+         }
+         if (updateResourceEvent != null) {
+            updateResourceEvent.fire(new UpdateResource(updatedCollection, null));
+         }
+         return updatedCollection;
+      } catch (MongoException ex) {
+         throw new StorageException("Cannot update function error of collection: " + id, ex);
+      }
+   }
+
+   private static boolean hasNegativeCounters(final Collection collection) {
+      return (collection.getDocumentsCount() != null && collection.getDocumentsCount() < 0)
+            || collection.getAttributes().stream().anyMatch(attribute -> attribute.getUsageCount() != null && attribute.getUsageCount() < 0);
+   }
+
+   @Override
+   public Collection updateCollection(final String id, final Collection collection, final Collection originalCollection, final boolean pushNotification) {
+      try {
+         Collection updatedCollection = null;
+         final Document storedAttributes = databaseCollection().withDocumentClass(Document.class).find(idFilter(id)).projection(ATTRIBUTE_IDS_PROJECTION).first();
+         if (storedAttributes != null) {
+            final Set<String> storedAttributeIds = storedAttributes.getList(CollectionCodec.ATTRIBUTES, Document.class, Collections.emptyList()).stream()
+                                                                   .map(attribute -> attribute.getString(AttributeCodec.ID))
+                                                                   .filter(Objects::nonNull)
+                                                                   .collect(Collectors.toSet());
+            updatedCollection = updateCollection(id, collection, storedAttributeIds);
+         }
+         invalidateCache();
+         invalidateReaderIndex();
          if (updatedCollection == null) {
             throw new StorageException("Collection '" + id + "' has not been updated.");
          }
@@ -149,9 +261,61 @@ public class MongoCollectionDao extends MongoProjectScopedDao implements Collect
       }
    }
 
+   // counters are maintained by updateCollectionCounters only, so the stored attributes are never replaced as a whole,
+   // their fields are set one by one and a concurrent counters update is not lost
+   private Collection updateCollection(final String id, final Collection collection, final Set<String> storedAttributeIds) {
+      final Set<String> attributeIds = collection.getAttributes().stream().map(Attribute::getId).filter(Objects::nonNull).collect(Collectors.toSet());
+      final List<String> removedAttributeIds = storedAttributeIds.stream().filter(attributeId -> !attributeIds.contains(attributeId)).collect(Collectors.toList());
+      if (!removedAttributeIds.isEmpty()) {
+         final Document pull = new Document(CollectionCodec.ATTRIBUTES, new Document(AttributeCodec.ID, new Document("$in", removedAttributeIds)));
+         databaseCollection().updateOne(idFilter(id), new Document("$pull", pull));
+      }
+
+      final BsonDocument set = encode(Collection.class, collection);
+      set.remove(CollectionCodec.ID);
+      set.remove(CollectionCodec.DOCUMENTS_COUNT);
+      set.remove(CollectionCodec.LAST_TIME_USED);
+      set.remove(CollectionCodec.ATTRIBUTES);
+
+      final List<Bson> arrayFilters = new ArrayList<>();
+      collection.getAttributes().forEach(attribute -> {
+         if (!storedAttributeIds.contains(attribute.getId())) {
+            final Bson filter = Filters.and(idFilter(id), Filters.ne(MongoUtils.concatParams(CollectionCodec.ATTRIBUTES, AttributeCodec.ID), attribute.getId()));
+            databaseCollection().updateOne(filter, new Document("$push", new Document(CollectionCodec.ATTRIBUTES, attribute)));
+            return;
+         }
+
+         final String identifier = "a" + arrayFilters.size();
+         final BsonDocument fields = encode(Attribute.class, attribute);
+         fields.remove(AttributeCodec.ID);
+         fields.remove(AttributeCodec.USAGE_COUNT);
+         fields.forEach((field, value) -> set.put(MongoUtils.concatParams(CollectionCodec.ATTRIBUTES, "$[" + identifier + "]", field), value));
+         arrayFilters.add(Filters.eq(MongoUtils.concatParams(identifier, AttributeCodec.ID), attribute.getId()));
+      });
+
+      final Document update = new Document("$set", set).append("$inc", new Document(CollectionCodec.VERSION, 1L));
+      if (collection.getLastTimeUsed() != null) {
+         update.append("$max", new Document(CollectionCodec.LAST_TIME_USED, Date.from(collection.getLastTimeUsed().toInstant())));
+      }
+
+      final FindOneAndUpdateOptions options = new FindOneAndUpdateOptions().returnDocument(ReturnDocument.AFTER);
+      if (!arrayFilters.isEmpty()) {
+         options.arrayFilters(arrayFilters);
+      }
+      return databaseCollection().findOneAndUpdate(idFilter(id), update, options);
+   }
+
+   private <T> BsonDocument encode(final Class<T> type, final T value) {
+      final BsonDocument document = new BsonDocument();
+      databaseCollection().getCodecRegistry().get(type).encode(new BsonDocumentWriter(document), value, EncoderContext.builder().build());
+      return document;
+   }
+
    @Override
    public void deleteCollection(final String id) {
       final Collection collection = databaseCollection().findOneAndDelete(idFilter(id));
+      invalidateCache();
+      invalidateReaderIndex();
       if (collection == null) {
          throw new StorageException("Collection '" + id + "' has not been deleted.");
       }
@@ -162,31 +326,30 @@ public class MongoCollectionDao extends MongoProjectScopedDao implements Collect
 
    @Override
    public Collection getCollectionByCode(final String code) {
-      return getCollectionByFilter(codeFilter(code));
+      return getCollectionByFilter(MongoMetadataCache.fieldFilter(CollectionCodec.CODE, code));
    }
 
    @Override
    public Collection getCollectionById(final String id) {
-      return getCollectionByFilter(idFilter(id));
+      return getCollectionByFilter(MongoMetadataCache.idFilter(id));
    }
 
-   private Collection getCollectionByFilter(Bson filter) {
-      MongoCursor<Collection> mongoCursor = databaseCollection().find(filter).iterator();
-      if (!mongoCursor.hasNext()) {
+   private Collection getCollectionByFilter(Predicate<BsonDocument> filter) {
+      Collection collection = MongoMetadataCache.findFirst(database, databaseCollectionName(), Collection.class, filter);
+      if (collection == null) {
          throw new ResourceNotFoundException(ResourceType.COLLECTION);
       }
-      return mongoCursor.next();
+      return collection;
    }
 
    @Override
    public List<Collection> getCollectionsByIds(final java.util.Collection<String> ids) {
-      Bson filter = Filters.in(CollectionCodec.ID, ids.stream().map(ObjectId::new).collect(Collectors.toSet()));
-      return databaseCollection().find(filter).into(new ArrayList<>());
+      return MongoMetadataCache.find(database, databaseCollectionName(), Collection.class, MongoMetadataCache.idsFilter(ids));
    }
 
    @Override
    public List<Collection> getAllCollections() {
-      return databaseCollection().find().into(new ArrayList<>());
+      return MongoMetadataCache.findAll(database, databaseCollectionName(), Collection.class);
    }
 
    @Override
@@ -196,7 +359,7 @@ public class MongoCollectionDao extends MongoProjectScopedDao implements Collect
    }
 
    private List<Collection> searchCollectionsByFilter(Bson filter, DatabaseQuery query) {
-      FindIterable<Collection> iterable = databaseCollection().find(filter);
+      FindIterable<Collection> iterable = databaseCollection().find(MongoFilters.paginationFilter(filter, query.getPagination()));
       addPaginationToQuery(iterable, query);
 
       return iterable.into(new ArrayList<>());
@@ -288,6 +451,14 @@ public class MongoCollectionDao extends MongoProjectScopedDao implements Collect
                                  .collect(Collectors.toSet());
    }
 
+   @Override
+   public Set<String> getCollectionReaders(final String id) {
+      if (!getProject().isPresent()) {
+         throw new ResourceNotFoundException(ResourceType.PROJECT);
+      }
+      return MongoReaderIndex.getCollectionReaders(database, getProject().get().getId(), id);
+   }
+
    private String databaseCollectionName(Project project) {
       return PREFIX + project.getId();
    }
@@ -299,6 +470,14 @@ public class MongoCollectionDao extends MongoProjectScopedDao implements Collect
       return databaseCollectionName(getProject().get());
    }
 
+   private void invalidateCache() {
+      MongoMetadataCache.invalidate(database, databaseCollectionName());
+   }
+
+   private void invalidateReaderIndex() {
+      MongoReaderIndex.invalidate(database, getProject().get().getId());
+   }
+
    MongoCollection<Collection> databaseCollection() {
       return database.getCollection(databaseCollectionName(), Collection.class);
    }
@@ -33,12 +33,13 @@ import io.lumeer.storage.mongodb.util.MongoFilters;
 
 import com.mongodb.MongoException;
 import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.BulkWriteOptions;
 import com.mongodb.client.model.Filters;
 import com.mongodb.client.model.FindOneAndUpdateOptions;
-import com.mongodb.client.model.IndexOptions;
-import com.mongodb.client.model.Indexes;
 import com.mongodb.client.model.ReturnDocument;
 import com.mongodb.client.model.Sorts;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.WriteModel;
 import org.bson.conversions.Bson;
 import org.bson.types.ObjectId;
 
@@ -55,7 +56,7 @@ import javax.inject.Inject;
 @RequestScoped
 public class MongoDocumentDao extends MongoProjectScopedDao implements DocumentDao {
 
-   private static final String PREFIX = "documents_p-";
+   static final String PREFIX = "documents_p-";
 
    @Inject
    private Event<RemoveDocument> removeDocumentEvent;
@@ -63,16 +64,13 @@ public class MongoDocumentDao extends MongoProjectScopedDao implements DocumentD
    @Override
    public void createRepository(final Project project) {
       database.createCollection(databaseCollectionName(project));
-
-      MongoCollection<org.bson.Document> collection = database.getCollection(databaseCollectionName(project));
-      collection.createIndex(Indexes.ascending(DocumentCodec.COLLECTION_ID), new IndexOptions().unique(false));
-      collection.createIndex(Indexes.descending(DocumentCodec.CREATION_DATE), new IndexOptions().unique(false));
-      collection.createIndex(Indexes.descending(DocumentCodec.UPDATE_DATE), new IndexOptions().unique(false));
+      MongoIndexManager.createIndexes(database, MongoIndexManager.Repository.DOCUMENTS, databaseCollectionName(project));
    }
 
    @Override
    public void deleteRepository(final Project project) {
       database.getCollection(databaseCollectionName(project)).drop();
+      MongoIndexManager.invalidate(database, databaseCollectionName(project));
    }
 
    @Override
@@ -114,6 +112,26 @@ public class MongoDocumentDao extends MongoProjectScopedDao implements DocumentD
       }
    }
 
+   @Override
+   public List<Document> updateDocuments(final List<Document> documents) {
+      if (documents.isEmpty()) {
+         return Collections.emptyList();
+      }
+
+      try {
+         final List<WriteModel<Document>> updates = documents.stream()
+                                                             .map(document -> new UpdateOneModel<Document>(idFilter(document.getId()),
+                                                                   new org.bson.Document("$set", document).append("$inc", new org.bson.Document(DocumentCodec.DATA_VERSION, 1))))
+                                                             .collect(Collectors.toList());
+         databaseCollection().bulkWrite(updates, new BulkWriteOptions().ordered(false));
+
+         // documents deleted in the meantime are not matched by the updates and are left out here
+         return getDocumentsByIds(documents.stream().map(Document::getId).toArray(String[]::new));
+      } catch (MongoException ex) {
+         throw new StorageException("Cannot update documents: " + documents, ex);
+      }
+   }
+
    @Override
    public void deleteDocument(final String id) {
       Document document = databaseCollection().findOneAndDelete(idFilter(id));
@@ -126,12 +144,11 @@ public class MongoDocumentDao extends MongoProjectScopedDao implements DocumentD
    }
 
    @Override
-   public void deleteDocuments(final String collectionId) {
+   public long deleteDocuments(final String collectionId) {
       final Bson filter = Filters.eq(DocumentCodec.COLLECTION_ID, collectionId);
 
-      databaseCollection().deleteMany(filter);
-
       // no event is fired here as this method only occurs when the collection is deleted completely
+      return databaseCollection().deleteMany(filter).getDeletedCount();
    }
 
    @Override
@@ -192,7 +209,7 @@ public class MongoDocumentDao extends MongoProjectScopedDao implements DocumentD
       return Filters.in(field, parentIds);
    }
 
-   private String databaseCollectionName(Project project) {
+   public static String databaseCollectionName(Project project) {
       return PREFIX + project.getId();
    }
 
@@ -204,6 +221,7 @@ public class MongoDocumentDao extends MongoProjectScopedDao implements DocumentD
    }
 
    MongoCollection<Document> databaseCollection() {
+      MongoIndexManager.ensureIndexes(database, MongoIndexManager.Repository.DOCUMENTS, databaseCollectionName());
       return database.getCollection(databaseCollectionName(), Document.class);
    }
 }
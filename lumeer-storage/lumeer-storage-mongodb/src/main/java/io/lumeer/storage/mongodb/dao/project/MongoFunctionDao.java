@@ -53,22 +53,30 @@ public class MongoFunctionDao extends MongoProjectScopedDao implements FunctionD
       projectCollection.createIndex(Indexes.ascending(FunctionRowCodec.RESOURCE_ID, FunctionRowCodec.TYPE, FunctionRowCodec.ATTRIBUTE_ID), new IndexOptions().unique(false));
       projectCollection.createIndex(Indexes.ascending(FunctionRowCodec.DEPENDENT_COLLECTION_ID, FunctionRowCodec.DEPENDENT_ATTRIBUTE_ID), new IndexOptions().unique(false));
       projectCollection.createIndex(Indexes.ascending(FunctionRowCodec.DEPENDENT_LINK_TYPE_ID, FunctionRowCodec.DEPENDENT_ATTRIBUTE_ID), new IndexOptions().unique(false));
+      MongoMetadataCache.invalidate(database, databaseCollectionName(project));
    }
 
    @Override
    public void deleteRepository(final Project project) {
       database.getCollection(databaseCollectionName(project)).drop();
+      MongoMetadataCache.invalidate(database, databaseCollectionName(project));
    }
 
    @Override
    public void createRows(final List<FunctionRow> rows) {
       try {
          databaseCollection().insertMany(rows);
+         invalidateCache();
       } catch (MongoException ex) {
          throw new StorageException("Cannot create function rows: " + rows, ex);
       }
    }
 
+   @Override
+   public List<FunctionRow> getAllRows() {
+      return MongoMetadataCache.findAll(database, databaseCollectionName(), FunctionRow.class);
+   }
+
    @Override
    public List<FunctionRow> searchByAnyCollection(final String collectionId, final String attributeId) {
       Bson filter = or(
@@ -136,16 +144,23 @@ public class MongoFunctionDao extends MongoProjectScopedDao implements FunctionD
    public void deleteByResources(final FunctionResourceType type, final String... resourceIds) {
       Bson filter = and(in(FunctionRowCodec.RESOURCE_ID, resourceIds), eq(FunctionRowCodec.TYPE, type.toString()));
       databaseCollection().deleteMany(filter);
+      invalidateCache();
    }
 
    @Override
    public void deleteByCollection(final String collectionsId, final String attributeId) {
       databaseCollection().deleteMany(collectionFilter(collectionsId, attributeId));
+      invalidateCache();
    }
 
    @Override
    public void deleteByLinkType(final String linkTypeId, final String attributeId) {
       databaseCollection().deleteMany(linkFilter(linkTypeId, attributeId));
+      invalidateCache();
+   }
+
+   private void invalidateCache() {
+      MongoMetadataCache.invalidate(database, databaseCollectionName());
    }
 
    private String databaseCollectionName(Project project) {
@@ -0,0 +1,302 @@
+/*
+ * Lumeer: Modern Data Definition and Processing Platform
+ *
+ * Copyright (C) since 2017 Lumeer.io, s.r.o. and/or its affiliates.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.lumeer.storage.mongodb.dao.project;
+
+import io.lumeer.api.model.Document;
+import io.lumeer.storage.mongodb.MongoUtils;
+import io.lumeer.storage.mongodb.codecs.DocumentCodec;
+import io.lumeer.storage.mongodb.codecs.LinkInstanceCodec;
+
+import com.mongodb.MongoClientSettings;
+import com.mongodb.MongoException;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.Indexes;
+import org.bson.BsonDocument;
+import org.bson.BsonInt32;
+import org.bson.conversions.Bson;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps the indexes of project scoped collections in line with their declarations. New repositories get all the declared indexes
+ * when they are created, existing ones are reconciled by {@link MongoIndexReconciler} after startup or on the first access,
+ * whatever comes first, so indexes added in a newer version reach projects created before.
+ */
+public class MongoIndexManager {
+
+   private static final Logger log = Logger.getLogger(MongoIndexManager.class.getName());
+
+   private static final String ID_INDEX = "_id_";
+   private static final String KEY = "key";
+   private static final String NAME = "name";
+   private static final String ACCESSES = "accesses";
+   private static final String OPS = "ops";
+
+   private static final Set<String> RECONCILED_COLLECTIONS = ConcurrentHashMap.newKeySet();
+
+   public enum Repository {
+      DOCUMENTS(MongoDocumentDao.PREFIX, Collections.emptyList(),
+            Indexes.ascending(DocumentCodec.COLLECTION_ID),
+            Indexes.descending(DocumentCodec.CREATION_DATE),
+            Indexes.descending(DocumentCodec.UPDATE_DATE),
+            Indexes.ascending(MongoUtils.concatParams(DocumentCodec.META_DATA, Document.META_PARENT_ID))),
+      // the link type index of older projects is covered by the compound one, it is kept until it is dropped manually
+      LINK_INSTANCES(MongoLinkInstanceDao.PREFIX, Collections.singletonList(Indexes.ascending(LinkInstanceCodec.LINK_TYPE_ID)),
+            Indexes.ascending(LinkInstanceCodec.LINK_TYPE_ID, LinkInstanceCodec.DOCUMENTS_IDS),
+            Indexes.ascending(LinkInstanceCodec.DOCUMENTS_IDS));
+
+      private final String prefix;
+      private final List<BsonDocument> legacyIndexes;
+      private final List<BsonDocument> indexes;
+
+      Repository(final String prefix, final List<Bson> legacyIndexes, final Bson... indexes) {
+         this.prefix = prefix;
+         this.legacyIndexes = legacyIndexes.stream().map(MongoIndexManager::toBsonDocument).collect(Collectors.toList());
+         this.indexes = Arrays.stream(indexes).map(MongoIndexManager::toBsonDocument).collect(Collectors.toList());
+      }
+
+      public String getPrefix() {
+         return prefix;
+      }
+
+      public List<BsonDocument> getIndexes() {
+         return Collections.unmodifiableList(indexes);
+      }
+
+      /**
+       * @return indexes created by older versions that are no longer declared, but are not reported as undeclared either.
+       */
+      public List<BsonDocument> getLegacyIndexes() {
+         return Collections.unmodifiableList(legacyIndexes);
+      }
+   }
+
+   private MongoIndexManager() {
+   }
+
+   /**
+    * Creates all declared indexes of a newly created repository.
+    *
+    * @param database
+    *       database of the repository.
+    * @param repository
+    *       type of the repository.
+    * @param collectionName
+    *       name of the repository collection.
+    */
+   public static void createIndexes(final MongoDatabase database, final Repository repository, final String collectionName) {
+      final MongoCollection<org.bson.Document> collection = database.getCollection(collectionName);
+      repository.indexes.forEach(keys -> collection.createIndex(keys, new IndexOptions().unique(false)));
+      RECONCILED_COLLECTIONS.add(reconciledKey(database, collectionName));
+   }
+
+   /**
+    * Forgets that the repository has been reconciled, so it is checked again once it is recreated.
+    *
+    * @param database
+    *       database of the repository.
+    * @param collectionName
+    *       name of the dropped repository collection.
+    */
+   public static void invalidate(final MongoDatabase database, final String collectionName) {
+      RECONCILED_COLLECTIONS.remove(reconciledKey(database, collectionName));
+   }
+
+   /**
+    * Creates declared indexes missing in the repository, once per collection since startup.
+    *
+    * @param database
+    *       database of the repository.
+    * @param repository
+    *       type of the repository.
+    * @param collectionName
+    *       name of the repository collection.
+    */
+   public static void ensureIndexes(final MongoDatabase database, final Repository repository, final String collectionName) {
+      if (RECONCILED_COLLECTIONS.contains(reconciledKey(database, collectionName))) {
+         return;
+      }
+
+      try {
+         final IndexReport report = reconcile(database, repository, collectionName);
+         if (!report.getCreated().isEmpty() || !report.getUndeclared().isEmpty()) {
+            log.log(Level.INFO, report.toString());
+         }
+      } catch (MongoException e) {
+         // the repository stays usable without the indexes, next access tries again
+         log.log(Level.WARNING, "Unable to reconcile indexes of " + collectionName, e);
+      }
+   }
+
+   /**
+    * Creates declared indexes missing in the repository and reports the existing indexes that are neither declared nor known legacy ones.
+    *
+    * @param database
+    *       database of the repository.
+    * @param repository
+    *       type of the repository.
+    * @param collectionName
+    *       name of the repository collection.
+    * @return report of the reconciliation.
+    */
+   public static IndexReport reconcile(final MongoDatabase database, final Repository repository, final String collectionName) {
+      final MongoCollection<org.bson.Document> collection = database.getCollection(collectionName);
+      final Map<BsonDocument, String> existing = listIndexes(collection);
+
+      final List<String> created = new ArrayList<>();
+      repository.indexes.stream()
+                        .filter(keys -> !existing.containsKey(keys))
+                        .forEach(keys -> created.add(collection.createIndex(keys, new IndexOptions().unique(false).background(true))));
+
+      final List<String> undeclared = existing.entrySet().stream()
+                                              .filter(entry -> !ID_INDEX.equals(entry.getValue()))
+                                              .filter(entry -> !repository.indexes.contains(entry.getKey()) && !repository.legacyIndexes.contains(entry.getKey()))
+                                              .map(Map.Entry::getValue)
+                                              .collect(Collectors.toList());
+
+      RECONCILED_COLLECTIONS.add(reconciledKey(database, collectionName));
+
+      return new IndexReport(collectionName, created, undeclared, Collections.emptyList());
+   }
+
+   /**
+    * Reconciles all project repositories in the database and reports indexes that were not used since the database server started.
+    * Usage statistics are not available to every database user, the unused indexes are then left empty.
+    *
+    * @param database
+    *       database to reconcile.
+    * @return reports of all the project repositories.
+    */
+   public static List<IndexReport> reconcileAll(final MongoDatabase database) {
+      final List<IndexReport> reports = new ArrayList<>();
+      for (String collectionName : database.listCollectionNames()) {
+         for (Repository repository : Repository.values()) {
+            if (collectionName.startsWith(repository.prefix)) {
+               try {
+                  final IndexReport report = reconcile(database, repository, collectionName);
+                  reports.add(new IndexReport(collectionName, report.getCreated(), report.getUndeclared(), listUnusedIndexes(database.getCollection(collectionName))));
+               } catch (MongoException e) {
+                  // a dropped or locked repository must not stop the others
+                  log.log(Level.WARNING, "Unable to reconcile indexes of " + collectionName, e);
+               }
+            }
+         }
+      }
+      return reports;
+   }
+
+   private static Map<BsonDocument, String> listIndexes(final MongoCollection<org.bson.Document> collection) {
+      final Map<BsonDocument, String> indexes = new LinkedHashMap<>();
+      for (org.bson.Document index : collection.listIndexes()) {
+         indexes.put(toBsonDocument(index.get(KEY, org.bson.Document.class)), index.getString(NAME));
+      }
+      return indexes;
+   }
+
+   private static List<String> listUnusedIndexes(final MongoCollection<org.bson.Document> collection) {
+      try {
+         final List<String> unused = new ArrayList<>();
+         for (org.bson.Document stats : collection.aggregate(Collections.singletonList(new org.bson.Document("$indexStats", new org.bson.Document())))) {
+            final org.bson.Document accesses = stats.get(ACCESSES, org.bson.Document.class);
+            final Number ops = accesses != null ? accesses.get(OPS, Number.class) : null;
+            if (!ID_INDEX.equals(stats.getString(NAME)) && ops != null && ops.longValue() == 0) {
+               unused.add(stats.getString(NAME));
+            }
+         }
+         return unused;
+      } catch (MongoException e) {
+         log.log(Level.FINE, "Index statistics of " + collection.getNamespace() + " are not available", e);
+         return Collections.emptyList();
+      }
+   }
+
+   private static BsonDocument toBsonDocument(final Bson bson) {
+      final BsonDocument keys = new BsonDocument();
+      // indexes created from the shell may have the direction stored as a double
+      bson.toBsonDocument(BsonDocument.class, MongoClientSettings.getDefaultCodecRegistry())
+          .forEach((field, value) -> keys.append(field, value.isNumber() ? new BsonInt32(value.asNumber().intValue()) : value));
+      return keys;
+   }
+
+   private static String reconciledKey(final MongoDatabase database, final String collectionName) {
+      return database.getName() + "." + collectionName;
+   }
+
+   public static class IndexReport {
+
+      private final String collectionName;
+      private final List<String> created;
+      private final List<String> undeclared;
+      private final List<String> unused;
+
+      public IndexReport(final String collectionName, final List<String> created, final List<String> undeclared, final List<String> unused) {
+         this.collectionName = collectionName;
+         this.created = created;
+         this.undeclared = undeclared;
+         this.unused = unused;
+      }
+
+      public String getCollectionName() {
+         return collectionName;
+      }
+
+      /**
+       * @return names of the declared indexes that were missing and have been created.
+       */
+      public List<String> getCreated() {
+         return created;
+      }
+
+      /**
+       * @return names of the existing indexes that are not declared, these are never dropped automatically.
+       */
+      public List<String> getUndeclared() {
+         return undeclared;
+      }
+
+      /**
+       * @return names of the indexes without any access since the database server started.
+       */
+      public List<String> getUnused() {
+         return unused;
+      }
+
+      @Override
+      public String toString() {
+         return "IndexReport{" +
+               "collectionName='" + collectionName + '\'' +
+               ", created=" + created +
+               ", undeclared=" + undeclared +
+               ", unused=" + unused +
+               '}';
+      }
+   }
+}
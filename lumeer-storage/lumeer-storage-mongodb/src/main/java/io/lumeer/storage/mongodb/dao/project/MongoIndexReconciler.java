@@ -0,0 +1,115 @@
+/*
+ * Lumeer: Modern Data Definition and Processing Platform
+ *
+ * Copyright (C) since 2017 Lumeer.io, s.r.o. and/or its affiliates.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.lumeer.storage.mongodb.dao.project;
+
+import io.lumeer.engine.annotation.UserDataStorage;
+import io.lumeer.engine.api.data.DataStorage;
+
+import com.mongodb.client.MongoDatabase;
+
+import java.util.List;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.annotation.PreDestroy;
+import javax.enterprise.concurrent.ManagedScheduledExecutorService;
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.context.Initialized;
+import javax.enterprise.context.control.RequestContextController;
+import javax.enterprise.event.Observes;
+import javax.enterprise.inject.Instance;
+import javax.inject.Inject;
+
+/**
+ * Reconciles indexes of all project repositories in the user data database once the application starts, so the declared
+ * indexes exist before the first access and indexes that are not declared or not used get reported in the log.
+ * It runs in background, repositories accessed before it finishes are reconciled by {@link MongoIndexManager#ensureIndexes}.
+ * The delay after startup in seconds can be set by the <code>lumeer.index.reconcile.delay</code> system property or
+ * the <code>INDEX_RECONCILE_DELAY</code> environment variable, like the location of the default properties.
+ */
+@ApplicationScoped
+public class MongoIndexReconciler {
+
+   private static final Logger log = Logger.getLogger(MongoIndexReconciler.class.getName());
+
+   private static final long DEFAULT_STARTUP_DELAY = 10; // s
+
+   @Inject
+   @UserDataStorage
+   private Instance<DataStorage> userDataStorage;
+
+   @Inject
+   private RequestContextController requestContextController;
+
+   @Inject
+   private ManagedScheduledExecutorService scheduler;
+
+   private ScheduledFuture<?> reconciliation;
+
+   public void onStartup(@Observes @Initialized(ApplicationScoped.class) final Object event) {
+      if (reconciliation == null) {
+         reconciliation = scheduler.schedule(this::reconcileUserDatabase, getStartupDelay(), TimeUnit.SECONDS);
+      }
+   }
+
+   @PreDestroy
+   public void destroy() {
+      if (reconciliation != null) {
+         reconciliation.cancel(true);
+      }
+   }
+
+   static long getStartupDelay() {
+      final String value = System.getProperty("lumeer.index.reconcile.delay", System.getenv("INDEX_RECONCILE_DELAY"));
+      if (value == null) {
+         return DEFAULT_STARTUP_DELAY;
+      }
+
+      try {
+         return Math.max(0, Long.parseLong(value.trim()));
+      } catch (NumberFormatException e) {
+         log.log(Level.WARNING, String.format("Invalid index reconciliation delay: %s", value));
+         return DEFAULT_STARTUP_DELAY;
+      }
+   }
+
+   private void reconcileUserDatabase() {
+      requestContextController.activate();
+      try {
+         reconcile((MongoDatabase) userDataStorage.get().getDatabase());
+      } catch (RuntimeException e) {
+         log.log(Level.WARNING, "Unable to reconcile indexes: ", e);
+      } finally {
+         requestContextController.deactivate();
+      }
+   }
+
+   List<MongoIndexManager.IndexReport> reconcile(final MongoDatabase database) {
+      final long start = System.currentTimeMillis();
+      final List<MongoIndexManager.IndexReport> reports = MongoIndexManager.reconcileAll(database);
+
+      reports.stream()
+             .filter(report -> !report.getCreated().isEmpty() || !report.getUndeclared().isEmpty() || !report.getUnused().isEmpty())
+             .forEach(report -> log.log(Level.INFO, report.toString()));
+      log.log(Level.INFO, String.format("Indexes of %d repositories in %s reconciled in %d ms.", reports.size(), database.getName(), System.currentTimeMillis() - start));
+
+      return reports;
+   }
+}
@@ -19,6 +19,7 @@
 package io.lumeer.storage.mongodb.dao.project;
 
 import static io.lumeer.storage.mongodb.util.MongoFilters.idFilter;
+import static io.lumeer.storage.mongodb.util.MongoFilters.paginationFilter;
 
 import io.lumeer.api.model.LinkInstance;
 import io.lumeer.api.model.Project;
@@ -36,11 +37,12 @@ import com.mongodb.MongoException;
 import com.mongodb.client.FindIterable;
 import com.mongodb.client.MongoCollection;
 import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.BulkWriteOptions;
 import com.mongodb.client.model.Filters;
 import com.mongodb.client.model.FindOneAndUpdateOptions;
-import com.mongodb.client.model.IndexOptions;
-import com.mongodb.client.model.Indexes;
 import com.mongodb.client.model.ReturnDocument;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.WriteModel;
 import com.mongodb.client.result.DeleteResult;
 import org.bson.Document;
 import org.bson.conversions.Bson;
@@ -59,7 +61,7 @@ import javax.inject.Inject;
 @RequestScoped
 public class MongoLinkInstanceDao extends MongoProjectScopedDao implements LinkInstanceDao {
 
-   private static final String PREFIX = "linkinstances_p-";
+   static final String PREFIX = "linkinstances_p-";
 
    @Inject
    private Event<CreateLinkInstance> createLinkInstanceEvent;
@@ -70,14 +72,13 @@ public class MongoLinkInstanceDao extends MongoProjectScopedDao implements LinkI
    @Override
    public void createRepository(Project project) {
       database.createCollection(databaseCollectionName(project));
-
-      MongoCollection<Document> projectCollection = database.getCollection(databaseCollectionName(project));
-      projectCollection.createIndex(Indexes.ascending(LinkInstanceCodec.LINK_TYPE_ID), new IndexOptions().unique(false));
+      MongoIndexManager.createIndexes(database, MongoIndexManager.Repository.LINK_INSTANCES, databaseCollectionName(project));
    }
 
    @Override
    public void deleteRepository(Project project) {
       database.getCollection(databaseCollectionName(project)).drop();
+      MongoIndexManager.invalidate(database, databaseCollectionName(project));
    }
 
    @Override
@@ -126,6 +127,26 @@ public class MongoLinkInstanceDao extends MongoProjectScopedDao implements LinkI
       }
    }
 
+   @Override
+   public List<LinkInstance> updateLinkInstances(final List<LinkInstance> linkInstances) {
+      if (linkInstances.isEmpty()) {
+         return Collections.emptyList();
+      }
+
+      try {
+         final List<WriteModel<LinkInstance>> updates = linkInstances.stream()
+                                                                     .map(linkInstance -> new UpdateOneModel<LinkInstance>(idFilter(linkInstance.getId()),
+                                                                           new Document("$set", linkInstance).append("$inc", new Document(LinkInstanceCodec.DATA_VERSION, 1))))
+                                                                     .collect(Collectors.toList());
+         databaseCollection().bulkWrite(updates, new BulkWriteOptions().ordered(false));
+
+         // link instances deleted in the meantime are not matched by the updates and are left out here
+         return getLinkInstances(linkInstances.stream().map(LinkInstance::getId).collect(Collectors.toSet()));
+      } catch (MongoException ex) {
+         throw new StorageException("Cannot update link instances: " + linkInstances, ex);
+      }
+   }
+
    @Override
    public void deleteLinkInstance(final String id) {
       LinkInstance linkInstance = databaseCollection().findOneAndDelete(idFilter(id));
@@ -195,7 +216,7 @@ public class MongoLinkInstanceDao extends MongoProjectScopedDao implements LinkI
 
    @Override
    public List<LinkInstance> searchLinkInstances(final SearchQuery query) {
-      final FindIterable<LinkInstance> linkInstances = databaseCollection().find(linkInstancesFilter(query));
+      final FindIterable<LinkInstance> linkInstances = databaseCollection().find(paginationFilter(linkInstancesFilter(query), query.getPagination()));
       addPaginationToQuery(linkInstances, query);
       return linkInstances.into(new ArrayList<>());
    }
@@ -265,10 +286,12 @@ public class MongoLinkInstanceDao extends MongoProjectScopedDao implements LinkI
    }
 
    private MongoCollection<Document> rawDatabaseCollection() {
+      MongoIndexManager.ensureIndexes(database, MongoIndexManager.Repository.LINK_INSTANCES, databaseCollectionName());
       return database.getCollection(databaseCollectionName());
    }
 
    MongoCollection<LinkInstance> databaseCollection() {
+      MongoIndexManager.ensureIndexes(database, MongoIndexManager.Repository.LINK_INSTANCES, databaseCollectionName());
       return database.getCollection(databaseCollectionName(), LinkInstance.class);
    }
 }
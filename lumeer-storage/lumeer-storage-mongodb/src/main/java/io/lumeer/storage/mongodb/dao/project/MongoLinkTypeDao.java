@@ -31,6 +31,8 @@ import io.lumeer.storage.api.exception.ResourceNotFoundException;
 import io.lumeer.storage.api.exception.StorageException;
 import io.lumeer.storage.api.query.SearchSuggestionQuery;
 import io.lumeer.storage.mongodb.MongoUtils;
+import io.lumeer.storage.mongodb.codecs.AttributeCodec;
+import io.lumeer.storage.mongodb.codecs.FunctionCodec;
 import io.lumeer.storage.mongodb.codecs.LinkTypeCodec;
 
 import com.mongodb.BasicDBList;
@@ -45,16 +47,15 @@ import com.mongodb.client.model.IndexOptions;
 import com.mongodb.client.model.Indexes;
 import com.mongodb.client.model.ReturnDocument;
 import com.mongodb.client.model.Sorts;
+import com.mongodb.client.model.Updates;
 import org.bson.Document;
 import org.bson.conversions.Bson;
-import org.bson.types.ObjectId;
 
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Set;
 import java.util.regex.Pattern;
-import java.util.stream.Collectors;
 import javax.enterprise.context.RequestScoped;
 import javax.enterprise.event.Event;
 import javax.inject.Inject;
@@ -80,17 +81,23 @@ public class MongoLinkTypeDao extends MongoProjectScopedDao implements LinkTypeD
       MongoCollection<Document> projectCollection = database.getCollection(databaseCollectionName(project));
       projectCollection.createIndex(Indexes.ascending(LinkTypeCodec.NAME), new IndexOptions().unique(false));
       projectCollection.createIndex(Indexes.ascending(LinkTypeCodec.COLLECTION_IDS));
+      MongoMetadataCache.invalidate(database, databaseCollectionName(project));
+      MongoReaderIndex.invalidate(database, project.getId());
    }
 
    @Override
    public void deleteRepository(Project project) {
       database.getCollection(databaseCollectionName(project)).drop();
+      MongoMetadataCache.invalidate(database, databaseCollectionName(project));
+      MongoReaderIndex.invalidate(database, project.getId());
    }
 
    @Override
    public LinkType createLinkType(final LinkType linkType) {
       try {
          databaseCollection().insertOne(linkType);
+         invalidateCache();
+         invalidateReaderIndex();
          if (createLinkTypeEvent != null) {
             createLinkTypeEvent.fire(new CreateLinkType(linkType));
          }
@@ -106,6 +113,7 @@ public class MongoLinkTypeDao extends MongoProjectScopedDao implements LinkTypeD
       try {
          Bson update = new Document("$set", linkType).append("$inc", new Document(LinkTypeCodec.VERSION, 1L));
          LinkType updatedLinkType = databaseCollection().findOneAndUpdate(idFilter(id), update, options);
+         invalidateCache();
          if (updatedLinkType == null) {
             throw new StorageException("Link type '" + id + "' has not been updated.");
          }
@@ -121,9 +129,34 @@ public class MongoLinkTypeDao extends MongoProjectScopedDao implements LinkTypeD
       }
    }
 
+   @Override
+   public LinkType updateAttributeFunctionError(final String id, final String attributeId, final String errorReport, final long timestamp) {
+      final String function = MongoUtils.concatParams(LinkTypeCodec.ATTRIBUTES, "$[a]", AttributeCodec.FUNCTION);
+      final Bson update = Updates.combine(Updates.set(MongoUtils.concatParams(function, FunctionCodec.ERROR_REPORT), errorReport),
+            Updates.set(MongoUtils.concatParams(function, FunctionCodec.TIMESTAMP), timestamp));
+      final FindOneAndUpdateOptions options = new FindOneAndUpdateOptions().returnDocument(ReturnDocument.AFTER)
+                                                                           .arrayFilters(List.of(Filters.eq(MongoUtils.concatParams("a", AttributeCodec.ID), attributeId)));
+
+      try {
+         final LinkType updatedLinkType = databaseCollection().findOneAndUpdate(idFilter(id), update, options);
+         invalidateCache();
+         if (updatedLinkType == null) {
+            throw new StorageException("Link type '" + id + "' has not been updated.");
+         }
+         if (updateLinkTypeEvent != null) {
+            updateLinkTypeEvent.fire(new UpdateLinkType(updatedLinkType, null));
+         }
+         return updatedLinkType;
+      } catch (MongoException ex) {
+         throw new StorageException("Cannot update function error of link type: " + id, ex);
+      }
+   }
+
    @Override
    public void deleteLinkType(final String id) {
       LinkType linkType = databaseCollection().findOneAndDelete(idFilter(id));
+      invalidateCache();
+      invalidateReaderIndex();
       if (linkType == null) {
          throw new StorageException("Link type '" + id + "' has not been deleted.");
       }
@@ -135,11 +168,13 @@ public class MongoLinkTypeDao extends MongoProjectScopedDao implements LinkTypeD
    @Override
    public void deleteLinkTypesByCollectionId(final String collectionId) {
       databaseCollection().deleteMany(collectionIdFilter(collectionId));
+      invalidateCache();
+      invalidateReaderIndex();
    }
 
    @Override
    public LinkType getLinkType(final String id) {
-      LinkType linkType = databaseCollection().find(idFilter(id)).first();
+      LinkType linkType = MongoMetadataCache.findFirst(database, databaseCollectionName(), LinkType.class, MongoMetadataCache.idFilter(id));
       if (linkType == null) {
          throw new StorageException("Cannot find link type: " + id);
       }
@@ -148,14 +183,20 @@ public class MongoLinkTypeDao extends MongoProjectScopedDao implements LinkTypeD
 
    @Override
    public List<LinkType> getAllLinkTypes() {
-      return databaseCollection().find().into(new ArrayList<>());
+      return MongoMetadataCache.findAll(database, databaseCollectionName(), LinkType.class);
    }
 
    @Override
    public List<LinkType> getLinkTypesByIds(final Set<String> ids) {
-      List<ObjectId> objectIds = ids.stream().map(ObjectId::new).collect(Collectors.toList());
-      Bson filter = Filters.in(LinkTypeCodec.ID, objectIds);
-      return databaseCollection().find(filter).into(new ArrayList<>());
+      return MongoMetadataCache.find(database, databaseCollectionName(), LinkType.class, MongoMetadataCache.idsFilter(ids));
+   }
+
+   @Override
+   public Set<String> getLinkTypeReaders(final String id) {
+      if (!getProject().isPresent()) {
+         throw new ResourceNotFoundException(ResourceType.PROJECT);
+      }
+      return MongoReaderIndex.getLinkTypeReaders(database, getProject().get().getId(), id);
    }
 
    @Override
@@ -232,7 +273,7 @@ public class MongoLinkTypeDao extends MongoProjectScopedDao implements LinkTypeD
 
    @Override
    public List<LinkType> getLinkTypesByCollectionId(final String collectionId) {
-      return databaseCollection().find(collectionIdFilter(collectionId)).into(new ArrayList<>());
+      return MongoMetadataCache.find(database, databaseCollectionName(), LinkType.class, MongoMetadataCache.arrayContainsFilter(LinkTypeCodec.COLLECTION_IDS, collectionId));
    }
 
    private Bson collectionIdFilter(String collectionId) {
@@ -250,6 +291,14 @@ public class MongoLinkTypeDao extends MongoProjectScopedDao implements LinkTypeD
       return databaseCollectionName(getProject().get());
    }
 
+   private void invalidateCache() {
+      MongoMetadataCache.invalidate(database, databaseCollectionName());
+   }
+
+   private void invalidateReaderIndex() {
+      MongoReaderIndex.invalidate(database, getProject().get().getId());
+   }
+
    MongoCollection<LinkType> databaseCollection() {
       return database.getCollection(databaseCollectionName(), LinkType.class);
    }
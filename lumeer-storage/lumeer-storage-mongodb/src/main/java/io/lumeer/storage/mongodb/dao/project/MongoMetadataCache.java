@@ -0,0 +1,173 @@
+/*
+ * Lumeer: Modern Data Definition and Processing Platform
+ *
+ * Copyright (C) since 2017 Lumeer.io, s.r.o. and/or its affiliates.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.lumeer.storage.mongodb.dao.project;
+
+import com.mongodb.client.MongoDatabase;
+import org.bson.BsonDocument;
+import org.bson.BsonObjectId;
+import org.bson.BsonString;
+import org.bson.BsonValue;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.DecoderContext;
+import org.bson.types.ObjectId;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * Application wide cache of small project metadata collections (collections, link types, views and function rows).
+ * Whole database collections are cached in their raw form, so every read decodes fresh objects that callers are free to modify.
+ * Each write through a DAO invalidates the cached content, a generation counter makes sure that a load racing with a write
+ * never stores the outdated content. Writes from other application nodes are not seen until the entries expire, so a change
+ * made on another node, including a change of permissions, can take up to {@link #TIME_TO_LIVE} to apply here.
+ */
+final class MongoMetadataCache {
+
+   static final long TIME_TO_LIVE = TimeUnit.SECONDS.toMillis(15);
+
+   private static final String ID = "_id";
+
+   private static final ConcurrentMap<String, Snapshot> SNAPSHOTS = new ConcurrentHashMap<>();
+   private static final ConcurrentMap<String, Generation> GENERATIONS = new ConcurrentHashMap<>();
+
+   private MongoMetadataCache() {
+   }
+
+   static <T> List<T> find(final MongoDatabase database, final String collectionName, final Class<T> type, final Predicate<BsonDocument> filter) {
+      return getDocuments(database, collectionName).stream()
+                                                   .filter(filter)
+                                                   .map(document -> decode(database, document, type))
+                                                   .collect(Collectors.toList());
+   }
+
+   static <T> List<T> findAll(final MongoDatabase database, final String collectionName, final Class<T> type) {
+      return find(database, collectionName, type, document -> true);
+   }
+
+   static <T> T findFirst(final MongoDatabase database, final String collectionName, final Class<T> type, final Predicate<BsonDocument> filter) {
+      return getDocuments(database, collectionName).stream()
+                                                   .filter(filter)
+                                                   .findFirst()
+                                                   .map(document -> decode(database, document, type))
+                                                   .orElse(null);
+   }
+
+   static void invalidate(final MongoDatabase database, final String collectionName) {
+      final String key = cacheKey(database, collectionName);
+      generation(key).counter.incrementAndGet();
+      SNAPSHOTS.remove(key);
+   }
+
+   static Predicate<BsonDocument> idFilter(final String id) {
+      final BsonValue value = new BsonObjectId(new ObjectId(id));
+      return document -> value.equals(document.get(ID));
+   }
+
+   static Predicate<BsonDocument> idsFilter(final Collection<String> ids) {
+      final Set<BsonValue> values = ids.stream().map(id -> new BsonObjectId(new ObjectId(id))).collect(Collectors.toSet());
+      return document -> values.contains(document.get(ID));
+   }
+
+   static Predicate<BsonDocument> fieldFilter(final String field, final String value) {
+      final BsonValue bsonValue = new BsonString(value);
+      return document -> bsonValue.equals(document.get(field));
+   }
+
+   static Predicate<BsonDocument> arrayContainsFilter(final String field, final String value) {
+      final BsonValue bsonValue = new BsonString(value);
+      return document -> {
+         final BsonValue array = document.get(field);
+         return array != null && array.isArray() && array.asArray().contains(bsonValue);
+      };
+   }
+
+   private static List<RawBsonDocument> getDocuments(final MongoDatabase database, final String collectionName) {
+      final String key = cacheKey(database, collectionName);
+      final long now = System.currentTimeMillis();
+
+      final Snapshot snapshot = SNAPSHOTS.get(key);
+      if (snapshot != null && !snapshot.isExpired(now)) {
+         return snapshot.documents;
+      }
+
+      final Generation generation = generation(key);
+      final long counter = generation.counter.get();
+      final List<RawBsonDocument> documents = Collections.unmodifiableList(
+            database.getCollection(collectionName, RawBsonDocument.class).find().into(new ArrayList<>()));
+      final Snapshot loaded = new Snapshot(documents, now);
+
+      SNAPSHOTS.values().removeIf(s -> s.isExpired(now));
+      GENERATIONS.entrySet().removeIf(entry -> entry.getValue().isUnused(now) && !SNAPSHOTS.containsKey(entry.getKey()));
+
+      // an invalidation increments the generation before removing the snapshot, so a stale load is never stored,
+      // a generation pruned meanwhile is replaced by a new instance, so the load is not stored either
+      SNAPSHOTS.compute(key, (k, current) -> GENERATIONS.get(key) == generation && generation.counter.get() == counter ? loaded : current);
+
+      return documents;
+   }
+
+   private static <T> T decode(final MongoDatabase database, final RawBsonDocument document, final Class<T> type) {
+      return database.getCodecRegistry().get(type).decode(document.asBsonReader(), DecoderContext.builder().build());
+   }
+
+   private static Generation generation(final String key) {
+      final Generation generation = GENERATIONS.computeIfAbsent(key, k -> new Generation());
+      generation.usedAt = System.currentTimeMillis();
+      return generation;
+   }
+
+   private static String cacheKey(final MongoDatabase database, final String collectionName) {
+      return database.getName() + "." + collectionName;
+   }
+
+   private static class Snapshot {
+
+      private final List<RawBsonDocument> documents;
+      private final long loadedAt;
+
+      private Snapshot(final List<RawBsonDocument> documents, final long loadedAt) {
+         this.documents = documents;
+         this.loadedAt = loadedAt;
+      }
+
+      private boolean isExpired(final long now) {
+         return now - loadedAt >= TIME_TO_LIVE;
+      }
+   }
+
+   private static class Generation {
+
+      private final AtomicLong counter = new AtomicLong();
+      private volatile long usedAt;
+
+      // a load started before could still compare the counter
+      private boolean isUnused(final long now) {
+         return now - usedAt >= TIME_TO_LIVE;
+      }
+   }
+}
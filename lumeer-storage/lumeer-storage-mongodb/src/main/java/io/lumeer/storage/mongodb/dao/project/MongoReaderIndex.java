@@ -0,0 +1,221 @@
+/*
+ * Lumeer: Modern Data Definition and Processing Platform
+ *
+ * Copyright (C) since 2017 Lumeer.io, s.r.o. and/or its affiliates.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.lumeer.storage.mongodb.dao.project;
+
+import io.lumeer.api.model.Collection;
+import io.lumeer.api.model.LinkType;
+import io.lumeer.api.model.QueryStem;
+import io.lumeer.api.model.View;
+import io.lumeer.api.util.ResourceUtils;
+
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.Updates;
+import org.bson.Document;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Application wide index of users allowed to read collections and link types of a project, either directly or through a view.
+ * It is built from the metadata cache and rebuilt only after DAO writes that can change the readers (permissions, view queries
+ * or collections of link types), so frequent writes like counter updates do not cause a rebuild. Permissions of the organization
+ * and the project are not part of the index, callers add them.
+ * Such writes also increment a version of the project stored in the database. The version is checked at most once per
+ * {@link #VERSION_CHECK_INTERVAL}, so a permission change made on another application node is applied here within that interval.
+ */
+final class MongoReaderIndex {
+
+   static final String VERSIONS_COLLECTION = "readerIndexVersions";
+   static final long VERSION_CHECK_INTERVAL = TimeUnit.SECONDS.toMillis(1);
+
+   private static final String ID = "_id";
+   private static final String VERSION = "version";
+
+   private static final ConcurrentMap<String, Index> INDEXES = new ConcurrentHashMap<>();
+   private static final ConcurrentMap<String, Generation> GENERATIONS = new ConcurrentHashMap<>();
+
+   private MongoReaderIndex() {
+   }
+
+   static Set<String> getCollectionReaders(final MongoDatabase database, final String projectId, final String collectionId) {
+      return new HashSet<>(getIndex(database, projectId).collectionReaders.getOrDefault(collectionId, Collections.emptySet()));
+   }
+
+   static Set<String> getLinkTypeReaders(final MongoDatabase database, final String projectId, final String linkTypeId) {
+      return new HashSet<>(getIndex(database, projectId).linkTypeReaders.getOrDefault(linkTypeId, Collections.emptySet()));
+   }
+
+   /**
+    * Must be called after the metadata cache of the written database collection has been invalidated.
+    */
+   static void invalidate(final MongoDatabase database, final String projectId) {
+      generation(indexKey(database, projectId)).counter.incrementAndGet();
+      database.getCollection(VERSIONS_COLLECTION).updateOne(Filters.eq(ID, projectId), Updates.inc(VERSION, 1L), new UpdateOptions().upsert(true));
+   }
+
+   private static Index getIndex(final MongoDatabase database, final String projectId) {
+      final String collectionsName = MongoCollectionDao.PREFIX + projectId;
+      final String viewsName = MongoViewDao.PREFIX + projectId;
+      final String linkTypesName = MongoLinkTypeDao.PREFIX + projectId;
+      final long now = System.currentTimeMillis();
+
+      final String key = indexKey(database, projectId);
+      final Generation generation = generation(key);
+      final long counter = generation.counter.get();
+
+      final Index index = INDEXES.get(key);
+      if (index != null && index.isValid(generation, counter, now)) {
+         if (now - index.checkedAt < VERSION_CHECK_INTERVAL) {
+            return index;
+         }
+         if (readVersion(database, projectId) == index.version) {
+            index.checkedAt = now;
+            return index;
+         }
+      }
+
+      // the version and the generation are read before the metadata, a write in between only causes another rebuild
+      final long version = readVersion(database, projectId);
+      if (index != null && index.version != version) {
+         // the metadata was written on another node, the cached content is outdated as well
+         MongoMetadataCache.invalidate(database, collectionsName);
+         MongoMetadataCache.invalidate(database, viewsName);
+         MongoMetadataCache.invalidate(database, linkTypesName);
+      }
+
+      final Index built = build(MongoMetadataCache.findAll(database, collectionsName, Collection.class),
+            MongoMetadataCache.findAll(database, viewsName, View.class),
+            MongoMetadataCache.findAll(database, linkTypesName, LinkType.class),
+            generation, counter, version, now);
+
+      INDEXES.values().removeIf(i -> i.isExpired(now));
+      GENERATIONS.entrySet().removeIf(entry -> entry.getValue().isUnused(now) && !INDEXES.containsKey(entry.getKey()));
+      INDEXES.put(key, built);
+
+      return built;
+   }
+
+   private static long readVersion(final MongoDatabase database, final String projectId) {
+      final Document document = database.getCollection(VERSIONS_COLLECTION).find(Filters.eq(ID, projectId)).first();
+      return document != null ? ((Number) document.get(VERSION)).longValue() : 0L;
+   }
+
+   private static String indexKey(final MongoDatabase database, final String projectId) {
+      return database.getName() + "." + projectId;
+   }
+
+   private static Generation generation(final String key) {
+      final Generation generation = GENERATIONS.computeIfAbsent(key, k -> new Generation());
+      generation.usedAt = System.currentTimeMillis();
+      return generation;
+   }
+
+   private static Index build(final List<Collection> collections, final List<View> views, final List<LinkType> linkTypes,
+         final Generation generation, final long counter, final long version, final long now) {
+      final Map<String, Set<String>> collectionReaders = new HashMap<>();
+      collections.forEach(collection -> collectionReaders.put(collection.getId(), ResourceUtils.usersAllowedRead(collection)));
+
+      final Map<String, List<String>> linkTypeCollections = new HashMap<>();
+      linkTypes.forEach(linkType -> linkTypeCollections.put(linkType.getId(), linkType.getCollectionIds() != null ? linkType.getCollectionIds() : Collections.emptyList()));
+
+      views.forEach(view -> {
+         final Set<String> readers = ResourceUtils.usersAllowedRead(view);
+         if (readers.isEmpty() || view.getQuery() == null) {
+            return;
+         }
+
+         final Set<String> collectionIds = new HashSet<>();
+         for (QueryStem stem : view.getQuery().getStems()) {
+            collectionIds.add(stem.getCollectionId());
+            stem.getLinkTypeIds().forEach(linkTypeId -> collectionIds.addAll(linkTypeCollections.getOrDefault(linkTypeId, Collections.emptyList())));
+         }
+         // readers of a deleted collection are kept, so they can still be notified about the removal
+         collectionIds.stream()
+                      .filter(Objects::nonNull)
+                      .forEach(collectionId -> collectionReaders.computeIfAbsent(collectionId, id -> new HashSet<>()).addAll(readers));
+      });
+
+      final Map<String, Set<String>> linkTypeReaders = new HashMap<>();
+      linkTypeCollections.forEach((linkTypeId, collectionIds) -> {
+         if (collectionIds.isEmpty()) {
+            return;
+         }
+         final Set<String> readers = new HashSet<>(collectionReaders.getOrDefault(collectionIds.get(0), Collections.emptySet()));
+         for (String collectionId : collectionIds) {
+            readers.retainAll(collectionReaders.getOrDefault(collectionId, Collections.emptySet()));
+         }
+         linkTypeReaders.put(linkTypeId, readers);
+      });
+
+      return new Index(collectionReaders, linkTypeReaders, generation, counter, version, now);
+   }
+
+   private static class Index {
+
+      private final Map<String, Set<String>> collectionReaders;
+      private final Map<String, Set<String>> linkTypeReaders;
+      private final Generation generation;
+      private final long counter;
+      private final long version;
+      private final long builtAt;
+      private volatile long checkedAt;
+
+      private Index(final Map<String, Set<String>> collectionReaders, final Map<String, Set<String>> linkTypeReaders,
+            final Generation generation, final long counter, final long version, final long builtAt) {
+         this.collectionReaders = collectionReaders;
+         this.linkTypeReaders = linkTypeReaders;
+         this.generation = generation;
+         this.counter = counter;
+         this.version = version;
+         this.builtAt = builtAt;
+         this.checkedAt = builtAt;
+      }
+
+      // a generation pruned meanwhile is replaced by a new instance, so the index is rebuilt
+      private boolean isValid(final Generation currentGeneration, final long currentCounter, final long now) {
+         return !isExpired(now) && generation == currentGeneration && counter == currentCounter;
+      }
+
+      private boolean isExpired(final long now) {
+         return now - builtAt >= MongoMetadataCache.TIME_TO_LIVE;
+      }
+   }
+
+   private static class Generation {
+
+      private final AtomicLong counter = new AtomicLong();
+      private volatile long usedAt;
+
+      // an index built before could still compare the counter
+      private boolean isUnused(final long now) {
+         return now - usedAt >= MongoMetadataCache.TIME_TO_LIVE;
+      }
+   }
+}
@@ -46,18 +46,19 @@ import io.lumeer.storage.mongodb.util.MongoFilters;
 import com.mongodb.MongoException;
 import com.mongodb.client.FindIterable;
 import com.mongodb.client.MongoCollection;
-import com.mongodb.client.MongoCursor;
 import com.mongodb.client.model.Field;
 import com.mongodb.client.model.FindOneAndUpdateOptions;
 import com.mongodb.client.model.IndexOptions;
 import com.mongodb.client.model.Indexes;
 import com.mongodb.client.model.ReturnDocument;
+import org.bson.BsonDocument;
 import org.bson.Document;
 import org.bson.conversions.Bson;
 
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
+import java.util.function.Predicate;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 import javax.enterprise.context.RequestScoped;
@@ -67,7 +68,7 @@ import javax.inject.Inject;
 @RequestScoped
 public class MongoViewDao extends MongoProjectScopedDao implements ViewDao {
 
-   private static final String PREFIX = "views_p-";
+   static final String PREFIX = "views_p-";
 
    @Inject
    private Event<CreateResource> createResourceEvent;
@@ -86,17 +87,23 @@ public class MongoViewDao extends MongoProjectScopedDao implements ViewDao {
       projectCollection.createIndex(Indexes.ascending(ViewCodec.CODE), new IndexOptions().unique(true));
       projectCollection.createIndex(Indexes.ascending(ViewCodec.NAME), new IndexOptions().unique(false));
       projectCollection.createIndex(Indexes.text(ViewCodec.NAME));
+      MongoMetadataCache.invalidate(database, databaseCollectionName(project));
+      MongoReaderIndex.invalidate(database, project.getId());
    }
 
    @Override
    public void deleteRepository(Project project) {
       database.getCollection(databaseCollectionName(project)).drop();
+      MongoMetadataCache.invalidate(database, databaseCollectionName(project));
+      MongoReaderIndex.invalidate(database, project.getId());
    }
 
    @Override
    public View createView(final View view) {
       try {
          databaseCollection().insertOne(view);
+         invalidateCache();
+         invalidateReaderIndex();
          if (createResourceEvent != null) {
             createResourceEvent.fire(new CreateResource(view));
          }
@@ -118,6 +125,8 @@ public class MongoViewDao extends MongoProjectScopedDao implements ViewDao {
       try {
          Bson update = new Document("$set", view).append("$inc", new Document(ViewCodec.VERSION, 1L));
          View updatedView = databaseCollection().findOneAndUpdate(idFilter(id), update, options);
+         invalidateCache();
+         invalidateReaderIndex();
          if (updatedView == null) {
             throw new StorageException("View '" + id + "' has not been updated.");
          }
@@ -134,6 +143,8 @@ public class MongoViewDao extends MongoProjectScopedDao implements ViewDao {
    @Override
    public void deleteView(final String id) {
       final View view = databaseCollection().findOneAndDelete(idFilter(id));
+      invalidateCache();
+      invalidateReaderIndex();
       if (view == null) {
          throw new StorageException("View '" + id + "' has not been deleted.");
       }
@@ -144,37 +155,37 @@ public class MongoViewDao extends MongoProjectScopedDao implements ViewDao {
 
    @Override
    public View getViewByCode(final String code) {
-      MongoCursor<View> mongoCursor = databaseCollection().find(codeFilter(code)).iterator();
-      if (!mongoCursor.hasNext()) {
-         throw new ResourceNotFoundException(ResourceType.VIEW);
-      }
-      return mongoCursor.next();
+      return getViewByFilter(MongoMetadataCache.fieldFilter(ViewCodec.CODE, code));
    }
 
    @Override
    public View getViewById(final String id) {
-      MongoCursor<View> mongoCursor = databaseCollection().find(idFilter(id)).iterator();
-      if (!mongoCursor.hasNext()) {
+      return getViewByFilter(MongoMetadataCache.idFilter(id));
+   }
+
+   private View getViewByFilter(final Predicate<BsonDocument> filter) {
+      final View view = MongoMetadataCache.findFirst(database, databaseCollectionName(), View.class, filter);
+      if (view == null) {
          throw new ResourceNotFoundException(ResourceType.VIEW);
       }
-      return mongoCursor.next();
+      return view;
    }
 
    @Override
    public List<View> getAllViews() {
-      return databaseCollection().find().into(new ArrayList<>());
+      return MongoMetadataCache.findAll(database, databaseCollectionName(), View.class);
    }
 
    @Override
    public List<View> getViews(DatabaseQuery query) {
-      FindIterable<View> findIterable = databaseCollection().find(MongoFilters.permissionsFilter(query));
+      FindIterable<View> findIterable = databaseCollection().find(MongoFilters.paginationFilter(MongoFilters.permissionsFilter(query), query.getPagination()));
       addPaginationToQuery(findIterable, query);
       return findIterable.into(new ArrayList<>());
    }
 
    @Override
    public List<View> getViews(final SearchSuggestionQuery query, boolean skipPermissions) {
-      FindIterable<View> findIterable = databaseCollection().find(suggestionsFilter(query, skipPermissions));
+      FindIterable<View> findIterable = databaseCollection().find(MongoFilters.paginationFilter(suggestionsFilter(query, skipPermissions), query.getPagination()));
       addPaginationToQuery(findIterable, query);
       return findIterable.into(new ArrayList<>());
    }
@@ -245,6 +256,14 @@ public class MongoViewDao extends MongoProjectScopedDao implements ViewDao {
       return databaseCollectionName(getProject().get());
    }
 
+   private void invalidateCache() {
+      MongoMetadataCache.invalidate(database, databaseCollectionName());
+   }
+
+   private void invalidateReaderIndex() {
+      MongoReaderIndex.invalidate(database, getProject().get().getId());
+   }
+
    MongoCollection<View> databaseCollection() {
       return database.getCollection(databaseCollectionName(), View.class);
    }
@@ -129,7 +129,7 @@ public class MongoOrganizationDao extends MongoSystemScopedDao implements Organi
    @Override
    public List<Organization> getOrganizations(final DatabaseQuery query) {
       Bson filter = organizationsSearchFilter(query);
-      FindIterable<Organization> iterable = databaseCollection().find(filter);
+      FindIterable<Organization> iterable = databaseCollection().find(MongoFilters.paginationFilter(filter, query.getPagination()));
       addPaginationToQuery(iterable, query);
 
       return iterable.into(new ArrayList<>());
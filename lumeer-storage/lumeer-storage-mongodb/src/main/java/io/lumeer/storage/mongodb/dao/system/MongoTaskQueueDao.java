@@ -0,0 +1,170 @@
+/*
+ * Lumeer: Modern Data Definition and Processing Platform
+ *
+ * Copyright (C) since 2017 Lumeer.io, s.r.o. and/or its affiliates.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.lumeer.storage.mongodb.dao.system;
+
+import static io.lumeer.storage.mongodb.util.MongoFilters.idFilter;
+import static io.lumeer.storage.mongodb.util.MongoFilters.idsFilter;
+
+import io.lumeer.api.model.QueuedTask;
+import io.lumeer.storage.api.dao.TaskQueueDao;
+import io.lumeer.storage.api.exception.StorageException;
+import io.lumeer.storage.mongodb.codecs.QueuedTaskCodec;
+
+import com.mongodb.MongoException;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.FindOneAndUpdateOptions;
+import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.ReturnDocument;
+import com.mongodb.client.model.Sorts;
+import com.mongodb.client.model.Updates;
+import org.bson.conversions.Bson;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import javax.annotation.PostConstruct;
+import javax.enterprise.context.ApplicationScoped;
+
+/**
+ * Persistent queue of task chains. A task is leased by updating its state, owner and expiration in a single atomic operation,
+ * so several nodes can drain the queue concurrently. Tasks with an expired lease (their node died) become available again.
+ * The owner keeps the lease by renewing it, and only the owner can record progress of the task or complete, retry or dead-letter it.
+ */
+@ApplicationScoped
+public class MongoTaskQueueDao extends MongoSystemScopedDao implements TaskQueueDao {
+
+   private static final String COLLECTION_NAME = "taskQueue";
+
+   @PostConstruct
+   public void checkRepository() {
+      if (!database.listCollectionNames().into(new ArrayList<>()).contains(COLLECTION_NAME)) {
+         createRepository();
+      }
+   }
+
+   @Override
+   public void createRepository() {
+      database.createCollection(databaseCollectionName());
+
+      MongoCollection<org.bson.Document> collection = database.getCollection(databaseCollectionName());
+      collection.createIndex(Indexes.ascending(QueuedTaskCodec.STATE, QueuedTaskCodec.AVAILABLE_AT), new IndexOptions().unique(false));
+   }
+
+   @Override
+   public QueuedTask enqueue(final QueuedTask task) {
+      try {
+         databaseCollection().insertOne(task);
+         return task;
+      } catch (MongoException ex) {
+         throw new StorageException("Cannot enqueue task " + task, ex);
+      }
+   }
+
+   @Override
+   public List<QueuedTask> lease(final String owner, final int limit, final long leaseMillis) {
+      final List<QueuedTask> leased = new ArrayList<>();
+      final Bson available = Filters.and(
+            Filters.in(QueuedTaskCodec.STATE, QueuedTask.State.PENDING.name(), QueuedTask.State.LEASED.name()),
+            Filters.lte(QueuedTaskCodec.AVAILABLE_AT, new Date()));
+      final FindOneAndUpdateOptions options = new FindOneAndUpdateOptions().sort(Sorts.ascending(QueuedTaskCodec.AVAILABLE_AT)).returnDocument(ReturnDocument.AFTER);
+
+      while (leased.size() < limit) {
+         final Bson update = Updates.combine(
+               Updates.set(QueuedTaskCodec.STATE, QueuedTask.State.LEASED.name()),
+               Updates.set(QueuedTaskCodec.LEASE_OWNER, owner),
+               Updates.set(QueuedTaskCodec.AVAILABLE_AT, new Date(System.currentTimeMillis() + leaseMillis)),
+               Updates.inc(QueuedTaskCodec.ATTEMPTS, 1));
+         final QueuedTask task = databaseCollection().findOneAndUpdate(available, update, options);
+         if (task == null) {
+            break;
+         }
+         leased.add(task);
+      }
+
+      return leased;
+   }
+
+   @Override
+   public void renew(final String owner, final Set<String> ids, final long leaseMillis) {
+      if (ids.isEmpty()) {
+         return;
+      }
+
+      databaseCollection().updateMany(Filters.and(idsFilter(ids), leasedByFilter(owner)),
+            Updates.set(QueuedTaskCodec.AVAILABLE_AT, new Date(System.currentTimeMillis() + leaseMillis)));
+   }
+
+   @Override
+   public boolean progress(final String id, final String owner, final long leaseMillis) {
+      return databaseCollection().updateOne(ownedFilter(id, owner), Updates.combine(
+            Updates.inc(QueuedTaskCodec.COMPLETED_TASKS, 1),
+            Updates.set(QueuedTaskCodec.AVAILABLE_AT, new Date(System.currentTimeMillis() + leaseMillis)))).getMatchedCount() > 0;
+   }
+
+   @Override
+   public boolean complete(final String id, final String owner) {
+      return databaseCollection().deleteOne(ownedFilter(id, owner)).getDeletedCount() > 0;
+   }
+
+   @Override
+   public boolean retry(final String id, final String owner, final String error, final long delayMillis) {
+      return databaseCollection().updateOne(ownedFilter(id, owner), Updates.combine(
+            Updates.set(QueuedTaskCodec.STATE, QueuedTask.State.PENDING.name()),
+            Updates.set(QueuedTaskCodec.LEASE_OWNER, null),
+            Updates.set(QueuedTaskCodec.AVAILABLE_AT, new Date(System.currentTimeMillis() + delayMillis)),
+            Updates.set(QueuedTaskCodec.ERROR, error))).getMatchedCount() > 0;
+   }
+
+   @Override
+   public boolean deadLetter(final String id, final String owner, final String error) {
+      return databaseCollection().updateOne(ownedFilter(id, owner), Updates.combine(
+            Updates.set(QueuedTaskCodec.STATE, QueuedTask.State.DEAD.name()),
+            Updates.set(QueuedTaskCodec.LEASE_OWNER, null),
+            Updates.set(QueuedTaskCodec.AVAILABLE_AT, new Date()),
+            Updates.set(QueuedTaskCodec.ERROR, error))).getMatchedCount() > 0;
+   }
+
+   @Override
+   public long removeDeadLetters(final long olderThanMillis) {
+      // dead letters keep the time they were dead-lettered in the availability date
+      return databaseCollection().deleteMany(Filters.and(
+            Filters.eq(QueuedTaskCodec.STATE, QueuedTask.State.DEAD.name()),
+            Filters.lt(QueuedTaskCodec.AVAILABLE_AT, new Date(System.currentTimeMillis() - olderThanMillis)))).getDeletedCount();
+   }
+
+   // state transitions are allowed only to the current owner of the lease, a node that lost its lease must not touch the task
+   private static Bson ownedFilter(final String id, final String owner) {
+      return Filters.and(idFilter(id), leasedByFilter(owner));
+   }
+
+   private static Bson leasedByFilter(final String owner) {
+      return Filters.and(Filters.eq(QueuedTaskCodec.STATE, QueuedTask.State.LEASED.name()), Filters.eq(QueuedTaskCodec.LEASE_OWNER, owner));
+   }
+
+   String databaseCollectionName() {
+      return COLLECTION_NAME;
+   }
+
+   MongoCollection<QueuedTask> databaseCollection() {
+      return database.getCollection(databaseCollectionName(), QueuedTask.class);
+   }
+}
@@ -19,6 +19,7 @@
 package io.lumeer.storage.mongodb.dao.system;
 
 import static io.lumeer.storage.mongodb.util.MongoFilters.idFilter;
+import static io.lumeer.storage.mongodb.util.MongoFilters.idsFilter;
 
 import io.lumeer.api.model.User;
 import io.lumeer.storage.api.dao.UserDao;
@@ -44,6 +45,7 @@ import org.bson.conversions.Bson;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Set;
 import javax.annotation.PostConstruct;
 import javax.enterprise.context.ApplicationScoped;
 
@@ -167,6 +169,15 @@ public class MongoUserDao extends MongoSystemScopedDao implements UserDao {
       return databaseCollection().find(idFilter(id)).first();
    }
 
+   @Override
+   public List<User> getUsersByIds(final Set<String> ids) {
+      final Bson filter = idsFilter(ids);
+      if (filter == null) {
+         return new ArrayList<>();
+      }
+      return databaseCollection().find(filter).into(new ArrayList<>());
+   }
+
    @Override
    public List<User> getAllUsers(final String organizationId) {
       return databaseCollection().find(organizationIdFilter(organizationId)).into(new ArrayList<>());
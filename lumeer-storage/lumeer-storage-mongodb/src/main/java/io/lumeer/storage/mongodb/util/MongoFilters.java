@@ -20,6 +20,7 @@
 package io.lumeer.storage.mongodb.util;
 
 import io.lumeer.api.model.Attribute;
+import io.lumeer.api.model.Pagination;
 import io.lumeer.api.model.Role;
 import io.lumeer.storage.api.filter.SearchAttributeFilter;
 import io.lumeer.storage.api.query.DatabaseQuery;
@@ -56,6 +57,29 @@ public class MongoFilters {
       return null;
    }
 
+   /**
+    * Restricts the filter to results following the position of the keyset pagination.
+    *
+    * @param filter
+    *       original filter, may be null.
+    * @param pagination
+    *       pagination of the query, may be null.
+    * @return filter for the requested page.
+    */
+   public static Bson paginationFilter(Bson filter, Pagination pagination) {
+      if (pagination == null || !pagination.isKeyset()) {
+         return filter;
+      }
+
+      String afterId = pagination.getAfterId();
+      if (afterId == null || !ObjectId.isValid(afterId)) {
+         throw new IllegalArgumentException("invalid continuation token " + pagination.getAfter());
+      }
+
+      Bson afterFilter = Filters.gt(ID, new ObjectId(afterId));
+      return filter != null ? Filters.and(filter, afterFilter) : afterFilter;
+   }
+
    public static Bson codeFilter(String code) {
       return Filters.eq(CODE, code);
    }
@@ -100,6 +124,9 @@ public class MongoFilters {
       return Filters.in(PermissionCodec.ROLES, rolesStrings);
    }
 
+   /**
+    * Creates filter matching the fulltexts directly in the data, it is used while the fulltext index of the data is not ready.
+    */
    public static Bson createFilterForFulltexts(java.util.Collection<Attribute> attributes, Set<String> fulltexts) {
       List<Bson> filters = fulltexts.stream().map(fulltext -> createFilterForFulltext(attributes, fulltext))
                                     .filter(Objects::nonNull)
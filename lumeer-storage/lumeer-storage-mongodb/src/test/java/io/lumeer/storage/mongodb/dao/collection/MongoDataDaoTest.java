@@ -25,28 +25,39 @@ import io.lumeer.api.model.Collection;
 import io.lumeer.api.model.ConditionType;
 import io.lumeer.api.model.Pagination;
 import io.lumeer.api.model.Permissions;
+import io.lumeer.api.model.Project;
 import io.lumeer.engine.api.data.DataDocument;
 import io.lumeer.storage.api.dao.CollectionDao;
 import io.lumeer.storage.api.filter.CollectionSearchAttributeFilter;
 import io.lumeer.storage.api.query.SearchQueryStem;
 import io.lumeer.storage.mongodb.MongoDbTestBase;
+import io.lumeer.storage.mongodb.dao.project.MongoDocumentDao;
+import io.lumeer.storage.mongodb.util.MongoFilters;
 
 import com.mongodb.client.MongoCollection;
 import com.mongodb.client.MongoCursor;
 import org.bson.Document;
+import org.bson.types.ObjectId;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Mockito;
 
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import javax.enterprise.concurrent.ManagedExecutorService;
 
 public class MongoDataDaoTest extends MongoDbTestBase {
 
    private static final String COLLECTION_ID = "59a51b83d412bc2da88b010f";
    private static final String DOCUMENT_ID = "59a58ba7d412bc562eea2e6a";
+   private static final String PROJECT_ID = "596e3b86d412bc5a3caaa22a";
 
    private static final String USER = "notNeeded";
 
@@ -57,6 +68,7 @@ public class MongoDataDaoTest extends MongoDbTestBase {
    private static final String VALUE2 = "secondValue";
 
    private MongoDataDao dataDao;
+   private MongoDocumentDao documentDao;
    private CollectionDao collectionDao;
 
    @Before
@@ -69,10 +81,19 @@ public class MongoDataDaoTest extends MongoDbTestBase {
       collectionDao = Mockito.mock(CollectionDao.class);
       Mockito.when(collectionDao.getCollectionById(COLLECTION_ID)).thenReturn(col);
 
+      Project project = Mockito.mock(Project.class);
+      Mockito.when(project.getId()).thenReturn(PROJECT_ID);
+
       dataDao = new MongoDataDao();
       dataDao.setDatabase(database);
+      dataDao.setProject(project);
 
       dataDao.createDataRepository(COLLECTION_ID);
+
+      documentDao = new MongoDocumentDao();
+      documentDao.setDatabase(database);
+      documentDao.setProject(project);
+      documentDao.createRepository(project);
    }
 
    private String createDocument() {
@@ -157,6 +178,25 @@ public class MongoDataDaoTest extends MongoDbTestBase {
       assertThat(document).containsEntry(KEY2, VALUE2);
    }
 
+   @Test
+   public void testPatchDataBatch() {
+      String id1 = createDocument();
+      String id2 = createDocument();
+
+      List<DataDocument> patchedData = dataDao.patchData(COLLECTION_ID, Map.of(
+            id1, new DataDocument().append(KEY1, VALUE2),
+            id2, new DataDocument().append(KEY2, VALUE1)));
+      assertThat(patchedData).extracting(DataDocument::getId).containsOnly(id1, id2);
+
+      Document document1 = dataCollection().find(MongoFilters.idFilter(id1)).first();
+      assertThat(document1).containsEntry(KEY1, VALUE2);
+      assertThat(document1).containsEntry(KEY2, VALUE2);
+
+      Document document2 = dataCollection().find(MongoFilters.idFilter(id2)).first();
+      assertThat(document2).containsEntry(KEY1, VALUE1);
+      assertThat(document2).containsEntry(KEY2, VALUE1);
+   }
+
    @Test
    public void testPatchNestedAttributes() {
 
@@ -232,6 +272,106 @@ public class MongoDataDaoTest extends MongoDbTestBase {
       assertThat(data).extracting(DataDocument::getId).containsOnly(id3, id4);
    }
 
+   @Test
+   public void testSearchDataByFullTextsAfterUpdate() {
+      Collection collection = collectionDao.getCollectionById(COLLECTION_ID);
+      String id1 = createDocument(KEY1, "lala");
+      String id2 = createDocument(KEY2, "something");
+
+      dataDao.patchData(COLLECTION_ID, id1, new DataDocument(KEY1, "lumeerko"));
+      dataDao.deleteData(COLLECTION_ID, id2);
+
+      List<DataDocument> data = dataDao.searchDataByFulltexts(Collections.singleton("erko"), null, Collections.singletonList(collection));
+      assertThat(data).extracting(DataDocument::getId).containsOnly(id1);
+
+      data = dataDao.searchDataByFulltexts(Collections.singleton("lala"), null, Collections.singletonList(collection));
+      assertThat(data).isEmpty();
+
+      data = dataDao.searchDataByFulltexts(Collections.singleton("something"), null, Collections.singletonList(collection));
+      assertThat(data).isEmpty();
+   }
+
+   @Test
+   public void testSearchDataByFullTextsRebuildsMissingIndex() {
+      Collection collection = collectionDao.getCollectionById(COLLECTION_ID);
+      dataDao.fulltextIndex(COLLECTION_ID).drop();
+
+      Document document = new Document(KEY3, "Something Full");
+      dataCollection().insertOne(document);
+      String id = document.getObjectId("_id").toHexString();
+
+      List<DataDocument> data = dataDao.searchDataByFulltexts(Collections.singleton("thing"), null, Collections.singletonList(collection));
+      assertThat(data).extracting(DataDocument::getId).containsOnly(id);
+   }
+
+   @Test
+   public void testSearchDataByFullTextsWhileIndexIsBuilt() {
+      List<Runnable> tasks = new ArrayList<>();
+      ManagedExecutorService executorService = Mockito.mock(ManagedExecutorService.class);
+      Mockito.doAnswer(invocation -> tasks.add(invocation.getArgument(0))).when(executorService).execute(Mockito.any());
+      dataDao.setExecutorService(executorService);
+
+      Collection collection = collectionDao.getCollectionById(COLLECTION_ID);
+      String id1 = createDocument(KEY1, "lala");
+      String id2 = createDocument(KEY2, "fulltext");
+
+      List<DataDocument> data = dataDao.searchDataByFulltexts(Collections.singleton("ful"), null, Collections.singletonList(collection));
+      assertThat(data).extracting(DataDocument::getId).containsOnly(id1, id2);
+      assertThat(tasks).hasSize(1);
+
+      dataDao.searchDataByFulltexts(Collections.singleton("ful"), null, Collections.singletonList(collection));
+      assertThat(tasks).hasSize(1);
+
+      tasks.remove(0).run();
+
+      // served from the index now, which does not know about the data inserted outside the dao
+      createDocument(KEY2, "fully");
+      data = dataDao.searchDataByFulltexts(Collections.singleton("ful"), null, Collections.singletonList(collection));
+      assertThat(data).extracting(DataDocument::getId).containsOnly(id1, id2);
+      assertThat(tasks).isEmpty();
+   }
+
+   @Test
+   public void testSearchDataByFullTextsAfterAttributeDelete() {
+      Collection collection = collectionDao.getCollectionById(COLLECTION_ID);
+      String id1 = createDocument(KEY1, "lumeer");
+      String id2 = createDocument(KEY2, "other");
+
+      List<DataDocument> data = dataDao.searchDataByFulltexts(Collections.singleton("lumeer"), null, Collections.singletonList(collection));
+      assertThat(data).extracting(DataDocument::getId).containsOnly(id1);
+
+      List<Runnable> tasks = new ArrayList<>();
+      ManagedExecutorService executorService = Mockito.mock(ManagedExecutorService.class);
+      Mockito.doAnswer(invocation -> tasks.add(invocation.getArgument(0))).when(executorService).execute(Mockito.any());
+      dataDao.setExecutorService(executorService);
+
+      dataDao.deleteAttribute(COLLECTION_ID, KEY1);
+      assertThat(tasks).hasSize(1);
+
+      // the data are searched directly until the index is rebuilt
+      data = dataDao.searchDataByFulltexts(Collections.singleton("lumeer"), null, Collections.singletonList(collection));
+      assertThat(data).isEmpty();
+      data = dataDao.searchDataByFulltexts(Collections.singleton("other"), null, Collections.singletonList(collection));
+      assertThat(data).extracting(DataDocument::getId).containsOnly(id2);
+
+      tasks.remove(0).run();
+
+      data = dataDao.searchDataByFulltexts(Collections.singleton("lumeer"), null, Collections.singletonList(collection));
+      assertThat(data).isEmpty();
+      assertThat(tasks).isEmpty();
+   }
+
+   @Test
+   public void testFulltextIndexEntryIsBounded() {
+      String text = IntStream.range(0, 500).mapToObj(i -> "token" + i + "value").collect(Collectors.joining(" "));
+      Document entry = MongoFulltextIndex.createEntry(new DataDocument(KEY1, text));
+
+      List<String> terms = entry.getList(MongoFulltextIndex.TERMS, String.class);
+      assertThat(terms).hasSize(1000);
+      assertThat(terms).contains("token0value", "oken0value", "token499value");
+      assertThat(terms).doesNotContain("oken499value");
+   }
+
    @Test
    public void testSearchDataByDocumenstIds() {
       Collection collection = collectionDao.getCollectionById(COLLECTION_ID);
@@ -254,6 +394,20 @@ public class MongoDataDaoTest extends MongoDbTestBase {
       assertThat(data).extracting(DataDocument::getId).containsOnly(id1, id3, id4);
    }
 
+   @Test
+   public void testGetDataByAttributeValues() {
+      String id1 = createDocument(KEY1, VALUE1);
+      createDocument(KEY1, VALUE2);
+      String id3 = createDocument(KEY1, VALUE1);
+      String id4 = createDocument(KEY1, "other");
+
+      List<DataDocument> data = dataDao.getDataByAttributeValues(COLLECTION_ID, KEY1, new HashSet<>(Arrays.asList(VALUE1, "other")));
+      assertThat(data).extracting(DataDocument::getId).containsOnly(id1, id3, id4);
+      assertThat(data).allMatch(dataDocument -> dataDocument.containsKey(KEY1));
+
+      assertThat(dataDao.getDataByAttributeValues(COLLECTION_ID, KEY1, Collections.emptySet())).isEmpty();
+   }
+
    @Test
    public void testSearchDataByFilters() {
       Collection collection = collectionDao.getCollectionById(COLLECTION_ID);
@@ -277,6 +431,55 @@ public class MongoDataDaoTest extends MongoDbTestBase {
       assertThat(data).extracting(DataDocument::getId).containsOnly(id4);
    }
 
+   @Test
+   public void testSearchDataKeysetPagination() {
+      Collection collection = collectionDao.getCollectionById(COLLECTION_ID);
+      String id1 = createDocument(KEY1, "lala");
+      String id2 = createDocument(KEY1, "lumeerko");
+      String id3 = createDocument(KEY1, "lol");
+      String id4 = createDocument(KEY1, "nieco");
+      String id5 = createDocument(KEY1, "mama");
+
+      SearchQueryStem stem = SearchQueryStem.createBuilder(COLLECTION_ID).build();
+
+      List<DataDocument> data = dataDao.searchData(stem, new Pagination(0, 2), collection);
+      assertThat(data).extracting(DataDocument::getId).containsExactly(id1, id2);
+
+      data = dataDao.searchData(stem, new Pagination(null, 2, Pagination.createContinuationToken(id2)), collection);
+      assertThat(data).extracting(DataDocument::getId).containsExactly(id3, id4);
+
+      data = dataDao.searchData(stem, new Pagination(null, 2, Pagination.createContinuationToken(id4)), collection);
+      assertThat(data).extracting(DataDocument::getId).containsExactly(id5);
+
+      data = dataDao.searchDataByFulltexts(Collections.singleton("o"), new Pagination(null, 2, Pagination.createContinuationToken(id1)), Collections.singletonList(collection));
+      assertThat(data).extracting(DataDocument::getId).containsOnly(id2, id3);
+   }
+
+   @Test
+   public void testSearchDocuments() {
+      Collection collection = collectionDao.getCollectionById(COLLECTION_ID);
+      String id1 = createDocumentWithMetadata(KEY1, "lala", null);
+      String id2 = createDocumentWithMetadata(KEY1, "lumeerko", id1);
+      String id3 = createDocumentWithMetadata(KEY1, "lol", id2);
+      createDocument(KEY1, "without metadata");
+
+      CollectionSearchAttributeFilter filter = new CollectionSearchAttributeFilter(COLLECTION_ID, ConditionType.EQUALS, KEY1, "lala");
+      SearchQueryStem stem = SearchQueryStem.createBuilder(COLLECTION_ID)
+                                            .filters(Collections.singleton(filter))
+                                            .build();
+      List<io.lumeer.api.model.Document> documents = dataDao.searchDocuments(stem, null, collection);
+      assertThat(documents).extracting(io.lumeer.api.model.Document::getId).containsOnly(id1);
+      assertThat(documents.get(0).getCollectionId()).isEqualTo(COLLECTION_ID);
+      assertThat(documents.get(0).getData()).containsEntry(KEY1, "lala");
+
+      documents = dataDao.searchDocuments(SearchQueryStem.createBuilder(COLLECTION_ID).build(), new Pagination(0, 2), collection);
+      assertThat(documents).extracting(io.lumeer.api.model.Document::getId).containsExactly(id1, id2);
+
+      documents = dataDao.getDocumentsByParentIds(COLLECTION_ID, new HashSet<>(Arrays.asList(id1, id2)));
+      assertThat(documents).extracting(io.lumeer.api.model.Document::getId).containsOnly(id2, id3);
+      assertThat(documents.stream().map(document -> document.getData().getString(KEY1))).containsOnly("lumeerko", "lol");
+   }
+
    @Test
    public void testSearchDataByAllConditions() {
       Collection collection = collectionDao.getCollectionById(COLLECTION_ID);
@@ -304,6 +507,15 @@ public class MongoDataDaoTest extends MongoDbTestBase {
       assertThat(data).extracting(DataDocument::getId).isEmpty();
    }
 
+   private String createDocumentWithMetadata(String key, Object value, String parentId) {
+      String id = createDocument(key, value);
+      DataDocument metaData = parentId != null ? new DataDocument(io.lumeer.api.model.Document.META_PARENT_ID, parentId) : new DataDocument();
+      io.lumeer.api.model.Document document = new io.lumeer.api.model.Document(COLLECTION_ID, ZonedDateTime.now(), null, USER, null, 0, metaData);
+      document.setId(id);
+      documentDao.createDocument(document);
+      return id;
+   }
+
    private MongoCollection<Document> dataCollection() {
       return dataDao.dataCollection(COLLECTION_ID);
    }
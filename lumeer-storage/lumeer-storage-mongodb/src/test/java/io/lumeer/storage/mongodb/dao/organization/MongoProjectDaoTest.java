@@ -31,9 +31,12 @@ import io.lumeer.storage.api.exception.ResourceNotFoundException;
 import io.lumeer.storage.api.exception.StorageException;
 import io.lumeer.storage.api.query.DatabaseQuery;
 import io.lumeer.storage.mongodb.MongoDbTestBase;
+import io.lumeer.storage.mongodb.codecs.ProjectCodec;
 import io.lumeer.storage.mongodb.util.MongoFilters;
 
+import com.mongodb.client.model.Updates;
 import org.assertj.core.api.SoftAssertions;
+import org.bson.Document;
 import org.bson.types.ObjectId;
 import org.junit.Before;
 import org.junit.Test;
@@ -255,4 +258,57 @@ public class MongoProjectDaoTest extends MongoDbTestBase {
             .isInstanceOf(StorageException.class);
    }
 
+   @Test
+   public void testDocumentsCount() {
+      String id = projectDao.createProject(prepareProject(CODE1)).getId();
+      assertThat(projectDao.getDocumentsCount(id)).isNull();
+
+      // nothing to increment before the first reconciliation
+      projectDao.updateDocumentsCount(id, 5);
+      assertThat(projectDao.getDocumentsCount(id)).isNull();
+
+      assertThat(projectDao.reconcileDocumentsCount(id, () -> 3L)).isEqualTo(3L);
+      assertThat(projectDao.getDocumentsCount(id)).isEqualTo(3L);
+
+      projectDao.updateDocumentsCount(id, 2);
+      projectDao.updateDocumentsCount(id, -1);
+      assertThat(projectDao.getDocumentsCount(id)).isEqualTo(4L);
+      assertThat(storedDocumentsCount(id)).isEqualTo(3L);
+
+      MongoProjectDao.flushDocumentsCounts(System.currentTimeMillis() + MongoProjectDao.DOCUMENTS_COUNT_FLUSH_INTERVAL);
+      assertThat(storedDocumentsCount(id)).isEqualTo(4L);
+
+      Project project = projectDao.getProjectById(id);
+      project.setName("Renamed project");
+      projectDao.updateProject(id, project);
+
+      Document stored = database.getCollection(projectDao.databaseCollectionName()).find(MongoFilters.idFilter(id)).first();
+      assertThat(stored).isNotNull();
+      assertThat(((Number) stored.get(ProjectCodec.DOCUMENTS_COUNT)).longValue()).isEqualTo(4L);
+      assertThat(stored.getDate(ProjectCodec.DOCUMENTS_COUNT_RECONCILED)).isNotNull();
+   }
+
+   @Test
+   public void testReconcileDocumentsCountConcurrently() {
+      String id = projectDao.createProject(prepareProject(CODE1)).getId();
+      projectDao.reconcileDocumentsCount(id, () -> 3L);
+
+      // the counter changed while the documents were being counted
+      long count = projectDao.reconcileDocumentsCount(id, () -> {
+         database.getCollection(projectDao.databaseCollectionName()).updateOne(MongoFilters.idFilter(id), Updates.inc(ProjectCodec.DOCUMENTS_COUNT, 1L));
+         return 10L;
+      });
+      assertThat(count).isEqualTo(10L);
+      assertThat(storedDocumentsCount(id)).isEqualTo(4L);
+
+      projectDao.reconcileDocumentsCount(id, () -> 10L);
+      assertThat(storedDocumentsCount(id)).isEqualTo(10L);
+   }
+
+   private long storedDocumentsCount(final String projectId) {
+      Document stored = database.getCollection(projectDao.databaseCollectionName()).find(MongoFilters.idFilter(projectId)).first();
+      assertThat(stored).isNotNull();
+      return ((Number) stored.get(ProjectCodec.DOCUMENTS_COUNT)).longValue();
+   }
+
 }
@@ -20,17 +20,22 @@ package io.lumeer.storage.mongodb.dao.project;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
 
 import io.lumeer.api.model.Attribute;
 import io.lumeer.api.model.Collection;
 import io.lumeer.api.model.Constraint;
 import io.lumeer.api.model.ConstraintType;
 import io.lumeer.api.model.function.Function;
+import io.lumeer.api.model.Pagination;
 import io.lumeer.api.model.Permission;
 import io.lumeer.api.model.Permissions;
 import io.lumeer.api.model.Project;
+import io.lumeer.api.model.Query;
+import io.lumeer.api.model.QueryStem;
 import io.lumeer.api.model.Role;
 import io.lumeer.api.model.Rule;
+import io.lumeer.api.model.View;
 import io.lumeer.api.model.common.Resource;
 import io.lumeer.engine.api.data.DataDocument;
 import io.lumeer.storage.api.exception.ResourceNotFoundException;
@@ -40,6 +45,9 @@ import io.lumeer.storage.api.query.SearchSuggestionQuery;
 import io.lumeer.storage.mongodb.MongoDbTestBase;
 import io.lumeer.storage.mongodb.util.MongoFilters;
 
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.Updates;
 import org.bson.types.ObjectId;
 import org.junit.Before;
 import org.junit.Test;
@@ -220,6 +228,145 @@ public class MongoCollectionDaoTest extends MongoDbTestBase {
             .isInstanceOf(StorageException.class);
    }
 
+   @Test
+   public void testGetCollectionCachedAndInvalidated() {
+      String id = collectionDao.createCollection(prepareCollection(CODE, NAME)).getId();
+
+      Collection collection = collectionDao.getCollectionById(id);
+      collection.setName(NAME2);
+      assertThat(collectionDao.getCollectionById(id).getName()).isEqualTo(NAME);
+
+      MongoCollectionDao otherCollectionDao = new MongoCollectionDao();
+      otherCollectionDao.setDatabase(database);
+      otherCollectionDao.setProject(collectionDao.getProject().get());
+      otherCollectionDao.updateCollection(id, collection, null, false);
+
+      assertThat(collectionDao.getCollectionById(id).getName()).isEqualTo(NAME2);
+      assertThat(collectionDao.getAllCollections()).extracting(Resource::getName).containsOnly(NAME2);
+
+      otherCollectionDao.deleteCollection(id);
+      assertThat(collectionDao.getAllCollections()).isEmpty();
+      assertThatThrownBy(() -> collectionDao.getCollectionById(id))
+            .isInstanceOf(ResourceNotFoundException.class);
+   }
+
+   @Test
+   public void testUpdateCollectionCounters() {
+      Collection collection = collectionDao.createCollection(prepareCollection(CODE, NAME));
+      String id = collection.getId();
+
+      Collection updatedCollection = collectionDao.updateCollectionCounters(id, Collections.singletonMap("a1", 2), 3, LAST_TIME_USED.plusDays(1));
+      assertThat(updatedCollection.getDocumentsCount()).isEqualTo(DOCUMENTS_COUNT + 3);
+      assertThat(updatedCollection.getAttributes()).extracting(Attribute::getUsageCount).containsOnly(2);
+      assertThat(updatedCollection.getLastTimeUsed()).isEqualTo(LAST_TIME_USED.plusDays(1));
+      assertThat(updatedCollection.getVersion()).isEqualTo(collection.getVersion());
+
+      updatedCollection = collectionDao.updateCollectionCounters(id, Collections.singletonMap("a1", -5), -10, LAST_TIME_USED);
+      assertThat(updatedCollection.getDocumentsCount()).isZero();
+      assertThat(updatedCollection.getAttributes()).extracting(Attribute::getUsageCount).containsOnly(0);
+      assertThat(updatedCollection.getLastTimeUsed()).isEqualTo(LAST_TIME_USED.plusDays(1));
+
+      Collection storedCollection = collectionDao.getCollectionById(id);
+      assertThat(storedCollection.getDocumentsCount()).isZero();
+      assertThat(storedCollection.getAttributes()).extracting(Attribute::getName).containsOnly(ATTRIBUTE1_NAME);
+   }
+
+   @Test
+   public void testUpdateAttributeFunctionError() {
+      Collection collection = collectionDao.createCollection(prepareCollection(CODE, NAME));
+      String id = collection.getId();
+
+      Collection updatedCollection = collectionDao.updateAttributeFunctionError(id, "a1", "cycle", 23456L);
+      assertThat(updatedCollection.getAttributes()).extracting(Attribute::getFunction)
+                                                   .extracting(Function::getErrorReport, Function::getTimestamp, Function::getJs)
+                                                   .containsOnly(tuple("cycle", 23456L, "js"));
+      assertThat(updatedCollection.getVersion()).isEqualTo(collection.getVersion());
+
+      assertThatThrownBy(() -> collectionDao.updateAttributeFunctionError(COLLECTION_ID, "a1", "cycle", 23456L))
+            .isInstanceOf(StorageException.class);
+   }
+
+   @Test
+   public void testUpdateCollectionKeepsCounters() {
+      String id = collectionDao.createCollection(prepareCollection(CODE, NAME)).getId();
+      Collection staleCollection = collectionDao.databaseCollection().find(MongoFilters.idFilter(id)).first();
+
+      collectionDao.updateCollectionCounters(id, Collections.singletonMap("a1", 2), 3, LAST_TIME_USED.plusDays(1));
+
+      staleCollection.setName(NAME2);
+      staleCollection.createAttribute(new Attribute("a2", ATTRIBUTE2_NAME, null, null, 0));
+      Collection updatedCollection = collectionDao.updateCollection(id, staleCollection, null);
+      assertThat(updatedCollection.getName()).isEqualTo(NAME2);
+      assertThat(updatedCollection.getDocumentsCount()).isEqualTo(DOCUMENTS_COUNT + 3);
+      assertThat(updatedCollection.getLastTimeUsed()).isEqualTo(LAST_TIME_USED.plusDays(1));
+      assertThat(updatedCollection.getAttributes()).extracting(Attribute::getId, Attribute::getUsageCount)
+                                                   .containsOnly(tuple("a1", 2), tuple("a2", 0));
+   }
+
+   @Test
+   public void testUpdateCollectionRemovesAttributes() {
+      Collection collection = prepareCollection(CODE, NAME);
+      collection.createAttribute(new Attribute("a2", ATTRIBUTE2_NAME, null, null, 0));
+      String id = collectionDao.createCollection(collection).getId();
+      Collection staleCollection = collectionDao.databaseCollection().find(MongoFilters.idFilter(id)).first();
+
+      collectionDao.updateCollectionCounters(id, Map.of("a1", 2, "a2", 1), 0, null);
+
+      staleCollection.deleteAttribute("a1");
+      staleCollection.getAttributes().forEach(attribute -> attribute.setName(NAME3));
+      Collection updatedCollection = collectionDao.updateCollection(id, staleCollection, null);
+      assertThat(updatedCollection.getAttributes()).extracting(Attribute::getId, Attribute::getName, Attribute::getUsageCount)
+                                                   .containsOnly(tuple("a2", NAME3, 1));
+   }
+
+   @Test
+   public void testGetCollectionReaders() {
+      String id = collectionDao.createCollection(prepareCollection(CODE, NAME)).getId();
+      assertThat(collectionDao.getCollectionReaders(id)).containsOnly(USER);
+
+      Collection collection = collectionDao.getCollectionById(id);
+      collection.getPermissions().updateUserPermissions(new Permission(USER2, Collections.singleton(Role.READ.toString())));
+      collectionDao.updateCollection(id, collection, null, false);
+      assertThat(collectionDao.getCollectionReaders(id)).containsOnly(USER, USER2);
+
+      MongoViewDao viewDao = new MongoViewDao();
+      viewDao.setDatabase(database);
+      viewDao.setProject(collectionDao.getProject().get());
+      viewDao.createRepository(collectionDao.getProject().get());
+
+      String viewUser = "viewUser";
+      View view = new View();
+      view.setCode("VIEW");
+      view.setName("View");
+      view.setPermissions(new Permissions(Collections.singleton(new Permission(viewUser, Collections.singleton(Role.READ.toString()))), Collections.emptySet()));
+      view.setQuery(new Query(new QueryStem(id)));
+      viewDao.createView(view);
+
+      assertThat(collectionDao.getCollectionReaders(id)).containsOnly(USER, USER2, viewUser);
+      assertThat(collectionDao.getCollectionReaders(COLLECTION_ID)).isEmpty();
+
+      collectionDao.updateCollectionCounters(id, Collections.emptyMap(), 1, null);
+      assertThat(collectionDao.getCollectionReaders(id)).containsOnly(USER, USER2, viewUser);
+
+      collectionDao.deleteCollection(id);
+      assertThat(collectionDao.getCollectionReaders(id)).containsOnly(viewUser);
+   }
+
+   @Test
+   public void testGetCollectionReadersWrittenByOtherNode() throws InterruptedException {
+      String id = collectionDao.createCollection(prepareCollection(CODE, NAME)).getId();
+      assertThat(collectionDao.getCollectionReaders(id)).containsOnly(USER);
+
+      // another node writes the collection and the version, the local caches are not invalidated
+      Collection collection = collectionDao.databaseCollection().find(MongoFilters.idFilter(id)).first();
+      collection.getPermissions().removeUserPermission(USER);
+      collectionDao.databaseCollection().replaceOne(MongoFilters.idFilter(id), collection);
+      database.getCollection(MongoReaderIndex.VERSIONS_COLLECTION).updateOne(Filters.eq("_id", PROJECT_ID), Updates.inc("version", 1L), new UpdateOptions().upsert(true));
+
+      Thread.sleep(MongoReaderIndex.VERSION_CHECK_INTERVAL);
+      assertThat(collectionDao.getCollectionReaders(id)).isEmpty();
+   }
+
    @Test
    public void testGetCollectionByCode() {
       createCollection(CODE, NAME);
@@ -312,6 +459,19 @@ public class MongoCollectionDaoTest extends MongoDbTestBase {
       assertThat(collections).extracting(Resource::getCode).containsOnly(CODE2);
    }
 
+   @Test
+   public void testGetCollectionsKeysetPagination() {
+      String id = createCollection(CODE, NAME).getId();
+      createCollection(CODE2, NAME2);
+      createCollection(CODE3, NAME3);
+
+      DatabaseQuery searchQuery = DatabaseQuery.createBuilder(USER)
+                                               .pageSize(1).after(Pagination.createContinuationToken(id))
+                                               .build();
+      List<Collection> collections = collectionDao.getCollections(searchQuery);
+      assertThat(collections).extracting(Resource::getCode).containsOnly(CODE2);
+   }
+
    @Test
    public void testGetCollectionsSuggestions() {
       createCollection(CODE, NAME, ATTRIBUTES);
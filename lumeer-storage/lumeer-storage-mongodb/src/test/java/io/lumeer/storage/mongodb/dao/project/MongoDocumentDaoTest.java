@@ -162,6 +162,46 @@ public class MongoDocumentDaoTest extends MongoDbTestBase {
             .isInstanceOf(StorageException.class);
    }
 
+   @Test
+   public void testUpdateDocuments() {
+      Document document1 = createDocument();
+      Document document2 = createDocument();
+
+      ZonedDateTime updateDate = ZonedDateTime.now().withNano(0);
+      document1.setUpdatedBy(UPDATED_BY);
+      document1.setUpdateDate(updateDate);
+      document2.setUpdatedBy(UPDATED_BY);
+
+      List<Document> updatedDocuments = documentDao.updateDocuments(List.of(document1, document2));
+      assertThat(updatedDocuments).extracting(Document::getId).containsOnly(document1.getId(), document2.getId());
+
+      Document storedDocument1 = documentDao.databaseCollection().find(MongoFilters.idFilter(document1.getId())).first();
+      assertThat(storedDocument1).isNotNull();
+      assertThat(storedDocument1.getUpdatedBy()).isEqualTo(UPDATED_BY);
+      assertThat(storedDocument1.getUpdateDate()).isEqualTo(updateDate);
+      assertThat(storedDocument1.getDataVersion()).isEqualTo(1);
+
+      Document storedDocument2 = documentDao.databaseCollection().find(MongoFilters.idFilter(document2.getId())).first();
+      assertThat(storedDocument2).isNotNull();
+      assertThat(storedDocument2.getUpdatedBy()).isEqualTo(UPDATED_BY);
+      assertThat(storedDocument2.getUpdateDate()).isNull();
+      assertThat(storedDocument2.getDataVersion()).isEqualTo(1);
+   }
+
+   @Test
+   public void testUpdateDocumentsNotExisting() {
+      Document document = createDocument();
+      Document notExisting = prepareDocument();
+      notExisting.setId(DOCUMENT_ID);
+
+      assertThat(documentDao.updateDocuments(List.of(document, notExisting))).extracting(Document::getId).containsOnly(document.getId());
+   }
+
+   @Test
+   public void testUpdateDocumentsEmpty() {
+      assertThat(documentDao.updateDocuments(List.of())).isEmpty();
+   }
+
    @Test
    public void testDeleteDocument() {
       String id = createDocument().getId();
@@ -186,7 +226,7 @@ public class MongoDocumentDaoTest extends MongoDbTestBase {
       List<Document> documents = documentDao.databaseCollection().find().into(new ArrayList<>());
       assertThat(documents).isNotEmpty();
 
-      documentDao.deleteDocuments(COLLECTION_ID);
+      assertThat(documentDao.deleteDocuments(COLLECTION_ID)).isEqualTo(2L);
 
       documents = documentDao.databaseCollection().find().into(new ArrayList<>());
       assertThat(documents).isEmpty();
@@ -194,7 +234,7 @@ public class MongoDocumentDaoTest extends MongoDbTestBase {
 
    @Test
    public void testDeleteDocumentsEmpty() {
-      documentDao.deleteDocuments(COLLECTION_ID);
+      assertThat(documentDao.deleteDocuments(COLLECTION_ID)).isZero();
 
       List<Document> documents = documentDao.databaseCollection().find().into(new ArrayList<>());
       assertThat(documents).isEmpty();
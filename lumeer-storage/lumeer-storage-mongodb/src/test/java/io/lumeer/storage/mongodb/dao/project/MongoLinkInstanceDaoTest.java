@@ -27,7 +27,10 @@ import io.lumeer.storage.api.exception.StorageException;
 import io.lumeer.storage.api.query.SearchQuery;
 import io.lumeer.storage.api.query.SearchQueryStem;
 import io.lumeer.storage.mongodb.MongoDbTestBase;
+import io.lumeer.storage.mongodb.codecs.LinkInstanceCodec;
 
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Indexes;
 import org.bson.types.ObjectId;
 import org.junit.Before;
 import org.junit.Test;
@@ -124,6 +127,42 @@ public class MongoLinkInstanceDaoTest extends MongoDbTestBase {
       assertThat(storedLinkInstance.getDocumentIds()).containsOnly(DOCUMENT_ID3, DOCUMENT_ID4);
    }
 
+   @Test
+   public void testUpdateLinkInstances() {
+      LinkInstance linkInstance1 = linkInstanceDao.createLinkInstance(prepareLinkInstance());
+      LinkInstance linkInstance2 = linkInstanceDao.createLinkInstance(prepareLinkInstance());
+
+      linkInstance1.setUpdatedBy(USER);
+      linkInstance2.setDocumentIds(Arrays.asList(DOCUMENT_ID3, DOCUMENT_ID4));
+
+      List<LinkInstance> updatedLinkInstances = linkInstanceDao.updateLinkInstances(Arrays.asList(linkInstance1, linkInstance2));
+      assertThat(updatedLinkInstances).extracting(LinkInstance::getId).containsOnly(linkInstance1.getId(), linkInstance2.getId());
+
+      LinkInstance storedLinkInstance1 = linkInstanceDao.getLinkInstance(linkInstance1.getId());
+      assertThat(storedLinkInstance1.getUpdatedBy()).isEqualTo(USER);
+      assertThat(storedLinkInstance1.getDocumentIds()).containsOnly(DOCUMENT_ID1, DOCUMENT_ID2);
+      assertThat(storedLinkInstance1.getDataVersion()).isEqualTo(1);
+
+      LinkInstance storedLinkInstance2 = linkInstanceDao.getLinkInstance(linkInstance2.getId());
+      assertThat(storedLinkInstance2.getUpdatedBy()).isNull();
+      assertThat(storedLinkInstance2.getDocumentIds()).containsOnly(DOCUMENT_ID3, DOCUMENT_ID4);
+      assertThat(storedLinkInstance2.getDataVersion()).isEqualTo(1);
+   }
+
+   @Test
+   public void testUpdateLinkInstancesNotExisting() {
+      LinkInstance linkInstance = linkInstanceDao.createLinkInstance(prepareLinkInstance());
+      LinkInstance notExisting = prepareLinkInstance();
+      notExisting.setId(NOT_EXISTING_ID);
+
+      assertThat(linkInstanceDao.updateLinkInstances(Arrays.asList(linkInstance, notExisting))).extracting(LinkInstance::getId).containsOnly(linkInstance.getId());
+   }
+
+   @Test
+   public void testUpdateLinkInstancesEmpty() {
+      assertThat(linkInstanceDao.updateLinkInstances(Collections.emptyList())).isEmpty();
+   }
+
    @Test
    public void testGetLinkType() {
       String id = linkInstanceDao.createLinkInstance(prepareLinkInstance()).getId();
@@ -258,6 +297,57 @@ public class MongoLinkInstanceDaoTest extends MongoDbTestBase {
       assertThat(linkInstances).extracting("id").containsOnly(id4);
    }
 
+   @Test
+   public void testReconcileIndexes() {
+      MongoCollection<org.bson.Document> collection = database.getCollection(linkInstanceDao.databaseCollectionName());
+      collection.dropIndexes();
+      collection.createIndex(Indexes.ascending(LinkInstanceCodec.LINK_TYPE_ID));
+      collection.createIndex(Indexes.ascending(LinkInstanceCodec.DATA_VERSION));
+
+      MongoIndexManager.IndexReport report = MongoIndexManager.reconcile(database, MongoIndexManager.Repository.LINK_INSTANCES, linkInstanceDao.databaseCollectionName());
+      assertThat(report.getCreated()).containsOnly(LinkInstanceCodec.LINK_TYPE_ID + "_1_" + LinkInstanceCodec.DOCUMENTS_IDS + "_1", LinkInstanceCodec.DOCUMENTS_IDS + "_1");
+      // the legacy link type index is known, so only the other one is reported
+      assertThat(report.getUndeclared()).containsOnly(LinkInstanceCodec.DATA_VERSION + "_1");
+
+      List<org.bson.Document> keys = new ArrayList<>();
+      collection.listIndexes().forEach(index -> keys.add(index.get("key", org.bson.Document.class)));
+      assertThat(keys).contains(new org.bson.Document(LinkInstanceCodec.LINK_TYPE_ID, 1).append(LinkInstanceCodec.DOCUMENTS_IDS, 1));
+
+      report = MongoIndexManager.reconcile(database, MongoIndexManager.Repository.LINK_INSTANCES, linkInstanceDao.databaseCollectionName());
+      assertThat(report.getCreated()).isEmpty();
+   }
+
+   @Test
+   public void testReconcileDelay() {
+      try {
+         System.setProperty("lumeer.index.reconcile.delay", "3");
+         assertThat(MongoIndexReconciler.getStartupDelay()).isEqualTo(3);
+
+         System.setProperty("lumeer.index.reconcile.delay", "soon");
+         assertThat(MongoIndexReconciler.getStartupDelay()).isEqualTo(10);
+      } finally {
+         System.clearProperty("lumeer.index.reconcile.delay");
+      }
+   }
+
+   @Test
+   public void testReconcileAllIndexes() {
+      database.getCollection(linkInstanceDao.databaseCollectionName()).dropIndexes();
+
+      MongoIndexReconciler reconciler = new MongoIndexReconciler();
+      List<MongoIndexManager.IndexReport> reports = reconciler.reconcile(database);
+      assertThat(reports).filteredOn(report -> report.getCollectionName().equals(linkInstanceDao.databaseCollectionName()))
+                         .flatExtracting(MongoIndexManager.IndexReport::getCreated)
+                         .containsOnly(LinkInstanceCodec.LINK_TYPE_ID + "_1_" + LinkInstanceCodec.DOCUMENTS_IDS + "_1", LinkInstanceCodec.DOCUMENTS_IDS + "_1");
+
+      reports = reconciler.reconcile(database);
+      assertThat(reports).extracting(MongoIndexManager.IndexReport::getCollectionName).contains(linkInstanceDao.databaseCollectionName());
+      assertThat(reports).flatExtracting(MongoIndexManager.IndexReport::getCreated).isEmpty();
+      assertThat(reports).filteredOn(report -> report.getCollectionName().equals(linkInstanceDao.databaseCollectionName()))
+                         .flatExtracting(MongoIndexManager.IndexReport::getUnused)
+                         .contains(LinkInstanceCodec.DOCUMENTS_IDS + "_1");
+   }
+
    private LinkInstance prepareLinkInstance() {
       return new LinkInstance(LINK_TYPE_ID1, Arrays.asList(DOCUMENT_ID1, DOCUMENT_ID2));
    }
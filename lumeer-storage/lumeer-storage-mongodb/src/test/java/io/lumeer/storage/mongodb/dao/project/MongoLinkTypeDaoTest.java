@@ -20,10 +20,12 @@ package io.lumeer.storage.mongodb.dao.project;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
 
 import io.lumeer.api.model.Attribute;
 import io.lumeer.api.model.LinkType;
 import io.lumeer.api.model.Project;
+import io.lumeer.api.model.function.Function;
 import io.lumeer.storage.api.exception.StorageException;
 import io.lumeer.storage.api.query.SearchSuggestionQuery;
 import io.lumeer.storage.mongodb.MongoDbTestBase;
@@ -128,6 +130,21 @@ public class MongoLinkTypeDaoTest extends MongoDbTestBase {
       assertThat(storedLinkType.getCollectionIds()).containsOnly(COLLECTION_ID3, COLLECTION_ID4);
    }
 
+   @Test
+   public void testUpdateAttributeFunctionError() {
+      LinkType linkType = prepareLinkType();
+      linkType.setAttributes(List.of(new Attribute("a1", ATTRIBUTE1_NAME, null, new Function("js", "xml", null, 0L, false), 0)));
+      String id = linkTypeDao.createLinkType(linkType).getId();
+
+      linkTypeDao.updateAttributeFunctionError(id, "a1", "cycle", 23456L);
+
+      LinkType storedLinkType = linkTypeDao.getLinkType(id);
+      assertThat(storedLinkType.getName()).isEqualTo(NAME);
+      assertThat(storedLinkType.getAttributes()).extracting(Attribute::getFunction)
+                                                .extracting(Function::getErrorReport, Function::getTimestamp, Function::getXml)
+                                                .containsOnly(tuple("cycle", 23456L, "xml"));
+   }
+
    @Test
    public void testUpdateLinkTypeExistingName() {
       LinkType linkType = prepareLinkType();
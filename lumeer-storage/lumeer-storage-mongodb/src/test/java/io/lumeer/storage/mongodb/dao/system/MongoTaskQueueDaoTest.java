@@ -0,0 +1,212 @@
+/*
+ * Lumeer: Modern Data Definition and Processing Platform
+ *
+ * Copyright (C) since 2017 Lumeer.io, s.r.o. and/or its affiliates.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.lumeer.storage.mongodb.dao.system;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.lumeer.api.model.QueuedTask;
+import io.lumeer.engine.api.data.DataDocument;
+import io.lumeer.storage.mongodb.MongoDbTestBase;
+import io.lumeer.storage.mongodb.codecs.QueuedTaskCodec;
+import io.lumeer.storage.mongodb.util.MongoFilters;
+
+import com.mongodb.client.model.Filters;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+public class MongoTaskQueueDaoTest extends MongoDbTestBase {
+
+   private static final String ORGANIZATION_ID = "596e3b86d412bc5a3caaa22a";
+   private static final String PROJECT_ID = "596e3b86d412bc5a3caaa22b";
+   private static final String USER_ID = "596e3b86d412bc5a3caaa22c";
+   private static final String OWNER1 = "node1";
+   private static final String OWNER2 = "node2";
+   private static final long LEASE = 60_000;
+
+   private MongoTaskQueueDao mongoTaskQueueDao;
+
+   @Before
+   public void initTaskQueueDao() {
+      mongoTaskQueueDao = new MongoTaskQueueDao();
+      mongoTaskQueueDao.setDatabase(database);
+
+      mongoTaskQueueDao.createRepository();
+      assertThat(database.listCollectionNames()).contains(mongoTaskQueueDao.databaseCollectionName());
+   }
+
+   @Test
+   public void testEnqueue() {
+      QueuedTask task = mongoTaskQueueDao.enqueue(prepareTask("doc1"));
+      assertThat(task.getId()).isNotNull();
+
+      QueuedTask storedTask = mongoTaskQueueDao.databaseCollection().find(MongoFilters.idFilter(task.getId())).first();
+      assertThat(storedTask).isNotNull();
+      assertThat(storedTask.getOrganizationId()).isEqualTo(ORGANIZATION_ID);
+      assertThat(storedTask.getProjectId()).isEqualTo(PROJECT_ID);
+      assertThat(storedTask.getUserId()).isEqualTo(USER_ID);
+      assertThat(storedTask.getPartitionKey()).isEqualTo("doc1");
+      assertThat(storedTask.getState()).isEqualTo(QueuedTask.State.PENDING);
+      assertThat(storedTask.getPayload()).containsEntry("type", "rule");
+      assertThat(storedTask.getPayload().getDataDocument("nested")).containsEntry("value", 42);
+   }
+
+   @Test
+   public void testLease() {
+      mongoTaskQueueDao.enqueue(prepareTask("doc1"));
+      mongoTaskQueueDao.enqueue(prepareTask("doc2"));
+      mongoTaskQueueDao.enqueue(prepareTask("doc3"));
+
+      List<QueuedTask> leased = mongoTaskQueueDao.lease(OWNER1, 2, LEASE);
+      assertThat(leased).hasSize(2);
+      assertThat(leased).allMatch(task -> task.getState() == QueuedTask.State.LEASED && OWNER1.equals(task.getLeaseOwner()) && task.getAttempts() == 1);
+
+      List<QueuedTask> leasedByOther = mongoTaskQueueDao.lease(OWNER2, 10, LEASE);
+      assertThat(leasedByOther).hasSize(1);
+      assertThat(leasedByOther.get(0).getPartitionKey()).isNotIn(leased.get(0).getPartitionKey(), leased.get(1).getPartitionKey());
+
+      assertThat(mongoTaskQueueDao.lease(OWNER2, 10, LEASE)).isEmpty();
+   }
+
+   @Test
+   public void testLeaseExpired() {
+      QueuedTask task = mongoTaskQueueDao.enqueue(prepareTask("doc1"));
+
+      assertThat(mongoTaskQueueDao.lease(OWNER1, 10, -1)).hasSize(1);
+
+      List<QueuedTask> leased = mongoTaskQueueDao.lease(OWNER2, 10, LEASE);
+      assertThat(leased).extracting(QueuedTask::getId).containsOnly(task.getId());
+      assertThat(leased.get(0).getLeaseOwner()).isEqualTo(OWNER2);
+      assertThat(leased.get(0).getAttempts()).isEqualTo(2);
+   }
+
+   @Test
+   public void testCompleteAndRetry() {
+      QueuedTask task1 = mongoTaskQueueDao.enqueue(prepareTask("doc1"));
+      QueuedTask task2 = mongoTaskQueueDao.enqueue(prepareTask("doc2"));
+      assertThat(mongoTaskQueueDao.lease(OWNER1, 10, LEASE)).hasSize(2);
+
+      assertThat(mongoTaskQueueDao.complete(task1.getId(), OWNER1)).isTrue();
+      assertThat(mongoTaskQueueDao.retry(task2.getId(), OWNER1, "failure", 0)).isTrue();
+      assertThat(getPendingCount()).isEqualTo(1);
+
+      List<QueuedTask> leased = mongoTaskQueueDao.lease(OWNER2, 10, LEASE);
+      assertThat(leased).extracting(QueuedTask::getId).containsOnly(task2.getId());
+      assertThat(leased.get(0).getError()).isEqualTo("failure");
+
+      assertThat(mongoTaskQueueDao.retry(task2.getId(), OWNER2, "failure", LEASE)).isTrue();
+      assertThat(mongoTaskQueueDao.lease(OWNER2, 10, LEASE)).isEmpty();
+   }
+
+   @Test
+   public void testDeadLetter() {
+      QueuedTask task1 = mongoTaskQueueDao.enqueue(prepareTask("doc1"));
+      QueuedTask task2 = mongoTaskQueueDao.enqueue(prepareTask("doc2"));
+      assertThat(mongoTaskQueueDao.lease(OWNER1, 10, -1)).hasSize(2);
+
+      assertThat(mongoTaskQueueDao.deadLetter(task1.getId(), OWNER1, "too many attempts")).isTrue();
+
+      assertThat(getDeadLetters()).extracting(QueuedTask::getId).containsOnly(task1.getId());
+      assertThat(getDeadLetters().get(0).getError()).isEqualTo("too many attempts");
+      assertThat(getPendingCount()).isEqualTo(1);
+      assertThat(mongoTaskQueueDao.lease(OWNER1, 10, LEASE)).extracting(QueuedTask::getId).containsOnly(task2.getId());
+   }
+
+   @Test
+   public void testRemoveDeadLetters() {
+      QueuedTask task1 = mongoTaskQueueDao.enqueue(prepareTask("doc1"));
+      QueuedTask task2 = mongoTaskQueueDao.enqueue(prepareTask("doc2"));
+      assertThat(mongoTaskQueueDao.lease(OWNER1, 10, LEASE)).hasSize(2);
+      assertThat(mongoTaskQueueDao.deadLetter(task1.getId(), OWNER1, "too many attempts")).isTrue();
+
+      assertThat(mongoTaskQueueDao.removeDeadLetters(LEASE)).isZero();
+      assertThat(getDeadLetters()).hasSize(1);
+
+      assertThat(mongoTaskQueueDao.removeDeadLetters(-LEASE)).isEqualTo(1);
+      assertThat(getDeadLetters()).isEmpty();
+      assertThat(mongoTaskQueueDao.complete(task2.getId(), OWNER1)).isTrue();
+   }
+
+   @Test
+   public void testOwnerFencing() {
+      QueuedTask task = mongoTaskQueueDao.enqueue(prepareTask("doc1"));
+      assertThat(mongoTaskQueueDao.lease(OWNER1, 10, -1)).hasSize(1);
+      assertThat(mongoTaskQueueDao.lease(OWNER2, 10, LEASE)).hasSize(1);
+
+      // the first owner lost its lease, it must not touch the task anymore
+      assertThat(mongoTaskQueueDao.progress(task.getId(), OWNER1, LEASE)).isFalse();
+      assertThat(mongoTaskQueueDao.retry(task.getId(), OWNER1, "failure", 0)).isFalse();
+      assertThat(mongoTaskQueueDao.deadLetter(task.getId(), OWNER1, "failure")).isFalse();
+      assertThat(mongoTaskQueueDao.complete(task.getId(), OWNER1)).isFalse();
+
+      QueuedTask storedTask = mongoTaskQueueDao.databaseCollection().find(MongoFilters.idFilter(task.getId())).first();
+      assertThat(storedTask.getState()).isEqualTo(QueuedTask.State.LEASED);
+      assertThat(storedTask.getLeaseOwner()).isEqualTo(OWNER2);
+      assertThat(storedTask.getCompletedTasks()).isZero();
+      assertThat(storedTask.getError()).isNull();
+
+      assertThat(mongoTaskQueueDao.complete(task.getId(), OWNER2)).isTrue();
+      assertThat(getPendingCount()).isZero();
+   }
+
+   @Test
+   public void testRenew() {
+      QueuedTask task1 = mongoTaskQueueDao.enqueue(prepareTask("doc1"));
+      QueuedTask task2 = mongoTaskQueueDao.enqueue(prepareTask("doc2"));
+      assertThat(mongoTaskQueueDao.lease(OWNER1, 10, -1)).hasSize(2);
+
+      mongoTaskQueueDao.renew(OWNER1, Set.of(task1.getId()), LEASE);
+      mongoTaskQueueDao.renew(OWNER2, Set.of(task2.getId()), LEASE);
+
+      assertThat(mongoTaskQueueDao.lease(OWNER2, 10, LEASE)).extracting(QueuedTask::getId).containsOnly(task2.getId());
+   }
+
+   @Test
+   public void testProgress() {
+      QueuedTask task = mongoTaskQueueDao.enqueue(prepareTask("doc1"));
+      assertThat(mongoTaskQueueDao.lease(OWNER1, 10, -1)).hasSize(1);
+
+      assertThat(mongoTaskQueueDao.progress(task.getId(), OWNER1, LEASE)).isTrue();
+      assertThat(mongoTaskQueueDao.progress(task.getId(), OWNER1, LEASE)).isTrue();
+      assertThat(mongoTaskQueueDao.lease(OWNER2, 10, LEASE)).isEmpty();
+
+      QueuedTask storedTask = mongoTaskQueueDao.databaseCollection().find(MongoFilters.idFilter(task.getId())).first();
+      assertThat(storedTask.getCompletedTasks()).isEqualTo(2);
+      assertThat(storedTask.getPayload()).containsEntry("type", "rule").containsKey("nested");
+   }
+
+   private List<QueuedTask> getDeadLetters() {
+      return mongoTaskQueueDao.databaseCollection().find(Filters.eq(QueuedTaskCodec.STATE, QueuedTask.State.DEAD.name())).into(new ArrayList<>());
+   }
+
+   private long getPendingCount() {
+      return mongoTaskQueueDao.databaseCollection().countDocuments(Filters.ne(QueuedTaskCodec.STATE, QueuedTask.State.DEAD.name()));
+   }
+
+   private QueuedTask prepareTask(final String partitionKey) {
+      DataDocument payload = new DataDocument("type", "rule")
+            .append("ids", Arrays.asList("a", "b"))
+            .append("nested", new DataDocument("value", 42));
+      return new QueuedTask(ORGANIZATION_ID, PROJECT_ID, USER_ID, partitionKey, payload);
+   }
+}
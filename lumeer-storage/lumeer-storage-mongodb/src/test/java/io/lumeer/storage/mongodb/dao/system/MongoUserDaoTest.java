@@ -264,6 +264,20 @@ public class MongoUserDaoTest extends MongoDbTestBase {
       assertThat(storedUser).isNotNull();
    }
 
+   @Test
+   public void testGetUsersByIds() {
+      User user = mongoUserDao.createUser(prepareUser());
+
+      User user2 = prepareUser();
+      user2.setName(USERNAME2);
+      user2.setEmail("someother@email.com");
+      user2 = mongoUserDao.createUser(user2);
+
+      assertThat(mongoUserDao.getUsersByIds(new HashSet<>(Arrays.asList(user.getId(), user2.getId(), "invalid"))))
+            .extracting(User::getId).containsOnly(user.getId(), user2.getId());
+      assertThat(mongoUserDao.getUsersByIds(Collections.emptySet())).isEmpty();
+   }
+
    @Test
    public void testGetUserByUsernameNotExisting() {
       User storedUser = mongoUserDao.getUserByEmail(EMAIL);